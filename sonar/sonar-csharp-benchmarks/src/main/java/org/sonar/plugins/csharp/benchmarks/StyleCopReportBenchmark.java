@@ -0,0 +1,184 @@
+/*
+ * Sonar C# Plugin :: Benchmarks
+ * Copyright (C) 2010 Jose Chillan, Alexandre Victoor and SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.plugins.csharp.benchmarks;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.io.IOUtils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.sonar.api.batch.SensorContext;
+import org.sonar.api.resources.Project;
+import org.sonar.api.resources.ProjectFileSystem;
+import org.sonar.api.rules.Rule;
+import org.sonar.api.rules.RuleFinder;
+import org.sonar.plugins.csharp.api.RuleIndex;
+import org.sonar.plugins.csharp.stylecop.StyleCopResultParser;
+
+/**
+ * Reading of a large StyleCop report, where each source file holds many violations. Compares looking for the resource of each violation in
+ * the sensor context, as the parser used to do, with looking for the resource of each source file once.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class StyleCopReportBenchmark {
+
+  private static final String RULE_CONFIG_KEY = "Microsoft.StyleCop.CSharp.NamingRules#ElementMustBeginWithUpperCaseLetter";
+
+  @State(Scope.Benchmark)
+  public static class GeneratedReport {
+
+    @Param({ "20", "200", "2000" })
+    int sourceCount;
+
+    @Param({ "200000" })
+    int violationCount;
+
+    File reportFile;
+    String[] violationSources;
+    String[] distinctSources;
+    Project project;
+    SensorContext context;
+    RuleIndex ruleIndex;
+
+    @Setup
+    public void generate() throws Exception {
+      File directory = new File("target/benchmark-reports").getAbsoluteFile();
+      File sourceDirectory = new File(directory, "src");
+      reportFile = new File(directory, "stylecop-" + sourceCount + "-" + violationCount + ".xml");
+
+      violationSources = new String[violationCount];
+      for (int i = 0; i < violationCount; i++) {
+        // Violations are written file after file, as StyleCop does
+        violationSources[i] = new File(sourceDirectory, "Class" + (i * sourceCount / violationCount) + ".cs").getPath();
+      }
+      Set<String> sources = new LinkedHashSet<String>(Arrays.asList(violationSources));
+      distinctSources = sources.toArray(new String[sources.size()]);
+      if ( !reportFile.exists()) {
+        writeReport();
+      }
+
+      project = new Project("benchmark").setFileSystem(stub(ProjectFileSystem.class, Collections.singletonList(sourceDirectory)));
+      context = stub(SensorContext.class, null);
+      Rule rule = Rule.create("stylecop", "ElementMustBeginWithUpperCaseLetter", "ElementMustBeginWithUpperCaseLetter").setConfigKey(
+          RULE_CONFIG_KEY);
+      ruleIndex = new RuleIndex(stub(RuleFinder.class, Collections.singletonList(rule)));
+    }
+
+    private void writeReport() throws Exception {
+      reportFile.getParentFile().mkdirs();
+      Writer writer = new OutputStreamWriter(new FileOutputStream(reportFile), "UTF-8");
+      try {
+        writer.write("<StyleCopViolations>\n");
+        for (int i = 0; i < violationCount; i++) {
+          writer.write("  <Violation Section=\"Root.Example\" LineNumber=\"" + (i % 1000 + 1) + "\" Source=\"" + violationSources[i]
+            + "\" RuleNamespace=\"Microsoft.StyleCop.CSharp.NamingRules\" Rule=\"ElementMustBeginWithUpperCaseLetter\""
+            + " RuleId=\"SA1300\">namespace names begin with an upper-case letter: example.</Violation>\n");
+        }
+        writer.write("</StyleCopViolations>\n");
+      } finally {
+        IOUtils.closeQuietly(writer);
+      }
+    }
+  }
+
+  /**
+   * Reads the whole report and saves its violations in a sensor context which indexes every file.
+   */
+  @Benchmark
+  public StyleCopResultParser parseReport(GeneratedReport report) {
+    StyleCopResultParser parser = new StyleCopResultParser(report.project, report.context, report.ruleIndex);
+    parser.setEncoding(Charset.forName("UTF-8"));
+    parser.parse(report.reportFile);
+    return parser;
+  }
+
+  /**
+   * Resource resolution as it was done before: once per violation.
+   */
+  @Benchmark
+  public int resolveEachViolation(GeneratedReport report) {
+    return resolve(report, report.violationSources);
+  }
+
+  /**
+   * Resource resolution as it is done now: once per source file.
+   */
+  @Benchmark
+  public int resolveEachSource(GeneratedReport report) {
+    return resolve(report, report.distinctSources);
+  }
+
+  private static int resolve(GeneratedReport report, String[] sources) {
+    int indexed = 0;
+    for (String source : sources) {
+      org.sonar.api.resources.File sonarFile = org.sonar.api.resources.File.fromIOFile(new File(source), report.project);
+      if (report.context.isIndexed(sonarFile, false)) {
+        indexed++;
+      }
+    }
+    return indexed;
+  }
+
+  /**
+   * Creates a stub of one of the Sonar interfaces: every method returning a list returns the given one, every boolean method returns
+   * <code>true</code> and any other method does nothing.
+   */
+  private static <T> T stub(Class<T> type, final Object list) {
+    return type.cast(Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[] { type }, new InvocationHandler() {
+
+      public Object invoke(Object proxy, Method method, Object[] args) {
+        Class<?> returnType = method.getReturnType();
+        if (returnType == boolean.class) {
+          return Boolean.TRUE;
+        }
+        if (returnType.isInstance(list)) {
+          return list;
+        }
+        return null;
+      }
+    }));
+  }
+
+}
@@ -22,9 +22,17 @@ package org.sonar.plugins.csharp.api;
 
 import java.util.Arrays;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 import org.apache.commons.configuration.Configuration;
+import org.apache.commons.configuration.ConversionException;
+import org.apache.commons.configuration.event.ConfigurationEvent;
+import org.apache.commons.configuration.event.ConfigurationListener;
+import org.apache.commons.configuration.event.EventSource;
 import org.apache.commons.lang.StringUtils;
 import org.sonar.api.BatchExtension;
 import org.sonar.api.batch.InstantiationStrategy;
@@ -32,12 +40,16 @@ import org.sonar.api.utils.Logs;
 
 import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
 
 /**
  * Class that reads configuration related to all the C# plugins. It can be injected via the constructor.<br/>
  * <br/>
  * <b>Important</b>: It should be used over the original {@link Configuration} as it takes care to maintain backward compatibility with the
- * previous .NET plugin parameter names.
+ * previous .NET plugin parameter names.<br/>
+ * <br/>
+ * The value of a key is resolved the first time the key is read, taking the previous parameter names into account, and is then kept until
+ * the configuration is modified. Each form of the value (string, list, boolean, integer) is only converted when it is asked for.
  */
 @InstantiationStrategy(InstantiationStrategy.PER_BATCH)
 public class CSharpConfiguration implements BatchExtension {
@@ -46,6 +58,9 @@ public class CSharpConfiguration implements BatchExtension {
 
   private Map<String, Object> newToPreviousParamMap = Maps.newHashMap();
 
+  private final ConcurrentMap<String, Value> values = new ConcurrentHashMap<String, Value>();
+  private final Set<String> loggedPreviousKeys = Collections.synchronizedSet(Sets.<String> newHashSet());
+
   /**
    * Creates a new {@link CSharpConfiguration} object that will use the inner {@link Configuration} object to retrieve the required key
    * values, taking into account the name of the previous .NET plugin parameters.
@@ -96,6 +111,16 @@ public class CSharpConfiguration implements BatchExtension {
     // PartCover OLD parameters
     newToPreviousParamMap.put("sonar.partcover.installDirectory", "partcover.directory");
 
+    if (configuration instanceof EventSource) {
+      ((EventSource) configuration).addConfigurationListener(new ConfigurationListener() {
+
+        public void configurationChanged(ConfigurationEvent event) {
+          if ( !event.isBeforeUpdate()) {
+            values.clear();
+          }
+        }
+      });
+    }
   }
 
   /**
@@ -103,76 +128,30 @@ public class CSharpConfiguration implements BatchExtension {
    */
   public void setProperty(String key, Object value) {
     configuration.setProperty(key, value);
+    values.clear();
   }
 
   /**
    * @see Configuration#getString(String, String)
    */
   public String getString(String key, String defaultValue) {
-    // look if this key existed before
-    Object rawPreviousKeys = newToPreviousParamMap.get(key);
-    if (rawPreviousKeys instanceof String) {
-      String conf = getConfig((String)rawPreviousKeys);
-      if (StringUtils.isNotBlank(conf)) {
-        return conf;
-      }
-    } else if (rawPreviousKeys instanceof Collection<?>) {
-      // should be a collection
-      Collection<String> prevousKeys = (Collection<String>)rawPreviousKeys;
-      for (String previousKey : prevousKeys) {
-        String conf = getConfig((String)previousKey);
-        if (StringUtils.isNotBlank(conf)) {
-          return conf;
-        }
-      } 
-    }
-    // if this key wasn't used before, or if no value for was for it, use the value of the current key
-    return configuration.getString(key, defaultValue);
-  }
-  
-  private String getConfig(String previousKey) {
-    if (StringUtils.isNotBlank(previousKey)) {
-      String result = configuration.getString(previousKey);
-      if (StringUtils.isNotBlank(result)) {
-        // a former parameter has been specified, let's take this value
-        logInfo(result, previousKey);
-        return result;
-      }
+    Value value = getValue(key);
+    String result = value.getString();
+    if (result == null) {
+      return defaultValue;
     }
-    return null;
+    logPreviousKey(value.stringPreviousKey, result);
+    return result;
   }
 
   /**
    * @see Configuration#getStringArray(String)
    */
   public String[] getStringArray(String key) {
-    // look if this key existed before
-    String previousKey = (String)newToPreviousParamMap.get(key);
-    final String[] resultArray;
-    if (StringUtils.isBlank(previousKey)) {
-      // if this key wasn't used before, or if no value for was for it,
-      // use the value of the current key
-      String[] result = configuration.getStringArray(key);
-      if (result.length == 0) {
-        resultArray = result;
-      } else {
-        // in the previous .NET plugin, parameters used to be split with a semi-colon
-        resultArray = splitUsingSemiColon(result);
-      }
-    } else {
-      String[] result = configuration.getStringArray(previousKey);
-      if (result.length == 0) {
-        result = configuration.getStringArray(key);
-        resultArray = splitUsingSemiColon(result);
-      } else {
-        // a former parameter has been specified, let's take this value
-        logInfo(result, previousKey);
-        // in the previous .NET plugin, parameters used to be split with a semi-colon
-        resultArray = splitUsingSemiColon(result);
-      }
-    }
-
-    return resultArray;
+    Value value = getValue(key);
+    String[] result = value.getArray();
+    logPreviousKey(value.arrayPreviousKey, StringUtils.join(result, ';'));
+    return result.clone();
   }
   
   public String[] getStringArray(String key, String defaultValue) {
@@ -188,50 +167,204 @@ public class CSharpConfiguration implements BatchExtension {
     return result;
   }
 
-  private String[] splitUsingSemiColon(String[] strings) {
-    Collection<String> resultCollection = Lists.newArrayList();
-    for (int i = 0; i < strings.length; i++) {
-      resultCollection.addAll(Arrays.asList(StringUtils.split(strings[i], ';')));
-    }
-    return resultCollection.toArray(new String[resultCollection.size()]);
-  }
-
   /**
    * @see Configuration#getBoolean(String, Boolean)
    */
   public boolean getBoolean(String key, boolean defaultValue) {
-    boolean result = false;
-    // look if this key existed before
-    String previousKey = (String)newToPreviousParamMap.get(key);
-    if (StringUtils.isNotBlank(previousKey) && configuration.containsKey(previousKey)) {
-      result = configuration.getBoolean(previousKey);
-      // a former parameter has been specified, let's take this value
-      logInfo(result, previousKey);
-      return result;
-    }
-    // if this key wasn't used before, or if no value for was for it, use the value of the current key
-    return configuration.getBoolean(key, defaultValue);
+    Value value = getValue(key);
+    Boolean result = value.getBoolean();
+    if (result == null) {
+      return defaultValue;
+    }
+    logPreviousKey(value.typedPreviousKey, result);
+    return result;
   }
 
   /**
    * @see Configuration#getInteger(String, Integer)
    */
   public int getInt(String key, int defaultValue) {
-    int result = -1;
-    // look if this key existed before
-    String previousKey = (String)newToPreviousParamMap.get(key);
-    if (StringUtils.isNotBlank(previousKey) && configuration.containsKey(previousKey)) {
-      result = configuration.getInt(previousKey);
-      // a former parameter has been specified, let's take this value
-      logInfo(result, previousKey);
-      return result;
-    }
-    // if this key wasn't used before, or if no value for was for it, use the value of the current key
-    return configuration.getInt(key, defaultValue);
+    Value value = getValue(key);
+    Integer result = value.getInteger();
+    if (result == null) {
+      return defaultValue;
+    }
+    logPreviousKey(value.typedPreviousKey, result);
+    return result;
+  }
+
+  /**
+   * @return the value of the key, created the first time the key is read
+   */
+  Value getValue(String key) {
+    Value value = values.get(key);
+    if (value == null) {
+      Value newValue = new Value(configuration, key, getPreviousKeys(newToPreviousParamMap.get(key)));
+      value = values.putIfAbsent(key, newValue);
+      if (value == null) {
+        value = newValue;
+      }
+    }
+    return value;
+  }
+
+  /**
+   * @return the number of keys read since the configuration was last modified
+   */
+  int getValueCount() {
+    return values.size();
+  }
+
+  @SuppressWarnings("unchecked")
+  private static Collection<String> getPreviousKeys(Object rawPreviousKeys) {
+    final Collection<String> result;
+    if (rawPreviousKeys instanceof String) {
+      result = Collections.singletonList((String) rawPreviousKeys);
+    } else if (rawPreviousKeys instanceof Collection<?>) {
+      result = (Collection<String>) rawPreviousKeys;
+    } else {
+      result = Collections.emptyList();
+    }
+    return result;
+  }
+
+  /**
+   * A former parameter has been specified and its value is used: this is logged once per parameter.
+   */
+  private void logPreviousKey(String previousKey, Object value) {
+    if (previousKey != null && loggedPreviousKeys.add(previousKey)) {
+      logInfo(value, previousKey);
+    }
   }
 
   protected void logInfo(Object result, String previousKey) {
     Logs.INFO.info("The old .NET parameter '{}' has been found and will be used. Its value: '{}'", previousKey, result);
   }
 
+  /**
+   * Value of a key, in the different forms the key can be read, where the previous .NET plugin parameters are already taken into account.
+   * Each form is resolved the first time it is read. A value that cannot be converted to a form is not kept, so that it fails each time it
+   * is read in this form, as it did when the configuration was read directly.
+   */
+  static final class Value {
+
+    private final Configuration configuration;
+    private final String key;
+    private final Collection<String> previousKeys;
+
+    private boolean stringResolved;
+    private String string;
+    private String stringPreviousKey;
+    private String[] array;
+    private String arrayPreviousKey;
+    private boolean typedKeyResolved;
+    private String typedKey;
+    private String typedPreviousKey;
+    private Boolean bool;
+    private Integer integer;
+
+    Value(Configuration configuration, String key, Collection<String> previousKeys) {
+      this.configuration = configuration;
+      this.key = key;
+      this.previousKeys = previousKeys;
+    }
+
+    /**
+     * @return the string value, or <code>null</code> if neither the key nor its previous names are set
+     */
+    synchronized String getString() {
+      if ( !stringResolved) {
+        resolveString();
+        stringResolved = true;
+      }
+      return string;
+    }
+
+    /**
+     * @return the values of the list, which must not be modified
+     */
+    synchronized String[] getArray() {
+      if (array == null) {
+        resolveArray();
+      }
+      return array;
+    }
+
+    /**
+     * @return the boolean value, or <code>null</code> if neither the key nor its previous names are set
+     */
+    synchronized Boolean getBoolean() {
+      if (bool == null && getTypedKey() != null) {
+        bool = configuration.getBoolean(typedKey);
+      }
+      return bool;
+    }
+
+    /**
+     * @return the integer value, or <code>null</code> if neither the key nor its previous names are set
+     */
+    synchronized Integer getInteger() {
+      if (integer == null && getTypedKey() != null) {
+        integer = configuration.getInt(typedKey);
+      }
+      return integer;
+    }
+
+    private void resolveString() {
+      for (String previousKey : previousKeys) {
+        if (StringUtils.isNotBlank(previousKey)) {
+          String previousString = configuration.getString(previousKey);
+          if (StringUtils.isNotBlank(previousString)) {
+            string = previousString;
+            stringPreviousKey = previousKey;
+            return;
+          }
+        }
+      }
+      if (configuration.containsKey(key)) {
+        string = configuration.getString(key);
+      }
+    }
+
+    private void resolveArray() {
+      for (String previousKey : previousKeys) {
+        if (StringUtils.isNotBlank(previousKey)) {
+          String[] previousArray = configuration.getStringArray(previousKey);
+          if (previousArray.length > 0) {
+            array = splitUsingSemiColon(previousArray);
+            arrayPreviousKey = previousKey;
+            return;
+          }
+        }
+      }
+      // in the previous .NET plugin, parameters used to be split with a semi-colon
+      array = splitUsingSemiColon(configuration.getStringArray(key));
+    }
+
+    private String getTypedKey() {
+      if ( !typedKeyResolved) {
+        for (String previousKey : previousKeys) {
+          if (StringUtils.isNotBlank(previousKey) && configuration.containsKey(previousKey)) {
+            typedKey = previousKey;
+            typedPreviousKey = previousKey;
+            break;
+          }
+        }
+        if (typedKey == null && configuration.containsKey(key)) {
+          typedKey = key;
+        }
+        typedKeyResolved = true;
+      }
+      return typedKey;
+    }
+
+    private static String[] splitUsingSemiColon(String[] strings) {
+      Collection<String> resultCollection = Lists.newArrayList();
+      for (int i = 0; i < strings.length; i++) {
+        resultCollection.addAll(Arrays.asList(StringUtils.split(strings[i], ';')));
+      }
+      return resultCollection.toArray(new String[resultCollection.size()]);
+    }
+  }
+
 }
@@ -88,6 +88,28 @@ public final class CSharpConstants {
 
   public static final String ASSEMBLIES_TO_SCAN_KEY = "sonar.dotnet.assemblies";
 
+  public static final String MODEL_LOAD_THREADS_KEY = "sonar.dotnet.modelLoadThreads";
+  public static final int MODEL_LOAD_THREADS_DEFVALUE = 1;
+
+  public static final String MODEL_CACHE_KEY = "sonar.dotnet.modelCache";
+  public static final boolean MODEL_CACHE_DEFVALUE = false;
+  public static final String MODEL_CACHE_FILE_NAME = "dotnet-model.cache";
+
+  public static final String VERSION_SCAN_MAX_FILES_KEY = "sonar.dotnet.version.maxScannedFiles";
+  public static final int VERSION_SCAN_MAX_FILES_DEFVALUE = 100;
+
+  public static final String VERSION_SCAN_MAX_BYTES_KEY = "sonar.dotnet.version.maxScannedBytes";
+  public static final int VERSION_SCAN_MAX_BYTES_DEFVALUE = 65536;
+
+  public static final String VERSION_FROM_PROJECT_FILE_KEY = "sonar.dotnet.version.fromProjectFile";
+  public static final boolean VERSION_FROM_PROJECT_FILE_DEFVALUE = false;
+
+  public static final String SKIPPED_DIRECTORIES_KEY = "sonar.dotnet.skippedDirectories";
+  public static final String SKIPPED_DIRECTORIES_DEFVALUE = "bin,obj,packages";
+
+  public static final String REPORT_STORE_MAX_SIZE_KEY = "sonar.dotnet.reportStore.maxSize";
+  public static final int REPORT_STORE_MAX_SIZE_DEFVALUE = 100;
+
   /**
    * Returns the config key that will allow to retrieve the .NET SDK directory from the plugin configuration.
    * 
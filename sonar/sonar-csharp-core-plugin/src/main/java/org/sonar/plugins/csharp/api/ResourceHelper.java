@@ -19,16 +19,26 @@
  */
 package org.sonar.plugins.csharp.api;
 
+import java.util.HashMap;
+import java.util.Map;
+
 import org.sonar.api.BatchExtension;
 import org.sonar.api.batch.SensorContext;
 import org.sonar.api.resources.Project;
 import org.sonar.api.resources.Resource;
 
-
+/**
+ * Finds the project owning a resource. The parent chain of a resource does not change during an analysis, so the project found for a
+ * resource, and for each of its ancestors, is remembered: the parents of a resource are only walked through once, whichever C# plugin asks
+ * for it first.
+ */
 public class ResourceHelper implements BatchExtension {
   
   private final SensorContext sensorContext;
   
+  private final Map<String, String> projectKeysByResource = new HashMap<String, String>();
+  private final Map<String, Project> projectsByKey = new HashMap<String, Project>();
+  private int parentLookups;
  
   public ResourceHelper(SensorContext sensorContext) {
     this.sensorContext = sensorContext;
@@ -41,13 +51,9 @@ public class ResourceHelper implements BatchExtension {
     if (resource instanceof Project) {
       result = resource.getEffectiveKey().equals(project.getEffectiveKey());
     } else {
-      Resource<?> parent = sensorContext.getParent(resource);
-      if (parent==null) {
-        // should not happen
-        result = false;
-      } else {
-        result = isResourceInProject(parent, project);
-      }
+      Project parentProject = findParentProject(resource);
+      // no parent should not happen
+      result = parentProject != null && parentProject.getEffectiveKey().equals(project.getEffectiveKey());
     }
     return result;
   }
@@ -55,17 +61,46 @@ public class ResourceHelper implements BatchExtension {
   public Project findParentProject(Resource<?> resource) {
     final Project result;
     if (resource instanceof Project) {
-      result = (Project)resource;
+      result = (Project) resource;
+      if (result.getEffectiveKey() != null && !projectsByKey.containsKey(result.getEffectiveKey())) {
+        projectsByKey.put(result.getEffectiveKey(), result);
+      }
     } else {
-      Resource<?> parent = sensorContext.getParent(resource);
-      if (parent==null) {
-        // should not happen
-        result = null;
+      String resourceKey = getCacheKey(resource);
+      if (resourceKey != null && projectKeysByResource.containsKey(resourceKey)) {
+        String projectKey = projectKeysByResource.get(resourceKey);
+        result = projectKey == null ? null : projectsByKey.get(projectKey);
       } else {
-        result = findParentProject(parent);
+        parentLookups++;
+        Resource<?> parent = sensorContext.getParent(resource);
+        if (parent==null) {
+          // should not happen
+          result = null;
+        } else {
+          result = findParentProject(parent);
+        }
+        if (resourceKey != null && (result == null || result.getEffectiveKey() != null)) {
+          projectKeysByResource.put(resourceKey, result == null ? null : result.getEffectiveKey());
+        }
       }
     }
     return result;
   }
+
+  /**
+   * @return the number of times the parent of a resource has been asked to the sensor context
+   */
+  int getParentLookups() {
+    return parentLookups;
+  }
+
+  /**
+   * Resources that are not indexed yet have no effective key: their key is only meaningful in the current module, which is the scope of
+   * this component anyway.
+   */
+  private static String getCacheKey(Resource<?> resource) {
+    String key = resource.getEffectiveKey() == null ? resource.getKey() : resource.getEffectiveKey();
+    return key == null ? null : resource.getQualifier() + ":" + key;
+  }
   
 }
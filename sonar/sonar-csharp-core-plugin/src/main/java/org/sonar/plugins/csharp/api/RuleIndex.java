@@ -0,0 +1,135 @@
+/*
+ * Sonar C# Plugin :: Core
+ * Copyright (C) 2010 Jose Chillan, Alexandre Victoor and SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.plugins.csharp.api;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.sonar.api.BatchExtension;
+import org.sonar.api.batch.InstantiationStrategy;
+import org.sonar.api.rules.Rule;
+import org.sonar.api.rules.RuleFinder;
+import org.sonar.api.rules.RuleQuery;
+
+/**
+ * Index of the rules of the C# rule repositories, shared by the result parsers of all the modules of an analysis.<br/>
+ * The rules of a repository are loaded at once, the first time the repository is used. A rule that is not part of the loaded rules is
+ * looked for once with the {@link RuleFinder}, and a rule that cannot be found at all is remembered too: it is reported once, whatever the
+ * number of violations of this rule in the reports.<br/>
+ * The rule finder reads the database with a session bound to the calling thread, so the index must only be used from the thread of the
+ * sensor, i.e. by the {@link ViolationSink.Resolver} and not by the {@link ViolationSink.Producer}.
+ */
+@InstantiationStrategy(InstantiationStrategy.PER_BATCH)
+public class RuleIndex implements BatchExtension {
+
+  private static final Logger LOG = LoggerFactory.getLogger(RuleIndex.class);
+
+  private final RuleFinder ruleFinder;
+  private final Map<String, RepositoryRules> repositories = new HashMap<String, RepositoryRules>();
+
+  public RuleIndex(RuleFinder ruleFinder) {
+    this.ruleFinder = ruleFinder;
+  }
+
+  /**
+   * Finds a rule by its key.
+   * 
+   * @param repositoryKey
+   *          the key of the rule repository
+   * @param key
+   *          the key of the rule
+   * @return the rule, or <code>null</code> if the repository does not contain such a rule
+   */
+  public synchronized Rule findByKey(String repositoryKey, String key) {
+    RepositoryRules rules = getRepositoryRules(repositoryKey);
+    if (rules.rulesByKey.containsKey(key)) {
+      return rules.rulesByKey.get(key);
+    }
+    Rule rule = ruleFinder.find(RuleQuery.create().withRepositoryKey(repositoryKey).withKey(key));
+    rules.rulesByKey.put(key, rule);
+    if (rule == null) {
+      LOG.warn("Could not find the following rule in the {} rule repository: {}", repositoryKey, key);
+    }
+    return rule;
+  }
+
+  /**
+   * Finds a rule by its configuration key.
+   * 
+   * @param repositoryKey
+   *          the key of the rule repository
+   * @param configKey
+   *          the configuration key of the rule
+   * @return the rule, or <code>null</code> if the repository does not contain such a rule
+   */
+  public synchronized Rule findByConfigKey(String repositoryKey, String configKey) {
+    RepositoryRules rules = getRepositoryRules(repositoryKey);
+    if (rules.rulesByConfigKey.containsKey(configKey)) {
+      return rules.rulesByConfigKey.get(configKey);
+    }
+    Rule rule = ruleFinder.find(RuleQuery.create().withRepositoryKey(repositoryKey).withConfigKey(configKey));
+    rules.rulesByConfigKey.put(configKey, rule);
+    if (rule == null) {
+      LOG.warn("Could not find the following rule in the {} rule repository: {}", repositoryKey, configKey);
+    }
+    return rule;
+  }
+
+  /**
+   * Forgets all the rules, which are loaded again when they are next needed.
+   */
+  public synchronized void clear() {
+    repositories.clear();
+  }
+
+  private RepositoryRules getRepositoryRules(String repositoryKey) {
+    RepositoryRules rules = repositories.get(repositoryKey);
+    if (rules == null) {
+      rules = new RepositoryRules(ruleFinder.findAll(RuleQuery.create().withRepositoryKey(repositoryKey)));
+      repositories.put(repositoryKey, rules);
+      LOG.debug("{} rules loaded from the {} rule repository", rules.rulesByKey.size(), repositoryKey);
+    }
+    return rules;
+  }
+
+  /**
+   * The rules of a repository, including the keys that do not match any rule.
+   */
+  private static final class RepositoryRules {
+
+    private final Map<String, Rule> rulesByKey = new HashMap<String, Rule>();
+    private final Map<String, Rule> rulesByConfigKey = new HashMap<String, Rule>();
+
+    private RepositoryRules(Collection<Rule> rules) {
+      if (rules != null) {
+        for (Rule rule : rules) {
+          rulesByKey.put(rule.getKey(), rule);
+          if (rule.getConfigKey() != null) {
+            rulesByConfigKey.put(rule.getConfigKey(), rule);
+          }
+        }
+      }
+    }
+  }
+
+}
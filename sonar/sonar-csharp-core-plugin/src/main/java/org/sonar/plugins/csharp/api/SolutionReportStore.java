@@ -0,0 +1,280 @@
+/*
+ * Sonar C# Plugin :: Core
+ * Copyright (C) 2010 Jose Chillan, Alexandre Victoor and SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.plugins.csharp.api;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.sonar.api.BatchExtension;
+import org.sonar.api.batch.InstantiationStrategy;
+import org.sonar.dotnet.tools.commons.visualstudio.VisualStudioProject;
+
+/**
+ * Store of the results read from the reports that cover the whole solution, such as coverage or test reports, shared by all the modules
+ * of an analysis.<br/>
+ * Each report is parsed once, the first time a module asks for it, and its results are split by Visual Studio project. Each module then
+ * takes the results of its own project, which are removed from the store at the same time.<br/>
+ * The memory used is bounded by the size of the report files whose results are kept: each result accounts for a share of the size of its
+ * report, in proportion to the number of elements it holds, such as the lines of a file coverage. The reports parsed first are dropped when
+ * the limit is reached, and a report larger than the limit is never parsed whole: each module reads it again and keeps its own results
+ * only, as it used to be.
+ */
+@InstantiationStrategy(InstantiationStrategy.PER_BATCH)
+public class SolutionReportStore implements BatchExtension {
+
+  private static final Logger LOG = LoggerFactory.getLogger(SolutionReportStore.class);
+
+  /**
+   * Reads the results of a report and tells which project each result belongs to.
+   *
+   * @param <T>
+   *          the type of the results
+   */
+  public interface ReportReader<T> {
+
+    /**
+     * Reads the results of a report.
+     *
+     * @param report
+     *          the report file
+     * @param project
+     *          the project whose results are kept, or <code>null</code> to keep the results of all the projects
+     * @return the results
+     */
+    Collection<T> read(File report, VisualStudioProject project);
+
+    /**
+     * Gets the project of a result.
+     *
+     * @param result
+     *          a result read from the report
+     * @return the project, or <code>null</code> if the result does not belong to any project of the solution
+     */
+    VisualStudioProject getProject(T result);
+
+    /**
+     * Estimates the memory held by a result, as the number of elements read from the report for it.
+     *
+     * @param result
+     *          a result read from the report
+     * @return the size of the result, at least 1
+     */
+    int sizeOf(T result);
+  }
+
+  private static final long MEGABYTE = 1024L * 1024L;
+
+  private final long maxRetainedSize;
+  // reports in the order they were parsed, which is the order in which they are dropped
+  private final Map<String, ParsedReport> reports = new LinkedHashMap<String, ParsedReport>();
+  private int parseCount;
+
+  /**
+   * Creates a store with the default limit of the size of the reports kept in memory.
+   */
+  public SolutionReportStore() {
+    this(CSharpConstants.REPORT_STORE_MAX_SIZE_DEFVALUE * MEGABYTE);
+  }
+
+  /**
+   * Creates a store whose limit is taken from the configuration.
+   *
+   * @param configuration
+   *          the C# configuration
+   */
+  public SolutionReportStore(CSharpConfiguration configuration) {
+    this(configuration.getInt(CSharpConstants.REPORT_STORE_MAX_SIZE_KEY, CSharpConstants.REPORT_STORE_MAX_SIZE_DEFVALUE) * MEGABYTE);
+  }
+
+  /**
+   * @param maxRetainedSize
+   *          the maximum size, in bytes, of the reports whose results are kept
+   */
+  SolutionReportStore(long maxRetainedSize) {
+    this.maxRetainedSize = maxRetainedSize;
+  }
+
+  /**
+   * Takes the results of a project from a report, parsing the report if it is not in the store yet, if it changed since it was parsed or
+   * if the results of the project have already been taken. A report too large to be kept is read for the project only. The results
+   * returned are removed from the store, so the caller is free to modify them.
+   *
+   * @param reportType
+   *          the kind of report, as the same file could be read by different readers
+   * @param report
+   *          the report file
+   * @param project
+   *          the project whose results are wanted
+   * @param reader
+   *          the reader used to parse the report
+   * @return the results of the project, empty if the report contains none
+   */
+  @SuppressWarnings("unchecked")
+  public synchronized <T> List<T> take(String reportType, File report, VisualStudioProject project, ReportReader<T> reader) {
+    String key = reportType + ":" + report.getAbsolutePath();
+    ParsedReport parsedReport = reports.get(key);
+    if (parsedReport != null && ( !parsedReport.isUpToDate(report) || parsedReport.isConsumed(project))) {
+      LOG.debug("Report {} must be parsed again", report);
+      reports.remove(key);
+      parsedReport = null;
+    }
+    if (parsedReport == null) {
+      long reportSize = report.length();
+      if (reportSize > maxRetainedSize) {
+        LOG.debug("Report {} is too large to be kept in memory: {} bytes", report, reportSize);
+        parseCount++;
+        return new ArrayList<T>(reader.read(report, project));
+      }
+      makeRoom(reportSize);
+      parsedReport = parse(report, reader);
+      reports.put(key, parsedReport);
+    }
+    return (List<T>) parsedReport.take(project);
+  }
+
+  /**
+   * Drops all the reports from the store.
+   */
+  public synchronized void clear() {
+    reports.clear();
+  }
+
+  /**
+   * @return the estimated size, in bytes of report, of the results currently kept in memory
+   */
+  public synchronized long getRetainedSize() {
+    long retainedSize = 0;
+    for (ParsedReport parsedReport : reports.values()) {
+      retainedSize += parsedReport.getRetainedSize();
+    }
+    return retainedSize;
+  }
+
+  /**
+   * @return the number of times a report has been parsed
+   */
+  public synchronized int getParseCount() {
+    return parseCount;
+  }
+
+  private <T> ParsedReport parse(File report, ReportReader<T> reader) {
+    ParsedReport parsedReport = new ParsedReport(report);
+    for (T result : reader.read(report, null)) {
+      VisualStudioProject project = reader.getProject(result);
+      if (project == null) {
+        LOG.debug("Report {} contains a result outside the solution: {}", report, result);
+      } else {
+        parsedReport.add(project, result, reader.sizeOf(result));
+      }
+    }
+    parseCount++;
+    LOG.debug("Parsed report {}: {} elements for {} projects", new Object[] { report, parsedReport.totalSize, parsedReport.shards.size() });
+    return parsedReport;
+  }
+
+  private void makeRoom(long size) {
+    long retainedSize = getRetainedSize();
+    Iterator<Map.Entry<String, ParsedReport>> iterator = reports.entrySet().iterator();
+    while (retainedSize + size > maxRetainedSize && iterator.hasNext()) {
+      Map.Entry<String, ParsedReport> entry = iterator.next();
+      LOG.debug("Dropping report {} from the store", entry.getKey());
+      retainedSize -= entry.getValue().getRetainedSize();
+      iterator.remove();
+    }
+  }
+
+  /**
+   * Results of a report not yet taken, by project. The projects whose results have been taken are remembered, so that an empty shard
+   * does not require to parse the report again.
+   */
+  private static final class ParsedReport {
+
+    private final long length;
+    private final long lastModified;
+    private final Map<VisualStudioProject, Shard> shards = new HashMap<VisualStudioProject, Shard>();
+    private final Set<VisualStudioProject> consumedProjects = new HashSet<VisualStudioProject>();
+    // number of elements read, and of elements not taken yet
+    private long totalSize;
+    private long size;
+
+    private ParsedReport(File report) {
+      this.length = report.length();
+      this.lastModified = report.lastModified();
+    }
+
+    private void add(VisualStudioProject project, Object result, int resultSize) {
+      Shard shard = shards.get(project);
+      if (shard == null) {
+        shard = new Shard();
+        shards.put(project, shard);
+      }
+      shard.results.add(result);
+      shard.size += resultSize;
+      totalSize += resultSize;
+      size += resultSize;
+    }
+
+    private List<Object> take(VisualStudioProject project) {
+      consumedProjects.add(project);
+      Shard shard = shards.remove(project);
+      if (shard == null) {
+        return new ArrayList<Object>();
+      }
+      size -= shard.size;
+      return shard.results;
+    }
+
+    /**
+     * @return the share of the size of the report held by the results not taken yet
+     */
+    private long getRetainedSize() {
+      return totalSize == 0 ? 0 : length * size / totalSize;
+    }
+
+    private boolean isConsumed(VisualStudioProject project) {
+      return consumedProjects.contains(project);
+    }
+
+    private boolean isUpToDate(File report) {
+      return report.length() == length && report.lastModified() == lastModified;
+    }
+  }
+
+  /**
+   * Results of a report that belong to the same project.
+   */
+  private static final class Shard {
+
+    private final List<Object> results = new ArrayList<Object>();
+    // number of elements of the results
+    private long size;
+  }
+
+}
@@ -0,0 +1,85 @@
+/*
+ * Sonar C# Plugin :: Core
+ * Copyright (C) 2010 Jose Chillan, Alexandre Victoor and SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.plugins.csharp.api;
+
+/**
+ * Violation read from a report, before its rule and the resource it applies to are resolved. It only holds the strings found in the
+ * report, so that reading a report does not require any access to the sensor context or to the rule finder.
+ */
+public final class ViolationRecord {
+
+  private final String ruleKey;
+  private final String path;
+  private final Integer line;
+  private final String message;
+  private final String[] typeNames;
+
+  /**
+   * Creates a record.
+   * 
+   * @param ruleKey
+   *          the key or the configuration key of the violated rule, to be interpreted by the {@link ViolationSink.Resolver}
+   * @param path
+   *          the path of the source file, or <code>null</code> if the report does not give it
+   * @param line
+   *          the line of the violation, or <code>null</code>
+   * @param message
+   *          the message of the violation
+   * @param typeNames
+   *          the names identifying the type or the member of the violation, to be interpreted by the {@link ViolationSink.Resolver}
+   */
+  public ViolationRecord(String ruleKey, String path, Integer line, String message, String... typeNames) {
+    this.ruleKey = ruleKey;
+    this.path = path;
+    this.line = line;
+    this.message = message;
+    this.typeNames = typeNames;
+  }
+
+  public String getRuleKey() {
+    return ruleKey;
+  }
+
+  public String getPath() {
+    return path;
+  }
+
+  public Integer getLine() {
+    return line;
+  }
+
+  public String getMessage() {
+    return message;
+  }
+
+  public int getTypeNameCount() {
+    return typeNames.length;
+  }
+
+  public String getTypeName(int index) {
+    return typeNames[index];
+  }
+
+  @Override
+  public String toString() {
+    return ruleKey + " " + (path == null ? "" : path + ":" + line) + " " + message;
+  }
+
+}
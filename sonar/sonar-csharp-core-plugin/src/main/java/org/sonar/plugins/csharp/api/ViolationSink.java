@@ -0,0 +1,296 @@
+/*
+ * Sonar C# Plugin :: Core
+ * Copyright (C) 2010 Jose Chillan, Alexandre Victoor and SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.plugins.csharp.api;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.sonar.api.batch.SensorContext;
+import org.sonar.api.rules.Violation;
+import org.sonar.api.utils.SonarException;
+
+/**
+ * Pipeline between the parsing of a report and the saving of its violations.<br/>
+ * The report is read by a {@link Producer} on a separate thread, which only creates {@link ViolationRecord}s and puts them in a bounded
+ * queue: the producer waits when the queue is full. The thread that calls {@link #run(Producer)}, which is the thread of the sensor,
+ * takes the records by batches, resolves their rules and resources with the {@link Resolver} and saves the violations in the sensor
+ * context, in the order in which they were produced. This way, reading the report goes on while violations are being saved, and the
+ * sensor context and the rule finder, whose database session is bound to the thread, are only used from the thread of the sensor.
+ */
+public class ViolationSink {
+
+  private static final Logger LOG = LoggerFactory.getLogger(ViolationSink.class);
+
+  public static final int DEFAULT_CAPACITY = 1000;
+  public static final int DEFAULT_BATCH_SIZE = 100;
+
+  private static final ViolationRecord END = new ViolationRecord(null, null, null, null);
+
+  /**
+   * Reads a report and gives its violations to the sink. It is called on a separate thread, so it must not use the sensor context nor look
+   * for rules.
+   */
+  public interface Producer {
+
+    void produce(ViolationSink sink);
+  }
+
+  /**
+   * Turns records into violations. It is called on the thread of the sensor.
+   */
+  public interface Resolver {
+
+    /**
+     * @param record
+     *          a record given by the producer
+     * @return the violation to save, or <code>null</code> if the violation must be ignored
+     */
+    Violation resolve(ViolationRecord record);
+  }
+
+  private final SensorContext context;
+  private final Resolver resolver;
+  private final BlockingQueue<ViolationRecord> queue;
+  private final int batchSize;
+
+  private volatile boolean aborted;
+  private volatile Throwable producerFailure;
+
+  private long produced;
+  private long producerWaitNanos;
+  private long producerNanos;
+  private long resolved;
+  private long resolveNanos;
+  private long saved;
+  private long saveNanos;
+  private long batches;
+
+  public ViolationSink(SensorContext context, Resolver resolver) {
+    this(context, resolver, DEFAULT_CAPACITY, DEFAULT_BATCH_SIZE);
+  }
+
+  /**
+   * Creates a sink.
+   * 
+   * @param context
+   *          the context where violations are saved
+   * @param resolver
+   *          the resolver of the records
+   * @param capacity
+   *          the number of records that can wait to be saved before the producer is blocked
+   * @param batchSize
+   *          the maximum number of records taken from the queue at once
+   */
+  public ViolationSink(SensorContext context, Resolver resolver, int capacity, int batchSize) {
+    this.context = context;
+    this.resolver = resolver;
+    this.queue = new ArrayBlockingQueue<ViolationRecord>(capacity);
+    this.batchSize = batchSize;
+  }
+
+  /**
+   * Runs the producer on a separate thread and saves its violations until it is done. An exception thrown by the producer is thrown again
+   * by this method once the violations produced before are saved.
+   * 
+   * @param producer
+   *          the producer reading the report
+   */
+  public void run(final Producer producer) {
+    Thread producerThread = new Thread(new Runnable() {
+
+      public void run() {
+        long start = System.nanoTime();
+        try {
+          producer.produce(ViolationSink.this);
+        } catch (Throwable e) {
+          producerFailure = e;
+        } finally {
+          producerNanos = System.nanoTime() - start;
+          end();
+        }
+      }
+    }, "Violation producer");
+    producerThread.setDaemon(true);
+    producerThread.start();
+    try {
+      consume();
+      producerThread.join();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      abort(producerThread);
+      throw new SonarException("Interrupted while saving violations", e);
+    } catch (RuntimeException e) {
+      abort(producerThread);
+      throw e;
+    } catch (Error e) {
+      abort(producerThread);
+      throw e;
+    }
+    LOG.debug("{}", this);
+    rethrowProducerFailure();
+  }
+
+  /**
+   * Adds a record to save, waiting if too many records are already waiting. Called by the producer.
+   * 
+   * @param record
+   *          the record
+   */
+  public void add(ViolationRecord record) {
+    if (aborted) {
+      throw new SonarException("Violations are not saved anymore");
+    }
+    produced++;
+    if ( !queue.offer(record)) {
+      long start = System.nanoTime();
+      try {
+        queue.put(record);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new SonarException("Interrupted while waiting to save violations", e);
+      } finally {
+        producerWaitNanos += System.nanoTime() - start;
+      }
+    }
+  }
+
+  private void end() {
+    if ( !aborted) {
+      try {
+        queue.put(END);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+    }
+  }
+
+  private void consume() throws InterruptedException {
+    List<ViolationRecord> batch = new ArrayList<ViolationRecord>(batchSize);
+    boolean done = false;
+    while ( !done) {
+      batch.add(queue.take());
+      queue.drainTo(batch, batchSize - 1);
+      batches++;
+      for (ViolationRecord record : batch) {
+        if (record == END) {
+          done = true;
+          break;
+        }
+        save(record);
+      }
+      batch.clear();
+    }
+  }
+
+  private void save(ViolationRecord record) {
+    long start = System.nanoTime();
+    Violation violation = resolver.resolve(record);
+    long resolvedTime = System.nanoTime();
+    resolveNanos += resolvedTime - start;
+    resolved++;
+    if (violation != null) {
+      context.saveViolation(violation);
+      saveNanos += System.nanoTime() - resolvedTime;
+      saved++;
+    }
+  }
+
+  private void abort(Thread producerThread) {
+    aborted = true;
+    producerThread.interrupt();
+  }
+
+  private void rethrowProducerFailure() {
+    Throwable failure = producerFailure;
+    if (failure instanceof RuntimeException) {
+      throw (RuntimeException) failure;
+    } else if (failure instanceof Error) {
+      throw (Error) failure;
+    } else if (failure != null) {
+      throw new SonarException(failure);
+    }
+  }
+
+  /**
+   * @return the number of records given by the producer
+   */
+  public long getProduced() {
+    return produced;
+  }
+
+  /**
+   * @return the number of records turned into a violation or ignored
+   */
+  public long getResolved() {
+    return resolved;
+  }
+
+  /**
+   * @return the number of violations saved
+   */
+  public long getSaved() {
+    return saved;
+  }
+
+  /**
+   * @return the number of batches taken from the queue
+   */
+  public long getBatches() {
+    return batches;
+  }
+
+  /**
+   * @return the time spent by the producer, in nanoseconds, including the time it waited for the queue
+   */
+  public long getProducerNanos() {
+    return producerNanos;
+  }
+
+  /**
+   * @return the time the producer waited because the queue was full, in nanoseconds
+   */
+  public long getProducerWaitNanos() {
+    return producerWaitNanos;
+  }
+
+  public long getResolveNanos() {
+    return resolveNanos;
+  }
+
+  public long getSaveNanos() {
+    return saveNanos;
+  }
+
+  @Override
+  public String toString() {
+    return "Violations: " + produced + " read in " + toMillis(producerNanos) + " ms (" + toMillis(producerWaitNanos) + " ms waiting), "
+      + resolved + " resolved in " + toMillis(resolveNanos) + " ms, " + saved + " saved in " + toMillis(saveNanos) + " ms, " + batches
+      + " batches";
+  }
+
+  private static long toMillis(long nanos) {
+    return nanos / 1000000;
+  }
+
+}
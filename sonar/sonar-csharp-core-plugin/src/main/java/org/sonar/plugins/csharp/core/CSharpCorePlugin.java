@@ -33,6 +33,8 @@ import org.sonar.plugins.csharp.api.CSharpConstants;
 import org.sonar.plugins.csharp.api.CSharpResourcesBridge;
 import org.sonar.plugins.csharp.api.MicrosoftWindowsEnvironment;
 import org.sonar.plugins.csharp.api.ResourceHelper;
+import org.sonar.plugins.csharp.api.RuleIndex;
+import org.sonar.plugins.csharp.api.SolutionReportStore;
 
 /**
  * C# Core plugin class.
@@ -69,7 +71,37 @@ import org.sonar.plugins.csharp.api.ResourceHelper;
         description = "Set to false to include generated code like 'Reference.cs' files or '*.designer.cs' files.", global = true,
         project = true),
     @Property(key = CSharpConstants.BUILD_CONFIGURATIONS_KEY, defaultValue = CSharpConstants.BUILD_CONFIGURATIONS_DEFVALUE,
-        name = "Build configurations", description = "Comma-seperated list of build configurations to use.", global = true, project = true) })
+        name = "Build configurations", description = "Comma-seperated list of build configurations to use.", global = true, project = true),
+    @Property(key = CSharpConstants.MODEL_LOAD_THREADS_KEY, defaultValue = CSharpConstants.MODEL_LOAD_THREADS_DEFVALUE + "",
+        name = "Project loading threads",
+        description = "Number of threads used to read the projects of the solution and to search their directories. Use 1 to "
+          + "read them one after another.",
+        global = true, project = true),
+    @Property(key = CSharpConstants.MODEL_CACHE_KEY, defaultValue = CSharpConstants.MODEL_CACHE_DEFVALUE + "",
+        name = "Cache Visual Studio projects",
+        description = "Set to true to keep the projects read from the solution in the working directory, and to read again only the "
+          + "projects whose files changed since the previous analysis.", global = true, project = true),
+    @Property(key = CSharpConstants.VERSION_SCAN_MAX_FILES_KEY, defaultValue = CSharpConstants.VERSION_SCAN_MAX_FILES_DEFVALUE + "",
+        name = "Source files scanned for the assembly version",
+        description = "Maximum number of source files read to find the assembly version of a project when its AssemblyInfo.cs files do "
+          + "not define it. Use -1 for no limit.", global = true, project = true),
+    @Property(key = CSharpConstants.VERSION_SCAN_MAX_BYTES_KEY, defaultValue = CSharpConstants.VERSION_SCAN_MAX_BYTES_DEFVALUE + "",
+        name = "Bytes scanned for the assembly version",
+        description = "Maximum number of bytes read in each source file to find the assembly version. Use -1 for no limit.",
+        global = true, project = true),
+    @Property(key = CSharpConstants.VERSION_FROM_PROJECT_FILE_KEY, defaultValue = CSharpConstants.VERSION_FROM_PROJECT_FILE_DEFVALUE + "",
+        name = "Assembly version from project files",
+        description = "Set to true to take the assembly version from the 'AssemblyVersion' or 'Version' property of the project files "
+          + "when they define it.", global = true, project = true),
+    @Property(key = CSharpConstants.SKIPPED_DIRECTORIES_KEY, defaultValue = CSharpConstants.SKIPPED_DIRECTORIES_DEFVALUE,
+        name = "Skipped directories",
+        description = "Comma-separated list of the directories that are not searched for the source files of web projects.",
+        global = true, project = true),
+    @Property(key = CSharpConstants.REPORT_STORE_MAX_SIZE_KEY, defaultValue = CSharpConstants.REPORT_STORE_MAX_SIZE_DEFVALUE + "",
+        name = "Size of the shared reports kept in memory",
+        description = "Maximum total size, in megabytes, of the solution-wide reports (coverage, tests...) whose results are kept in memory "
+          + "so that each report is parsed only once for all the projects of the solution. A larger report is parsed again by each project, "
+          + "which keeps its own results only. Use 0 to parse the reports again for each project.", global = true, project = false) })
 public class CSharpCorePlugin extends SonarPlugin {
 
   /**
@@ -88,6 +120,8 @@ public class CSharpCorePlugin extends SonarPlugin {
     // Utility class shared amongst all the C# plugin ecosystem through API
     extensions.add(CSharpResourcesBridge.class);
     extensions.add(ResourceHelper.class);
+    extensions.add(SolutionReportStore.class);
+    extensions.add(RuleIndex.class);
 
     // Sensors
     extensions.add(CSharpSourceImporter.class);
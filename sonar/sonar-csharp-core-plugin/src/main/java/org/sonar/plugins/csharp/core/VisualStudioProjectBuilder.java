@@ -21,6 +21,7 @@ package org.sonar.plugins.csharp.core;
 
 import java.io.File;
 import java.io.IOException;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Properties;
 
@@ -33,6 +34,8 @@ import org.sonar.api.batch.bootstrap.ProjectDefinition;
 import org.sonar.api.batch.bootstrap.ProjectReactor;
 import org.sonar.api.utils.SonarException;
 import org.sonar.dotnet.tools.commons.DotNetToolsException;
+import org.sonar.dotnet.tools.commons.utils.CanonicalPathCache;
+import org.sonar.dotnet.tools.commons.utils.FileFinder;
 import org.sonar.dotnet.tools.commons.visualstudio.BinaryReference;
 import org.sonar.dotnet.tools.commons.visualstudio.ModelFactory;
 import org.sonar.dotnet.tools.commons.visualstudio.SourceFile;
@@ -80,7 +83,7 @@ public class VisualStudioProjectBuilder extends ProjectBuilder {
       retrieveMicrosoftWindowsEnvironmentConfig();
 
       // Then create the Visual Studio Solution object from the ".sln" file
-      createVisualStudioSolution(root.getBaseDir());
+      createVisualStudioSolution(root.getBaseDir(), root.getWorkDir());
 
       // And finally create the Sonar projects definition
       createMultiProjectStructure(root);
@@ -160,17 +163,39 @@ public class VisualStudioProjectBuilder extends ProjectBuilder {
     microsoftWindowsEnvironment.setSilverlightDirectory(silverlightDirectory);
   }
 
-  private void createVisualStudioSolution(File baseDir) {
+  private void createVisualStudioSolution(File baseDir, File workDir) {
     File slnFile = findSlnFile(baseDir);
     if (slnFile == null) {
       throw new SonarException("No valid '.sln' file could be found. Please read the previous log messages to know more.");
     }
     LOG.info("The following 'sln' file has been found and will be used: " + slnFile.getAbsolutePath());
 
+    // Symbolic links and directories may have changed since the previous analysis
+    CanonicalPathCache.getInstance().clear();
+    FileFinder.clearCache();
     try {
       ModelFactory.setTestProjectNamePattern(configuration.getString(CSharpConstants.TEST_PROJECT_PATTERN_KEY,
           CSharpConstants.TEST_PROJECT_PATTERN_DEFVALUE));
+      int modelLoadThreads = configuration.getInt(CSharpConstants.MODEL_LOAD_THREADS_KEY, CSharpConstants.MODEL_LOAD_THREADS_DEFVALUE);
+      ModelFactory.setModelLoadThreads(modelLoadThreads);
+      FileFinder.setWalkerThreads(modelLoadThreads);
+      String[] skippedDirectories = configuration.getStringArray(CSharpConstants.SKIPPED_DIRECTORIES_KEY);
+      if (skippedDirectories.length == 0) {
+        skippedDirectories = StringUtils.split(CSharpConstants.SKIPPED_DIRECTORIES_DEFVALUE, ',');
+      }
+      ModelFactory.setSkippedDirectories(Arrays.asList(skippedDirectories));
+      ModelFactory.setVersionScanLimits(configuration.getInt(CSharpConstants.VERSION_SCAN_MAX_FILES_KEY,
+          CSharpConstants.VERSION_SCAN_MAX_FILES_DEFVALUE), configuration.getInt(CSharpConstants.VERSION_SCAN_MAX_BYTES_KEY,
+          CSharpConstants.VERSION_SCAN_MAX_BYTES_DEFVALUE));
+      ModelFactory.setVersionFromProjectFile(configuration.getBoolean(CSharpConstants.VERSION_FROM_PROJECT_FILE_KEY,
+          CSharpConstants.VERSION_FROM_PROJECT_FILE_DEFVALUE));
+      if (configuration.getBoolean(CSharpConstants.MODEL_CACHE_KEY, CSharpConstants.MODEL_CACHE_DEFVALUE)) {
+        ModelFactory.setModelCacheFile(new File(workDir, CSharpConstants.MODEL_CACHE_FILE_NAME));
+      } else {
+        ModelFactory.setModelCacheFile(null);
+      }
       VisualStudioSolution solution = ModelFactory.getSolution(slnFile);
+      LOG.debug("{}", CanonicalPathCache.getInstance());
       microsoftWindowsEnvironment.setCurrentSolution(solution);
     } catch (IOException e) {
       throw new SonarException("Error occured while reading Visual Studio files.", e);
@@ -21,11 +21,15 @@
 package org.sonar.plugins.csharp.api;
 
 import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertThat;
 import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
 
 import org.apache.commons.configuration.BaseConfiguration;
 import org.apache.commons.configuration.Configuration;
+import org.apache.commons.configuration.ConversionException;
 import org.junit.Before;
 import org.junit.Test;
 
@@ -100,4 +104,83 @@ public class CSharpConfigurationTest {
     assertThat(cSharpConfiguration.getStringArray("sonar.fxcop.assemblyDependencyDirectories")[1], is("bar"));
   }
 
+  @Test
+  public void testPreviousParametersAreLoggedOnce() throws Exception {
+    final StringBuilder logs = new StringBuilder();
+    cSharpConfiguration = new CSharpConfiguration(configuration) {
+
+      @Override
+      protected void logInfo(Object result, String previousKey) {
+        logs.append(previousKey).append('=').append(result).append(' ');
+      }
+    };
+    configuration.addProperty("visual.studio.solution", "foo.sln");
+
+    for (int i = 0; i < 3; i++) {
+      assertThat(cSharpConfiguration.getString(CSharpConstants.SOLUTION_FILE_KEY, CSharpConstants.SOLUTION_FILE_DEFVALUE), is("foo.sln"));
+    }
+    assertThat(logs.toString(), is("visual.studio.solution=foo.sln "));
+  }
+
+  @Test
+  public void testValuesAreResolvedAgainAfterChanges() throws Exception {
+    configuration.addProperty("sonar.gallio.filter", "foo");
+    configuration.addProperty("sonar.other", "bar");
+    CSharpConfiguration.Value value = cSharpConfiguration.getValue("sonar.gallio.filter");
+    assertThat(cSharpConfiguration.getString("sonar.gallio.filter", ""), is("foo"));
+    assertSame(value, cSharpConfiguration.getValue("sonar.gallio.filter"));
+    assertEquals(1, cSharpConfiguration.getValueCount());
+
+    configuration.setProperty("sonar.gallio.filter", "bar");
+    assertThat(cSharpConfiguration.getString("sonar.gallio.filter", ""), is("bar"));
+    cSharpConfiguration.setProperty("sonar.gallio.filter", "baz");
+    assertThat(cSharpConfiguration.getString("sonar.gallio.filter", ""), is("baz"));
+    assertEquals(1, cSharpConfiguration.getValueCount());
+  }
+
+  @Test
+  public void testInvalidTypedValueFailsOnlyWhenRead() throws Exception {
+    configuration.addProperty("sonar.gendarme.confidence", "high");
+
+    assertThat(cSharpConfiguration.getString("sonar.gendarme.confidence", ""), is("high"));
+    for (int i = 0; i < 2; i++) {
+      try {
+        cSharpConfiguration.getInt("sonar.gendarme.confidence", 0);
+        fail();
+      } catch (ConversionException e) {
+        // expected each time the value is read as an integer
+      }
+    }
+  }
+
+  @Test
+  public void testArrayWithSeveralPreviousParameters() throws Exception {
+    configuration.addProperty("sonar.donet.visualstudio.testProjectPattern", "*.Tests;*.IT");
+
+    String[] patterns = cSharpConfiguration.getStringArray(CSharpConstants.TEST_PROJECT_PATTERN_KEY);
+    assertEquals(2, patterns.length);
+    assertThat(patterns[1], is("*.IT"));
+    patterns[1] = "modified";
+    assertThat(cSharpConfiguration.getStringArray(CSharpConstants.TEST_PROJECT_PATTERN_KEY)[1], is("*.IT"));
+    assertEquals(0, cSharpConfiguration.getStringArray("sonar.unknown").length);
+    assertThat(cSharpConfiguration.getStringArray("sonar.unknown", "foo")[0], is("foo"));
+  }
+
+  @Test
+  public void testTypedValues() throws Exception {
+    configuration.addProperty("gendarme.confidence", "12");
+    configuration.addProperty("sonar.fxcop.mode", "skip");
+
+    assertEquals(12, cSharpConfiguration.getInt("sonar.gendarme.confidence", 0));
+    assertEquals(3, cSharpConfiguration.getInt("sonar.unknown", 3));
+    assertTrue(cSharpConfiguration.getBoolean("sonar.unknown", true));
+    assertThat(cSharpConfiguration.getString("sonar.fxcop.mode", ""), is("skip"));
+  }
+
+  @Test(expected = ConversionException.class)
+  public void testInvalidBoolean() throws Exception {
+    configuration.addProperty("sonar.fxcop.mode", "skip");
+    cSharpConfiguration.getBoolean("sonar.fxcop.mode", false);
+  }
+
 }
@@ -22,12 +22,15 @@ package org.sonar.plugins.csharp.api;
 
 import static org.hamcrest.Matchers.is;
 import static org.hamcrest.Matchers.nullValue;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertThat;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.when;
 
 import org.junit.Test;
 import org.sonar.api.batch.SensorContext;
+import org.sonar.api.resources.Directory;
 import org.sonar.api.resources.File;
 import org.sonar.api.resources.Project;
 import org.sonar.api.resources.Resource;
@@ -87,4 +90,37 @@ public class ResourceHelperTest {
     assertThat(helper.findParentProject(resource), is(project));
   }
 
+  @Test
+  public void testParentsAreWalkedOnceByResource() throws Exception {
+    SensorContext context = mock(SensorContext.class);
+    ResourceHelper helper = new ResourceHelper(context);
+    Resource<?> money = new File("Example/Money.cs");
+    Resource<?> bag = new File("Example/MoneyBag.cs");
+    Resource<?> directory = new Directory("Example");
+    Project project = new Project("bar");
+    when(context.getParent(money)).thenReturn(directory);
+    when(context.getParent(bag)).thenReturn(directory);
+    when(context.getParent(directory)).thenReturn(project);
+
+    assertSame(project, helper.findParentProject(money));
+    assertEquals(2, helper.getParentLookups());
+    assertThat(helper.isResourceInProject(money, new Project("bar")), is(true));
+    assertThat(helper.isResourceInProject(money, new Project("bar2")), is(false));
+    assertEquals(2, helper.getParentLookups());
+
+    // the directory is already known
+    assertSame(project, helper.findParentProject(bag));
+    assertEquals(3, helper.getParentLookups());
+  }
+
+  @Test
+  public void testResourcesWithoutParentAreRemembered() throws Exception {
+    SensorContext context = mock(SensorContext.class);
+    ResourceHelper helper = new ResourceHelper(context);
+    Resource<?> resource = new File("foo");
+    assertThat(helper.findParentProject(resource), is(nullValue()));
+    assertThat(helper.isResourceInProject(resource, new Project("bar")), is(false));
+    assertEquals(1, helper.getParentLookups());
+  }
+
 }
@@ -0,0 +1,84 @@
+/*
+ * Sonar C# Plugin :: Core
+ * Copyright (C) 2010 Jose Chillan, Alexandre Victoor and SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.plugins.csharp.api;
+
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.Arrays;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.sonar.api.rules.Rule;
+import org.sonar.api.rules.RuleFinder;
+import org.sonar.api.rules.RuleQuery;
+
+public class RuleIndexTest {
+
+  private RuleFinder ruleFinder;
+  private RuleIndex ruleIndex;
+  private Rule rule;
+
+  @Before
+  public void init() {
+    rule = Rule.create("stylecop", "ElementMustBeginWithUpperCaseLetter", "ElementMustBeginWithUpperCaseLetter").setConfigKey(
+        "Microsoft.StyleCop.CSharp.NamingRules#ElementMustBeginWithUpperCaseLetter");
+    ruleFinder = mock(RuleFinder.class);
+    when(ruleFinder.findAll(any(RuleQuery.class))).thenReturn(Arrays.asList(rule));
+    ruleIndex = new RuleIndex(ruleFinder);
+  }
+
+  @Test
+  public void testRepositoryIsLoadedOnce() {
+    for (int i = 0; i < 3; i++) {
+      assertSame(rule, ruleIndex.findByKey("stylecop", "ElementMustBeginWithUpperCaseLetter"));
+      assertSame(rule, ruleIndex.findByConfigKey("stylecop", "Microsoft.StyleCop.CSharp.NamingRules#ElementMustBeginWithUpperCaseLetter"));
+    }
+    verify(ruleFinder, times(1)).findAll(any(RuleQuery.class));
+    verify(ruleFinder, times(0)).find(any(RuleQuery.class));
+  }
+
+  @Test
+  public void testUnknownRuleIsLookedForOnce() {
+    for (int i = 0; i < 3; i++) {
+      assertNull(ruleIndex.findByKey("stylecop", "UnknownRule"));
+    }
+    verify(ruleFinder, times(1)).find(any(RuleQuery.class));
+  }
+
+  @Test
+  public void testRuleMissingFromRepositoryIsLookedFor() {
+    Rule otherRule = Rule.create("stylecop", "OtherRule", "OtherRule");
+    when(ruleFinder.find(any(RuleQuery.class))).thenReturn(otherRule);
+    assertSame(otherRule, ruleIndex.findByKey("stylecop", "OtherRule"));
+    assertSame(otherRule, ruleIndex.findByKey("stylecop", "OtherRule"));
+    verify(ruleFinder, times(1)).find(any(RuleQuery.class));
+
+    ruleIndex.clear();
+    assertSame(rule, ruleIndex.findByKey("stylecop", "ElementMustBeginWithUpperCaseLetter"));
+    verify(ruleFinder, times(2)).findAll(any(RuleQuery.class));
+  }
+
+}
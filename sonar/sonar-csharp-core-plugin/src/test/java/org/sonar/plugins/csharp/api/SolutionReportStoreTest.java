@@ -0,0 +1,166 @@
+/*
+ * Sonar C# Plugin :: Core
+ * Copyright (C) 2010 Jose Chillan, Alexandre Victoor and SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.plugins.csharp.api;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.lang.StringUtils;
+import org.junit.Before;
+import org.junit.Test;
+import org.sonar.dotnet.tools.commons.visualstudio.VisualStudioProject;
+
+import com.google.common.collect.Maps;
+
+public class SolutionReportStoreTest {
+
+  private File report;
+  private Map<String, VisualStudioProject> projects;
+  private LineReader reader;
+
+  @Before
+  public void setUp() throws Exception {
+    File dir = new File("target/report-store");
+    FileUtils.deleteDirectory(dir);
+    dir.mkdirs();
+    report = new File(dir, "report.txt");
+    FileUtils.writeLines(report, Arrays.asList("Core:a", "Core:b", "Web:c", "Other:d"));
+    projects = Maps.newHashMap();
+    projects.put("Core", new VisualStudioProject());
+    projects.put("Web", new VisualStudioProject());
+    projects.put("Tests", new VisualStudioProject());
+    reader = new LineReader();
+  }
+
+  @Test
+  public void testReportIsParsedOnce() throws Exception {
+    SolutionReportStore store = new SolutionReportStore();
+    assertEquals(Arrays.asList("Core:a", "Core:b"), store.take("test", report, projects.get("Core"), reader));
+    // the result of Web is left out of the 3 results of the solution
+    assertEquals(report.length() / 3, store.getRetainedSize());
+    assertEquals(Arrays.asList("Web:c"), store.take("test", report, projects.get("Web"), reader));
+    assertTrue(store.take("test", report, projects.get("Tests"), reader).isEmpty());
+    assertEquals(1, store.getParseCount());
+    assertEquals(0, store.getRetainedSize());
+  }
+
+  @Test
+  public void testRetainedSizeDependsOnResultSizes() throws Exception {
+    FileUtils.writeLines(report, Arrays.asList("Core:aaaaaaa", "Web:bbb"));
+    SolutionReportStore store = new SolutionReportStore();
+    store.take("test", report, projects.get("Web"), reader);
+    assertEquals(report.length() * 7 / 10, store.getRetainedSize());
+    store.take("test", report, projects.get("Core"), reader);
+    assertEquals(0, store.getRetainedSize());
+  }
+
+  @Test
+  public void testReportIsParsedAgainWhenShardAlreadyTaken() throws Exception {
+    SolutionReportStore store = new SolutionReportStore();
+    store.take("test", report, projects.get("Core"), reader);
+    assertEquals(2, store.take("test", report, projects.get("Core"), reader).size());
+    assertEquals(2, store.getParseCount());
+    assertEquals(Arrays.asList("Web:c"), store.take("test", report, projects.get("Web"), reader));
+    assertEquals(2, store.getParseCount());
+  }
+
+  @Test
+  public void testReportIsParsedAgainWhenModified() throws Exception {
+    SolutionReportStore store = new SolutionReportStore();
+    store.take("test", report, projects.get("Core"), reader);
+    FileUtils.writeLines(report, Arrays.asList("Web:c", "Web:e"));
+    assertEquals(Arrays.asList("Web:c", "Web:e"), store.take("test", report, projects.get("Web"), reader));
+    assertEquals(2, store.getParseCount());
+  }
+
+  @Test
+  public void testReportTypesAreSeparated() throws Exception {
+    SolutionReportStore store = new SolutionReportStore();
+    store.take("test", report, projects.get("Core"), reader);
+    assertEquals(2, store.take("other", report, projects.get("Core"), reader).size());
+    assertEquals(2, store.getParseCount());
+  }
+
+  @Test
+  public void testLargeReportIsReadForEachProject() throws Exception {
+    SolutionReportStore store = new SolutionReportStore(report.length() - 1);
+    assertEquals(Arrays.asList("Core:a", "Core:b"), store.take("test", report, projects.get("Core"), reader));
+    assertEquals(0, store.getRetainedSize());
+    assertEquals(Arrays.asList("Web:c"), store.take("test", report, projects.get("Web"), reader));
+    assertEquals(2, store.getParseCount());
+    // never more than the results of one project in memory
+    assertEquals(2, reader.maxReadResults);
+  }
+
+  @Test
+  public void testOldestReportIsDropped() throws Exception {
+    File otherReport = new File(report.getParentFile(), "other.txt");
+    FileUtils.writeLines(otherReport, Arrays.asList("Web:x", "Web:y", "Web:z"));
+    SolutionReportStore store = new SolutionReportStore(report.length() + otherReport.length() - 1);
+    store.take("test", report, projects.get("Tests"), reader);
+    assertEquals(report.length(), store.getRetainedSize());
+    store.take("test", otherReport, projects.get("Tests"), reader);
+    assertEquals(otherReport.length(), store.getRetainedSize());
+    assertEquals(1, store.take("test", report, projects.get("Web"), reader).size());
+    assertEquals(3, store.getParseCount());
+  }
+
+  /**
+   * Reads the lines "project:value" of a file, the size of a result being the length of its value.
+   */
+  private class LineReader implements SolutionReportStore.ReportReader<String> {
+
+    private int maxReadResults;
+
+    @SuppressWarnings("unchecked")
+    public Collection<String> read(File file, VisualStudioProject project) {
+      List<String> results = new ArrayList<String>();
+      try {
+        for (String line : (List<String>) FileUtils.readLines(file)) {
+          if (project == null || project.equals(getProject(line))) {
+            results.add(line);
+          }
+        }
+      } catch (IOException e) {
+        throw new IllegalStateException(e);
+      }
+      maxReadResults = Math.max(maxReadResults, results.size());
+      return results;
+    }
+
+    public VisualStudioProject getProject(String result) {
+      return projects.get(StringUtils.substringBefore(result, ":"));
+    }
+
+    public int sizeOf(String result) {
+      return StringUtils.substringAfter(result, ":").length();
+    }
+  }
+
+}
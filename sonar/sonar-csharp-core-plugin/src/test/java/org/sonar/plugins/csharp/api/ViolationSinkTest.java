@@ -0,0 +1,131 @@
+/*
+ * Sonar C# Plugin :: Core
+ * Copyright (C) 2010 Jose Chillan, Alexandre Victoor and SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.plugins.csharp.api;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+import org.sonar.api.batch.SensorContext;
+import org.sonar.api.resources.Project;
+import org.sonar.api.rules.Rule;
+import org.sonar.api.rules.Violation;
+import org.sonar.api.utils.SonarException;
+
+public class ViolationSinkTest {
+
+  private SensorContext context;
+  private List<String> savedMessages;
+  private Rule rule;
+  private ViolationSink.Resolver resolver;
+
+  @Before
+  public void init() {
+    rule = Rule.create("fxcop", "Rule", "Rule");
+    savedMessages = new ArrayList<String>();
+    context = mock(SensorContext.class);
+    doAnswer(new Answer<Object>() {
+
+      public Object answer(InvocationOnMock invocation) {
+        savedMessages.add(((Violation) invocation.getArguments()[0]).getMessage());
+        return null;
+      }
+    }).when(context).saveViolation(any(Violation.class));
+    resolver = new ViolationSink.Resolver() {
+
+      public Violation resolve(ViolationRecord record) {
+        if (record.getMessage().startsWith("ignored")) {
+          return null;
+        }
+        return Violation.create(rule, new Project("foo")).setMessage(record.getMessage());
+      }
+    };
+  }
+
+  @Test
+  public void testViolationsAreSavedInOrder() {
+    ViolationSink sink = new ViolationSink(context, resolver, 3, 2);
+    sink.run(new ViolationSink.Producer() {
+
+      public void produce(ViolationSink producerSink) {
+        for (int i = 0; i < 50; i++) {
+          producerSink.add(new ViolationRecord(rule.getKey(), null, i, (i % 10 == 0 ? "ignored " : "message ") + i));
+        }
+      }
+    });
+
+    assertEquals(45, savedMessages.size());
+    assertEquals("message 1", savedMessages.get(0));
+    assertEquals("message 49", savedMessages.get(44));
+    assertEquals(50, sink.getProduced());
+    assertEquals(50, sink.getResolved());
+    assertEquals(45, sink.getSaved());
+  }
+
+  @Test
+  public void testProducerFailureIsThrownAfterSaving() {
+    ViolationSink sink = new ViolationSink(context, resolver);
+    try {
+      sink.run(new ViolationSink.Producer() {
+
+        public void produce(ViolationSink producerSink) {
+          producerSink.add(new ViolationRecord(rule.getKey(), null, null, "message"));
+          throw new SonarException("Invalid report");
+        }
+      });
+      fail();
+    } catch (SonarException e) {
+      assertEquals("Invalid report", e.getMessage());
+    }
+    verify(context, times(1)).saveViolation(any(Violation.class));
+  }
+
+  @Test
+  public void testProducerIsStoppedWhenSavingFails() {
+    doThrow(new IllegalStateException("Cannot save")).when(context).saveViolation(any(Violation.class));
+    ViolationSink sink = new ViolationSink(context, resolver, 1, 1);
+    try {
+      sink.run(new ViolationSink.Producer() {
+
+        public void produce(ViolationSink producerSink) {
+          while (true) {
+            producerSink.add(new ViolationRecord(rule.getKey(), null, null, "message"));
+          }
+        }
+      });
+      fail();
+    } catch (IllegalStateException e) {
+      assertEquals("Cannot save", e.getMessage());
+    }
+  }
+
+}
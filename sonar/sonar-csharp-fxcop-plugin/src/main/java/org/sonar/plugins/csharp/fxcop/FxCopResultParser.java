@@ -40,8 +40,6 @@ import org.sonar.api.batch.SensorContext;
 import org.sonar.api.resources.Project;
 import org.sonar.api.resources.Resource;
 import org.sonar.api.rules.Rule;
-import org.sonar.api.rules.RuleFinder;
-import org.sonar.api.rules.RuleQuery;
 import org.sonar.api.rules.Violation;
 import org.sonar.api.utils.SonarException;
 import org.sonar.dotnet.tools.commons.visualstudio.VisualStudioProject;
@@ -49,6 +47,9 @@ import org.sonar.dotnet.tools.commons.visualstudio.VisualStudioSolution;
 import org.sonar.plugins.csharp.api.CSharpResourcesBridge;
 import org.sonar.plugins.csharp.api.MicrosoftWindowsEnvironment;
 import org.sonar.plugins.csharp.api.ResourceHelper;
+import org.sonar.plugins.csharp.api.RuleIndex;
+import org.sonar.plugins.csharp.api.ViolationRecord;
+import org.sonar.plugins.csharp.api.ViolationSink;
 import org.sonar.plugins.csharp.core.AbstractStaxParser;
 
 /**
@@ -71,10 +72,15 @@ public class FxCopResultParser extends AbstractStaxParser implements BatchExtens
   private VisualStudioProject vsProject;
   private Project project;
   private SensorContext context;
-  private RuleFinder ruleFinder;
+  private RuleIndex ruleIndex;
   private CSharpResourcesBridge resourcesBridge;
   private ResourceHelper resourceHelper;
 
+  // type resource of the last resolved violation, as the violations of a type are read one after another
+  private String lastNamespaceName;
+  private String lastTypeName;
+  private Resource<?> lastTypeResource;
+
   /**
    * Constructs a @link{FxCopResultParser}.
    * 
@@ -83,7 +89,7 @@ public class FxCopResultParser extends AbstractStaxParser implements BatchExtens
    * @param rulesManager
    * @param profile
    */
-  public FxCopResultParser(MicrosoftWindowsEnvironment env, Project project, SensorContext context, RuleFinder ruleFinder,
+  public FxCopResultParser(MicrosoftWindowsEnvironment env, Project project, SensorContext context, RuleIndex ruleIndex,
       CSharpResourcesBridge resourcesBridge, ResourceHelper resourceHelper) {
     super();
     this.vsSolution = env.getCurrentSolution();
@@ -94,7 +100,7 @@ public class FxCopResultParser extends AbstractStaxParser implements BatchExtens
     this.vsProject = vsSolution.getProjectFromSonarProject(project);
     this.project = project;
     this.context = context;
-    this.ruleFinder = ruleFinder;
+    this.ruleIndex = ruleIndex;
     this.resourcesBridge = resourcesBridge;
     this.resourceHelper = resourceHelper;
   }
@@ -105,7 +111,21 @@ public class FxCopResultParser extends AbstractStaxParser implements BatchExtens
    * @param file
    *          the file to parse
    */
-  public void parse(File file) {
+  public void parse(final File file) {
+    new ViolationSink(context, new ViolationSink.Resolver() {
+
+      public Violation resolve(ViolationRecord record) {
+        return createViolation(record);
+      }
+    }).run(new ViolationSink.Producer() {
+
+      public void produce(ViolationSink sink) {
+        readReport(file, sink);
+      }
+    });
+  }
+
+  private void readReport(File file, ViolationSink sink) {
     SMInputFactory inputFactory = initStax();
     FileInputStream fileInputStream = null;
     try {
@@ -114,9 +134,9 @@ public class FxCopResultParser extends AbstractStaxParser implements BatchExtens
       SMInputCursor mainCursor = cursor.advance().childElementCursor();
       while (mainCursor.getNext() != null) {
         if (NAMESPACES.equals(mainCursor.getQName().getLocalPart())) {
-          parseNamespacesBloc(mainCursor);
+          parseNamespacesBloc(mainCursor, sink);
         } else if (TARGETS.equals(mainCursor.getQName().getLocalPart())) {
-          parseTargetsBloc(mainCursor);
+          parseTargetsBloc(mainCursor, sink);
         }
       }
       cursor.getStreamReader().closeCompletely();
@@ -129,26 +149,26 @@ public class FxCopResultParser extends AbstractStaxParser implements BatchExtens
     }
   }
 
-  private void parseNamespacesBloc(SMInputCursor cursor) throws XMLStreamException {
+  private void parseNamespacesBloc(SMInputCursor cursor, ViolationSink sink) throws XMLStreamException {
     // Cursor in on <Namespaces>
     SMInputCursor namespacesCursor = cursor.childElementCursor(NAMESPACE);
     while (namespacesCursor.getNext() != null) {
       SMInputCursor messagesCursor = namespacesCursor.descendantElementCursor(MESSAGE);
       while (messagesCursor.getNext() != null) {
-        createViolationFromMessageAtProjectLevel(messagesCursor);
+        createViolationFromMessageAtProjectLevel(messagesCursor, sink);
       }
     }
   }
 
-  private void parseTargetsBloc(SMInputCursor cursor) throws XMLStreamException {
+  private void parseTargetsBloc(SMInputCursor cursor, ViolationSink sink) throws XMLStreamException {
     // Cursor on <Targets>
     SMInputCursor modulesCursor = cursor.descendantElementCursor(MODULE);
     while (modulesCursor.getNext() != null) {
-      parseModuleMessagesBloc(modulesCursor);
+      parseModuleMessagesBloc(modulesCursor, sink);
     }
   }
 
-  private void parseModuleMessagesBloc(SMInputCursor cursor) throws XMLStreamException {
+  private void parseModuleMessagesBloc(SMInputCursor cursor, ViolationSink sink) throws XMLStreamException {
     // Cursor on <Module>
     SMInputCursor moduleChildrenCursor = cursor.childElementCursor();
     while (moduleChildrenCursor.getNext() != null) {
@@ -156,7 +176,7 @@ public class FxCopResultParser extends AbstractStaxParser implements BatchExtens
         // We are on <Messages>, look for <Message>
         SMInputCursor messagesCursor = moduleChildrenCursor.childElementCursor(MESSAGE);
         while (messagesCursor.getNext() != null) {
-          createViolationFromMessageAtProjectLevel(messagesCursor);
+          createViolationFromMessageAtProjectLevel(messagesCursor, sink);
         }
       } else if (NAMESPACES.equals(moduleChildrenCursor.getQName().getLocalPart())) {
         // We are on <Namespaces>, get <Namespace>
@@ -165,87 +185,88 @@ public class FxCopResultParser extends AbstractStaxParser implements BatchExtens
           String namespaceName = namespaceCursor.getAttrValue(NAME);
           SMInputCursor typeCursor = namespaceCursor.childElementCursor().advance().childElementCursor();
           while (typeCursor.getNext() != null) {
-            parseTypeBloc(namespaceName, typeCursor);
+            parseTypeBloc(namespaceName, typeCursor, sink);
           }
         }
       }
     }
   }
 
-  private void parseTypeBloc(String namespaceName, SMInputCursor cursor) throws XMLStreamException {
+  private void parseTypeBloc(String namespaceName, SMInputCursor cursor, ViolationSink sink) throws XMLStreamException {
     // Cursor on <Type>
     String typeName = cursor.getAttrValue(NAME);
-    Resource<?> typeResource = resourcesBridge.getFromTypeName(namespaceName, typeName);
     SMInputCursor messagesCursor = cursor.descendantElementCursor(MESSAGE);
     while (messagesCursor.getNext() != null) {
       // Cursor on <Message>
       if (messagesCursor.getCurrEvent() == SMEvent.START_ELEMENT) {
-
-        Rule currentRule = ruleFinder.find(RuleQuery.create().withRepositoryKey(FxCopConstants.REPOSITORY_KEY)
-            .withKey(messagesCursor.getAttrValue(TYPENAME)));
-        if (currentRule != null) {
-          // look for all potential issues
-          searchForViolations(messagesCursor, typeResource, currentRule);
-        } else {
-          LOG.warn("Could not find the following rule in the FxCop rule repository: " + messagesCursor.getAttrValue(TYPENAME));
-        }
-
+        // look for all potential issues, the rule is resolved when the violations are saved
+        searchForViolations(messagesCursor, namespaceName, typeName, messagesCursor.getAttrValue(TYPENAME), sink);
       }
     }
   }
 
-  protected void searchForViolations(SMInputCursor messagesCursor, Resource<?> typeResource, Rule currentRule) throws XMLStreamException {
+  protected void searchForViolations(SMInputCursor messagesCursor, String namespaceName, String typeName, String ruleKey,
+      ViolationSink sink) throws XMLStreamException {
     SMInputCursor issueCursor = messagesCursor.childElementCursor();
     while (issueCursor.getNext() != null) {
-      final Resource<?> resource;
-      final boolean saveViolation;
+      // Cursor on Issue
       String path = issueCursor.getAttrValue("Path");
       String file = issueCursor.getAttrValue("File");
+      String sourcePath = null;
       if (StringUtils.isNotEmpty(path) && StringUtils.isNotEmpty(file)) {
-        File sourceFile = new File(path, file).getAbsoluteFile();
-        VisualStudioProject currentVsProject = vsSolution.getProject(sourceFile);
-        if (vsProject.equals(currentVsProject)) {
-          resource = org.sonar.api.resources.File.fromIOFile(sourceFile, project);
-          saveViolation = true;
-        } else {
-          LOG.debug("Ignoring file outside current project : {}", sourceFile);
-          resource = null;
-          saveViolation = false;
-        }
-      } else if (typeResource == null || resourceHelper.isResourceInProject(typeResource, project)) {
-        resource = typeResource;
-        saveViolation = true;
-      } else {
-        resource = null;
-        saveViolation = false;
-      }
-
-      if (saveViolation) {
-        // Cursor on Issue
-        Violation violation = Violation.create(currentRule, resource);
-        String lineNumber = issueCursor.getAttrValue(LINE);
-        if (lineNumber != null) {
-          violation.setLineId(Integer.parseInt(lineNumber));
-        }
-        violation.setMessage(issueCursor.collectDescendantText().trim());
-        violation.setSeverity(currentRule.getSeverity());
-        context.saveViolation(violation);
+        sourcePath = new File(path, file).getAbsolutePath();
       }
+      String lineNumber = issueCursor.getAttrValue(LINE);
+      sink.add(new ViolationRecord(ruleKey, sourcePath, lineNumber == null ? null : Integer.valueOf(lineNumber), issueCursor
+          .collectDescendantText().trim(), namespaceName, typeName));
     }
   }
 
-  private void createViolationFromMessageAtProjectLevel(SMInputCursor messagesCursor) throws XMLStreamException {
-    Rule currentRule = ruleFinder.find(RuleQuery.create().withRepositoryKey(FxCopConstants.REPOSITORY_KEY)
-        .withKey(messagesCursor.getAttrValue(TYPENAME)));
-    if (currentRule != null) {
+  private void createViolationFromMessageAtProjectLevel(SMInputCursor messagesCursor, ViolationSink sink) throws XMLStreamException {
+    sink.add(new ViolationRecord(messagesCursor.getAttrValue(TYPENAME), null, null, messagesCursor.collectDescendantText().trim()));
+  }
+
+  private Violation createViolation(ViolationRecord record) {
+    Rule rule = ruleIndex.findByKey(FxCopConstants.REPOSITORY_KEY, record.getRuleKey());
+    if (rule == null) {
+      return null;
+    }
+    final Resource<?> resource;
+    if (record.getPath() != null) {
+      File sourceFile = new File(record.getPath());
+      VisualStudioProject currentVsProject = vsSolution.getProject(sourceFile);
+      if ( !vsProject.equals(currentVsProject)) {
+        LOG.debug("Ignoring file outside current project : {}", sourceFile);
+        return null;
+      }
+      resource = org.sonar.api.resources.File.fromIOFile(sourceFile, project);
+    } else if (record.getTypeNameCount() == 0) {
       // the violation is saved at project level, not on a specific resource
-      Violation violation = Violation.create(currentRule, project);
-      violation.setMessage(messagesCursor.collectDescendantText().trim());
-      violation.setSeverity(currentRule.getSeverity());
-      context.saveViolation(violation);
+      resource = project;
     } else {
-      LOG.debug("Could not find the following rule in the FxCop rule repository: " + messagesCursor.getAttrValue(TYPENAME));
+      Resource<?> typeResource = getTypeResource(record.getTypeName(0), record.getTypeName(1));
+      if (typeResource != null && !resourceHelper.isResourceInProject(typeResource, project)) {
+        return null;
+      }
+      resource = typeResource;
+    }
+
+    Violation violation = Violation.create(rule, resource);
+    if (record.getLine() != null) {
+      violation.setLineId(record.getLine());
+    }
+    violation.setMessage(record.getMessage());
+    violation.setSeverity(rule.getSeverity());
+    return violation;
+  }
+
+  private Resource<?> getTypeResource(String namespaceName, String typeName) {
+    if ( !StringUtils.equals(namespaceName, lastNamespaceName) || !StringUtils.equals(typeName, lastTypeName)) {
+      lastNamespaceName = namespaceName;
+      lastTypeName = typeName;
+      lastTypeResource = resourcesBridge.getFromTypeName(namespaceName, typeName);
     }
+    return lastTypeResource;
   }
 
 }
@@ -22,8 +22,10 @@ package org.sonar.plugins.csharp.fxcop;
 
 import static org.mockito.Matchers.any;
 import static org.mockito.Matchers.anyObject;
+import static org.mockito.Matchers.anyString;
 import static org.mockito.Matchers.eq;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
@@ -49,6 +51,7 @@ import org.sonar.dotnet.tools.commons.visualstudio.VisualStudioSolution;
 import org.sonar.plugins.csharp.api.CSharpResourcesBridge;
 import org.sonar.plugins.csharp.api.MicrosoftWindowsEnvironment;
 import org.sonar.plugins.csharp.api.ResourceHelper;
+import org.sonar.plugins.csharp.api.RuleIndex;
 import org.sonar.test.TestUtils;
 
 import com.google.common.collect.Lists;
@@ -84,7 +87,7 @@ public class FxCopResultParserTest {
     ResourceHelper resourceHelper = mock(ResourceHelper.class);
     when(resourceHelper.isResourceInProject(any(Resource.class), any(Project.class))).thenReturn(true);
  
-    parser = new FxCopResultParser(env, project, context, newRuleFinder(), resourcesBridge, resourceHelper);
+    parser = new FxCopResultParser(env, project, context, new RuleIndex(newRuleFinder()), resourcesBridge, resourceHelper);
     parser.setEncoding(Charset.forName("UTF-8"));
   }
 
@@ -105,9 +108,8 @@ public class FxCopResultParserTest {
     resultFile = TestUtils.getResource("/Results/fxcop-report-2.xml");
     parser.parse(resultFile);
 
-    // Verify calls on C# Resource bridge
-    verify(resourcesBridge, times(1)).getFromTypeName(eq("Example.Core"), eq("Money"));
-    verify(resourcesBridge, times(1)).getFromTypeName(eq("Example.Core"), eq("MoneyBag"));
+    // All the issues give their source file: the types do not need to be looked for
+    verify(resourcesBridge, never()).getFromTypeName(anyString(), anyString());
 
     // Verify calls on context to save violations
     verify(context, times(4)).saveViolation(any(Violation.class));
@@ -59,6 +59,9 @@ public final class GallioConstants {
   
   public static final String REPORTS_PATH_KEY = "sonar.gallio.reports.path";
   public static final String REPORTS_COVERAGE_PATH_KEY = "sonar.gallio.coverage.reports.path";
+
+  public static final String MAX_FAILURE_TEXT_LENGTH_KEY = "sonar.gallio.failure.maxLength";
+  public static final int MAX_FAILURE_TEXT_LENGTH_DEFVALUE = 10000;
   
   public static final String TEST_ASSEMBLIES_KEY = "sonar.dotnet.test.assemblies";
 
@@ -68,6 +68,10 @@ import org.sonar.plugins.csharp.gallio.ui.GallioRubyWidget;
     @Property(key = GallioConstants.REPORTS_COVERAGE_PATH_KEY, defaultValue = "", name = "Name of the Gallio coverage report files",
         description = "Path to the Gallio coverage report file used when reuse report mode is activated. "
             + "This can be an absolute path, or a path relative to the solution base directory.", global = false, project = false),
+    @Property(key = GallioConstants.MAX_FAILURE_TEXT_LENGTH_KEY, defaultValue = GallioConstants.MAX_FAILURE_TEXT_LENGTH_DEFVALUE + "",
+        name = "Maximum length of the failure texts",
+        description = "Maximum number of characters kept from the message and from the stack trace of each failing test, to bound the "
+          + "memory used when many tests fail with large logs. Use 0 to keep the whole texts.", global = true, project = true),
     @Property(key = GallioConstants.COVERAGE_EXCLUDES_KEY, 
         name = "Coverage excludes", description = "Comma-separated list of namespaces and assemblies excluded from the code coverage. "
             + "For PartCover, the format for an exclusion is : '[assembly]namespace'. "
@@ -161,6 +161,9 @@ public class GallioSensor extends AbstractCSharpSensor {
       }
     } catch (GallioException e) {
       throw new SonarException("Gallio execution failed.", e);
+    } finally {
+      // the reports have just been written in the working directory
+      FileFinder.invalidateCache(workDir);
     }
 
     // tell that tests were executed so that no other project tries to launch them a second time
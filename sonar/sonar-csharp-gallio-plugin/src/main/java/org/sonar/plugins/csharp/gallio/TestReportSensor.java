@@ -22,6 +22,7 @@ package org.sonar.plugins.csharp.gallio;
 import java.io.File;
 import java.util.Collection;
 import java.util.HashSet;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -36,8 +37,10 @@ import org.sonar.api.measures.Metric;
 import org.sonar.api.resources.Project;
 import org.sonar.api.utils.ParsingUtils;
 import org.sonar.dotnet.tools.commons.utils.FileFinder;
+import org.sonar.dotnet.tools.commons.visualstudio.VisualStudioProject;
 import org.sonar.plugins.csharp.api.CSharpConfiguration;
 import org.sonar.plugins.csharp.api.MicrosoftWindowsEnvironment;
+import org.sonar.plugins.csharp.api.SolutionReportStore;
 import org.sonar.plugins.csharp.api.sensor.AbstractTestCSharpSensor;
 import org.sonar.plugins.csharp.gallio.results.coverage.model.FileCoverage;
 import org.sonar.plugins.csharp.gallio.results.execution.GallioResultParser;
@@ -58,8 +61,11 @@ public class TestReportSensor extends AbstractTestCSharpSensor {
 
   private static final Logger LOG = LoggerFactory.getLogger(TestReportSensor.class);
 
+  private static final String REPORT_TYPE = "gallio";
+
   private CSharpConfiguration configuration;
   private GallioResultParser parser;
+  private SolutionReportStore reportStore;
 
   /**
    * Constructs a {@link TestReportSensor}.
@@ -67,12 +73,14 @@ public class TestReportSensor extends AbstractTestCSharpSensor {
    * @param fileSystem
    * @param configuration
    * @param microsoftWindowsEnvironment
+   * @param reportStore
    */
   public TestReportSensor(CSharpConfiguration configuration, MicrosoftWindowsEnvironment microsoftWindowsEnvironment,
-      GallioResultParser parser) {
+      GallioResultParser parser, SolutionReportStore reportStore) {
     super(microsoftWindowsEnvironment, "Gallio Report Parser", configuration.getString(GallioConstants.MODE, ""));
     this.configuration = configuration;
     this.parser = parser;
+    this.reportStore = reportStore;
   }
 
   @Override
@@ -137,9 +145,11 @@ public class TestReportSensor extends AbstractTestCSharpSensor {
     
     
     Map<File, UnitTestReport> fileTestMap = Maps.newHashMap();
+    VisualStudioProject vsProject = getVSProject(project);
     for (File report : reportFiles) {
       if (report.exists()) {
-        Collection<UnitTestReport> tests = parser.parse(report);
+        // the report is parsed once for all the test projects, each of them takes the tests of its own files
+        Collection<UnitTestReport> tests = reportStore.take(REPORT_TYPE, report, vsProject, new TestReportReader());
         for (UnitTestReport test : tests) {
           File file = test.getSourceFile();
           if (fileTestMap.containsKey(file)) {
@@ -232,4 +242,32 @@ public class TestReportSensor extends AbstractTestCSharpSensor {
     }
   }
 
+  /**
+   * Reads the test reports through the Gallio parser, and associates the tests to the projects of their source files.
+   */
+  private class TestReportReader implements SolutionReportStore.ReportReader<UnitTestReport> {
+
+    public Collection<UnitTestReport> read(File report, VisualStudioProject vsProject) {
+      Collection<UnitTestReport> testReports = parser.parse(report);
+      if (vsProject != null) {
+        Iterator<UnitTestReport> iterator = testReports.iterator();
+        while (iterator.hasNext()) {
+          if ( !vsProject.equals(getProject(iterator.next()))) {
+            iterator.remove();
+          }
+        }
+      }
+      return testReports;
+    }
+
+    public VisualStudioProject getProject(UnitTestReport testReport) {
+      File sourceFile = testReport.getSourceFile();
+      return sourceFile == null ? null : getVSSolution().getProject(sourceFile);
+    }
+
+    public int sizeOf(UnitTestReport testReport) {
+      return 1 + testReport.getDetails().size();
+    }
+  }
+
 }
\ No newline at end of file
@@ -35,8 +35,7 @@ import java.util.Map;
 
 import org.codehaus.staxmate.in.SMFilterFactory;
 import org.codehaus.staxmate.in.SMInputCursor;
-import org.sonar.api.batch.SensorContext;
-import org.sonar.api.resources.Project;
+import org.sonar.dotnet.tools.commons.visualstudio.VisualStudioProject;
 import org.sonar.dotnet.tools.commons.visualstudio.VisualStudioSolution;
 import org.sonar.plugins.csharp.gallio.results.coverage.model.CoveragePoint;
 import org.sonar.plugins.csharp.gallio.results.coverage.model.FileCoverage;
@@ -180,27 +179,29 @@ public abstract class AbstractParsingStrategy implements CoverageResultParsingSt
     this.fileIdPointAttribute = fileIdPointAttribute;
   }
 
-  public List<FileCoverage> parse(final SensorContext context, VisualStudioSolution solution, final Project sonarProject, SMInputCursor root) {
+  public List<FileCoverage> parse(final VisualStudioSolution solution, final VisualStudioProject project, SMInputCursor root) {
 
     SMInputCursor rootChildCursor = descendantElements(root);
 
     // Then all the indexed files are extracted
     sourceFilesById = findFiles(rootChildCursor);
 
+    if (project != null) {
+      // filter the files of the project, so that no point of the other files is kept
+      sourceFilesById = Maps.newHashMap(Maps.filterValues(sourceFilesById, new Predicate<FileCoverage>() {
+
+        public boolean apply(FileCoverage input) {
+          return project.equals(solution.getProject(input.getFile()));
+        }
+      }));
+    }
+
     if (sourceFilesById.isEmpty()) {
       // no source, there is no point to parse further
       return Collections.EMPTY_LIST;
     }
 
-    // filter files according to the exclusion patterns
-    sourceFilesById = Maps.filterValues(sourceFilesById, new Predicate<FileCoverage>() {
-
-      public boolean apply(FileCoverage input) {
-        return context.isIndexed(org.sonar.api.resources.File.fromIOFile(input.getFile(), sonarProject), false);
-      }
-    });
-
-    // We finally process the coverage details
+    // We finally process the coverage details. Exclusion patterns are applied when the measures are saved
     fillProjects(rootChildCursor);
 
     List<FileCoverage> sourceFiles = new ArrayList<FileCoverage>(sourceFilesById.values());
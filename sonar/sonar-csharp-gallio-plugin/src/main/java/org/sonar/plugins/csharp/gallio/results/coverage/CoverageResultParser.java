@@ -23,6 +23,7 @@ import static org.sonar.plugins.csharp.gallio.helper.StaxHelper.findElementName;
 
 import java.io.File;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Iterator;
 import java.util.List;
 
@@ -35,29 +36,30 @@ import org.codehaus.staxmate.in.SMInputCursor;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.sonar.api.BatchExtension;
-import org.sonar.api.batch.SensorContext;
 import org.sonar.api.resources.Project;
 import org.sonar.api.utils.SonarException;
 import org.sonar.dotnet.tools.commons.visualstudio.VisualStudioProject;
 import org.sonar.dotnet.tools.commons.visualstudio.VisualStudioSolution;
 import org.sonar.plugins.csharp.api.MicrosoftWindowsEnvironment;
+import org.sonar.plugins.csharp.api.SolutionReportStore;
 import org.sonar.plugins.csharp.gallio.results.coverage.model.FileCoverage;
 
-import com.google.common.collect.Lists;
-
 /**
- * Parses a coverage report using Stax
+ * Parses a coverage report using Stax. A report usually covers the whole solution: it is parsed once and its results are shared by the
+ * modules through the {@link SolutionReportStore}.
  * 
  * @author Maxime SCHNEIDER-DUFEUTRELLE January 26, 2011
  */
-public class CoverageResultParser implements BatchExtension {
+public class CoverageResultParser implements BatchExtension, SolutionReportStore.ReportReader<FileCoverage> {
 
   /**
    * Generates the logger.
    */
   private static final Logger LOG = LoggerFactory.getLogger(CoverageResultParser.class);
 
-  private SensorContext context;
+  private static final String REPORT_TYPE = "coverage";
+
+  private SolutionReportStore reportStore;
   private VisualStudioSolution solution;
   private final List<CoverageResultParsingStrategy> parsingStrategies;
   private CoverageResultParsingStrategy currentStrategy;
@@ -65,8 +67,8 @@ public class CoverageResultParser implements BatchExtension {
   /**
    * Constructs a @link{CoverageResultStaxParser}.
    */
-  public CoverageResultParser(SensorContext context, MicrosoftWindowsEnvironment microsoftWindowsEnvironment) {
-    this.context = context;
+  public CoverageResultParser(MicrosoftWindowsEnvironment microsoftWindowsEnvironment, SolutionReportStore reportStore) {
+    this.reportStore = reportStore;
     this.solution = microsoftWindowsEnvironment.getCurrentSolution();
     parsingStrategies = new ArrayList<CoverageResultParsingStrategy>();
     parsingStrategies.add(new PartCover23ParsingStrategy());
@@ -77,13 +79,33 @@ public class CoverageResultParser implements BatchExtension {
   }
 
   /**
-   * Parses a file
+   * Gets the coverage of the files of a project
    * 
+   * @param sonarProject
+   *          : the project
    * @param file
    *          : the file to parse
    * 
    */
   public List<FileCoverage> parse(final Project sonarProject, final File file) {
+    VisualStudioProject currentVsProject = solution.getProjectFromSonarProject(sonarProject);
+    List<FileCoverage> result = reportStore.take(REPORT_TYPE, file, currentVsProject, this);
+    for (FileCoverage fileCoverage : result) {
+      fileCoverage.summarize();
+    }
+    return result;
+  }
+
+  /**
+   * Parses a file
+   * 
+   * @param file
+   *          : the file to parse
+   * @param vsProject
+   *          : the project whose files are kept, or <code>null</code> to keep the coverage of all the files of the solution
+   * 
+   */
+  public Collection<FileCoverage> read(File file, VisualStudioProject vsProject) {
 
     final SMHierarchicCursor rootCursor;
     final SMInputCursor root;
@@ -99,25 +121,27 @@ public class CoverageResultParser implements BatchExtension {
     // First define the version
     chooseParsingStrategy(root);
 
-    List<FileCoverage> fileCoverages = currentStrategy.parse(context, solution, sonarProject, root);
-    
-    // We filter the files that belong to the current project
-    // and we summarize them
-    List<FileCoverage> result = Lists.newArrayList();
-    VisualStudioProject currentVsProject = solution.getProjectFromSonarProject(sonarProject);
-    for (FileCoverage fileCoverage : fileCoverages) {
-      VisualStudioProject vsProject = solution.getProject(fileCoverage.getFile());
-      if (vsProject == null) {
-        LOG.debug("Coverage report contains a reference to a cs file outside the solution {}", fileCoverage.getFile());
-      } else if (currentVsProject.equals(vsProject)) {
-        fileCoverage.summarize();
-        result.add(fileCoverage);
-      }
+    return currentStrategy.parse(solution, vsProject, root);
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  public VisualStudioProject getProject(FileCoverage fileCoverage) {
+    VisualStudioProject vsProject = solution.getProject(fileCoverage.getFile());
+    if (vsProject == null) {
+      LOG.debug("Coverage report contains a reference to a cs file outside the solution {}", fileCoverage.getFile());
     }
-    
-    return result;
+    return vsProject;
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  public int sizeOf(FileCoverage fileCoverage) {
+    return 1 + fileCoverage.getLines().size();
   }
-  
+
   /**
    * This method is necessary due to a modification of the schema between partcover 2.2 and 2.3, for which elements start now with an
    * uppercase letter. Format is a little bit different with partcover4, and NCover use a different format too.
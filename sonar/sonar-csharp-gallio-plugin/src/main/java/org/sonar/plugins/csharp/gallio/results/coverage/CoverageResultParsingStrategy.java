@@ -22,8 +22,7 @@ package org.sonar.plugins.csharp.gallio.results.coverage;
 import java.util.List;
 
 import org.codehaus.staxmate.in.SMInputCursor;
-import org.sonar.api.batch.SensorContext;
-import org.sonar.api.resources.Project;
+import org.sonar.dotnet.tools.commons.visualstudio.VisualStudioProject;
 import org.sonar.dotnet.tools.commons.visualstudio.VisualStudioSolution;
 import org.sonar.plugins.csharp.gallio.results.coverage.model.FileCoverage;
 
@@ -32,6 +31,17 @@ public interface CoverageResultParsingStrategy {
 
   public boolean isCompatible(SMInputCursor rootCursor);
   
-  public List<FileCoverage> parse(SensorContext ctx, VisualStudioSolution solution, Project sonarProject, SMInputCursor cursor);
+  /**
+   * Parses a coverage report.
+   * 
+   * @param solution
+   *          the solution
+   * @param project
+   *          the project whose files are kept, or <code>null</code> to keep all the files of the report
+   * @param cursor
+   *          the cursor on the root element of the report
+   * @return the coverage of the files
+   */
+  public List<FileCoverage> parse(VisualStudioSolution solution, VisualStudioProject project, SMInputCursor cursor);
   
 }
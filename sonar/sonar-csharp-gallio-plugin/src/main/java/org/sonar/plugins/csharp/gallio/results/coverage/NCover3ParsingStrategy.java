@@ -36,6 +36,7 @@ import org.codehaus.staxmate.in.SMInputCursor;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.sonar.api.utils.SonarException;
+import org.sonar.dotnet.tools.commons.utils.CanonicalPathCache;
 import org.sonar.plugins.csharp.gallio.results.coverage.model.FileCoverage;
 
 public class NCover3ParsingStrategy extends AbstractParsingStrategy {
@@ -65,7 +66,7 @@ public class NCover3ParsingStrategy extends AbstractParsingStrategy {
         if ("None".equals(path) || path == null) {
           LOG.debug("Method coverage data not attached to any file");
         } else {
-          files.put(findAttributeIntValue(doc, "id"), new FileCoverage(document.getCanonicalFile()));
+          files.put(findAttributeIntValue(doc, "id"), new FileCoverage(CanonicalPathCache.getInstance().getCanonicalFile(document)));
         }
         advanceCursor(doc);
       }
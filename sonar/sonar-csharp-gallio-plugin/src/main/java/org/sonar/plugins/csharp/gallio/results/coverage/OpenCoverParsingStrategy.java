@@ -26,21 +26,22 @@ import java.util.ArrayList;
 import java.util.Collection;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 import javax.xml.stream.XMLStreamException;
 
 import org.codehaus.staxmate.in.SMInputCursor;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import org.sonar.api.batch.SensorContext;
-import org.sonar.api.resources.Project;
 import org.sonar.api.utils.SonarException;
+import org.sonar.dotnet.tools.commons.visualstudio.VisualStudioProject;
 import org.sonar.dotnet.tools.commons.visualstudio.VisualStudioSolution;
 import org.sonar.plugins.csharp.gallio.results.coverage.model.CoveragePoint;
 import org.sonar.plugins.csharp.gallio.results.coverage.model.FileCoverage;
 
 import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
 
 public class OpenCoverParsingStrategy implements CoverageResultParsingStrategy {
 
@@ -49,14 +50,26 @@ public class OpenCoverParsingStrategy implements CoverageResultParsingStrategy {
   private Map<Integer, File> fileRegistry = Maps.newHashMap();
   
   private Map<File, FileCoverage> fileCoverageRegistry = Maps.newHashMap(); 
+
+  // files of the other projects, whose points are skipped
+  private Set<File> skippedFiles = Sets.newHashSet();
+
+  private VisualStudioSolution solution;
+
+  private VisualStudioProject project;
   
   
   public boolean isCompatible(SMInputCursor rootCursor) {
     return "CoverageSession".equals(findElementName(rootCursor));
   }
 
-  public List<FileCoverage> parse(SensorContext ctx, VisualStudioSolution solution, Project sonarProject, SMInputCursor cursor) {
+  public List<FileCoverage> parse(VisualStudioSolution solution, VisualStudioProject project, SMInputCursor cursor) {
 
+    // the same strategy is used for all the reports
+    fileCoverageRegistry = Maps.newHashMap();
+    skippedFiles = Sets.newHashSet();
+    this.solution = solution;
+    this.project = project;
     try {
       cursor = cursor.childElementCursor().advance().childElementCursor();
       while (cursor.getNext() != null) {
@@ -98,16 +111,18 @@ public class OpenCoverParsingStrategy implements CoverageResultParsingStrategy {
   private void parseMethodBloc(SMInputCursor cursor) throws XMLStreamException {
     SMInputCursor methodCursor = cursor.childElementCursor();
     FileCoverage fileCoverage = null;
+    boolean skipped = false;
     while (methodCursor.getNext() != null) {
       if ("FileRef".equals(methodCursor.getLocalName())) {
         int fileId = Integer.valueOf(methodCursor.getAttrValue("uid"));
         File sourceFile = fileRegistry.get(fileId);
         fileCoverage = fileCoverageRegistry.get(sourceFile);
-        if (fileCoverage==null) {
+        skipped = fileCoverage == null && isSkipped(sourceFile);
+        if (fileCoverage==null && !skipped) {
           fileCoverage = new FileCoverage(sourceFile);
           fileCoverageRegistry.put(sourceFile, fileCoverage);
         }
-      } else if ("SequencePoints".equals(methodCursor.getLocalName())) {
+      } else if ( !skipped && "SequencePoints".equals(methodCursor.getLocalName())) {
         Collection<CoveragePoint> points = parseSequencePointsBloc(methodCursor);
         if (fileCoverage==null) {
           LOG.debug("Coverage point not associated to any source file");
@@ -120,6 +135,23 @@ public class OpenCoverParsingStrategy implements CoverageResultParsingStrategy {
     }
   }
   
+  /**
+   * @return true if the file does not belong to the project whose files are kept
+   */
+  private boolean isSkipped(File sourceFile) {
+    if (project == null || sourceFile == null) {
+      return false;
+    }
+    if (skippedFiles.contains(sourceFile)) {
+      return true;
+    }
+    if (project.equals(solution.getProject(sourceFile))) {
+      return false;
+    }
+    skippedFiles.add(sourceFile);
+    return true;
+  }
+
   private Collection<CoveragePoint> parseSequencePointsBloc(SMInputCursor cursor) throws XMLStreamException {
     SMInputCursor pointCursor = cursor.childElementCursor();
     List<CoveragePoint> result = Lists.newArrayList();
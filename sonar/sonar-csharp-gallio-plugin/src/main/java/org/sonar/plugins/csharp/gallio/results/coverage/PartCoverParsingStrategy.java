@@ -35,6 +35,7 @@ import org.codehaus.staxmate.in.SMInputCursor;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.sonar.api.utils.SonarException;
+import org.sonar.dotnet.tools.commons.utils.CanonicalPathCache;
 import org.sonar.plugins.csharp.gallio.results.coverage.model.FileCoverage;
 
 public abstract class PartCoverParsingStrategy extends AbstractParsingStrategy {
@@ -70,7 +71,7 @@ public abstract class PartCoverParsingStrategy extends AbstractParsingStrategy {
           if ("None".equals(path) || path == null) {
             LOG.debug("Method coverage data not attached to any file");
           } else {
-            files.put(findAttributeIntValue(docsTag, "id"), new FileCoverage(document.getCanonicalFile()));
+            files.put(findAttributeIntValue(docsTag, "id"), new FileCoverage(CanonicalPathCache.getInstance().getCanonicalFile(document)));
             LOG.debug("A sourceFile has been added");
           }
         }
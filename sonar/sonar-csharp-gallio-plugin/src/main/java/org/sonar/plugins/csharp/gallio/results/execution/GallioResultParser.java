@@ -28,11 +28,10 @@ import static org.sonar.plugins.csharp.gallio.helper.StaxHelper.isAStartElement;
 import static org.sonar.plugins.csharp.gallio.helper.StaxHelper.nextPosition;
 
 import java.io.File;
-import java.util.ArrayList;
-import java.util.Collection;
+import java.io.IOException;
+import java.io.Writer;
 import java.util.HashMap;
 import java.util.HashSet;
-import java.util.List;
 import java.util.Map;
 import java.util.Set;
 
@@ -50,16 +49,18 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.sonar.api.BatchExtension;
 import org.sonar.api.utils.SonarException;
+import org.sonar.plugins.csharp.api.CSharpConfiguration;
+import org.sonar.plugins.csharp.gallio.GallioConstants;
 import org.sonar.plugins.csharp.gallio.results.execution.model.TestCaseDetail;
 import org.sonar.plugins.csharp.gallio.results.execution.model.TestDescription;
 import org.sonar.plugins.csharp.gallio.results.execution.model.TestStatus;
 import org.sonar.plugins.csharp.gallio.results.execution.model.UnitTestReport;
 
-import com.google.common.collect.ArrayListMultimap;
-import com.google.common.collect.Multimap;
-
 /**
- * Gallio result report parser.
+ * Gallio result report parser.<br/>
+ * The descriptions of the tests, read first from the test model, are kept with their strings and files shared between tests. Each result
+ * is then associated to its description as soon as it is read and added to the report of its source file, so that the results are never
+ * held in other structures. The failure messages and stack traces kept are limited in size.
  * 
  * @author Maxime SCHNEIDER-DUFEUTRELLE
  * 
@@ -75,28 +76,56 @@ public class GallioResultParser implements BatchExtension {
   private static final String MEMBER = "member";
   private static final String PATH = "path";
   private static final String LINE = "line";
+  private static final String TRUNCATION_MARK = "...";
 
   private static final Logger LOG = LoggerFactory.getLogger(GallioResultParser.class);
 
-  private Map<String, TestCaseDetail> testCaseDetailsByTestIds;
+  private final int maxFailureTextLength;
+
+  private Map<String, TestCase> testCases;
+  private Map<String, UnitTestReport> reportsBySourceKey;
+  private Map<String, String> names;
+  private Map<String, File> files;
+
+  /**
+   * Creates a parser with the default limit of the failure texts.
+   */
+  public GallioResultParser() {
+    this(GallioConstants.MAX_FAILURE_TEXT_LENGTH_DEFVALUE);
+  }
+
+  /**
+   * Creates a parser whose limit of the failure texts is taken from the configuration.
+   * 
+   * @param configuration
+   *          the C# configuration
+   */
+  public GallioResultParser(CSharpConfiguration configuration) {
+    this(configuration.getInt(GallioConstants.MAX_FAILURE_TEXT_LENGTH_KEY, GallioConstants.MAX_FAILURE_TEXT_LENGTH_DEFVALUE));
+  }
+
+  GallioResultParser(int maxFailureTextLength) {
+    this.maxFailureTextLength = maxFailureTextLength;
+  }
 
   public Set<UnitTestReport> parse(File report) {
     try {
-      testCaseDetailsByTestIds = new HashMap<String, TestCaseDetail>();
+      testCases = new HashMap<String, TestCase>();
+      reportsBySourceKey = new HashMap<String, UnitTestReport>();
+      names = new HashMap<String, String>();
+      files = new HashMap<String, File>();
       SMInputFactory inf = new SMInputFactory(XMLInputFactory.newInstance());
       SMHierarchicCursor rootCursor = inf.rootElementCursor(report);
       advanceCursor(rootCursor);
       LOG.debug("rootCursor is at : {}", findElementName(rootCursor));
 
       // We first get the tests ids and put them in a map to get the details later
-      Map<String, TestDescription> testsDetails = new HashMap<String, TestDescription>();
-
       QName testModelTag = new QName(GALLIO_URI, "testModel");
       SMInputCursor testModelCursor = descendantElements(rootCursor);
       testModelCursor.setFilter(SMFilterFactory.getElementOnlyFilter(testModelTag));
       advanceCursor(testModelCursor);
       LOG.debug("TestModelCursor initialized at : {}", findElementName(testModelCursor));
-      testsDetails = recursiveParseTestsIds(testModelCursor, testsDetails, null, null);
+      recursiveParseTestsIds(testModelCursor, null, null);
 
       QName testPackageRunTag = new QName(GALLIO_URI, "testPackageRun");
       testModelCursor.setFilter(SMFilterFactory.getElementOnlyFilter(testPackageRunTag));
@@ -104,20 +133,24 @@ public class GallioResultParser implements BatchExtension {
       String testId = "";
       recursiveParseTestsResults(testModelCursor, testId);
 
-      // Finally, we fill the reports
-      final Set<UnitTestReport> reports = createUnitTestsReport(testsDetails);
+      // The results have been added to the reports of their files while being read
+      final Set<UnitTestReport> reports = new HashSet<UnitTestReport>(reportsBySourceKey.values());
       rootCursor.getStreamReader().closeCompletely();
-      LOG.debug("Parsing ended");
+      LOG.debug("Parsing ended, the result Set contains {} report(s)", reports.size());
 
       return reports;
     } catch (XMLStreamException e) {
       throw new SonarException(GALLIO_REPORT_PARSING_ERROR, e);
+    } finally {
+      testCases = null;
+      reportsBySourceKey = null;
+      names = null;
+      files = null;
     }
 
   }
 
-  private Map<String, TestDescription> recursiveParseTestsIds(SMInputCursor rootCursor, Map<String, TestDescription> testDetails,
-      File source, String parentAssemblyName) {
+  private void recursiveParseTestsIds(SMInputCursor rootCursor, File source, String parentAssemblyName) {
     File sourceFile = source;
     QName testTag = new QName(GALLIO_URI, "test");
     if (isAStartElement(rootCursor)) {
@@ -150,17 +183,19 @@ public class GallioResultParser implements BatchExtension {
             if (null == testDescription.getSourceFile()) {
               testDescription.setSourceFile(sourceFile);
             }
-            testDetails.put(id, testDescription);
+            TestCase knownTestCase = testCases.get(id);
+            if (knownTestCase == null || knownTestCase.description != testDescription) {
+              testCases.put(id, new TestCase(testDescription));
+            }
           }
           sourceFile = evaluatePath(sourceFile, eltName, currentTestChildren);
           if ("children".equals(eltName)) {
-            recursiveParseTestsIds(currentTestChildren, testDetails, sourceFile, parentAssemblyName);
+            recursiveParseTestsIds(currentTestChildren, sourceFile, parentAssemblyName);
           }
           advanceCursor(currentTestChildren);
         }
       }
     }
-    return testDetails;
   }
 
   private String codeReferenceTreatment(String parentAssemblyName, TestDescription testDescription, SMInputCursor currentTestChildren) {
@@ -169,7 +204,7 @@ public class GallioResultParser implements BatchExtension {
     if (null != findAttributeValue(currentTestChildren, ASSEMBLY)) {
       attributeValue = findAttributeValue(currentTestChildren, ASSEMBLY);
       LOG.debug(LOG_PATTERN, ASSEMBLY, attributeValue);
-      testDescription.setAssemblyName(StringUtils.substringBefore(attributeValue, ","));
+      testDescription.setAssemblyName(share(StringUtils.substringBefore(attributeValue, ",")));
       assemblyName = testDescription.getAssemblyName();
     } else {
       // Get the precedent assemblyName if not filled
@@ -181,7 +216,7 @@ public class GallioResultParser implements BatchExtension {
   private File evaluatePath(File source, String eltName, SMInputCursor currentTestChildren) {
     File sourceFile = source;
     if ("codeLocation".equals(eltName) && null != findAttributeValue(currentTestChildren, PATH)) {
-      File currentSourceFile = new File(findAttributeValue(currentTestChildren, PATH));
+      File currentSourceFile = shareFile(findAttributeValue(currentTestChildren, PATH));
       if (currentSourceFile != null) {
         sourceFile = currentSourceFile;
       }
@@ -194,12 +229,12 @@ public class GallioResultParser implements BatchExtension {
     if (null != findAttributeValue(currentTestChildren, NAMESPACE)) {
       attributeValue = findAttributeValue(currentTestChildren, NAMESPACE);
       LOG.debug(LOG_PATTERN, NAMESPACE, attributeValue);
-      testDescription.setNamespace(attributeValue);
+      testDescription.setNamespace(share(attributeValue));
     }
     if (null != findAttributeValue(currentTestChildren, TYPE)) {
       attributeValue = findAttributeValue(currentTestChildren, TYPE);
       LOG.debug(LOG_PATTERN, TYPE, attributeValue);
-      testDescription.setClassName(attributeValue);
+      testDescription.setClassName(share(attributeValue));
     }
     if (null != findAttributeValue(currentTestChildren, MEMBER)) {
       attributeValue = findAttributeValue(currentTestChildren, MEMBER);
@@ -214,7 +249,7 @@ public class GallioResultParser implements BatchExtension {
     if (null != findAttributeValue(currentTestChildren, PATH)) {
       attributeValue = findAttributeValue(currentTestChildren, PATH);
       LOG.debug(LOG_PATTERN, PATH, attributeValue);
-      File currentSourceFile = new File(attributeValue);
+      File currentSourceFile = shareFile(attributeValue);
       testDescription.setSourceFile(currentSourceFile);
       sourceFile = currentSourceFile;
     }
@@ -248,7 +283,7 @@ public class GallioResultParser implements BatchExtension {
           while (null != nextPosition(currentTestTags)) {
             TestCaseDetail testCaseDetail = parsingTags(currentTestTags, currentTestId);
             if (null != testCaseDetail) {
-              testCaseDetailsByTestIds.put(currentTestId, testCaseDetail);
+              addResult(currentTestId, testCaseDetail);
             }
           }
         } else {
@@ -336,7 +371,7 @@ public class GallioResultParser implements BatchExtension {
             sectionContentsChild = currentTestLogStreamSectionsTags.descendantElementCursor().advance().descendantElementCursor().advance();
           }
           if ("text".equals(findElementName(sectionContentsChild))) {
-            String message = sectionContentsChild.collectDescendantText();
+            String message = collectFailureText(sectionContentsChild);
             LOG.debug("Error Message is : {}", message);
             detail.setErrorMessage(message);
           } else if ("marker".equals(findElementName(sectionContentsChild)) && isAStartElement(sectionContentsChild)) {
@@ -344,7 +379,7 @@ public class GallioResultParser implements BatchExtension {
             if ("StackTrace".equals(findAttributeValue(sectionContentsChild, "class"))) {
               SMInputCursor sectionMarkerTextContent = sectionContentsChild.descendantElementCursor().advance().descendantElementCursor()
                   .advance();
-              String stackTrace = sectionMarkerTextContent.collectDescendantText();
+              String stackTrace = collectFailureText(sectionMarkerTextContent);
               LOG.debug("StackTrace is : {}", stackTrace);
               detail.setStackTrace(stackTrace);
             }
@@ -356,69 +391,127 @@ public class GallioResultParser implements BatchExtension {
     }
   }
 
-  private Set<UnitTestReport> createUnitTestsReport(Map<String, TestDescription> testsDescriptionByTestIds) {
-
-    Set<UnitTestReport> result = new HashSet<UnitTestReport>();
-    Set<String> testIds = testCaseDetailsByTestIds.keySet();
-    // We associate the descriptions with the test details
-    List<String> testsToRemove = new ArrayList<String>();
-    for (String testId : testIds) {
-      TestDescription description = testsDescriptionByTestIds.get(testId);
-      TestCaseDetail testCaseDetail = testCaseDetailsByTestIds.get(testId);
-      if (description == null) {
-        LOG.debug(
-            "Test {} is not considered as a testCase in your xml, there should not be any testStep associated, please check your gallio report. Skipping result",
-            testId);
-        testsToRemove.add(testId);
-      } else {
-        testCaseDetail.merge(description);
-        testCaseDetailsByTestIds.put(testId, testCaseDetail);
-      }
+  /**
+   * Associates a result to the description of its test, and adds it to the report of the source file of the test.
+   */
+  private void addResult(String testId, TestCaseDetail testCaseDetail) {
+    TestCase testCase = testCases.get(testId);
+    if (testCase == null) {
+      LOG.debug(
+          "Test {} is not considered as a testCase in your xml, there should not be any testStep associated, please check your gallio report. Skipping result",
+          testId);
+      return;
+    }
+    testCaseDetail.merge(testCase.description);
+    if (testCase.report != null) {
+      // Several results for the same test, as for row tests: only the last one is kept, in place of the previous one
+      testCase.report.replaceDetail(testCase.detailIndex, testCaseDetail);
+      return;
     }
 
-    LOG.debug("Tests to be removed {}", testsToRemove.size());
-    for (String testToRemove : testsToRemove) {
-      testCaseDetailsByTestIds.remove(testToRemove);
+    String sourceKey = testCaseDetail.createSourceKey();
+    UnitTestReport unitTest = reportsBySourceKey.get(sourceKey);
+    if (unitTest == null) {
+      unitTest = new UnitTestReport();
+      unitTest.setAssemblyName(testCaseDetail.getAssemblyName());
+      unitTest.setSourceFile(testCaseDetail.getSourceFile());
+      LOG.debug("Create new unitTest for path : {}", unitTest.getSourceFile().getPath());
+      reportsBySourceKey.put(sourceKey, unitTest);
     }
+    LOG.debug("Adding testDetail {} to the unitTestReport", testCaseDetail.getName());
+    testCase.report = unitTest;
+    testCase.detailIndex = unitTest.getDetails().size();
+    unitTest.addDetail(testCaseDetail);
+  }
 
-    Collection<TestCaseDetail> testCases = testCaseDetailsByTestIds.values();
-    Multimap<String, TestCaseDetail> testCaseDetailsBySrcKey = ArrayListMultimap.create();
-    for (TestCaseDetail testCaseDetail : testCases) {
-      String sourceKey = testCaseDetail.createSourceKey();
-      testCaseDetailsBySrcKey.put(sourceKey, testCaseDetail);
+  /**
+   * Reads the beginning of a failure message or stack trace only, as thousands of failing tests could log huge texts: the text beyond the
+   * limit is skipped without being kept.
+   */
+  private String collectFailureText(SMInputCursor cursor) throws XMLStreamException {
+    if (maxFailureTextLength <= 0) {
+      return cursor.collectDescendantText();
+    }
+    LimitedTextWriter writer = new LimitedTextWriter(maxFailureTextLength);
+    try {
+      cursor.processDescendantText(writer, false);
+    } catch (IOException e) {
+      // Not thrown by the writer
+      throw new XMLStreamException(e);
     }
+    return writer.getText();
+  }
 
-    Map<String, UnitTestReport> unitTestsReports = new HashMap<String, UnitTestReport>();
-    LOG.debug("testCaseDetails size : {}", String.valueOf(testCaseDetailsByTestIds.size()));
-
-    Set<String> pathKeys = testCaseDetailsBySrcKey.keySet();
-    LOG.debug("There are {} different pathKeys", String.valueOf(pathKeys.size()));
-    for (String pathKey : pathKeys) {
-      // If the Key already exists in the map, we add the details
-      if (unitTestsReports.containsKey(pathKey)) {
-        UnitTestReport unitTest = unitTestsReports.get(pathKey);
-        for (TestCaseDetail testDetail : testCaseDetailsBySrcKey.get(pathKey)) {
-          LOG.debug("Adding testDetail {} to the unitTestReport", testDetail.getName());
-          unitTest.addDetail(testDetail);
-        }
-        unitTestsReports.put(pathKey, unitTest);
-      } else {
-        // Else we create a new report
-        UnitTestReport unitTest = new UnitTestReport();
-        unitTest.setAssemblyName(testCaseDetailsBySrcKey.get(pathKey).iterator().next().getAssemblyName());
-        unitTest.setSourceFile(testCaseDetailsBySrcKey.get(pathKey).iterator().next().getSourceFile());
-        LOG.debug("Create new unitTest for path : {}", unitTest.getSourceFile().getPath());
-        for (TestCaseDetail testDetail : testCaseDetailsBySrcKey.get(pathKey)) {
-          LOG.debug("+ and add details : {}", testDetail.getName());
-          unitTest.addDetail(testDetail);
-        }
-        unitTestsReports.put(pathKey, unitTest);
-      }
+  /**
+   * Keeps the characters written up to a maximum number, and ignores the following ones.
+   */
+  private static final class LimitedTextWriter extends Writer {
+
+    private final int maxLength;
+    private final StringBuilder text = new StringBuilder();
+    private boolean truncated;
+
+    private LimitedTextWriter(int maxLength) {
+      this.maxLength = maxLength;
+    }
+
+    @Override
+    public void write(char[] chars, int offset, int length) {
+      int kept = Math.min(length, maxLength - text.length());
+      text.append(chars, offset, kept);
+      truncated |= kept < length;
+    }
+
+    @Override
+    public void flush() {
+      // Nothing to flush
+    }
+
+    @Override
+    public void close() {
+      // Nothing to close
     }
-    result.addAll(unitTestsReports.values());
 
-    LOG.debug("The result Set contains " + result.size() + " report(s)");
+    private String getText() {
+      return truncated ? text.append(TRUNCATION_MARK).toString() : text.toString();
+    }
+  }
 
-    return result;
+  /**
+   * @return the same instance for all the equal strings of the report
+   */
+  private String share(String value) {
+    String sharedValue = names.get(value);
+    if (sharedValue == null) {
+      names.put(value, value);
+      sharedValue = value;
+    }
+    return sharedValue;
+  }
+
+  /**
+   * @return the same instance for all the tests located in the same file
+   */
+  private File shareFile(String path) {
+    File file = files.get(path);
+    if (file == null) {
+      file = new File(path);
+      files.put(path, file);
+    }
+    return file;
+  }
+
+  /**
+   * A test case of the test model, with the position of the last result read for it in the report of its source file.
+   */
+  private static final class TestCase {
+
+    private final TestDescription description;
+    private UnitTestReport report;
+    private int detailIndex;
+
+    private TestCase(TestDescription description) {
+      this.description = description;
+    }
   }
 }
\ No newline at end of file
@@ -99,26 +99,43 @@ public class UnitTestReport {
 
   public void addDetail(TestCaseDetail detail) {
     this.details.add(detail);
-    tests++;
+    count(detail, 1);
+  }
+
+  /**
+   * Replaces a detail previously added, and its indicators, by another one.
+   * 
+   * @param index
+   *          the index of the detail to replace in {@link #getDetails()}
+   * @param detail
+   *          the new detail
+   */
+  public void replaceDetail(int index, TestCaseDetail detail) {
+    count(this.details.set(index, detail), -1);
+    count(detail, 1);
+  }
+
+  private void count(TestCaseDetail detail, int increment) {
+    tests += increment;
     TestStatus status = detail.getStatus();
     switch (status) {
       case FAILED:
-        failures++;
+        failures += increment;
         break;
       case ERROR:
-        errors++;
+        errors += increment;
         break;
       case SKIPPED:
       case INCONCLUSIVE:
-        skipped++;
+        skipped += increment;
         break;
       case SUCCESS:
         break;
     }
 
     // We complete the other indicators
-    asserts += detail.getCountAsserts();
-    timeMS += detail.getTimeMillis();
+    asserts += increment * detail.getCountAsserts();
+    timeMS += increment * detail.getTimeMillis();
   }
 
   public int getAsserts() {
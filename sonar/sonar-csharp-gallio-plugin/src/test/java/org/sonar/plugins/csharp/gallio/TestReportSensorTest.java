@@ -43,6 +43,7 @@ import org.sonar.dotnet.tools.commons.visualstudio.VisualStudioProject;
 import org.sonar.dotnet.tools.commons.visualstudio.VisualStudioSolution;
 import org.sonar.plugins.csharp.api.CSharpConfiguration;
 import org.sonar.plugins.csharp.api.MicrosoftWindowsEnvironment;
+import org.sonar.plugins.csharp.api.SolutionReportStore;
 import org.sonar.plugins.csharp.api.sensor.AbstractCSharpSensor;
 import org.sonar.plugins.csharp.gallio.results.execution.GallioResultParser;
 import org.sonar.plugins.csharp.gallio.results.execution.model.TestCaseDetail;
@@ -77,6 +78,7 @@ public class TestReportSensorTest {
     solution = mock(VisualStudioSolution.class);
     when(solution.getProjects()).thenReturn(Lists.newArrayList(vsProject1, vsTestProject2));
     when(solution.getTestProjects()).thenReturn(Lists.newArrayList(vsTestProject2));
+    when(solution.getProject(any(File.class))).thenReturn(vsTestProject2);
     
     microsoftWindowsEnvironment = new MicrosoftWindowsEnvironment();
     microsoftWindowsEnvironment.setCurrentSolution(solution);
@@ -399,6 +401,6 @@ public class TestReportSensorTest {
   }
   
   private TestReportSensor buildSensor(Configuration conf) {
-    return new TestReportSensor(new CSharpConfiguration(conf), microsoftWindowsEnvironment, parser);
+    return new TestReportSensor(new CSharpConfiguration(conf), microsoftWindowsEnvironment, parser, new SolutionReportStore());
   }
 }
\ No newline at end of file
@@ -22,24 +22,30 @@ package org.sonar.plugins.csharp.gallio.results.coverage;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertTrue;
 import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyInt;
 import static org.mockito.Matchers.eq;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.when;
 
 import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.List;
 
 import org.apache.commons.lang.StringUtils;
 import org.junit.Before;
 import org.junit.Test;
-import org.sonar.api.batch.SensorContext;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
 import org.sonar.api.resources.Project;
 import org.sonar.api.resources.ProjectFileSystem;
-import org.sonar.api.resources.Resource;
 import org.sonar.dotnet.tools.commons.visualstudio.VisualStudioProject;
 import org.sonar.dotnet.tools.commons.visualstudio.VisualStudioSolution;
+import org.sonar.plugins.csharp.api.CSharpConfiguration;
+import org.sonar.plugins.csharp.api.CSharpConstants;
 import org.sonar.plugins.csharp.api.MicrosoftWindowsEnvironment;
+import org.sonar.plugins.csharp.api.SolutionReportStore;
 import org.sonar.plugins.csharp.gallio.results.coverage.model.FileCoverage;
 import org.sonar.test.TestUtils;
 
@@ -50,33 +56,32 @@ import com.google.inject.internal.util.Lists;
 public class CoverageResultParserTest {
 
   private CoverageResultParser parser;
-  private SensorContext context;
   private Project project;
+  private VisualStudioProject vsProject;
   private VisualStudioSolution solution;
+  private MicrosoftWindowsEnvironment microsoftWindowsEnvironment;
   
 
   @Before
   public void setUp() {
-    context = mock(SensorContext.class);
-    when(context.isIndexed(any(Resource.class), eq(false))).thenReturn(true);
     ProjectFileSystem fileSystem = mock(ProjectFileSystem.class);
     when(fileSystem.getSourceDirs()).thenReturn(Lists.newArrayList(new File("C:\\Work\\CodeQuality\\Temp\\Example")));
     project = mock(Project.class);
     when(project.getFileSystem()).thenReturn(fileSystem);
     when(project.getName()).thenReturn("Example.CoreX"); // we check that assembly/project names are not taken in account (SONARPLUGINS-1517)
     
-    VisualStudioProject vsProject = mock(VisualStudioProject.class);
+    vsProject = mock(VisualStudioProject.class);
     when(vsProject.getName()).thenReturn("Example.CoreX");
     
     solution = mock(VisualStudioSolution.class);
     when(solution.getProject(any(File.class))).thenReturn(vsProject);
     when(solution.getProjectFromSonarProject(eq(project))).thenReturn(vsProject);
    
-    MicrosoftWindowsEnvironment microsoftWindowsEnvironment =  mock(MicrosoftWindowsEnvironment.class);
+    microsoftWindowsEnvironment =  mock(MicrosoftWindowsEnvironment.class);
     when(microsoftWindowsEnvironment.getCurrentSolution()).thenReturn(solution);
     
     
-    parser = new CoverageResultParser(context, microsoftWindowsEnvironment);
+    parser = new CoverageResultParser(microsoftWindowsEnvironment, new SolutionReportStore());
   }
 
   @Test
@@ -212,6 +217,68 @@ public class CoverageResultParserTest {
     assertTrue(result.isEmpty());
   }
 
+  @Test
+  public void testReportIsSharedByProjects() {
+    Project otherProject = setUpOtherProject();
+    SolutionReportStore reportStore = new SolutionReportStore();
+    File file = TestUtils.getResource("/Results/coverage/coverage-report-2.3.xml");
+
+    List<FileCoverage> files = new CoverageResultParser(microsoftWindowsEnvironment, reportStore).parse(project, file);
+    assertEquals(1, files.size());
+    assertTrue(StringUtils.endsWith(files.get(0).getFile().getPath(), "\\Money.cs"));
+    assertEquals(2, new CoverageResultParser(microsoftWindowsEnvironment, reportStore).parse(otherProject, file).size());
+    assertEquals(1, reportStore.getParseCount());
+    assertEquals(0, reportStore.getRetainedSize());
+  }
+
+  @Test
+  public void testLargeReportIsReadByProject() {
+    Project otherProject = setUpOtherProject();
+    CSharpConfiguration configuration = mock(CSharpConfiguration.class);
+    when(configuration.getInt(eq(CSharpConstants.REPORT_STORE_MAX_SIZE_KEY), anyInt())).thenReturn(0);
+
+    for (String report : new String[] { "coverage-report-2.3.xml", "Coverage.OpenCover.xml" }) {
+      SolutionReportStore reportStore = new SolutionReportStore(configuration);
+      final List<Integer> readFileCounts = new ArrayList<Integer>();
+      CoverageResultParser recordingParser = new CoverageResultParser(microsoftWindowsEnvironment, reportStore) {
+
+        @Override
+        public Collection<FileCoverage> read(File file, VisualStudioProject vsProject) {
+          Collection<FileCoverage> files = super.read(file, vsProject);
+          readFileCounts.add(files.size());
+          return files;
+        }
+      };
+      File file = TestUtils.getResource("/Results/coverage/" + report);
+
+      List<FileCoverage> files = recordingParser.parse(project, file);
+      assertEquals(1, files.size());
+      assertTrue(StringUtils.endsWith(files.get(0).getFile().getPath(), "\\Money.cs"));
+      assertEquals(2, recordingParser.parse(otherProject, file).size());
+      // each read keeps the files of one project only
+      assertEquals(Arrays.asList(1, 2), readFileCounts);
+      assertEquals(2, reportStore.getParseCount());
+      assertEquals(0, reportStore.getRetainedSize());
+    }
+  }
+
+  /**
+   * Puts Money.cs in the tested project, and the other files in another project.
+   */
+  private Project setUpOtherProject() {
+    final VisualStudioProject otherVsProject = mock(VisualStudioProject.class);
+    Project otherProject = mock(Project.class);
+    when(solution.getProjectFromSonarProject(eq(otherProject))).thenReturn(otherVsProject);
+    when(solution.getProject(any(File.class))).thenAnswer(new Answer<VisualStudioProject>() {
+
+      public VisualStudioProject answer(InvocationOnMock invocation) {
+        File file = (File) invocation.getArguments()[0];
+        return StringUtils.endsWith(file.getPath(), "\\Money.cs") ? vsProject : otherVsProject;
+      }
+    });
+    return otherProject;
+  }
+
   private void checkParsing(final ParsingParameters parameters) {
     File file = TestUtils.getResource("/Results/coverage/" + parameters.report);
     List<FileCoverage> files = parser.parse(project, file);
@@ -169,6 +169,61 @@ public class GallioResultParserTest {
 
   }
 
+  @Test
+  public void testRowTestKeepsItsLastResult() {
+    Collection<UnitTestReport> reports = parse("gallio-report-mbunit-sample.xml");
+    int rowTestResults = 0;
+    for (UnitTestReport report : reports) {
+      int failures = 0;
+      int errors = 0;
+      int skipped = 0;
+      for (TestCaseDetail detail : report.getDetails()) {
+        if ("RowsWithDifferentOutcomes".equals(detail.getName())) {
+          rowTestResults++;
+        }
+        if (detail.getStatus() == TestStatus.FAILED) {
+          failures++;
+        } else if (detail.getStatus() == TestStatus.ERROR) {
+          errors++;
+        } else if (detail.getStatus() == TestStatus.SKIPPED || detail.getStatus() == TestStatus.INCONCLUSIVE) {
+          skipped++;
+        }
+      }
+      // the indicators of the replaced results are not counted anymore
+      assertEquals(report.getDetails().size(), report.getTests());
+      assertEquals(failures, report.getFailures());
+      assertEquals(errors, report.getErrors());
+      assertEquals(skipped, report.getSkipped());
+    }
+    assertEquals(1, rowTestResults);
+  }
+
+  @Test
+  public void testFailureTextIsTruncated() {
+    TestCaseDetail fullDetail = findFailure(parse("gallio-report.xml"));
+    assertTrue(fullDetail.getErrorMessage().length() > 10);
+    assertTrue(fullDetail.getStackTrace().length() > 10);
+
+    parser = new GallioResultParser(10);
+    TestCaseDetail truncatedDetail = findFailure(parse("gallio-report.xml"));
+    assertEquals(fullDetail.getErrorMessage().substring(0, 10) + "...", truncatedDetail.getErrorMessage());
+    assertEquals(fullDetail.getStackTrace().substring(0, 10) + "...", truncatedDetail.getStackTrace());
+
+    parser = new GallioResultParser(fullDetail.getErrorMessage().length());
+    assertEquals(fullDetail.getErrorMessage(), findFailure(parse("gallio-report.xml")).getErrorMessage());
+  }
+
+  private static TestCaseDetail findFailure(Collection<UnitTestReport> reports) {
+    for (UnitTestReport report : reports) {
+      for (TestCaseDetail detail : report.getDetails()) {
+        if (detail.getStatus() == TestStatus.FAILED && detail.getErrorMessage() != null && detail.getStackTrace() != null) {
+          return detail;
+        }
+      }
+    }
+    throw new AssertionError("No failure with a message and a stack trace");
+  }
+
   /**
    * Test for jira ticket SONARPLUGINS-1005
    */
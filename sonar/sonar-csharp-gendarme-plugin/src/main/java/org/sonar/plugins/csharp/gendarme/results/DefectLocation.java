@@ -20,12 +20,8 @@
 
 package org.sonar.plugins.csharp.gendarme.results;
 
-import java.text.ParseException;
-
-import org.apache.commons.lang.StringUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import org.sonar.api.utils.ParsingUtils;
 
 /**
  * This class represents the location of a defect, i.e. a source file path and a line number
@@ -36,10 +32,12 @@ public final class DefectLocation {
 
   private static final Logger LOG = LoggerFactory.getLogger(DefectLocation.class);
 
-  private String path;
-  private Integer lineNumber;
+  private final String path;
+  private final Integer lineNumber;
 
-  private DefectLocation() {
+  private DefectLocation(String path, Integer lineNumber) {
+    this.path = path;
+    this.lineNumber = lineNumber;
   }
 
   /**
@@ -50,36 +48,44 @@ public final class DefectLocation {
    * @return a defect location object containing the parsing result
    */
   public static DefectLocation parse(String source) {
-    final DefectLocation result = new DefectLocation();
-
     final int lineNumberPosition = source.lastIndexOf('(');
-    if (lineNumberPosition != -1 && source.endsWith(")")) {
-      result.path = source.substring(0, lineNumberPosition);
-      String lineNumberInfo = source.substring(lineNumberPosition + 1, source.length() - 1);
-      if (StringUtils.contains(lineNumberInfo, ',')) {
-        // something like "123,34"
-        result.lineNumber = safeParseInt(StringUtils.substringBefore(lineNumberInfo, ","));
-      } else {
-        // something like "~123"
-        result.lineNumber = safeParseInt(lineNumberInfo.substring(1));
-      }
+    if (lineNumberPosition == -1 || !source.endsWith(")")) {
+      return new DefectLocation(source, null);
+    }
+    final int end = source.length() - 1;
+    final int columnPosition = source.indexOf(',', lineNumberPosition + 1);
+    final Integer lineNumber;
+    if (columnPosition != -1) {
+      // something like "123,34"
+      lineNumber = parseLineNumber(source, lineNumberPosition + 1, columnPosition);
     } else {
-      result.path = source;
+      // something like "~123"
+      lineNumber = parseLineNumber(source, lineNumberPosition + 2, end);
     }
-    return result;
+    return new DefectLocation(source.substring(0, lineNumberPosition), lineNumber);
   }
 
-  private static Integer safeParseInt(String lineStr) {
-    if (StringUtils.isBlank(lineStr)) {
-      LOG.debug("Empty string to parse to int");
-      return null;
+  /**
+   * Reads the number at the beginning of the given part of the source, character by character: an optional minus sign followed by digits,
+   * anything after them being ignored.
+   */
+  private static Integer parseLineNumber(String source, int start, int end) {
+    int index = start;
+    boolean negative = index < end && source.charAt(index) == '-';
+    if (negative) {
+      index++;
+    }
+    int digitsStart = index;
+    int value = 0;
+    while (index < end && source.charAt(index) >= '0' && source.charAt(index) <= '9') {
+      value = value * 10 + source.charAt(index) - '0';
+      index++;
     }
-    try {
-      return (int) ParsingUtils.parseNumber(lineStr);
-    } catch (ParseException ignore) {
-      LOG.debug("Int parsing error", ignore);
+    if (index == digitsStart) {
+      LOG.debug("No line number in {}", source);
       return null;
     }
+    return negative ? -value : value;
   }
 
   public String getPath() {
@@ -0,0 +1,94 @@
+/*
+ * Sonar C# Plugin :: Gendarme
+ * Copyright (C) 2010 Jose Chillan, Alexandre Victoor and SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+
+package org.sonar.plugins.csharp.gendarme.results;
+
+/**
+ * A defect read from a Gendarme report, with the key of its rule and the information of its target. Defects are immutable, so that they can be
+ * turned into violations on any thread.
+ */
+public final class GendarmeDefect {
+
+  private final String ruleKey;
+  private final String defaultMessage;
+  private final String targetName;
+  private final String targetAssembly;
+  private final String location;
+  private final String source;
+  private final String message;
+
+  /**
+   * Creates a defect.
+   * 
+   * @param ruleKey
+   *          the key of the rule which raised the defect
+   * @param defaultMessage
+   *          the description of the problem found by the rule, used when the defect has no message
+   * @param targetName
+   *          the name of the target, i.e. a type, a method or an assembly
+   * @param targetAssembly
+   *          the assembly of the target
+   * @param location
+   *          the location of the defect in the target
+   * @param source
+   *          the source file of the defect, with its line number if any
+   * @param message
+   *          the message of the defect
+   */
+  public GendarmeDefect(String ruleKey, String defaultMessage, String targetName, String targetAssembly, String location, String source,
+      String message) {
+    this.ruleKey = ruleKey;
+    this.defaultMessage = defaultMessage;
+    this.targetName = targetName;
+    this.targetAssembly = targetAssembly;
+    this.location = location;
+    this.source = source;
+    this.message = message;
+  }
+
+  public String getRuleKey() {
+    return ruleKey;
+  }
+
+  public String getDefaultMessage() {
+    return defaultMessage;
+  }
+
+  public String getTargetName() {
+    return targetName;
+  }
+
+  public String getTargetAssembly() {
+    return targetAssembly;
+  }
+
+  public String getLocation() {
+    return location;
+  }
+
+  public String getSource() {
+    return source;
+  }
+
+  public String getMessage() {
+    return message;
+  }
+
+}
@@ -34,19 +34,15 @@ import org.codehaus.staxmate.in.SMEvent;
 import org.codehaus.staxmate.in.SMHierarchicCursor;
 import org.codehaus.staxmate.in.SMInputCursor;
 import org.sonar.api.BatchExtension;
-import org.sonar.api.rules.Rule;
-import org.sonar.api.rules.RuleFinder;
-import org.sonar.api.rules.RuleQuery;
 import org.sonar.api.utils.SonarException;
+import org.sonar.plugins.csharp.api.ViolationSink;
 import org.sonar.plugins.csharp.core.AbstractStaxParser;
-import org.sonar.plugins.csharp.gendarme.GendarmeConstants;
 
 /**
  * Parses the reports generated by a Gendarme analysis.
  */
 public class GendarmeResultParser extends AbstractStaxParser implements BatchExtension {
 
-  private RuleFinder ruleFinder;
   private GendarmeViolationMaker gendarmeViolationMaker;
 
   /**
@@ -57,9 +53,8 @@ public class GendarmeResultParser extends AbstractStaxParser implements BatchExt
    * @param rulesManager
    * @param profile
    */
-  public GendarmeResultParser(RuleFinder ruleFinder, GendarmeViolationMaker gendarmeViolationMaker) {
+  public GendarmeResultParser(GendarmeViolationMaker gendarmeViolationMaker) {
     super();
-    this.ruleFinder = ruleFinder;
     this.gendarmeViolationMaker = gendarmeViolationMaker;
   }
 
@@ -69,14 +64,23 @@ public class GendarmeResultParser extends AbstractStaxParser implements BatchExt
    * @param file
    *          the file to parse
    */
-  public void parse(File file) {
+  public void parse(final File file) {
+    gendarmeViolationMaker.createSink().run(new ViolationSink.Producer() {
+
+      public void produce(ViolationSink sink) {
+        readReport(file, sink);
+      }
+    });
+  }
+
+  private void readReport(File file, ViolationSink sink) {
     SMInputFactory inputFactory = initStax();
     FileInputStream fileInputStream = null;
     try {
       fileInputStream = new FileInputStream(file);
       SMHierarchicCursor cursor = inputFactory.rootElementCursor(new InputStreamReader(fileInputStream, getEncoding()));
       SMInputCursor rulesCursor = cursor.advance().descendantElementCursor("rule");
-      parseRuleBlocs(rulesCursor);
+      parseRuleBlocs(rulesCursor, sink);
       cursor.getStreamReader().closeCompletely();
     } catch (XMLStreamException e) {
       throw new SonarException("Error while reading Gendarme result file: " + file.getAbsolutePath(), e);
@@ -87,48 +91,45 @@ public class GendarmeResultParser extends AbstractStaxParser implements BatchExt
     }
   }
 
-  private void parseRuleBlocs(SMInputCursor cursor) throws XMLStreamException {
-    RuleQuery ruleQuery = RuleQuery.create().withRepositoryKey(GendarmeConstants.REPOSITORY_KEY);
+  private void parseRuleBlocs(SMInputCursor cursor, ViolationSink sink) throws XMLStreamException {
     // Cursor is on <rule>
     while (cursor.getNext() != null) {
       if (cursor.getCurrEvent().equals(SMEvent.START_ELEMENT)) {
-        Rule currentRule = ruleFinder.find(ruleQuery.withKey(cursor.getAttrValue("Name")));
-        if (currentRule != null) {
-          String type = cursor.getAttrValue("Type");
-          if (StringUtils.isEmpty(type)) {
-            parseRuleDefects(cursor, currentRule);
-          } else {
-            gendarmeViolationMaker.registerRuleType(currentRule, type);
-          }
+        // the rule is looked for when the violations are saved
+        String ruleKey = cursor.getAttrValue("Name");
+        String type = cursor.getAttrValue("Type");
+        if (StringUtils.isEmpty(type)) {
+          parseRuleDefects(cursor, ruleKey, sink);
+        } else {
+          gendarmeViolationMaker.registerRuleType(ruleKey, type);
         }
       }
     }
   }
 
-  private void parseRuleDefects(SMInputCursor cursor, Rule currentRule) throws XMLStreamException {
-    gendarmeViolationMaker.setCurrentRule(currentRule);
-    gendarmeViolationMaker.setCurrentDefaultViolationMessage("");
+  private void parseRuleDefects(SMInputCursor cursor, String ruleKey, ViolationSink sink) throws XMLStreamException {
+    String defaultViolationMessage = "";
     SMInputCursor childCursor = cursor.childElementCursor();
     while (childCursor.getNext() != null) {
       if ("problem".equals(childCursor.getQName().getLocalPart())) {
-        gendarmeViolationMaker.setCurrentDefaultViolationMessage(childCursor.collectDescendantText().trim());
+        defaultViolationMessage = childCursor.collectDescendantText().trim();
       } else if ("target".equals(childCursor.getQName().getLocalPart())) {
-        parseTargetBloc(childCursor);
+        parseTargetBloc(childCursor, ruleKey, defaultViolationMessage, sink);
       }
     }
   }
 
-  private void parseTargetBloc(SMInputCursor cursor) throws XMLStreamException {
+  private void parseTargetBloc(SMInputCursor cursor, String ruleKey, String defaultViolationMessage, ViolationSink sink)
+      throws XMLStreamException {
     // Cursor is on <target>
-    gendarmeViolationMaker.setCurrentTargetName(cursor.getAttrValue("Name"));
-    gendarmeViolationMaker.setCurrentTargetAssembly(cursor.getAttrValue("Assembly"));
+    String targetName = cursor.getAttrValue("Name");
+    String targetAssembly = cursor.getAttrValue("Assembly");
     SMInputCursor defectCursor = cursor.childElementCursor();
     while (defectCursor.getNext() != null) {
       // Cursor is on <defect>
-      gendarmeViolationMaker.setCurrentLocation(defectCursor.getAttrValue("Location"));
-      gendarmeViolationMaker.setCurrentSource(defectCursor.getAttrValue("Source"));
-      gendarmeViolationMaker.setCurrentMessage(defectCursor.collectDescendantText().trim());
-      gendarmeViolationMaker.createViolation();
+      GendarmeDefect defect = new GendarmeDefect(ruleKey, defaultViolationMessage, targetName, targetAssembly,
+          defectCursor.getAttrValue("Location"), defectCursor.getAttrValue("Source"), defectCursor.collectDescendantText().trim());
+      sink.add(gendarmeViolationMaker.createRecord(defect));
     }
   }
 
@@ -20,7 +20,8 @@
 
 package org.sonar.plugins.csharp.gendarme.results;
 
-import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 import org.apache.commons.lang.StringUtils;
 import org.slf4j.Logger;
@@ -36,13 +37,19 @@ import org.sonar.dotnet.tools.commons.visualstudio.VisualStudioSolution;
 import org.sonar.plugins.csharp.api.CSharpResourcesBridge;
 import org.sonar.plugins.csharp.api.MicrosoftWindowsEnvironment;
 import org.sonar.plugins.csharp.api.ResourceHelper;
-
-import com.google.common.collect.Maps;
+import org.sonar.plugins.csharp.api.RuleIndex;
+import org.sonar.plugins.csharp.api.ViolationRecord;
+import org.sonar.plugins.csharp.api.ViolationSink;
+import org.sonar.plugins.csharp.gendarme.GendarmeConstants;
 
 /**
- * Creates violations based on a set of information, normally given by the {@link GendarmeResultParser}.
+ * Creates violations based on a set of information, normally given by the {@link GendarmeResultParser}.<br/>
+ * Each {@link GendarmeDefect} is first turned into a {@link ViolationRecord}, which does not require the sensor context, then resolved
+ * into a violation. Both steps only depend on their argument and on caches shared by all the defects, so they can be called from several
+ * threads. The rule of a violation is only looked for when the record is resolved, which happens on the thread of the sensor when the
+ * violations are saved through a {@link ViolationSink}.
  */
-public class GendarmeViolationMaker implements BatchExtension {
+public class GendarmeViolationMaker implements BatchExtension, ViolationSink.Resolver {
 
   private static final Logger LOG = LoggerFactory.getLogger(GendarmeViolationMaker.class);
 
@@ -50,20 +57,16 @@ public class GendarmeViolationMaker implements BatchExtension {
   private VisualStudioProject vsProject;
   private Project project;
   private SensorContext context;
+  private RuleIndex ruleIndex;
   private CSharpResourcesBridge resourcesBridge;
   private ResourceHelper resourceHelper;
-  
 
-  private Map<Rule, String> rulesTypeMap = Maps.newHashMap();
   private static final String TYPE_METHOD = "Method";
   private static final String TYPE_ASSEMBLY = "Assembly";
-  private Rule currentRule;
-  private String currentDefaultViolationMessage;
-  private String currentTargetName;
-  private String currentTargetAssembly;
-  private String currentLocation;
-  private String currentSource;
-  private String currentMessage;
+  private final ConcurrentMap<String, String> rulesTypeMap = new ConcurrentHashMap<String, String>();
+  private final TypeNameDecoder typeNameDecoder = new TypeNameDecoder();
+  private final ConcurrentMap<String, Resource<?>> fileResources = new ConcurrentHashMap<String, Resource<?>>();
+  private final ConcurrentMap<String, Boolean> pathsOutsideProject = new ConcurrentHashMap<String, Boolean>();
 
   /**
    * Constructs a @link{GendarmeResultParser}.
@@ -73,7 +76,7 @@ public class GendarmeViolationMaker implements BatchExtension {
    * @param rulesManager
    * @param profile
    */
-  public GendarmeViolationMaker(MicrosoftWindowsEnvironment env, Project project, SensorContext context, CSharpResourcesBridge resourcesBridge, ResourceHelper resourceHelper) {
+  public GendarmeViolationMaker(MicrosoftWindowsEnvironment env, Project project, SensorContext context, RuleIndex ruleIndex, CSharpResourcesBridge resourcesBridge, ResourceHelper resourceHelper) {
     super();
     this.vsSolution = env.getCurrentSolution();
     if (vsSolution==null) {
@@ -83,69 +86,120 @@ public class GendarmeViolationMaker implements BatchExtension {
     this.vsProject = vsSolution.getProjectFromSonarProject(project);
     this.project = project;
     this.context = context;
+    this.ruleIndex = ruleIndex;
     this.resourcesBridge = resourcesBridge;
     this.resourceHelper = resourceHelper;
   }
 
   /**
-   * Creates a violation, given the elements that the class has in hands.
+   * Creates the violation of a defect and saves it.
    * 
+   * @param defect
+   *          the defect
    * @return the created violation
    */
-  public Violation createViolation() {
+  public Violation createViolation(GendarmeDefect defect) {
+    Violation violation = resolve(createRecord(defect));
+    if (violation != null) {
+      context.saveViolation(violation);
+    }
+    return violation;
+  }
+
+  /**
+   * @return a sink saving the violations resolved by this object
+   */
+  public ViolationSink createSink() {
+    return new ViolationSink(context, this);
+  }
+
+  /**
+   * Creates the record of the violation of a defect.
+   * 
+   * @param defect
+   *          the defect
+   * @return the record
+   */
+  public ViolationRecord createRecord(GendarmeDefect defect) {
+    String ruleKey = defect.getRuleKey();
+    String message = StringUtils.isEmpty(defect.getMessage()) ? defect.getDefaultMessage() : defect.getMessage();
+    String ruleType = rulesTypeMap.get(ruleKey);
+    final ViolationRecord record;
+    if (StringUtils.isNotEmpty(defect.getSource())) {
+      // Too easy, let's use the source information
+      DefectLocation defectLocation = DefectLocation.parse(defect.getSource());
+      record = new ViolationRecord(ruleKey, defectLocation.getPath(), defectLocation.getLineNumber(), message);
+    } else if (TYPE_ASSEMBLY.equals(ruleType)) {
+      // No type to look for, this will be created on the project
+      LOG.trace("Violation on assembly: {}", defect.getTargetAssembly());
+      record = new ViolationRecord(ruleKey, null, null, message);
+    } else {
+      // No source information, the corresponding resource will be detected through the CSharpResourceBridge
+      boolean method = TYPE_METHOD.equals(ruleType);
+      record = new ViolationRecord(ruleKey, null, null, message, typeNameDecoder.decode(defect.getLocation(), method),
+          typeNameDecoder.decode(defect.getTargetName(), method));
+    }
+    return record;
+  }
+
+  /**
+   * Creates the violation of a record, without saving it.
+   * 
+   * @param record
+   *          the record
+   * @return the violation, or <code>null</code> if the rule is unknown or if the violation is not on the current project
+   */
+  public Violation resolve(ViolationRecord record) {
+    Rule rule = ruleIndex.findByKey(GendarmeConstants.REPOSITORY_KEY, record.getRuleKey());
+    if (rule == null) {
+      return null;
+    }
     final Resource<?> resource;
-    Integer line = null;
-    if (StringUtils.isEmpty(currentSource)) {
-      // No source information, need to detect the corresponding resource through the CSharpResourceBridge
-      resource = detectResource();
-      if (resource == null) {
-        LOG.info("Could not find corresponding resource for the violation on {}.", currentTargetName);
-      }
+    if (record.getPath() != null) {
+      resource = findFile(record.getPath());
+    } else if (record.getTypeNameCount() == 0) {
+      resource = project;
     } else {
-      // Too easy, let's use the source information
-      DefectLocation defectLocation = DefectLocation.parse(currentSource);
-      java.io.File sourceFile = new java.io.File(defectLocation.getPath()).getAbsoluteFile();
+      resource = detectResource(record);
+    }
+    return createViolationOnResource(record, rule, resource);
+  }
+
+  /**
+   * Many defects are located in the same source files, so the resource of each path is only computed once.
+   */
+  private Resource<?> findFile(String path) {
+    Resource<?> resource = fileResources.get(path);
+    if (resource == null && !pathsOutsideProject.containsKey(path)) {
+      java.io.File sourceFile = new java.io.File(path).getAbsoluteFile();
       VisualStudioProject currentVsProject = vsSolution.getProject(sourceFile);
       if (vsProject.equals(currentVsProject)) {
         resource = org.sonar.api.resources.File.fromIOFile(sourceFile, project);
+        if (resource != null) {
+          fileResources.put(path, resource);
+        }
       } else {
         LOG.debug("Ignoring file outside current project : {}", sourceFile);
-        resource = null;
+        pathsOutsideProject.put(path, Boolean.TRUE);
       }
-      line = defectLocation.getLineNumber();
     }
-    
-    return createViolationOnResource(resource, line);
+    return resource;
   }
 
-  private Resource<?> detectResource() {
-    Resource<?> foundResource = project;
-    if (TYPE_ASSEMBLY.equals(rulesTypeMap.get(currentRule))) {
-      // Do nothing, this will be created on the project
-      LOG.trace("Violation on assembly: {}", currentTargetAssembly);
-    } else {
-      // Type or method
-      foundResource = tryDetection(currentLocation);
-      if (foundResource == null) {
-        foundResource = tryDetection(currentTargetName);
-      }
+  private Resource<?> detectResource(ViolationRecord record) {
+    Resource<?> foundResource = null;
+    for (int i = 0; i < record.getTypeNameCount() && foundResource == null; i++) {
+      foundResource = resourcesBridge.getFromTypeName(record.getTypeName(i));
     }
-    return foundResource;
-  }
-
-  private Resource<?> tryDetection(String resourceIdentifier) {
-    // For types, the currentLocation is the key
-    String resourceKey = resourceIdentifier.replaceAll("/", ".");
-    if (TYPE_METHOD.equals(rulesTypeMap.get(currentRule))) {
-      resourceKey = StringUtils.substringBefore(resourceKey, "::");
-      resourceKey = StringUtils.substringAfterLast(resourceKey, " ");
+    if (foundResource == null) {
+      LOG.info("Could not find corresponding resource for the violation on {}.", record.getTypeName(record.getTypeNameCount() - 1));
     }
-    return resourcesBridge.getFromTypeName(resourceKey);
+    return foundResource;
   }
 
-  private Violation createViolationOnResource(Resource<?> resource, Integer lineNumber) {
-    if (StringUtils.isNotEmpty(currentSource) && resource == null) {
-      LOG.debug("Ignoring violation on file outside current project ({})", currentSource);
+  private Violation createViolationOnResource(ViolationRecord record, Rule rule, Resource<?> resource) {
+    if (record.getPath() != null && resource == null) {
+      LOG.debug("Ignoring violation on file outside current project ({})", record.getPath());
       return null;
     }
     if (resource!=null && !resourceHelper.isResourceInProject(resource, project)) {
@@ -153,78 +207,17 @@ public class GendarmeViolationMaker implements BatchExtension {
       return null;
     }
     
-    Violation violation = Violation.create(currentRule, resource);
-    if (lineNumber != null) {
-      violation.setLineId(lineNumber);
-    }
-    if (StringUtils.isEmpty(currentMessage)) {
-      violation.setMessage(currentDefaultViolationMessage);
-    } else {
-      violation.setMessage(currentMessage);
+    Violation violation = Violation.create(rule, resource);
+    if (record.getLine() != null) {
+      violation.setLineId(record.getLine());
     }
-    violation.setSeverity(currentRule.getSeverity());
-    context.saveViolation(violation);
+    violation.setMessage(record.getMessage());
+    violation.setSeverity(rule.getSeverity());
     return violation;
   }
 
-  protected void registerRuleType(Rule rule, String type) {
-    rulesTypeMap.put(rule, type);
-  }
-
-  /**
-   * @param currentRule
-   *          the currentRule to set
-   */
-  protected void setCurrentRule(Rule currentRule) {
-    this.currentRule = currentRule;
-  }
-
-  /**
-   * @param currentDefaultViolationMessage
-   *          the currentDefaultViolationMessage to set
-   */
-  protected void setCurrentDefaultViolationMessage(String currentDefaultViolationMessage) {
-    this.currentDefaultViolationMessage = currentDefaultViolationMessage;
-  }
-
-  /**
-   * @param currentTargetName
-   *          the currentTargetName to set
-   */
-  protected void setCurrentTargetName(String currentTargetName) {
-    this.currentTargetName = currentTargetName;
-  }
-
-  /**
-   * @param currentTargetAssembly
-   *          the currentTargetAssembly to set
-   */
-  protected void setCurrentTargetAssembly(String currentTargetAssembly) {
-    this.currentTargetAssembly = currentTargetAssembly;
-  }
-
-  /**
-   * @param currentLocation
-   *          the currentLocation to set
-   */
-  protected void setCurrentLocation(String currentLocation) {
-    this.currentLocation = currentLocation;
-  }
-
-  /**
-   * @param currentSource
-   *          the currentSource to set
-   */
-  protected void setCurrentSource(String currentSource) {
-    this.currentSource = currentSource;
-  }
-
-  /**
-   * @param currentMessage
-   *          the currentMessage to set
-   */
-  protected void setCurrentMessage(String currentMessage) {
-    this.currentMessage = currentMessage;
+  protected void registerRuleType(String ruleKey, String type) {
+    rulesTypeMap.put(ruleKey, type);
   }
 
 }
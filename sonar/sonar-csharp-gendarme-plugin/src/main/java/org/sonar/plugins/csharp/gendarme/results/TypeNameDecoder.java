@@ -0,0 +1,85 @@
+/*
+ * Sonar C# Plugin :: Gendarme
+ * Copyright (C) 2010 Jose Chillan, Alexandre Victoor and SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+
+package org.sonar.plugins.csharp.gendarme.results;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Decodes the type names used as keys by the C# resources bridge from the targets and locations of Gendarme defects, such as
+ * "Example.Core.IMoney/InnerClass" for a type or "Example.Core.IMoney Example.Core.Money::AddMoney(Example.Core.Money)" for a method.<br/>
+ * The same types and methods are reported by many rules, so decoded names are remembered. This class is thread-safe.
+ */
+final class TypeNameDecoder {
+
+  /**
+   * Number of names beyond which decoded names are not remembered anymore, to bound the memory used by huge reports
+   */
+  static final int MAX_CACHED_NAMES = 50000;
+
+  private final ConcurrentMap<String, String> typeNames = new ConcurrentHashMap<String, String>();
+  private final ConcurrentMap<String, String> methodTypeNames = new ConcurrentHashMap<String, String>();
+
+  /**
+   * Decodes the type name of a Gendarme target or location.
+   * 
+   * @param identifier
+   *          the target or location
+   * @param method
+   *          <code>true</code> if the identifier is the signature of a method, in which case the name of its declaring type is returned
+   * @return the type name, empty if the signature of a method has no declaring type
+   */
+  String decode(String identifier, boolean method) {
+    ConcurrentMap<String, String> names = method ? methodTypeNames : typeNames;
+    String typeName = names.get(identifier);
+    if (typeName == null) {
+      typeName = method ? decodeMethod(identifier) : decodeType(identifier, 0, identifier.length());
+      if (names.size() < MAX_CACHED_NAMES) {
+        names.put(identifier, typeName);
+      }
+    }
+    return typeName;
+  }
+
+  /**
+   * "ReturnType Declaring.Type::Method(Parameters)" gives "Declaring.Type".
+   */
+  private static String decodeMethod(String signature) {
+    int end = signature.indexOf("::");
+    if (end < 0) {
+      end = signature.length();
+    }
+    int start = signature.lastIndexOf(' ', end - 1);
+    if (start < 0) {
+      return "";
+    }
+    return decodeType(signature, start + 1, end);
+  }
+
+  /**
+   * Nested types are separated by a slash in Gendarme reports, and by a dot in the keys of the C# resources bridge.
+   */
+  private static String decodeType(String identifier, int start, int end) {
+    // String.replace(char, char) works on the characters, unlike String.replaceAll which compiles a regular expression
+    return identifier.substring(start, end).replace('/', '.');
+  }
+
+}
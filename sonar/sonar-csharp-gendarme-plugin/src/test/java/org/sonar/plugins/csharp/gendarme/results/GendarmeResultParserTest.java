@@ -20,8 +20,8 @@
 
 package org.sonar.plugins.csharp.gendarme.results;
 
+import static org.junit.Assert.assertEquals;
 import static org.mockito.Matchers.any;
-import static org.mockito.Matchers.anyObject;
 import static org.mockito.Matchers.anyString;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.times;
@@ -30,31 +30,29 @@ import static org.mockito.Mockito.when;
 
 import java.io.File;
 import java.nio.charset.Charset;
-import java.util.Map;
 
 import org.junit.Before;
 import org.junit.Test;
-import org.mockito.invocation.InvocationOnMock;
-import org.mockito.stubbing.Answer;
-import org.sonar.api.rules.Rule;
-import org.sonar.api.rules.RuleFinder;
-import org.sonar.api.rules.RuleQuery;
+import org.mockito.ArgumentCaptor;
+import org.sonar.api.batch.SensorContext;
+import org.sonar.plugins.csharp.api.ViolationRecord;
+import org.sonar.plugins.csharp.api.ViolationSink;
 import org.sonar.test.TestUtils;
 
-import com.google.common.collect.Maps;
-
 public class GendarmeResultParserTest {
 
   private GendarmeResultParser parser;
   private GendarmeViolationMaker violationMaker;
   private File resultFile;
-  private Rule avoidRedundancyInMethodNameRule;
 
   @Before
   public void init() {
     violationMaker = mock(GendarmeViolationMaker.class);
+    ViolationSink sink = new ViolationSink(mock(SensorContext.class), violationMaker);
+    when(violationMaker.createSink()).thenReturn(sink);
+    when(violationMaker.createRecord(any(GendarmeDefect.class))).thenReturn(new ViolationRecord(null, null, null, null));
 
-    parser = new GendarmeResultParser(newRuleFinder(), violationMaker);
+    parser = new GendarmeResultParser(violationMaker);
     parser.setEncoding(Charset.forName("UTF-8"));
     resultFile = TestUtils.getResource("/Results/gendarme-report.xml");
   }
@@ -63,43 +61,22 @@ public class GendarmeResultParserTest {
   public void testParseFile() throws Exception {
     parser.parse(resultFile);
 
-    verify(violationMaker, times(20)).createViolation();
-    verify(violationMaker, times(10)).registerRuleType(any(Rule.class), anyString());
-
-    verify(violationMaker).setCurrentRule(avoidRedundancyInMethodNameRule);
-    verify(violationMaker)
-        .setCurrentDefaultViolationMessage(
-            "This method's name includes the type name of the first parameter. This usually makes an API more verbose and less future-proof than necessary.");
-    verify(violationMaker).setCurrentTargetName("Example.Core.IMoney Example.Core.IMoney::AddMoney(Example.Core.Money)");
-    verify(violationMaker).setCurrentLocation("Example.Core.IMoney Example.Core.IMoney::AddMoney(Example.Core.Money)");
-  }
-
-  private RuleFinder newRuleFinder() {
-    final Map<String, Rule> rulesMap = Maps.newHashMap();
-    avoidRedundancyInMethodNameRule = Rule.create("gendarme", "AvoidRedundancyInMethodNameRule", "AvoidRedundancyInMethodNameRule");
-    rulesMap.put("AvoidRedundancyInMethodNameRule", avoidRedundancyInMethodNameRule);
-    rulesMap.put("AvoidSmallNamespaceRule", Rule.create("gendarme", "AvoidSmallNamespaceRule", "AvoidSmallNamespaceRule"));
-    rulesMap.put("AvoidSwitchStatementsRule", Rule.create("gendarme", "AvoidSwitchStatementsRule", "AvoidSwitchStatementsRule"));
-    rulesMap.put("AvoidUnusedParametersRule", Rule.create("gendarme", "AvoidUnusedParametersRule", "AvoidUnusedParametersRule"));
-    rulesMap.put("ConsiderUsingStaticTypeRule", Rule.create("gendarme", "ConsiderUsingStaticTypeRule", "ConsiderUsingStaticTypeRule"));
-    rulesMap.put("ImplementEqualsTypeRule", Rule.create("gendarme", "ImplementEqualsTypeRule", "ImplementEqualsTypeRule"));
-    rulesMap.put("MarkAssemblyWithCLSCompliantRule",
-        Rule.create("gendarme", "MarkAssemblyWithCLSCompliantRule", "MarkAssemblyWithCLSCompliantRule"));
-    rulesMap.put("MarkEnumerationsAsSerializableRule",
-        Rule.create("gendarme", "MarkEnumerationsAsSerializableRule", "MarkEnumerationsAsSerializableRule"));
-    rulesMap.put("MethodCanBeMadeStaticRule", Rule.create("gendarme", "MethodCanBeMadeStaticRule", "MethodCanBeMadeStaticRule"));
-    rulesMap.put("ReviewInconsistentIdentityRule",
-        Rule.create("gendarme", "ReviewInconsistentIdentityRule", "ReviewInconsistentIdentityRule"));
-
-    RuleFinder ruleFinder = mock(RuleFinder.class);
-    when(ruleFinder.find((RuleQuery) anyObject())).thenAnswer(new Answer<Rule>() {
+    ArgumentCaptor<GendarmeDefect> defects = ArgumentCaptor.forClass(GendarmeDefect.class);
+    verify(violationMaker, times(20)).createRecord(defects.capture());
+    verify(violationMaker, times(20)).resolve(any(ViolationRecord.class));
+    verify(violationMaker, times(185)).registerRuleType(anyString(), anyString());
 
-      public Rule answer(InvocationOnMock iom) throws Throwable {
-        RuleQuery query = (RuleQuery) iom.getArguments()[0];
-        return rulesMap.get(query.getKey());
+    GendarmeDefect defect = null;
+    for (GendarmeDefect capturedDefect : defects.getAllValues()) {
+      if (defect == null && "AvoidRedundancyInMethodNameRule".equals(capturedDefect.getRuleKey())) {
+        defect = capturedDefect;
       }
-    });
-    return ruleFinder;
+    }
+    assertEquals(
+        "This method's name includes the type name of the first parameter. This usually makes an API more verbose and less future-proof than necessary.",
+        defect.getDefaultMessage());
+    assertEquals("Example.Core.IMoney Example.Core.IMoney::AddMoney(Example.Core.Money)", defect.getTargetName());
+    assertEquals("Example.Core.IMoney Example.Core.IMoney::AddMoney(Example.Core.Money)", defect.getLocation());
   }
 
 }
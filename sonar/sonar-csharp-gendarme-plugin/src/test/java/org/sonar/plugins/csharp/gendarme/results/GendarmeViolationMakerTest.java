@@ -36,13 +36,16 @@ import org.sonar.api.resources.Project;
 import org.sonar.api.resources.ProjectFileSystem;
 import org.sonar.api.resources.Resource;
 import org.sonar.api.rules.Rule;
+import org.sonar.api.rules.RuleFinder;
 import org.sonar.api.rules.RulePriority;
+import org.sonar.api.rules.RuleQuery;
 import org.sonar.api.rules.Violation;
 import org.sonar.dotnet.tools.commons.visualstudio.VisualStudioProject;
 import org.sonar.dotnet.tools.commons.visualstudio.VisualStudioSolution;
 import org.sonar.plugins.csharp.api.CSharpResourcesBridge;
 import org.sonar.plugins.csharp.api.MicrosoftWindowsEnvironment;
 import org.sonar.plugins.csharp.api.ResourceHelper;
+import org.sonar.plugins.csharp.api.RuleIndex;
 
 import com.google.common.collect.Lists;
 
@@ -55,15 +58,26 @@ public class GendarmeViolationMakerTest {
   private static SensorContext context;
   private static CSharpResourcesBridge resourcesBridge;
   private static MicrosoftWindowsEnvironment env; 
+  private static RuleIndex ruleIndex;
   private static Rule aRule;
   private static Resource aFileIMoney;
   private static Resource aFileMoney;
+  private String ruleKey;
+  private String defaultMessage;
+  private String targetName;
+  private String targetAssembly;
+  private String location;
+  private String source;
+  private String message;
 
   @BeforeClass
   public static void init() {
     aRule = Rule.create("gendarme", "Rule", "Rule").setSeverity(RulePriority.BLOCKER);
     aFileIMoney = new org.sonar.api.resources.File("IMoney");
     aFileMoney = new org.sonar.api.resources.File("Money");
+    RuleFinder ruleFinder = mock(RuleFinder.class);
+    when(ruleFinder.find(any(RuleQuery.class))).thenReturn(aRule);
+    ruleIndex = new RuleIndex(ruleFinder);
 
     env = mock(MicrosoftWindowsEnvironment.class);
     VisualStudioSolution solution = mock(VisualStudioSolution.class);
@@ -85,30 +99,30 @@ public class GendarmeViolationMakerTest {
   @Before
   public void reinitViolationMaker() {
     context = mock(SensorContext.class);
-    violationMaker = new GendarmeViolationMaker(env, project, context, resourcesBridge, resourceHelper);
-    violationMaker.setCurrentRule(aRule);
-    violationMaker.setCurrentDefaultViolationMessage("Default Message");
-    violationMaker.setCurrentTargetName("Example.Core.IMoney Example.Core.Money::AddMoney(Example.Core.Money)");
-    violationMaker.setCurrentTargetAssembly("Example.Core, Version=1.0.0.0, Culture=neutral, PublicKeyToken=null");
-    violationMaker.setCurrentLocation("Example.Core.IMoney Example.Core.Money::AddMoney(Example.Core.Money)");
-    violationMaker.setCurrentSource("");
-    violationMaker.setCurrentMessage("Message");
+    violationMaker = new GendarmeViolationMaker(env, project, context, ruleIndex, resourcesBridge, resourceHelper);
+    ruleKey = aRule.getKey();
+    defaultMessage = "Default Message";
+    targetName = "Example.Core.IMoney Example.Core.Money::AddMoney(Example.Core.Money)";
+    targetAssembly = "Example.Core, Version=1.0.0.0, Culture=neutral, PublicKeyToken=null";
+    location = "Example.Core.IMoney Example.Core.Money::AddMoney(Example.Core.Money)";
+    source = "";
+    message = "Message";
   }
 
   @Test
   public void testCreateViolationWithNoResourceFound() throws Exception {
-    violationMaker.registerRuleType(aRule, "Assembly");
-    violationMaker.setCurrentTargetName("Foo)");
-    violationMaker.setCurrentLocation("Foo");
-    Violation violation = violationMaker.createViolation();
+    violationMaker.registerRuleType(aRule.getKey(), "Assembly");
+    targetName = "Foo)";
+    location = "Foo";
+    Violation violation = createViolation();
     assertThat(violation.getResource(), is((Resource) project));
     assertNull(violation.getLineId());
   }
 
   @Test
   public void testCreateViolationOnAssembly() throws Exception {
-    violationMaker.registerRuleType(aRule, "Assembly");
-    Violation violation = violationMaker.createViolation();
+    violationMaker.registerRuleType(aRule.getKey(), "Assembly");
+    Violation violation = createViolation();
     assertThat(violation.getResource(), is((Resource) project));
     assertThat(violation.getSeverity(), is(RulePriority.BLOCKER));
     assertNull(violation.getLineId());
@@ -116,53 +130,61 @@ public class GendarmeViolationMakerTest {
 
   @Test
   public void testCreateViolationWithNoSourceInfoButLocationForMethod() throws Exception {
-    violationMaker.registerRuleType(aRule, "Method");
-    Violation violation = violationMaker.createViolation();
+    violationMaker.registerRuleType(aRule.getKey(), "Method");
+    Violation violation = createViolation();
     assertThat(violation.getResource(), is(aFileMoney));
     assertNull(violation.getLineId());
   }
 
   @Test
   public void testCreateViolationWithNoSourceInfoButLocationForType() throws Exception {
-    violationMaker.registerRuleType(aRule, "Type");
-    violationMaker.setCurrentLocation("Example.Core.IMoney");
-    Violation violation = violationMaker.createViolation();
+    violationMaker.registerRuleType(aRule.getKey(), "Type");
+    location = "Example.Core.IMoney";
+    Violation violation = createViolation();
     assertThat(violation.getResource(), is(aFileIMoney));
     assertNull(violation.getLineId());
   }
 
   @Test
   public void testCreateViolationWithNoSourceInfoAndNoLocationForMethod() throws Exception {
-    violationMaker.registerRuleType(aRule, "Method");
-    violationMaker.setCurrentLocation("");
-    Violation violation = violationMaker.createViolation();
+    violationMaker.registerRuleType(aRule.getKey(), "Method");
+    location = "";
+    Violation violation = createViolation();
     assertThat(violation.getResource(), is(aFileMoney));
     assertNull(violation.getLineId());
   }
 
   @Test
   public void testCreateViolationWithNoSourceInfoAndNoLocationForType() throws Exception {
-    violationMaker.registerRuleType(aRule, "Type");
-    violationMaker.setCurrentLocation("");
-    violationMaker.setCurrentTargetName("Example.Core.IMoney");
-    Violation violation = violationMaker.createViolation();
+    violationMaker.registerRuleType(aRule.getKey(), "Type");
+    location = "";
+    targetName = "Example.Core.IMoney";
+    Violation violation = createViolation();
     assertThat(violation.getResource(), is(aFileIMoney));
     assertNull(violation.getLineId());
   }
 
   @Test
   public void testCreateViolationWithNoSourceInfoButLocationForInnerType() throws Exception {
-    violationMaker.registerRuleType(aRule, "Type");
-    violationMaker.setCurrentLocation("Example.Core.IMoney/InnerClass");
-    Violation violation = violationMaker.createViolation();
+    violationMaker.registerRuleType(aRule.getKey(), "Type");
+    location = "Example.Core.IMoney/InnerClass";
+    Violation violation = createViolation();
     assertThat(violation.getResource(), is(aFileIMoney));
     assertNull(violation.getLineId());
   }
 
+  @Test
+  public void testViolationOfUnknownRuleIsIgnored() throws Exception {
+    violationMaker = new GendarmeViolationMaker(env, project, context, new RuleIndex(mock(RuleFinder.class)), resourcesBridge,
+        resourceHelper);
+    assertNull(createViolation());
+    verify(context, never()).saveViolation(any(Violation.class));
+  }
+
   @Test
   public void testCreateViolationWithMessage() throws Exception {
-    violationMaker.setCurrentSource("C:\\Sonar\\Example\\Example.Core\\Money.cs");
-    Violation violation = violationMaker.createViolation();
+    source = "C:\\Sonar\\Example\\Example.Core\\Money.cs";
+    Violation violation = createViolation();
     assertThat(violation.getResource().getKey(), is("Example.Core/Money.cs"));
     assertNull(violation.getLineId());
     assertThat(violation.getMessage(), is("Message"));
@@ -170,45 +192,63 @@ public class GendarmeViolationMakerTest {
   
   @Test
   public void testCreateViolationOutsideProject() throws Exception {
-    violationMaker.setCurrentSource("C:\\Outside\\Example\\Example.Core\\Money.cs");
-    Violation violation = violationMaker.createViolation();
+    source = "C:\\Outside\\Example\\Example.Core\\Money.cs";
+    Violation violation = createViolation();
     assertNull(violation);
     verifyZeroInteractions(context);
   }
 
   @Test
   public void testCreateViolationWithNoMessage() throws Exception {
-    violationMaker.setCurrentSource("C:\\Sonar\\Example\\Example.Core\\Money.cs");
-    violationMaker.setCurrentMessage("");
-    Violation violation = violationMaker.createViolation();
+    source = "C:\\Sonar\\Example\\Example.Core\\Money.cs";
+    message = "";
+    Violation violation = createViolation();
     assertThat(violation.getResource().getKey(), is("Example.Core/Money.cs"));
     assertThat(violation.getMessage(), is("Default Message"));
   }
 
   @Test
   public void testCreateViolationWithSourceInfoButNoLine() throws Exception {
-    violationMaker.setCurrentSource("C:\\Sonar\\Example\\Example.Core\\Money.cs");
-    Violation violation = violationMaker.createViolation();
+    source = "C:\\Sonar\\Example\\Example.Core\\Money.cs";
+    Violation violation = createViolation();
     assertThat(violation.getResource().getKey(), is("Example.Core/Money.cs"));
     assertNull(violation.getLineId());
   }
 
   @Test
   public void testCreateViolationWithSourceInfoAndOnlyLine() throws Exception {
-    violationMaker.setCurrentSource("C:\\Sonar\\Example\\Example.Core\\Money.cs(~56)");
-    Violation violation = violationMaker.createViolation();
+    source = "C:\\Sonar\\Example\\Example.Core\\Money.cs(~56)";
+    Violation violation = createViolation();
     assertThat(violation.getResource().getKey(), is("Example.Core/Money.cs"));
     assertThat(violation.getLineId(), is(56));
   }
 
   @Test
   public void testCreateViolationWithSourceInfoAndLineAndColumn() throws Exception {
-    violationMaker.setCurrentSource("C:\\Sonar\\Example\\Example.Core\\Money.cs(56,45)");
-    Violation violation = violationMaker.createViolation();
+    source = "C:\\Sonar\\Example\\Example.Core\\Money.cs(56,45)";
+    Violation violation = createViolation();
     assertThat(violation.getResource().getKey(), is("Example.Core/Money.cs"));
     assertThat(violation.getLineId(), is(56));
   }
 
+  @Test
+  public void testSourceFileIsResolvedOnce() throws Exception {
+    VisualStudioSolution solution = env.getCurrentSolution();
+    source = "C:\\Sonar\\Example\\Example.Core\\IMoney.cs(~12)";
+    createViolation();
+    source = "C:\\Sonar\\Example\\Example.Core\\IMoney.cs(~56)";
+    Violation violation = createViolation();
+    assertThat(violation.getLineId(), is(56));
+    source = "C:\\Sonar\\Example\\Example.Core\\IMoney.cs(~78)";
+    createViolation();
+    verify(solution, times(1)).getProject(new File("C:\\Sonar\\Example\\Example.Core\\IMoney.cs").getAbsoluteFile());
+    verify(context, times(3)).saveViolation(any(Violation.class));
+  }
+
+  private Violation createViolation() {
+    return violationMaker.createViolation(new GendarmeDefect(ruleKey, defaultMessage, targetName, targetAssembly, location, source, message));
+  }
+
   @SuppressWarnings("unchecked")
   private static CSharpResourcesBridge createFakeBridge() {
     CSharpResourcesBridge bridge = mock(CSharpResourcesBridge.class);
@@ -0,0 +1,53 @@
+/*
+ * Sonar C# Plugin :: Gendarme
+ * Copyright (C) 2010 Jose Chillan, Alexandre Victoor and SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+
+package org.sonar.plugins.csharp.gendarme.results;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+import org.junit.Test;
+
+public class TypeNameDecoderTest {
+
+  private TypeNameDecoder decoder = new TypeNameDecoder();
+
+  @Test
+  public void testDecodeType() {
+    assertEquals("Example.Core.IMoney", decoder.decode("Example.Core.IMoney", false));
+    assertEquals("Example.Core.IMoney.InnerClass", decoder.decode("Example.Core.IMoney/InnerClass", false));
+  }
+
+  @Test
+  public void testDecodeMethod() {
+    assertEquals("Example.Core.Money", decoder.decode("Example.Core.IMoney Example.Core.Money::AddMoney(Example.Core.Money)", true));
+    assertEquals("Example.Core.Money.Inner", decoder.decode("System.Void Example.Core.Money/Inner::Run()", true));
+    assertEquals("", decoder.decode("Example.Core.Money", true));
+    assertEquals("", decoder.decode("", true));
+  }
+
+  @Test
+  public void testDecodedNamesAreRemembered() {
+    String typeName = decoder.decode("System.Void Example.Core.Money/Inner::Run()", true);
+    assertSame(typeName, decoder.decode("System.Void Example.Core.Money/Inner::Run()", true));
+    assertEquals("System.Void Example.Core.Money.Inner::Run()", decoder.decode("System.Void Example.Core.Money/Inner::Run()", false));
+  }
+
+}
@@ -24,6 +24,13 @@ import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileNotFoundException;
 import java.io.InputStreamReader;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 import javax.xml.stream.XMLStreamException;
 
@@ -37,10 +44,13 @@ import org.sonar.api.BatchExtension;
 import org.sonar.api.batch.SensorContext;
 import org.sonar.api.resources.Project;
 import org.sonar.api.rules.Rule;
-import org.sonar.api.rules.RuleFinder;
-import org.sonar.api.rules.RuleQuery;
 import org.sonar.api.rules.Violation;
 import org.sonar.api.utils.SonarException;
+import org.sonar.dotnet.tools.commons.visualstudio.VisualStudioProject;
+import org.sonar.dotnet.tools.commons.visualstudio.VisualStudioSolution;
+import org.sonar.plugins.csharp.api.RuleIndex;
+import org.sonar.plugins.csharp.api.ViolationRecord;
+import org.sonar.plugins.csharp.api.ViolationSink;
 import org.sonar.plugins.csharp.core.AbstractStaxParser;
 
 /**
@@ -52,7 +62,7 @@ public class StyleCopResultParser extends AbstractStaxParser implements BatchExt
 
   private Project project;
   private SensorContext context;
-  private RuleFinder ruleFinder;
+  private RuleIndex ruleIndex;
 
   /**
    * Constructs a @link{StyleCopResultParser}.
@@ -62,11 +72,11 @@ public class StyleCopResultParser extends AbstractStaxParser implements BatchExt
    * @param rulesManager
    * @param profile
    */
-  public StyleCopResultParser(Project project, SensorContext context, RuleFinder ruleFinder) {
+  public StyleCopResultParser(Project project, SensorContext context, RuleIndex ruleIndex) {
     super();
     this.project = project;
     this.context = context;
-    this.ruleFinder = ruleFinder;
+    this.ruleIndex = ruleIndex;
   }
 
   /**
@@ -75,14 +85,69 @@ public class StyleCopResultParser extends AbstractStaxParser implements BatchExt
    * @param file
    *          the file to parse
    */
-  public void parse(File file) {
+  public void parse(final File file) {
+    new ViolationSink(context, new SourceResolver()).run(new ViolationSink.Producer() {
+
+      public void produce(final ViolationSink sink) {
+        readReport(file, new ViolationHandler() {
+
+          public void handle(StyleCopViolation violation) {
+            sink.add(createRecord(violation));
+          }
+        });
+      }
+    });
+  }
+
+  /**
+   * Reads the violations of a report without saving them.
+   * 
+   * @param file
+   *          the file to read
+   * @param solution
+   *          the solution of the project
+   * @param vsProject
+   *          the project whose violations are kept, or <code>null</code> to keep all the violations
+   * @return the violations
+   */
+  List<StyleCopViolation> read(File file, final VisualStudioSolution solution, final VisualStudioProject vsProject) {
+    final List<StyleCopViolation> violations = new ArrayList<StyleCopViolation>();
+    readReport(file, new ViolationHandler() {
+
+      public void handle(StyleCopViolation violation) {
+        String source = violation.getSource();
+        if (vsProject == null || (source != null && vsProject.equals(solution.getProject(new File(source))))) {
+          violations.add(violation);
+        }
+      }
+    });
+    return violations;
+  }
+
+  /**
+   * Saves violations previously read from a report.
+   * 
+   * @param violations
+   *          the violations
+   */
+  void save(Collection<StyleCopViolation> violations) {
+    SourceResolver resolver = new SourceResolver();
+    for (StyleCopViolation styleCopViolation : violations) {
+      Violation violation = resolver.resolve(createRecord(styleCopViolation));
+      if (violation != null) {
+        context.saveViolation(violation);
+      }
+    }
+  }
+
+  private void readReport(File file, ViolationHandler handler) {
     SMInputFactory inputFactory = initStax();
     FileInputStream fileInputStream = null;
     try {
       fileInputStream = new FileInputStream(file);
       SMHierarchicCursor cursor = inputFactory.rootElementCursor(new InputStreamReader(fileInputStream, getEncoding()));
       SMInputCursor mainCursor = cursor.advance().childElementCursor();
-      parseStyleCopViolationsBloc(mainCursor);
+      parseStyleCopViolationsBloc(mainCursor, handler);
       cursor.getStreamReader().closeCompletely();
     } catch (XMLStreamException e) {
       throw new SonarException("Error while reading StyleCop result file: " + file.getAbsolutePath(), e);
@@ -93,39 +158,68 @@ public class StyleCopResultParser extends AbstractStaxParser implements BatchExt
     }
   }
 
-  private void parseStyleCopViolationsBloc(SMInputCursor violationsCursor) throws XMLStreamException {
+  private void parseStyleCopViolationsBloc(SMInputCursor violationsCursor, ViolationHandler handler) throws XMLStreamException {
     // Cursor in on <Violations>
     StringBuffer configKey = new StringBuffer();
-    RuleQuery ruleQuery = RuleQuery.create().withRepositoryKey(StyleCopConstants.REPOSITORY_KEY);
     while (violationsCursor.getNext() != null) {
       configKey.setLength(0);
       configKey.append(violationsCursor.getAttrValue("RuleNamespace"));
       configKey.append("#");
       configKey.append(violationsCursor.getAttrValue("Rule"));
-      Rule currentRule = ruleFinder.find(ruleQuery.withConfigKey(configKey.toString()));
-      if (currentRule != null) {
-        createViolation(violationsCursor, currentRule);
-      } else {
-        LOG.warn("Could not find the following rule in the StyleCop rule repository: " + configKey.toString());
-      }
+      handler.handle(new StyleCopViolation(configKey.toString(), violationsCursor.getAttrValue("Source"), violationsCursor
+          .getAttrValue("LineNumber"), violationsCursor.collectDescendantText().trim()));
     }
   }
 
-  private void createViolation(SMInputCursor violationsCursor, Rule currentRule) throws XMLStreamException {
-    org.sonar.api.resources.File sonarFile = org.sonar.api.resources.File.fromIOFile(new File(violationsCursor.getAttrValue("Source")),
-        project);
-    if (context.isIndexed(sonarFile, false)) {
-      Violation violation = Violation.create(currentRule, sonarFile);
-      String lineNumber = violationsCursor.getAttrValue("LineNumber");
-      if (lineNumber != null) {
-        violation.setLineId(Integer.parseInt(lineNumber));
+  private ViolationRecord createRecord(StyleCopViolation styleCopViolation) {
+    String lineNumber = styleCopViolation.getLineNumber();
+    return new ViolationRecord(styleCopViolation.getRuleConfigKey(), styleCopViolation.getSource(), lineNumber == null ? null
+        : Integer.valueOf(lineNumber), styleCopViolation.getMessage());
+  }
+
+  /**
+   * Resolves the violations of a report, whose rules are identified by their configuration key. A report holds many violations for each
+   * source file, so each source file is only looked for once in the sensor context.
+   */
+  private class SourceResolver implements ViolationSink.Resolver {
+
+    private final Map<String, org.sonar.api.resources.File> indexedFiles = new HashMap<String, org.sonar.api.resources.File>();
+    private final Set<String> unindexedSources = new HashSet<String>();
+
+    public Violation resolve(ViolationRecord record) {
+      Rule rule = ruleIndex.findByConfigKey(StyleCopConstants.REPOSITORY_KEY, record.getRuleKey());
+      if (rule == null) {
+        return null;
       }
-      violation.setMessage(violationsCursor.collectDescendantText().trim());
-      violation.setSeverity(currentRule.getSeverity());
-      context.saveViolation(violation);
-    } else {
-      LOG.debug("Violation could not be saved, associated resource not indexed " + sonarFile);
+      String source = record.getPath();
+      if (unindexedSources.contains(source)) {
+        return null;
+      }
+      if ( !indexedFiles.containsKey(source)) {
+        org.sonar.api.resources.File sonarFile = org.sonar.api.resources.File.fromIOFile(new File(source), project);
+        if ( !context.isIndexed(sonarFile, false)) {
+          LOG.debug("Violations could not be saved, associated resource not indexed " + sonarFile);
+          unindexedSources.add(source);
+          return null;
+        }
+        indexedFiles.put(source, sonarFile);
+      }
+      Violation violation = Violation.create(rule, indexedFiles.get(source));
+      if (record.getLine() != null) {
+        violation.setLineId(record.getLine());
+      }
+      violation.setMessage(record.getMessage());
+      violation.setSeverity(rule.getSeverity());
+      return violation;
     }
   }
 
+  /**
+   * Receives the violations as they are read from a report.
+   */
+  private interface ViolationHandler {
+
+    void handle(StyleCopViolation violation);
+  }
+
 }
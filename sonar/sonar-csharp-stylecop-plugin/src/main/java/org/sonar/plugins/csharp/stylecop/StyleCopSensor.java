@@ -23,6 +23,7 @@ package org.sonar.plugins.csharp.stylecop;
 import java.io.File;
 import java.io.FileWriter;
 import java.io.IOException;
+import java.util.Collection;
 
 import org.apache.commons.io.IOUtils;
 import org.slf4j.Logger;
@@ -34,12 +35,14 @@ import org.sonar.api.resources.Project;
 import org.sonar.api.resources.ProjectFileSystem;
 import org.sonar.api.utils.SonarException;
 import org.sonar.dotnet.tools.commons.utils.FileFinder;
+import org.sonar.dotnet.tools.commons.visualstudio.VisualStudioProject;
 import org.sonar.dotnet.tools.stylecop.StyleCopCommandBuilder;
 import org.sonar.dotnet.tools.stylecop.StyleCopException;
 import org.sonar.dotnet.tools.stylecop.StyleCopRunner;
 import org.sonar.plugins.csharp.api.CSharpConfiguration;
 import org.sonar.plugins.csharp.api.CSharpConstants;
 import org.sonar.plugins.csharp.api.MicrosoftWindowsEnvironment;
+import org.sonar.plugins.csharp.api.SolutionReportStore;
 import org.sonar.plugins.csharp.api.sensor.AbstractRegularCSharpSensor;
 import org.sonar.plugins.csharp.stylecop.profiles.StyleCopProfileExporter;
 
@@ -51,11 +54,14 @@ public class StyleCopSensor extends AbstractRegularCSharpSensor {
 
   private static final Logger LOG = LoggerFactory.getLogger(StyleCopSensor.class);
 
+  private static final String REPORT_TYPE = "stylecop";
+
   private ProjectFileSystem fileSystem;
   private RulesProfile rulesProfile;
   private StyleCopProfileExporter profileExporter;
   private StyleCopResultParser styleCopResultParser;
   private CSharpConfiguration configuration;
+  private SolutionReportStore reportStore;
 
   /**
    * Constructs a {@link StyleCopSensor}.
@@ -65,15 +71,18 @@ public class StyleCopSensor extends AbstractRegularCSharpSensor {
    * @param styleCopRunner
    * @param profileExporter
    * @param rulesProfile
+   * @param reportStore
    */
   public StyleCopSensor(ProjectFileSystem fileSystem, RulesProfile rulesProfile, StyleCopProfileExporter profileExporter,
-      StyleCopResultParser styleCopResultParser, CSharpConfiguration configuration, MicrosoftWindowsEnvironment microsoftWindowsEnvironment) {
+      StyleCopResultParser styleCopResultParser, CSharpConfiguration configuration, MicrosoftWindowsEnvironment microsoftWindowsEnvironment,
+      SolutionReportStore reportStore) {
     super(microsoftWindowsEnvironment, "StyleCop", configuration.getString(StyleCopConstants.MODE, ""));
     this.fileSystem = fileSystem;
     this.rulesProfile = rulesProfile;
     this.profileExporter = profileExporter;
     this.styleCopResultParser = styleCopResultParser;
     this.configuration = configuration;
+    this.reportStore = reportStore;
   }
 
   /**
@@ -111,7 +120,11 @@ public class StyleCopSensor extends AbstractRegularCSharpSensor {
     }
 
     // and analyse results
-    analyseResults(reportFile);
+    if (MODE_REUSE_REPORT.equalsIgnoreCase(executionMode)) {
+      analyseSharedResults(project, reportFile);
+    } else {
+      analyseResults(reportFile);
+    }
   }
 
   protected void launchStyleCop(Project project, StyleCopRunner runner, File styleCopConfigFile) throws StyleCopException {
@@ -145,4 +158,32 @@ public class StyleCopSensor extends AbstractRegularCSharpSensor {
       LOG.warn("No StyleCop report found for path {}", reportFile);
     }
   }
+  /**
+   * A reused report usually covers the whole solution: it is read once and each project saves the violations of its own files.
+   */
+  private void analyseSharedResults(Project project, File reportFile) {
+    if (reportFile.exists()) {
+      LOG.debug("StyleCop report found at location {}", reportFile);
+      Collection<StyleCopViolation> violations = reportStore.take(REPORT_TYPE, reportFile, getVSProject(project),
+          new SolutionReportStore.ReportReader<StyleCopViolation>() {
+
+            public Collection<StyleCopViolation> read(File report, VisualStudioProject vsProject) {
+              return styleCopResultParser.read(report, getVSSolution(), vsProject);
+            }
+
+            public VisualStudioProject getProject(StyleCopViolation violation) {
+              String source = violation.getSource();
+              return source == null ? null : getVSSolution().getProject(new File(source));
+            }
+
+            public int sizeOf(StyleCopViolation violation) {
+              return 1;
+            }
+          });
+      styleCopResultParser.save(violations);
+    } else {
+      LOG.warn("No StyleCop report found for path {}", reportFile);
+    }
+  }
+
 }
\ No newline at end of file
@@ -0,0 +1,69 @@
+/*
+ * Sonar C# Plugin :: StyleCop
+ * Copyright (C) 2010 Jose Chillan, Alexandre Victoor and SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.plugins.csharp.stylecop;
+
+/**
+ * A violation read from a StyleCop report, before its rule and its resource are resolved.
+ */
+final class StyleCopViolation {
+
+  private final String ruleConfigKey;
+  private final String source;
+  private final String lineNumber;
+  private final String message;
+
+  StyleCopViolation(String ruleConfigKey, String source, String lineNumber, String message) {
+    this.ruleConfigKey = ruleConfigKey;
+    this.source = source;
+    this.lineNumber = lineNumber;
+    this.message = message;
+  }
+
+  /**
+   * @return the config key of the rule, such as "Microsoft.StyleCop.CSharp.NamingRules#ElementMustBeginWithUpperCaseLetter"
+   */
+  String getRuleConfigKey() {
+    return ruleConfigKey;
+  }
+
+  /**
+   * @return the path of the source file, as written in the report
+   */
+  String getSource() {
+    return source;
+  }
+
+  /**
+   * @return the line number, or <code>null</code> if the violation is not on a specific line
+   */
+  String getLineNumber() {
+    return lineNumber;
+  }
+
+  String getMessage() {
+    return message;
+  }
+
+  @Override
+  public String toString() {
+    return ruleConfigKey + " on " + source + ":" + lineNumber;
+  }
+
+}
@@ -20,16 +20,22 @@
 
 package org.sonar.plugins.csharp.stylecop;
 
+import static org.junit.Assert.assertEquals;
 import static org.mockito.Matchers.any;
 import static org.mockito.Matchers.anyBoolean;
 import static org.mockito.Matchers.anyObject;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 import java.io.File;
 import java.nio.charset.Charset;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
 
 import org.apache.commons.lang.StringUtils;
 import org.junit.Before;
@@ -43,6 +49,7 @@ import org.sonar.api.rules.Rule;
 import org.sonar.api.rules.RuleFinder;
 import org.sonar.api.rules.RuleQuery;
 import org.sonar.api.rules.Violation;
+import org.sonar.plugins.csharp.api.RuleIndex;
 import org.sonar.test.TestUtils;
 
 import com.google.common.collect.Lists;
@@ -54,6 +61,7 @@ public class StyleCopResultParserTest {
   private File resultFile;
   private Rule uppercaseLetterRule;
   private Rule parenthesisRule;
+  private Set<Thread> ruleFinderThreads;
 
   @Before
   public void init() {
@@ -64,7 +72,7 @@ public class StyleCopResultParserTest {
     when(fileSystem.getSourceDirs()).thenReturn(Lists.newArrayList(new File("C:\\MyProject\\src")));
     when(project.getFileSystem()).thenReturn(fileSystem);
 
-    parser = new StyleCopResultParser(project, context, newRuleFinder());
+    parser = new StyleCopResultParser(project, context, new RuleIndex(newRuleFinder()));
     parser.setEncoding(Charset.forName("UTF-8"));
 
     resultFile = TestUtils.getResource("/Results/stylecop-report.xml");
@@ -78,15 +86,50 @@ public class StyleCopResultParserTest {
     verify(context, times(4)).saveViolation(any(Violation.class));
   }
 
+  @Test
+  public void testRulesAreLookedForOnTheSensorThread() throws Exception {
+    parser.parse(resultFile);
+
+    assertEquals(Collections.singleton(Thread.currentThread()), ruleFinderThreads);
+  }
+
+  @Test
+  public void testReadThenSave() throws Exception {
+    List<StyleCopViolation> violations = parser.read(resultFile, null, null);
+    assertEquals(5, violations.size());
+    assertEquals("C:\\MyProject\\src\\db\\Class2.cs", violations.get(1).getSource());
+    assertEquals("384", violations.get(1).getLineNumber());
+    verify(context, never()).saveViolation(any(Violation.class));
+
+    parser.save(violations);
+    verify(context, times(4)).saveViolation(any(Violation.class));
+  }
+
+  @Test
+  public void testSourceIsResolvedOnce() throws Exception {
+    String configKey = "Microsoft.StyleCop.CSharp.NamingRules#ElementMustBeginWithUpperCaseLetter";
+    List<StyleCopViolation> violations = Lists.newArrayList();
+    for (int i = 1; i <= 3; i++) {
+      violations.add(new StyleCopViolation(configKey, "C:\\MyProject\\src\\Class1.cs", String.valueOf(i), "Message"));
+    }
+    violations.add(new StyleCopViolation(configKey, "C:\\MyProject\\src\\db\\Class2.cs", "1", "Message"));
+
+    parser.save(violations);
+    verify(context, times(2)).isIndexed(any(org.sonar.api.resources.File.class), anyBoolean());
+    verify(context, times(4)).saveViolation(any(Violation.class));
+  }
+
   private RuleFinder newRuleFinder() {
     uppercaseLetterRule = Rule.create("stylecop", "ElementMustBeginWithUpperCaseLetter", "ElementMustBeginWithUpperCaseLetter")
         .setConfigKey("Microsoft.StyleCop.CSharp.NamingRules#ElementMustBeginWithUpperCaseLetter");
     parenthesisRule = Rule.create("stylecop", "StatementMustNotUseUnnecessaryParenthesis", "StatementMustNotUseUnnecessaryParenthesis")
         .setConfigKey("Microsoft.StyleCop.CSharp.MaintainabilityRules#StatementMustNotUseUnnecessaryParenthesis");
+    ruleFinderThreads = Collections.synchronizedSet(new HashSet<Thread>());
     RuleFinder ruleFinder = mock(RuleFinder.class);
     when(ruleFinder.find((RuleQuery) anyObject())).thenAnswer(new Answer<Rule>() {
 
       public Rule answer(InvocationOnMock iom) throws Throwable {
+        ruleFinderThreads.add(Thread.currentThread());
         RuleQuery query = (RuleQuery) iom.getArguments()[0];
         Rule rule = null;
         if (StringUtils.equals(query.getConfigKey(),
@@ -67,7 +67,7 @@ public class StyleCopSensorTest {
     microsoftWindowsEnvironment.setCurrentSolution(solution);
 
     Configuration conf = new BaseConfiguration();
-    StyleCopSensor sensor = new StyleCopSensor(null, null, null, null, new CSharpConfiguration(conf), microsoftWindowsEnvironment);
+    StyleCopSensor sensor = new StyleCopSensor(null, null, null, null, new CSharpConfiguration(conf), microsoftWindowsEnvironment, null);
 
     Project project = mock(Project.class);
     when(project.getLanguageKey()).thenReturn("cs");
@@ -75,7 +75,7 @@ public class StyleCopSensorTest {
     assertTrue(sensor.shouldExecuteOnProject(project));
 
     conf.addProperty(StyleCopConstants.MODE, StyleCopSensor.MODE_SKIP);
-    sensor = new StyleCopSensor(null, null, null, null, new CSharpConfiguration(conf), microsoftWindowsEnvironment);
+    sensor = new StyleCopSensor(null, null, null, null, new CSharpConfiguration(conf), microsoftWindowsEnvironment, null);
     assertFalse(sensor.shouldExecuteOnProject(project));
   }
 
@@ -95,7 +95,7 @@ public class StyleCopSensorTest {
       }
     }).when(profileExporter).exportProfile((RulesProfile) anyObject(), (FileWriter) anyObject());
     StyleCopSensor sensor = new StyleCopSensor(fileSystem, null, profileExporter, null, new CSharpConfiguration(new BaseConfiguration()),
-        null);
+        null, null);
 
     sensor.generateConfigurationFile();
     File report = new File(sonarDir, StyleCopConstants.STYLECOP_RULES_FILE);
@@ -118,7 +118,7 @@ public class StyleCopSensorTest {
       }
     }).when(profileExporter).exportProfile((RulesProfile) anyObject(), (FileWriter) anyObject());
     StyleCopSensor sensor = new StyleCopSensor(fileSystem, null, profileExporter, null, new CSharpConfiguration(new BaseConfiguration()),
-        null);
+        null, null);
 
     sensor.generateConfigurationFile();
   }
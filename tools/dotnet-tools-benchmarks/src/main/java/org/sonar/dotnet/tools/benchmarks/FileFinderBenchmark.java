@@ -0,0 +1,64 @@
+/*
+ * .NET tools :: Benchmarks
+ * Copyright (C) 2010 Jose Chillan, Alexandre Victoor and SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.dotnet.tools.benchmarks;
+
+import java.io.File;
+import java.util.Collection;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.sonar.dotnet.tools.commons.utils.FileFinder;
+
+/**
+ * Pattern lookups of {@link FileFinder}, run from the solution directory. The "cold" benchmarks clear the directory listing cache
+ * first, as after a tool has written new files.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class FileFinderBenchmark {
+
+  @Param({ "**/*.cs", "*/Folder0/Class1*.cs", "*/Properties/AssemblyInfo.cs" })
+  String pattern;
+
+  @Benchmark
+  public Collection<File> findFiles(GeneratedSolution generatedSolution) {
+    return FileFinder.findFiles(generatedSolution.solution, generatedSolution.solutionFile.getParentFile(), pattern);
+  }
+
+  @Benchmark
+  public Collection<File> findFilesCold(GeneratedSolution generatedSolution) {
+    FileFinder.clearCache();
+    return FileFinder.findFiles(generatedSolution.solution, generatedSolution.solutionFile.getParentFile(), pattern);
+  }
+
+}
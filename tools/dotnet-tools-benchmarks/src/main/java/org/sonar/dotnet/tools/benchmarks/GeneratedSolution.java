@@ -0,0 +1,105 @@
+/*
+ * .NET tools :: Benchmarks
+ * Copyright (C) 2010 Jose Chillan, Alexandre Victoor and SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.dotnet.tools.benchmarks;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.commons.io.FileUtils;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.sonar.dotnet.tools.commons.DotNetToolsException;
+import org.sonar.dotnet.tools.commons.utils.CanonicalPathCache;
+import org.sonar.dotnet.tools.commons.utils.FileFinder;
+import org.sonar.dotnet.tools.commons.visualstudio.ModelFactory;
+import org.sonar.dotnet.tools.commons.visualstudio.SourceFile;
+import org.sonar.dotnet.tools.commons.visualstudio.SyntheticSolutionGenerator;
+import org.sonar.dotnet.tools.commons.visualstudio.VisualStudioProject;
+import org.sonar.dotnet.tools.commons.visualstudio.VisualStudioSolution;
+
+/**
+ * A solution written by {@link SyntheticSolutionGenerator} and loaded once per trial. The solutions are kept under
+ * "target/benchmark-solutions", so that they are only written by the first run with a given size.
+ */
+@State(Scope.Benchmark)
+public class GeneratedSolution {
+
+  private static final long SEED = 20111017L;
+
+  @Param({ "10", "100", "1000", "5000" })
+  int projectCount;
+
+  @Param({ "20" })
+  int filesPerProject;
+
+  @Param({ "1.5" })
+  double referenceDensity;
+
+  File solutionFile;
+  VisualStudioSolution solution;
+  List<VisualStudioProject> projects;
+  File[] sourceFiles;
+  File[] projectDirectories;
+
+  @Setup
+  public void generate() throws Exception {
+    File directory = new File("target/benchmark-solutions/" + projectCount + "-" + filesPerProject + "-" + referenceDensity);
+    solutionFile = new File(directory, SyntheticSolutionGenerator.SOLUTION_NAME + ".sln");
+    if ( !solutionFile.exists()) {
+      FileUtils.deleteDirectory(directory);
+      SyntheticSolutionGenerator generator = new SyntheticSolutionGenerator(SEED);
+      generator.setProjectCount(projectCount);
+      generator.setFilesPerProject(filesPerProject);
+      generator.setReferenceDensity(referenceDensity);
+      generator.generate(directory);
+    }
+    solution = load();
+    projects = solution.getProjects();
+
+    List<File> files = new ArrayList<File>();
+    List<File> directories = new ArrayList<File>();
+    for (VisualStudioProject project : projects) {
+      for (SourceFile sourceFile : project.getSourceFiles()) {
+        files.add(sourceFile.getFile());
+        directories.add(project.getDirectory());
+      }
+    }
+    sourceFiles = files.toArray(new File[files.size()]);
+    projectDirectories = directories.toArray(new File[directories.size()]);
+  }
+
+  /**
+   * Loads the solution from scratch, as a new analysis would.
+   */
+  VisualStudioSolution load() throws IOException {
+    CanonicalPathCache.getInstance().clear();
+    FileFinder.clearCache();
+    try {
+      return ModelFactory.getSolution(solutionFile);
+    } catch (DotNetToolsException e) {
+      throw new IllegalStateException("Could not load " + solutionFile, e);
+    }
+  }
+
+}
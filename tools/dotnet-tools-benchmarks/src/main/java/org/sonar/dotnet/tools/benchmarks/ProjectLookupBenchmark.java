@@ -0,0 +1,80 @@
+/*
+ * .NET tools :: Benchmarks
+ * Copyright (C) 2010 Jose Chillan, Alexandre Victoor and SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.dotnet.tools.benchmarks;
+
+import java.io.File;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.sonar.dotnet.tools.commons.visualstudio.ModelFactory;
+import org.sonar.dotnet.tools.commons.visualstudio.SourceFile;
+import org.sonar.dotnet.tools.commons.visualstudio.VisualStudioProject;
+
+/**
+ * Lookups done for each file of an analysis: finding the project of a file, going through the source files of a project and checking
+ * that a file is in a directory. Each invocation looks up the next source file of the solution.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class ProjectLookupBenchmark {
+
+  private int next;
+
+  private int nextIndex(int size) {
+    next = next + 1 < size ? next + 1 : 0;
+    return next;
+  }
+
+  @Benchmark
+  public VisualStudioProject getProjectOfFile(GeneratedSolution generatedSolution) {
+    return generatedSolution.solution.getProject(generatedSolution.sourceFiles[nextIndex(generatedSolution.sourceFiles.length)]);
+  }
+
+  @Benchmark
+  public int getSourceFiles(GeneratedSolution generatedSolution) {
+    List<VisualStudioProject> projects = generatedSolution.projects;
+    int length = 0;
+    for (SourceFile sourceFile : projects.get(nextIndex(projects.size())).getSourceFiles()) {
+      length += sourceFile.getName().length();
+    }
+    return length;
+  }
+
+  @Benchmark
+  public boolean isSubDirectory(GeneratedSolution generatedSolution) {
+    int index = nextIndex(generatedSolution.sourceFiles.length);
+    File file = generatedSolution.sourceFiles[index];
+    return ModelFactory.isSubDirectory(generatedSolution.projectDirectories[index], file);
+  }
+
+}
@@ -0,0 +1,157 @@
+/*
+ * .NET tools :: Commons
+ * Copyright (C) 2010 Jose Chillan, Alexandre Victoor and SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.dotnet.tools.commons.utils;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Cache of the canonical paths of files, as computing a canonical path requires several accesses to the file system. The cache is
+ * shared by all the .NET tools and plugins through {@link #getInstance()}, is thread-safe and keeps the most recently used paths only.<br/>
+ * The canonical path of a file only changes if files are renamed or symbolic links are modified, so the cache is meant to be cleared at
+ * the beginning of each analysis, and by {@link org.sonar.dotnet.tools.commons.visualstudio.SolutionWatcher} before it reads changed
+ * projects again.
+ */
+public final class CanonicalPathCache {
+
+  /**
+   * Default number of paths kept by the shared cache
+   */
+  public static final int DEFAULT_MAX_SIZE = 20000;
+
+  private static final CanonicalPathCache INSTANCE = new CanonicalPathCache(DEFAULT_MAX_SIZE);
+
+  private final Map<String, String> canonicalPaths;
+  private final AtomicLong hits = new AtomicLong();
+  private final AtomicLong misses = new AtomicLong();
+
+  /**
+   * Creates a cache.
+   *
+   * @param maxSize
+   *          the maximum number of paths kept in the cache
+   */
+  public CanonicalPathCache(final int maxSize) {
+    canonicalPaths = new LinkedHashMap<String, String>(16, 0.75f, true) {
+
+      private static final long serialVersionUID = 1L;
+
+      @Override
+      protected boolean removeEldestEntry(Map.Entry<String, String> eldest) {
+        return size() > maxSize;
+      }
+    };
+  }
+
+  /**
+   * @return the cache shared by all the .NET tools
+   */
+  public static CanonicalPathCache getInstance() {
+    return INSTANCE;
+  }
+
+  /**
+   * Gets the canonical path of a file.
+   *
+   * @param file
+   *          the file
+   * @return the canonical path
+   * @throws IOException
+   *           if the canonical path cannot be computed, see {@link File#getCanonicalPath()}
+   */
+  public String getCanonicalPath(File file) throws IOException {
+    String absolutePath = file.getAbsolutePath();
+    String canonicalPath;
+    synchronized (canonicalPaths) {
+      canonicalPath = canonicalPaths.get(absolutePath);
+    }
+    if (canonicalPath != null) {
+      hits.incrementAndGet();
+      return canonicalPath;
+    }
+    misses.incrementAndGet();
+    // Computed outside of the lock: two threads may compute the same path, which is harmless
+    canonicalPath = file.getCanonicalPath();
+    synchronized (canonicalPaths) {
+      canonicalPaths.put(absolutePath, canonicalPath);
+    }
+    return canonicalPath;
+  }
+
+  /**
+   * Gets the canonical form of a file.
+   *
+   * @param file
+   *          the file
+   * @return the canonical file
+   * @throws IOException
+   *           if the canonical path cannot be computed, see {@link File#getCanonicalFile()}
+   */
+  public File getCanonicalFile(File file) throws IOException {
+    return new File(getCanonicalPath(file));
+  }
+
+  /**
+   * Removes all the paths from the cache and resets the statistics.
+   */
+  public void clear() {
+    synchronized (canonicalPaths) {
+      canonicalPaths.clear();
+    }
+    hits.set(0);
+    misses.set(0);
+  }
+
+  /**
+   * @return the number of paths currently in the cache
+   */
+  public int size() {
+    synchronized (canonicalPaths) {
+      return canonicalPaths.size();
+    }
+  }
+
+  public long getHits() {
+    return hits.get();
+  }
+
+  public long getMisses() {
+    return misses.get();
+  }
+
+  /**
+   * @return the ratio of the requests answered from the cache, between 0 and 1
+   */
+  public double getHitRate() {
+    long hitCount = hits.get();
+    long total = hitCount + misses.get();
+    return total == 0 ? 0 : (double) hitCount / total;
+  }
+
+  @Override
+  public String toString() {
+    return "Canonical path cache: " + getHits() + " hits, " + getMisses() + " misses (" + Math.round(getHitRate() * 100) + "% hit rate), "
+      + size() + " paths";
+  }
+
+}
@@ -0,0 +1,163 @@
+/*
+ * .NET tools :: Commons
+ * Copyright (C) 2010 Jose Chillan, Alexandre Victoor and SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.dotnet.tools.commons.utils;
+
+import java.io.File;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Cache of the content of directories, so that searching several times the same directories during an analysis does not list them
+ * again. A listing is only reused while the last modification date of its directory does not change, which is the case as long as no
+ * entry is added to or removed from the directory.<br/>
+ * As file systems store this date with a precision of up to 2 seconds, an entry added just after the directory has been listed may
+ * leave the date unchanged: a listing read less than {@link #MODIFICATION_DATE_PRECISION} after the last modification of its directory is
+ * never reused.<br/>
+ * This class is thread-safe.
+ */
+public final class DirectoryListingCache {
+
+  /**
+   * Precision, in milliseconds, of the last modification dates of the directories.
+   */
+  static final long MODIFICATION_DATE_PRECISION = 2000L;
+
+  private final Map<String, Listing> listings = new ConcurrentHashMap<String, Listing>();
+
+  /**
+   * Lists a directory.
+   * 
+   * @param directory
+   *          the directory
+   * @return the content of the directory, or <code>null</code> if the directory cannot be listed
+   */
+  public Listing list(File directory) {
+    String key = directory.getAbsolutePath();
+    long lastModified = directory.lastModified();
+    Listing listing = listings.get(key);
+    if (listing == null || !listing.isUpToDate(lastModified)) {
+      listing = Listing.read(directory, lastModified);
+      if (listing == null || !listing.isReusable()) {
+        listings.remove(key);
+      } else {
+        listings.put(key, listing);
+      }
+    }
+    return listing;
+  }
+
+  /**
+   * Removes the listings of a directory and of its subdirectories.
+   * 
+   * @param directory
+   *          the directory
+   */
+  public void invalidate(File directory) {
+    String path = directory.getAbsolutePath();
+    String subdirectoryPrefix = path + File.separator;
+    for (Iterator<String> iterator = listings.keySet().iterator(); iterator.hasNext();) {
+      String key = iterator.next();
+      if (key.equals(path) || key.startsWith(subdirectoryPrefix)) {
+        iterator.remove();
+      }
+    }
+  }
+
+  /**
+   * Removes all the listings.
+   */
+  public void clear() {
+    listings.clear();
+  }
+
+  /**
+   * @return the number of directories in the cache
+   */
+  public int size() {
+    return listings.size();
+  }
+
+  /**
+   * The entries of a directory, and whether each of them is a directory.
+   */
+  public static final class Listing {
+
+    private final long lastModified;
+    private final long readTime;
+    private final File[] entries;
+    private final boolean[] directories;
+
+    private Listing(long lastModified, long readTime, File[] entries, boolean[] directories) {
+      this.lastModified = lastModified;
+      this.readTime = readTime;
+      this.entries = entries;
+      this.directories = directories;
+    }
+
+    /**
+     * Lists a directory without any cache.
+     * 
+     * @param directory
+     *          the directory
+     * @return the content of the directory, or <code>null</code> if the directory cannot be listed
+     */
+    public static Listing read(File directory) {
+      return read(directory, directory.lastModified());
+    }
+
+    private static Listing read(File directory, long lastModified) {
+      long readTime = System.currentTimeMillis();
+      File[] entries = directory.listFiles();
+      if (entries == null) {
+        return null;
+      }
+      boolean[] directories = new boolean[entries.length];
+      for (int i = 0; i < entries.length; i++) {
+        directories[i] = entries[i].isDirectory();
+      }
+      return new Listing(lastModified, readTime, entries, directories);
+    }
+
+    /**
+     * @return false if an entry may have been added in the same tick as the last modification of the directory, without changing its date
+     */
+    private boolean isReusable() {
+      return readTime - lastModified >= MODIFICATION_DATE_PRECISION;
+    }
+
+    private boolean isUpToDate(long directoryLastModified) {
+      return lastModified == directoryLastModified;
+    }
+
+    public int size() {
+      return entries.length;
+    }
+
+    public File getEntry(int index) {
+      return entries[index];
+    }
+
+    public boolean isDirectory(int index) {
+      return directories[index];
+    }
+  }
+
+}
@@ -0,0 +1,295 @@
+/*
+ * .NET tools :: Commons
+ * Copyright (C) 2010 Jose Chillan, Alexandre Victoor and SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.dotnet.tools.commons.utils;
+
+import java.io.File;
+import java.io.FileFilter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Lists the files of a directory tree. Each directory is listed only once, directories whose name is in the skip list are not entered
+ * and a {@link DirectoryFilter} can prune the directories that cannot contain any wanted file.<br/>
+ * With an executor, the subtrees below the first levels are walked concurrently by its threads. The executor is owned by the caller and
+ * shared by all the walks, and a walk started from one of its threads is done in that thread. The files are always returned in the same
+ * order: the entries of each directory in the order given by the file system, the files of a subdirectory taking the place of the
+ * subdirectory.
+ */
+public final class DirectoryWalker {
+
+  /**
+   * Directories skipped by default, which only contain build outputs or downloaded packages
+   */
+  public static final List<String> DEFAULT_SKIPPED_DIRECTORIES = Collections.unmodifiableList(Arrays.asList("bin", "obj", "packages"));
+
+  /**
+   * Depth of the directories whose subtrees are walked concurrently
+   */
+  private static final int FORK_DEPTH = 2;
+
+  private final Set<String> skippedDirectories = new HashSet<String>();
+  private final ExecutorService executor;
+  private final DirectoryListingCache listingCache;
+
+  /**
+   * Decides whether a directory may contain wanted files and must be walked.
+   */
+  public interface DirectoryFilter {
+
+    /**
+     * @param directory
+     *          the directory
+     * @param relativePath
+     *          the path of the directory relative to the root of the walk, with '/' as separator
+     * @return true to walk the directory
+     */
+    boolean accept(File directory, String relativePath);
+  }
+
+  /**
+   * Creates a walker that walks the trees in the calling thread.
+   * 
+   * @param skippedDirectories
+   *          the names of the directories that are never entered, whatever their case
+   */
+  public DirectoryWalker(Collection<String> skippedDirectories) {
+    this(skippedDirectories, null);
+  }
+
+  /**
+   * Creates a walker.
+   * 
+   * @param skippedDirectories
+   *          the names of the directories that are never entered, whatever their case
+   * @param executor
+   *          the executor used to walk the subtrees, see {@link #newExecutor(int)}, or <code>null</code> to walk the trees in the calling
+   *          thread. It is not shut down by the walker.
+   */
+  public DirectoryWalker(Collection<String> skippedDirectories, ExecutorService executor) {
+    this(skippedDirectories, executor, null);
+  }
+
+  /**
+   * Creates a walker that reuses the directory listings of a cache.
+   * 
+   * @param skippedDirectories
+   *          the names of the directories that are never entered, whatever their case
+   * @param executor
+   *          the executor used to walk the subtrees, see {@link #newExecutor(int)}, or <code>null</code> to walk the trees in the calling
+   *          thread. It is not shut down by the walker.
+   * @param listingCache
+   *          the cache of the directory listings, <code>null</code> to always list the directories
+   */
+  public DirectoryWalker(Collection<String> skippedDirectories, ExecutorService executor, DirectoryListingCache listingCache) {
+    for (String name : skippedDirectories) {
+      this.skippedDirectories.add(name.toLowerCase(Locale.ENGLISH));
+    }
+    this.executor = executor;
+    this.listingCache = listingCache;
+  }
+
+  /**
+   * Creates an executor to share between walkers, whose threads do not prevent the JVM from exiting.
+   * 
+   * @param threads
+   *          the number of threads
+   * @return the executor, or <code>null</code> if there is only one thread, the trees being then walked in the calling thread
+   */
+  public static ExecutorService newExecutor(int threads) {
+    return threads <= 1 ? null : Executors.newFixedThreadPool(threads, new WalkerThreadFactory());
+  }
+
+  /**
+   * Lists the files of a tree.
+   * 
+   * @param root
+   *          the root directory, which is not itself checked against the skip list
+   * @param fileFilter
+   *          the filter of the returned files and directories
+   * @param directoryFilter
+   *          the filter of the walked directories, <code>null</code> to walk all the directories not in the skip list
+   * @return the accepted files
+   */
+  public List<File> walk(File root, FileFilter fileFilter, DirectoryFilter directoryFilter) {
+    List<File> result = new ArrayList<File>();
+    // a walk from a thread of the executor could wait for subtrees that no free thread can walk
+    if (executor == null || Thread.currentThread() instanceof WalkerThread) {
+      walkDirectory(root, "", fileFilter, directoryFilter, Integer.MAX_VALUE, result, null);
+      return result;
+    }
+
+    List<Future<List<File>>> subtrees = new ArrayList<Future<List<File>>>();
+    try {
+      List<Object> entries = new ArrayList<Object>();
+      walkDirectory(root, "", fileFilter, directoryFilter, 0, entries, new SubtreeSubmitter(fileFilter, directoryFilter, subtrees));
+      for (Object entry : entries) {
+        if (entry instanceof File) {
+          result.add((File) entry);
+        } else {
+          result.addAll(getSubtree(subtrees.get((Integer) entry)));
+        }
+      }
+    } finally {
+      // the subtrees not waited for, after an error, are not walked for nothing
+      for (Future<List<File>> subtree : subtrees) {
+        subtree.cancel(true);
+      }
+    }
+    return result;
+  }
+
+  /**
+   * Walks a directory, in the calling thread until the fork depth is reached. Below this depth, subtrees are submitted and their index
+   * in the list of submitted subtrees is added to the entries instead of their files.
+   */
+  @SuppressWarnings("unchecked")
+  private void walkDirectory(File directory, String relativePath, FileFilter fileFilter, DirectoryFilter directoryFilter, int depth,
+      List<?> entries, SubtreeSubmitter submitter) {
+    DirectoryListingCache.Listing listing = listingCache == null ? DirectoryListingCache.Listing.read(directory) : listingCache
+        .list(directory);
+    if (listing == null) {
+      return;
+    }
+    for (int i = 0; i < listing.size(); i++) {
+      File child = listing.getEntry(i);
+      if (fileFilter.accept(child)) {
+        ((List<Object>) entries).add(child);
+      }
+      if (listing.isDirectory(i)) {
+        String childPath = relativePath.length() == 0 ? child.getName() : relativePath + "/" + child.getName();
+        if (isSkipped(child) || (directoryFilter != null && !directoryFilter.accept(child, childPath))) {
+          continue;
+        }
+        if (submitter != null && depth + 1 >= FORK_DEPTH) {
+          ((List<Object>) entries).add(submitter.submit(child, childPath));
+        } else {
+          walkDirectory(child, childPath, fileFilter, directoryFilter, depth + 1, entries, submitter);
+        }
+      }
+    }
+  }
+
+  private boolean isSkipped(File directory) {
+    return !skippedDirectories.isEmpty() && skippedDirectories.contains(directory.getName().toLowerCase(Locale.ENGLISH));
+  }
+
+  private static List<File> getSubtree(Future<List<File>> future) {
+    try {
+      return future.get();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IllegalStateException("Interrupted while listing files", e);
+    } catch (ExecutionException e) {
+      Throwable cause = e.getCause();
+      if (cause instanceof RuntimeException) {
+        throw (RuntimeException) cause;
+      }
+      if (cause instanceof Error) {
+        throw (Error) cause;
+      }
+      throw new IllegalStateException("Error while listing files", cause);
+    }
+  }
+
+  /**
+   * Creates a filter of the directories that may contain files matching an ant style pattern, such as "**&#47;bin/*.dll". A directory is
+   * pruned when its path, relative to the root of the walk, cannot be the beginning of a path matching the pattern.
+   * 
+   * @param pattern
+   *          the pattern, relative to the root of the walk, with '/' as separator
+   * @return the filter
+   */
+  public static DirectoryFilter globPrefixFilter(String pattern) {
+    return new GlobPrefixFilter(pattern);
+  }
+
+  /**
+   * Submits the subtrees to the executor and keeps their futures in order.
+   */
+  private final class SubtreeSubmitter {
+
+    private final FileFilter fileFilter;
+    private final DirectoryFilter directoryFilter;
+    private final List<Future<List<File>>> subtrees;
+
+    private SubtreeSubmitter(FileFilter fileFilter, DirectoryFilter directoryFilter, List<Future<List<File>>> subtrees) {
+      this.fileFilter = fileFilter;
+      this.directoryFilter = directoryFilter;
+      this.subtrees = subtrees;
+    }
+
+    private Integer submit(final File directory, final String relativePath) {
+      subtrees.add(executor.submit(new Callable<List<File>>() {
+
+        public List<File> call() {
+          List<File> files = new ArrayList<File>();
+          walkDirectory(directory, relativePath, fileFilter, directoryFilter, Integer.MAX_VALUE, files, null);
+          return files;
+        }
+      }));
+      return subtrees.size() - 1;
+    }
+  }
+
+  private static final class GlobPrefixFilter implements DirectoryFilter {
+
+    private final GlobPattern pattern;
+
+    private GlobPrefixFilter(String pattern) {
+      this.pattern = GlobPattern.compile(pattern);
+    }
+
+    public boolean accept(File directory, String relativePath) {
+      return pattern.mayMatchBelow(relativePath);
+    }
+  }
+
+  private static final class WalkerThreadFactory implements ThreadFactory {
+
+    private static final AtomicInteger THREAD_NUMBER = new AtomicInteger();
+
+    public Thread newThread(Runnable runnable) {
+      Thread thread = new WalkerThread(runnable, "dotnet-directory-walker-" + THREAD_NUMBER.incrementAndGet());
+      thread.setDaemon(true);
+      return thread;
+    }
+  }
+
+  private static final class WalkerThread extends Thread {
+
+    private WalkerThread(Runnable runnable, String name) {
+      super(runnable, name);
+    }
+  }
+
+}
@@ -22,18 +22,18 @@ package org.sonar.dotnet.tools.commons.utils;
 import java.io.File;
 import java.io.FileFilter;
 import java.util.ArrayList;
-import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
-import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ExecutorService;
 
-import org.apache.commons.io.filefilter.DirectoryFileFilter;
-import org.apache.commons.io.filefilter.IOFileFilter;
 import org.apache.commons.lang.StringUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import org.sonar.api.utils.WildcardPattern;
 import org.sonar.dotnet.tools.commons.visualstudio.VisualStudioProject;
 import org.sonar.dotnet.tools.commons.visualstudio.VisualStudioSolution;
 
@@ -52,9 +52,55 @@ public final class FileFinder {
   private static final String PARENT_DIRECTORY = "../";
   private static final Logger LOG = LoggerFactory.getLogger(FileFinder.class);
 
+  /*
+   * Listings of the directories searched during the analysis
+   */
+  private static final DirectoryListingCache LISTING_CACHE = new DirectoryListingCache();
+
+  /*
+   * Patterns often target build outputs, so no directory is skipped
+   */
+  private static volatile DirectoryWalker walker = new DirectoryWalker(Collections.<String> emptyList(), null, LISTING_CACHE);
+
+  /*
+   * Threads shared by all the walks, if more than one
+   */
+  private static ExecutorService walkerExecutor;
+
   private FileFinder() {
   }
 
+  /**
+   * Sets the number of threads used to walk the directories searched with ant style patterns.
+   * 
+   * @param threads
+   *          the number of threads, 1 to walk the directories in the calling thread
+   */
+  public static synchronized void setWalkerThreads(int threads) {
+    if (walkerExecutor != null) {
+      walkerExecutor.shutdown();
+    }
+    walkerExecutor = DirectoryWalker.newExecutor(threads);
+    walker = new DirectoryWalker(Collections.<String> emptyList(), walkerExecutor, LISTING_CACHE);
+  }
+
+  /**
+   * Forgets the listings of all the directories searched so far. Meant to be called at the beginning of each analysis.
+   */
+  public static void clearCache() {
+    LISTING_CACHE.clear();
+  }
+
+  /**
+   * Forgets the listings of a directory and of its subdirectories, for instance after a tool generated files in it.
+   * 
+   * @param directory
+   *          the directory
+   */
+  public static void invalidateCache(File directory) {
+    LISTING_CACHE.invalidate(directory);
+  }
+
   /**
    * Find files that match the given patterns
    * 
@@ -142,7 +188,9 @@ public final class FileFinder {
       return Collections.EMPTY_LIST;
     }
 
-    Set<File> result = new HashSet<File>();
+    Set<File> result = new TreeSet<File>();
+    // Patterns applying to the same directory are all matched during a single walk
+    Map<File, List<String>> patternsByDirectory = new LinkedHashMap<File, List<String>>();
     for (String pattern : patternArray) {
       String currentPattern = convertSlash(pattern);
       File workDir = defaultWorkDir;
@@ -160,13 +208,21 @@ public final class FileFinder {
           workDir = browse(workDir, prefix);
           currentPattern = "*" + StringUtils.substringAfter(currentPattern, "*");
         }
-        IOFileFilter externalFilter = new PatternFilter(workDir, currentPattern);
-        listFiles(result, workDir, externalFilter);
+        File directory = workDir.getAbsoluteFile();
+        List<String> directoryPatterns = patternsByDirectory.get(directory);
+        if (directoryPatterns == null) {
+          directoryPatterns = new ArrayList<String>();
+          patternsByDirectory.put(directory, directoryPatterns);
+        }
+        directoryPatterns.add(currentPattern);
 
       } else {
         result.add(browse(workDir, currentPattern));
       }
     }
+    for (Map.Entry<File, List<String>> entry : patternsByDirectory.entrySet()) {
+      listFiles(result, entry.getKey(), entry.getValue());
+    }
 
     logResults(result, patternArray);
 
@@ -203,43 +259,52 @@ public final class FileFinder {
     return file;
   }
 
-  private static void listFiles(Collection<File> files, File directory, IOFileFilter filter) {
+  private static void listFiles(Collection<File> files, File directory, List<String> patterns) {
     if (!directory.exists() || directory.isFile()) {
       return;
     }
-
-    File[] found = directory.listFiles((FileFilter) filter);
-    if (found != null) {
-      files.addAll(Arrays.asList(found));
-    }
-    File[] subDirectories = directory.listFiles((FileFilter) DirectoryFileFilter.INSTANCE);
-    for (File subDirectory : subDirectories) {
-      listFiles(files, subDirectory, filter);
-    }
+    PatternFilter filter = new PatternFilter(directory, patterns);
+    files.addAll(walker.walk(directory, filter, filter));
   }
 
   private static String convertSlash(String path) {
     return StringUtils.replaceChars(path, '\\', '/');
   }
 
-  private static class PatternFilter implements IOFileFilter {
+  /**
+   * Matches the files and prunes the directories of a walk with several patterns, compiled once.
+   */
+  private static class PatternFilter implements FileFilter, DirectoryWalker.DirectoryFilter {
 
-    private final WildcardPattern pattern;
+    private final String directoryPath;
+    private final GlobPattern[] patterns;
 
-    public PatternFilter(File workDir, String pattern) {
-      String absolutePathPattern = workDir.getAbsolutePath() + "/" + pattern;
-      absolutePathPattern = convertSlash(absolutePathPattern);
-      this.pattern = WildcardPattern.create(absolutePathPattern);
+    public PatternFilter(File workDir, List<String> patterns) {
+      this.directoryPath = workDir.getPath();
+      this.patterns = new GlobPattern[patterns.size()];
+      for (int i = 0; i < this.patterns.length; i++) {
+        this.patterns[i] = GlobPattern.compile(patterns.get(i));
+      }
     }
 
-    public boolean accept(File paramFile) {
-      String absolutePath = paramFile.getAbsolutePath();
-      final String path = absolutePath;
-      return pattern.match(convertSlash(path));
+    public boolean accept(File file) {
+      // The walked files are all below the work directory
+      String relativePath = convertSlash(file.getPath().substring(directoryPath.length() + 1));
+      for (GlobPattern pattern : patterns) {
+        if (pattern.matches(relativePath)) {
+          return true;
+        }
+      }
+      return false;
     }
 
-    public boolean accept(File dir, String name) {
-      return accept(new File(dir, name));
+    public boolean accept(File directory, String relativePath) {
+      for (GlobPattern pattern : patterns) {
+        if (pattern.mayMatchBelow(relativePath)) {
+          return true;
+        }
+      }
+      return false;
     }
 
   }
@@ -0,0 +1,145 @@
+/*
+ * .NET tools :: Commons
+ * Copyright (C) 2010 Jose Chillan, Alexandre Victoor and SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.dotnet.tools.commons.utils;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Pattern;
+
+import org.apache.commons.lang.StringUtils;
+
+/**
+ * An ant style pattern, such as "**&#47;bin/*.dll", compiled once and matched against paths relative to the directory the pattern applies
+ * to, with '/' as separator. "*" and "?" match any characters of a single directory or file name, while "**" matches any number of
+ * directories.
+ */
+public final class GlobPattern {
+
+  private static final String ANY_DIRECTORIES = "**";
+  private static final Map<String, GlobPattern> COMPILED_PATTERNS = new ConcurrentHashMap<String, GlobPattern>();
+  private static final int MAX_COMPILED_PATTERNS = 1000;
+
+  private final String pattern;
+  private final String[] segments;
+  private final Pattern[] segmentPatterns;
+
+  private GlobPattern(String pattern) {
+    this.pattern = pattern;
+    segments = StringUtils.split(pattern, '/');
+    segmentPatterns = new Pattern[segments.length];
+    for (int i = 0; i < segments.length; i++) {
+      if (segments[i].contains(ANY_DIRECTORIES)) {
+        // Such a segment may match any number of directories
+        segments[i] = ANY_DIRECTORIES;
+      } else {
+        segmentPatterns[i] = toRegexp(segments[i]);
+      }
+    }
+  }
+
+  /**
+   * Gets the compiled form of a pattern. Patterns are compiled only once.
+   * 
+   * @param pattern
+   *          the pattern, with '/' as separator
+   * @return the compiled pattern
+   */
+  public static GlobPattern compile(String pattern) {
+    GlobPattern result = COMPILED_PATTERNS.get(pattern);
+    if (result == null) {
+      result = new GlobPattern(pattern);
+      if (COMPILED_PATTERNS.size() >= MAX_COMPILED_PATTERNS) {
+        COMPILED_PATTERNS.clear();
+      }
+      COMPILED_PATTERNS.put(pattern, result);
+    }
+    return result;
+  }
+
+  /**
+   * @param relativePath
+   *          a path relative to the directory the pattern applies to, with '/' as separator
+   * @return true if the path matches the pattern
+   */
+  public boolean matches(String relativePath) {
+    return matches(0, StringUtils.split(relativePath, '/'), 0);
+  }
+
+  /**
+   * @param relativePath
+   *          the path of a directory relative to the directory the pattern applies to, with '/' as separator
+   * @return true if some files in the directory, or below, may match the pattern
+   */
+  public boolean mayMatchBelow(String relativePath) {
+    return mayMatchBelow(0, StringUtils.split(relativePath, '/'), 0);
+  }
+
+  private boolean matches(int segmentIndex, String[] names, int nameIndex) {
+    if (segmentIndex == segments.length) {
+      return nameIndex == names.length;
+    }
+    if (ANY_DIRECTORIES.equals(segments[segmentIndex])) {
+      if (segmentIndex == segments.length - 1) {
+        // A trailing "**" matches the content of the directory, not the directory itself
+        return nameIndex < names.length;
+      }
+      return matches(segmentIndex + 1, names, nameIndex) || nameIndex < names.length && matches(segmentIndex, names, nameIndex + 1);
+    }
+    return nameIndex < names.length && segmentPatterns[segmentIndex].matcher(names[nameIndex]).matches()
+      && matches(segmentIndex + 1, names, nameIndex + 1);
+  }
+
+  private boolean mayMatchBelow(int segmentIndex, String[] names, int nameIndex) {
+    if (nameIndex == names.length) {
+      return segmentIndex < segments.length;
+    }
+    if (segmentIndex == segments.length) {
+      return false;
+    }
+    if (ANY_DIRECTORIES.equals(segments[segmentIndex])) {
+      return mayMatchBelow(segmentIndex + 1, names, nameIndex) || mayMatchBelow(segmentIndex, names, nameIndex + 1);
+    }
+    // The last segment only matches the entries of a directory, which must be the last one
+    if (segmentIndex == segments.length - 1) {
+      return false;
+    }
+    return segmentPatterns[segmentIndex].matcher(names[nameIndex]).matches() && mayMatchBelow(segmentIndex + 1, names, nameIndex + 1);
+  }
+
+  private static Pattern toRegexp(String segment) {
+    StringBuilder regexp = new StringBuilder();
+    for (char c : segment.toCharArray()) {
+      if (c == '*') {
+        regexp.append(".*");
+      } else if (c == '?') {
+        regexp.append('.');
+      } else {
+        regexp.append(Pattern.quote(String.valueOf(c)));
+      }
+    }
+    return Pattern.compile(regexp.toString());
+  }
+
+  @Override
+  public String toString() {
+    return pattern;
+  }
+
+}
@@ -0,0 +1,200 @@
+/*
+ * .NET tools :: Commons
+ * Copyright (C) 2010 Jose Chillan, Alexandre Victoor and SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.dotnet.tools.commons.visualstudio;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Collection;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.apache.commons.io.IOUtils;
+import org.apache.commons.lang.StringUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Finds the assembly version of a project, i.e. the value of the attribute [assembly: AssemblyVersion("1.0.0.0")].<br/>
+ * The AssemblyInfo.cs files are read first, and the other source files only if they do not define the version. The files are read line
+ * by line and a file is no longer read as soon as the version is found in it.
+ */
+final class AssemblyVersionResolver {
+
+  private static final Logger LOG = LoggerFactory.getLogger(AssemblyVersionResolver.class);
+
+  private static final Pattern VERSION_PATTERN = Pattern.compile("^[^/]*\\[assembly:\\sAssemblyVersion\\(\"([^\"]*)\"\\)\\]");
+  private static final String ASSEMBLY_INFO_FILE_NAME = "assemblyinfo.cs";
+  private static final String[] PROJECT_VERSION_PROPERTIES = {"AssemblyVersion", "Version"};
+
+  private final int maxScannedFiles;
+  private final long maxScannedBytes;
+  private final boolean readProjectFile;
+
+  /**
+   * Creates a resolver.
+   * 
+   * @param maxScannedFiles
+   *          the maximum number of source files other than AssemblyInfo.cs that are read, a negative value for no limit
+   * @param maxScannedBytes
+   *          the maximum number of bytes read in each file, line endings included, a negative value for no limit
+   * @param readProjectFile
+   *          true to take the "AssemblyVersion" or "Version" property of the project file, when defined, before reading any source file
+   */
+  AssemblyVersionResolver(int maxScannedFiles, long maxScannedBytes, boolean readProjectFile) {
+    this.maxScannedFiles = maxScannedFiles;
+    this.maxScannedBytes = maxScannedBytes;
+    this.readProjectFile = readProjectFile;
+  }
+
+  /**
+   * @return the settings of this resolver, which a version found by another resolver may not match
+   */
+  String getSettings() {
+    return maxScannedFiles + ";" + maxScannedBytes + ";" + readProjectFile;
+  }
+
+  /**
+   * Finds the assembly version of a project.
+   * 
+   * @param project
+   *          the project, with its source files
+   * @param content
+   *          the content of the project file
+   * @param inputFiles
+   *          the list where the source files read to find the version are added
+   * @return the version, or <code>null</code> if none is found
+   */
+  String resolve(VisualStudioProject project, ProjectFileContent content, List<File> inputFiles) {
+    if (readProjectFile && content != null) {
+      for (String propertyName : PROJECT_VERSION_PROPERTIES) {
+        String version = content.getProperty(propertyName);
+        if (StringUtils.isNotBlank(version)) {
+          return version.trim();
+        }
+      }
+    }
+
+    Collection<SourceFile> sourceFiles = project.getSourceFiles();
+
+    // In general, the version is in "Properties\AssemblyInfo.cs"
+    for (SourceFile file : sourceFiles) {
+      if (isAssemblyInfo(file)) {
+        inputFiles.add(file.getFile());
+        String version = readVersion(file.getFile());
+        if (version != null) {
+          return version;
+        }
+      }
+    }
+
+    int scannedFiles = 0;
+    for (SourceFile file : sourceFiles) {
+      if (isAssemblyInfo(file)) {
+        continue;
+      }
+      if (maxScannedFiles >= 0 && scannedFiles >= maxScannedFiles) {
+        LOG.debug("No assembly version found in the first {} source files of {}", maxScannedFiles, project.getName());
+        break;
+      }
+      scannedFiles++;
+      // the file is an input even without a version, as adding one to it changes the result
+      inputFiles.add(file.getFile());
+      String version = readVersion(file.getFile());
+      if (version != null) {
+        return version;
+      }
+    }
+    return null;
+  }
+
+  private static boolean isAssemblyInfo(SourceFile file) {
+    return ASSEMBLY_INFO_FILE_NAME.equalsIgnoreCase(file.getName());
+  }
+
+  /**
+   * Reads a source file until the version is found, the end of the file or the maximum number of bytes are reached.
+   */
+  String readVersion(File file) {
+    LineReader reader = null;
+    try {
+      reader = new LineReader(new BufferedInputStream(new FileInputStream(file)));
+      String line = reader.readLine();
+      if (line != null && (line.startsWith("\uFEFF") || line.startsWith("\uFFFE"))) {
+        line = line.substring(1);
+      }
+      while (line != null) {
+        Matcher matcher = VERSION_PATTERN.matcher(line);
+        if (matcher.find()) {
+          return matcher.group(1);
+        }
+        if (maxScannedBytes >= 0 && reader.readBytes >= maxScannedBytes) {
+          LOG.debug("Stopped looking for the assembly version after {} bytes of {}", reader.readBytes, file);
+          break;
+        }
+        line = reader.readLine();
+      }
+    } catch (IOException e) {
+      LOG.warn("Not able to read the file " + file.getAbsolutePath() + " to find project version", e);
+    } finally {
+      if (reader != null) {
+        IOUtils.closeQuietly(reader.stream);
+      }
+    }
+    return null;
+  }
+
+  /**
+   * Reads the lines of a UTF-8 stream and counts the bytes read, line endings included.
+   */
+  private static final class LineReader {
+
+    private final InputStream stream;
+    private final ByteArrayOutputStream line = new ByteArrayOutputStream(256);
+    private long readBytes;
+
+    private LineReader(InputStream stream) {
+      this.stream = stream;
+    }
+
+    /**
+     * @return the next line without its line ending, or <code>null</code> at the end of the stream
+     */
+    private String readLine() throws IOException {
+      int b = stream.read();
+      if (b == -1) {
+        return null;
+      }
+      line.reset();
+      while (b != -1 && b != '\n') {
+        line.write(b);
+        b = stream.read();
+      }
+      readBytes += line.size() + (b == -1 ? 0 : 1);
+      String result = line.toString("UTF-8");
+      return result.endsWith("\r") ? result.substring(0, result.length() - 1) : result;
+    }
+  }
+
+}
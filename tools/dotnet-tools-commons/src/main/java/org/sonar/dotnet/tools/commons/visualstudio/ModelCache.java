@@ -0,0 +1,357 @@
+/*
+ * .NET tools :: Commons
+ * Copyright (C) 2010 Jose Chillan, Alexandre Victoor and SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.dotnet.tools.commons.visualstudio;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.commons.io.IOUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Persistent cache of the project files read by {@link ModelFactory}, so that the projects whose files did not change since the previous
+ * analysis are not read again.<br/>
+ * For each project, the cache stores the content of the project file and the assembly version found in its sources. An entry is used only
+ * if all its input files (the project file and the source files read to find the version) still have the same size and last modification
+ * date, if the solution still has the same build configurations, as the output paths of the project are evaluated for each of them, and
+ * if the version is still looked for with the same settings.
+ */
+class ModelCache {
+
+  private static final Logger LOG = LoggerFactory.getLogger(ModelCache.class);
+
+  private static final int MAGIC = 0x444E4D43;
+  private static final int FORMAT_VERSION = 3;
+
+  private final File cacheFile;
+  private final Map<String, Entry> previousEntries;
+  private final Map<String, Entry> currentEntries = Collections.synchronizedMap(new LinkedHashMap<String, Entry>());
+  private final AtomicInteger hits = new AtomicInteger();
+  private final AtomicInteger misses = new AtomicInteger();
+
+  private ModelCache(File cacheFile, Map<String, Entry> previousEntries) {
+    this.cacheFile = cacheFile;
+    this.previousEntries = previousEntries;
+  }
+
+  /**
+   * Loads the cache from a file. A missing, unreadable or outdated file gives an empty cache.
+   *
+   * @param cacheFile
+   *          the file of the cache
+   * @return the cache
+   */
+  public static ModelCache load(File cacheFile) {
+    Map<String, Entry> entries = new HashMap<String, Entry>();
+    if (cacheFile.isFile()) {
+      DataInputStream input = null;
+      try {
+        input = new DataInputStream(new BufferedInputStream(new FileInputStream(cacheFile)));
+        if (input.readInt() == MAGIC && input.readInt() == FORMAT_VERSION) {
+          int count = input.readInt();
+          for (int i = 0; i < count; i++) {
+            String key = input.readUTF();
+            entries.put(key, readEntry(input));
+          }
+        } else {
+          LOG.debug("Ignoring the model cache {} written by another version", cacheFile);
+        }
+      } catch (IOException e) {
+        LOG.debug("Could not read the model cache " + cacheFile, e);
+        entries.clear();
+      } finally {
+        IOUtils.closeQuietly(input);
+      }
+    }
+    return new ModelCache(cacheFile, entries);
+  }
+
+  /**
+   * Gets the cached data of a project if none of its input files changed.
+   *
+   * @param projectKey
+   *          the key of the project file, see {@link ProjectCache#keyOf(File)}
+   * @param buildConfigurations
+   *          the build configurations of the solution
+   * @param versionSettings
+   *          the settings used to find the assembly version
+   * @return the cached entry, or <code>null</code> if the project must be read again
+   */
+  public Entry get(File projectKey, List<String> buildConfigurations, String versionSettings) {
+    String key = projectKey.getPath();
+    Entry entry = previousEntries.get(key);
+    if (entry != null && entry.configurations.equals(sortConfigurations(buildConfigurations))
+      && entry.versionSettings.equals(versionSettings) && entry.isUpToDate()) {
+      hits.incrementAndGet();
+      currentEntries.put(key, entry);
+      return entry;
+    }
+    misses.incrementAndGet();
+    return null;
+  }
+
+  /**
+   * Records the data read for a project.
+   *
+   * @param projectKey
+   *          the key of the project file, see {@link ProjectCache#keyOf(File)}
+   * @param buildConfigurations
+   *          the build configurations of the solution the content has been evaluated for
+   * @param versionSettings
+   *          the settings used to find the assembly version
+   * @param content
+   *          the content of the project file
+   * @param assemblyVersion
+   *          the assembly version found in the sources, may be <code>null</code>
+   * @param inputFiles
+   *          the files the data has been read from
+   */
+  public void put(File projectKey, List<String> buildConfigurations, String versionSettings, ProjectFileContent content,
+      String assemblyVersion, Collection<File> inputFiles) {
+    List<FileFingerprint> fingerprints = new ArrayList<FileFingerprint>();
+    for (File inputFile : inputFiles) {
+      fingerprints.add(new FileFingerprint(inputFile));
+    }
+    currentEntries.put(projectKey.getPath(), new Entry(sortConfigurations(buildConfigurations), versionSettings, content, assemblyVersion,
+        fingerprints));
+  }
+
+  /**
+   * @return the distinct build configurations, sorted so that the order of the solution file does not matter
+   */
+  private static List<String> sortConfigurations(List<String> buildConfigurations) {
+    return buildConfigurations == null ? new ArrayList<String>() : new ArrayList<String>(new TreeSet<String>(buildConfigurations));
+  }
+
+  public int getHits() {
+    return hits.get();
+  }
+
+  public int getMisses() {
+    return misses.get();
+  }
+
+  /**
+   * Writes the entries used or recorded since the cache was loaded, so that the projects removed from the solution are dropped.
+   */
+  public void save() {
+    File tempFile = new File(cacheFile.getPath() + ".tmp");
+    DataOutputStream output = null;
+    try {
+      File cacheDir = cacheFile.getAbsoluteFile().getParentFile();
+      if (cacheDir != null && !cacheDir.isDirectory() && !cacheDir.mkdirs()) {
+        throw new IOException("Could not create the directory " + cacheDir);
+      }
+      output = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tempFile)));
+      output.writeInt(MAGIC);
+      output.writeInt(FORMAT_VERSION);
+      synchronized (currentEntries) {
+        output.writeInt(currentEntries.size());
+        for (Map.Entry<String, Entry> entry : currentEntries.entrySet()) {
+          output.writeUTF(entry.getKey());
+          writeEntry(output, entry.getValue());
+        }
+      }
+      output.close();
+      output = null;
+      if ((cacheFile.exists() && !cacheFile.delete()) || !tempFile.renameTo(cacheFile)) {
+        throw new IOException("Could not replace the file " + cacheFile);
+      }
+    } catch (IOException e) {
+      LOG.warn("Could not write the model cache " + cacheFile, e);
+    } finally {
+      IOUtils.closeQuietly(output);
+      if (tempFile.exists() && !tempFile.delete()) {
+        LOG.debug("Could not delete the file {}", tempFile);
+      }
+    }
+  }
+
+  private static Entry readEntry(DataInputStream input) throws IOException {
+    List<String> configurations = new ArrayList<String>();
+    readStrings(input, configurations);
+    String versionSettings = input.readUTF();
+    ProjectFileContent content = new ProjectFileContent();
+    int count = input.readInt();
+    for (int i = 0; i < count; i++) {
+      content.addProperty(input.readUTF(), input.readUTF());
+    }
+    count = input.readInt();
+    for (int i = 0; i < count; i++) {
+      content.addOutputPath(input.readUTF(), input.readUTF());
+    }
+    count = input.readInt();
+    for (int i = 0; i < count; i++) {
+      content.addEvaluatedOutputPath(input.readUTF(), input.readUTF());
+    }
+    readStrings(input, content.getReferences());
+    readStrings(input, content.getProjectReferences());
+    readStrings(input, content.getCompileItems());
+    String assemblyVersion = input.readBoolean() ? input.readUTF() : null;
+    List<FileFingerprint> fingerprints = new ArrayList<FileFingerprint>();
+    count = input.readInt();
+    for (int i = 0; i < count; i++) {
+      fingerprints.add(new FileFingerprint(input.readUTF(), input.readLong(), input.readLong()));
+    }
+    return new Entry(configurations, versionSettings, content, assemblyVersion, fingerprints);
+  }
+
+  private static void writeEntry(DataOutputStream output, Entry entry) throws IOException {
+    writeStrings(output, entry.configurations);
+    output.writeUTF(entry.versionSettings);
+    ProjectFileContent content = entry.content;
+    Map<String, String> properties = content.getProperties();
+    output.writeInt(properties.size());
+    for (Map.Entry<String, String> property : properties.entrySet()) {
+      output.writeUTF(property.getKey());
+      output.writeUTF(property.getValue());
+    }
+    List<String[]> outputPaths = content.getConditionalOutputPaths();
+    output.writeInt(outputPaths.size());
+    for (String[] outputPath : outputPaths) {
+      output.writeUTF(outputPath[0]);
+      output.writeUTF(outputPath[1]);
+    }
+    Map<String, String> evaluatedOutputPaths = content.getEvaluatedOutputPaths();
+    output.writeInt(evaluatedOutputPaths.size());
+    for (Map.Entry<String, String> evaluatedOutputPath : evaluatedOutputPaths.entrySet()) {
+      output.writeUTF(evaluatedOutputPath.getKey());
+      output.writeUTF(evaluatedOutputPath.getValue());
+    }
+    writeStrings(output, content.getReferences());
+    writeStrings(output, content.getProjectReferences());
+    writeStrings(output, content.getCompileItems());
+    output.writeBoolean(entry.assemblyVersion != null);
+    if (entry.assemblyVersion != null) {
+      output.writeUTF(entry.assemblyVersion);
+    }
+    output.writeInt(entry.fingerprints.size());
+    for (FileFingerprint fingerprint : entry.fingerprints) {
+      output.writeUTF(fingerprint.path);
+      output.writeLong(fingerprint.length);
+      output.writeLong(fingerprint.lastModified);
+    }
+  }
+
+  private static void readStrings(DataInputStream input, List<String> strings) throws IOException {
+    int count = input.readInt();
+    for (int i = 0; i < count; i++) {
+      strings.add(input.readUTF());
+    }
+  }
+
+  private static void writeStrings(DataOutputStream output, List<String> strings) throws IOException {
+    output.writeInt(strings.size());
+    for (String string : strings) {
+      output.writeUTF(string);
+    }
+  }
+
+  /**
+   * The cached data of a project.
+   */
+  static final class Entry {
+
+    private final List<String> configurations;
+    private final String versionSettings;
+    private final ProjectFileContent content;
+    private final String assemblyVersion;
+    private final List<FileFingerprint> fingerprints;
+
+    private Entry(List<String> configurations, String versionSettings, ProjectFileContent content, String assemblyVersion,
+        List<FileFingerprint> fingerprints) {
+      this.configurations = configurations;
+      this.versionSettings = versionSettings;
+      this.content = content;
+      this.assemblyVersion = assemblyVersion;
+      this.fingerprints = fingerprints;
+    }
+
+    public ProjectFileContent getContent() {
+      return content;
+    }
+
+    public String getAssemblyVersion() {
+      return assemblyVersion;
+    }
+
+    /**
+     * @return the files the data has been read from
+     */
+    public List<File> getInputFiles() {
+      List<File> inputFiles = new ArrayList<File>();
+      for (FileFingerprint fingerprint : fingerprints) {
+        inputFiles.add(new File(fingerprint.path));
+      }
+      return inputFiles;
+    }
+
+    private boolean isUpToDate() {
+      for (FileFingerprint fingerprint : fingerprints) {
+        if ( !fingerprint.isUpToDate()) {
+          return false;
+        }
+      }
+      return true;
+    }
+  }
+
+  /**
+   * Path, size and last modification date of a file.
+   */
+  private static final class FileFingerprint {
+
+    private final String path;
+    private final long length;
+    private final long lastModified;
+
+    private FileFingerprint(File file) {
+      this(file.getPath(), file.length(), file.lastModified());
+    }
+
+    private FileFingerprint(String path, long length, long lastModified) {
+      this.path = path;
+      this.length = length;
+      this.lastModified = lastModified;
+    }
+
+    private boolean isUpToDate() {
+      File file = new File(path);
+      return file.isFile() && file.length() == length && file.lastModified() == lastModified;
+    }
+  }
+
+}
@@ -26,13 +26,23 @@ import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileNotFoundException;
 import java.io.IOException;
+import java.io.InputStream;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashMap;
 import java.util.Iterator;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -44,12 +54,15 @@ import javax.xml.xpath.XPathExpression;
 import javax.xml.xpath.XPathExpressionException;
 import javax.xml.xpath.XPathFactory;
 
-import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.FilenameUtils;
+import org.apache.commons.io.IOUtils;
 import org.apache.commons.lang.StringUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.sonar.api.utils.WildcardPattern;
 import org.sonar.dotnet.tools.commons.DotNetToolsException;
+import org.sonar.dotnet.tools.commons.utils.CanonicalPathCache;
+import org.sonar.dotnet.tools.commons.utils.DirectoryWalker;
 import org.w3c.dom.Element;
 import org.w3c.dom.NodeList;
 import org.xml.sax.InputSource;
@@ -68,7 +81,39 @@ public final class ModelFactory {
   /*
    * Pattern used to define if a project is a test project or not
    */
-  private static String testProjectNamePattern = "*.Tests";
+  private static volatile String testProjectNamePattern = "*.Tests";
+
+  /*
+   * Whether project files are read with the historical XPath expressions instead of the single pass reader
+   */
+  private static volatile boolean useXPathProjectReader = false;
+
+  /*
+   * Number of threads used to read the projects of a solution
+   */
+  private static volatile int modelLoadThreads = 1;
+
+  /*
+   * Threads shared by the walks of the web project directories, if more than one
+   */
+  private static ExecutorService walkerExecutor;
+
+  /*
+   * File of the persistent cache of the projects, null if the projects are always read
+   */
+  private static volatile File modelCacheFile;
+
+  /*
+   * Limits of the search of the assembly version in the source files, and whether the project file may define it
+   */
+  private static volatile int versionScanMaxFiles = 100;
+  private static volatile long versionScanMaxBytes = 65536;
+  private static volatile boolean versionFromProjectFile = false;
+
+  /*
+   * Names of the directories skipped when listing the source files of web projects
+   */
+  private static volatile Collection<String> skippedDirectories = DirectoryWalker.DEFAULT_SKIPPED_DIRECTORIES;
 
   private ModelFactory() {
   }
@@ -83,6 +128,85 @@ public final class ModelFactory {
     ModelFactory.testProjectNamePattern = testProjectNamePattern;
   }
 
+  /**
+   * Reads the project files with one XPath expression per property, as older versions did, instead of reading each project file in a
+   * single pass. Only meant to compare both implementations.
+   * 
+   * @param useXPathProjectReader
+   *          true to use the XPath implementation
+   */
+  public static void setUseXPathProjectReader(boolean useXPathProjectReader) {
+    ModelFactory.useXPathProjectReader = useXPathProjectReader;
+  }
+
+  /**
+   * Sets the number of threads used to read the projects of a solution. With more than one thread, the projects are read concurrently
+   * but the solution still lists them in the order of the .sln file.
+   * 
+   * @param modelLoadThreads
+   *          the number of threads, 1 to read the projects one after another
+   */
+  public static synchronized void setModelLoadThreads(int modelLoadThreads) {
+    ModelFactory.modelLoadThreads = Math.max(1, modelLoadThreads);
+    if (walkerExecutor != null) {
+      walkerExecutor.shutdown();
+    }
+    walkerExecutor = DirectoryWalker.newExecutor(ModelFactory.modelLoadThreads);
+  }
+
+  /**
+   * Sets the file where the projects read from a solution are cached between two analyses. The projects whose project file and
+   * AssemblyInfo files did not change are then taken from this cache instead of being read again.
+   * 
+   * @param modelCacheFile
+   *          the cache file, <code>null</code> to always read the projects
+   */
+  public static void setModelCacheFile(File modelCacheFile) {
+    ModelFactory.modelCacheFile = modelCacheFile;
+  }
+
+  /**
+   * Sets the limits of the search of the assembly version. The AssemblyInfo.cs files are always read first; when they do not define the
+   * version, at most the given number of other source files are read.
+   * 
+   * @param maxFiles
+   *          the maximum number of source files other than AssemblyInfo.cs read, a negative value for no limit
+   * @param maxBytes
+   *          the maximum number of bytes read in each source file, line endings included, a negative value for no limit
+   */
+  public static void setVersionScanLimits(int maxFiles, long maxBytes) {
+    ModelFactory.versionScanMaxFiles = maxFiles;
+    ModelFactory.versionScanMaxBytes = maxBytes;
+  }
+
+  /**
+   * Takes the assembly version from the "AssemblyVersion" or "Version" property of the project file when it is defined, instead of
+   * looking for it in the source files.
+   * 
+   * @param versionFromProjectFile
+   *          true to read the version from the project file first
+   */
+  public static void setVersionFromProjectFile(boolean versionFromProjectFile) {
+    ModelFactory.versionFromProjectFile = versionFromProjectFile;
+  }
+
+  /**
+   * Sets the names of the directories skipped when listing the source files of web projects, which have no project file.
+   * 
+   * @param skippedDirectories
+   *          the directory names, {@link DirectoryWalker#DEFAULT_SKIPPED_DIRECTORIES} by default
+   */
+  public static void setSkippedDirectories(Collection<String> skippedDirectories) {
+    ModelFactory.skippedDirectories = new ArrayList<String>(skippedDirectories);
+  }
+
+  /**
+   * Creates the walker used to list the source files of web projects.
+   */
+  static synchronized DirectoryWalker createDirectoryWalker() {
+    return new DirectoryWalker(skippedDirectories, walkerExecutor);
+  }
+
   /**
    * Checks, whether the child directory is a subdirectory of the base directory.
    * 
@@ -96,8 +220,8 @@ public final class ModelFactory {
    */
   public static boolean isSubDirectory(File base, File child) {
     try {
-      File baseFile = base.getCanonicalFile();
-      File childFile = child.getCanonicalFile();
+      File baseFile = CanonicalPathCache.getInstance().getCanonicalFile(base);
+      File childFile = CanonicalPathCache.getInstance().getCanonicalFile(child);
       File parentFile = childFile;
 
       // Checks recursively if "base" is one of the parent of "child"
@@ -165,103 +289,208 @@ public final class ModelFactory {
    */
   public static VisualStudioSolution getSolution(File solutionFile) throws IOException, DotNetToolsException {
 
-    String solutionContent = FileUtils.readFileToString(solutionFile);
-    List<String> buildConfigurations = getBuildConfigurations(solutionContent);
+    SolutionFileContent solutionContent = SolutionFileReader.read(solutionFile);
+    List<String> buildConfigurations = solutionContent.getBuildConfigurations();
 
-    List<VisualStudioProject> projects = getProjects(solutionFile, solutionContent, buildConfigurations);
+    // The XPath reader only reads the output paths of the build configurations it is given
+    File cacheFile = modelCacheFile;
+    ModelCache modelCache = cacheFile == null || useXPathProjectReader ? null : ModelCache.load(cacheFile);
+    List<VisualStudioProject> projects = getProjects(solutionFile, solutionContent, buildConfigurations, modelCache);
+    if (modelCache != null) {
+      modelCache.save();
+      LOG.info("Model cache: {} project(s) reused, {} project(s) read", modelCache.getHits(), modelCache.getMisses());
+    }
     VisualStudioSolution solution = new VisualStudioSolution(solutionFile, projects);
     solution.setBuildConfigurations(buildConfigurations);
     solution.setName(solutionFile.getName());
     return solution;
   }
 
-  private static List<String> getBuildConfigurations(String solutionContent) {
-    // A pattern to extract the build configurations from a visual studio solution
-    String confExtractExp = "(\tGlobalSection\\(SolutionConfigurationPlatforms\\).*?^\tEndGlobalSection$)";
-    Pattern confExtractPattern = Pattern.compile(confExtractExp, Pattern.MULTILINE + Pattern.DOTALL);
-    List<String> buildConfigurations = new ArrayList<String>();
-    // Extracts all the projects from the solution
-    Matcher blockMatcher = confExtractPattern.matcher(solutionContent);
-    if (blockMatcher.find()) {
-      String buildConfigurationBlock = blockMatcher.group(1);
-      String buildConfExtractExp = " = (.*)\\|";
-      Pattern buildConfExtractPattern = Pattern.compile(buildConfExtractExp);
-      Matcher buildConfMatcher = buildConfExtractPattern.matcher(buildConfigurationBlock);
-      while (buildConfMatcher.find()) {
-        String buildConfiguration = buildConfMatcher.group(1);
-        buildConfigurations.add(buildConfiguration);
-      }
-    }
-    return buildConfigurations;
-  }
-
   /**
    * Gets all the projects in a solution.
    * 
    * @param solutionFile
    *          the solution file
    * @param solutionContent
-   *          the text content of the solution file
+   *          the content of the solution file
    * @return a list of projects
    * @throws IOException
    * @throws DotNetToolsException
    */
-  private static List<VisualStudioProject> getProjects(File solutionFile, String solutionContent, List<String> buildConfigurations)
-      throws IOException, DotNetToolsException {
+  private static List<VisualStudioProject> getProjects(File solutionFile, SolutionFileContent solutionContent,
+      final List<String> buildConfigurations, ModelCache modelCache) throws IOException, DotNetToolsException {
+
+    File baseDirectory = solutionFile.getParentFile();
+    ProjectCache projectCache = createProjectCache(baseDirectory, solutionContent, buildConfigurations, modelCache);
+
+    List<Callable<VisualStudioProject>> loaders = new ArrayList<Callable<VisualStudioProject>>();
+    for (SolutionFileContent.ProjectEntry entry : solutionContent.getProjects()) {
+      Callable<VisualStudioProject> loader = createLoader(baseDirectory, entry, buildConfigurations, projectCache);
+      if (loader != null) {
+        loaders.add(loader);
+      }
+    }
+    List<VisualStudioProject> projects = loadProjects(loaders);
+    LOG.debug("{}", projectCache.getImportCache());
+    return projects;
+  }
 
+  /**
+   * Reads again a project of a solution, for instance because its project file has changed. The projects it references are taken from
+   * the given ones when possible, so that only the project itself is read.
+   * 
+   * @param solutionFile
+   *          the solution file
+   * @param solutionContent
+   *          the content of the solution file
+   * @param projectName
+   *          the name of the project in the solution
+   * @param knownProjects
+   *          the projects already read, whose instances are kept
+   * @return the project, or <code>null</code> if the solution has no such project
+   */
+  static VisualStudioProject reloadProject(File solutionFile, SolutionFileContent solutionContent, String projectName,
+      List<VisualStudioProject> knownProjects) throws IOException, DotNetToolsException {
     File baseDirectory = solutionFile.getParentFile();
+    List<String> buildConfigurations = solutionContent.getBuildConfigurations();
+    ProjectCache projectCache = createProjectCache(baseDirectory, solutionContent, buildConfigurations, null);
+    for (VisualStudioProject knownProject : knownProjects) {
+      if (knownProject.getProjectFile() != null && !projectName.equals(knownProject.getName())) {
+        projectCache.register(knownProject.getProjectFile(), knownProject);
+      }
+    }
+    for (SolutionFileContent.ProjectEntry entry : solutionContent.getProjects()) {
+      if (projectName.equals(entry.getName())) {
+        Callable<VisualStudioProject> loader = createLoader(baseDirectory, entry, buildConfigurations, projectCache);
+        return loader == null ? null : callLoader(loader);
+      }
+    }
+    return null;
+  }
 
-    // A pattern to extract the projects from a visual studion solution
-    String projectExtractExp = "(Project.*?^EndProject$)";
-    Pattern projectExtractPattern = Pattern.compile(projectExtractExp, Pattern.MULTILINE + Pattern.DOTALL);
-    List<String> projectDefinitions = new ArrayList<String>();
-    // Extracts all the projects from the solution
-    Matcher globalMatcher = projectExtractPattern.matcher(solutionContent);
-    while (globalMatcher.find()) {
-      String projectDefinition = globalMatcher.group(1);
-      projectDefinitions.add(projectDefinition);
+  private static ProjectCache createProjectCache(File baseDirectory, SolutionFileContent solutionContent,
+      List<String> buildConfigurations, ModelCache modelCache) {
+    // Projects of the solution keep their solution name even if they are first read through a project reference
+    ProjectCache projectCache = new ProjectCache(buildConfigurations, testProjectNamePattern, modelCache);
+    for (SolutionFileContent.ProjectEntry entry : solutionContent.getProjects()) {
+      if (isProjectFile(entry)) {
+        projectCache.declare(new File(baseDirectory, getProjectPath(entry)), entry.getName());
+      }
     }
+    return projectCache;
+  }
 
-    // This pattern extracts the projects from a Visual Studio solution
-    String normalProjectExp = "\\s*Project\\([^\\)]*\\)\\s*=\\s*\"([^\"]*)\"\\s*,\\s*\"([^\"]*?\\.csproj)\"";
-    String webProjectExp = "\\s*Project\\([^\\)]*\\)\\s*=\\s*\"([^\"]*).*?ProjectSection\\(WebsiteProperties\\).*?"
-        + "Debug\\.AspNetCompiler\\.PhysicalPath\\s*=\\s*\"([^\"]*)";
-    Pattern projectPattern = Pattern.compile(normalProjectExp);
-    Pattern webPattern = Pattern.compile(webProjectExp, Pattern.MULTILINE + Pattern.DOTALL);
+  /**
+   * @return the loader of the project of a solution entry, or <code>null</code> for solution folders
+   */
+  private static Callable<VisualStudioProject> createLoader(final File baseDirectory, SolutionFileContent.ProjectEntry entry,
+      final List<String> buildConfigurations, final ProjectCache projectCache) throws FileNotFoundException {
+    final String projectName = entry.getName();
+    // Looks for project files
+    if (isProjectFile(entry)) {
+      final File projectFile = new File(baseDirectory, getProjectPath(entry));
+      if ( !projectFile.exists()) {
+        throw new FileNotFoundException("Could not find the project file: " + projectFile);
+      }
+      return new Callable<VisualStudioProject>() {
 
-    List<VisualStudioProject> result = new ArrayList<VisualStudioProject>();
-    for (String projectDefinition : projectDefinitions) {
-      // Looks for project files
-      Matcher matcher = projectPattern.matcher(projectDefinition);
-      if (matcher.find()) {
-        String projectName = matcher.group(1);
-        String projectPath = StringUtils.replace(matcher.group(2), "\\", File.separatorChar + "");
-
-        File projectFile = new File(baseDirectory, projectPath);
-        if (!projectFile.exists()) {
-          throw new FileNotFoundException("Could not find the project file: " + projectFile);
-        }
-        VisualStudioProject project = getProject(projectFile, projectName, buildConfigurations);
-        result.add(project);
-      } else {
-        // Searches the web project
-        Matcher webMatcher = webPattern.matcher(projectDefinition);
-
-        if (webMatcher.find()) {
-          String projectName = webMatcher.group(1);
-          String projectPath = webMatcher.group(2);
-          if (projectPath.endsWith("\\")) {
-            projectPath = StringUtils.chop(projectPath);
-          }
-          File projectRoot = new File(baseDirectory, projectPath);
-          VisualStudioProject project = getWebProject(baseDirectory, projectRoot, projectName, projectDefinition);
-          result.add(project);
+        public VisualStudioProject call() throws IOException, DotNetToolsException {
+          return getProject(projectFile, projectName, buildConfigurations, projectCache);
         }
+      };
+    }
+    // Searches the web project, solution folders have no physical path
+    final Map<String, String> websiteProperties = entry.getWebsiteProperties();
+    String projectPath = websiteProperties.get("Debug.AspNetCompiler.PhysicalPath");
+    if (projectPath == null) {
+      return null;
+    }
+    if (projectPath.endsWith("\\")) {
+      projectPath = StringUtils.chop(projectPath);
+    }
+    final File projectRoot = new File(baseDirectory, projectPath);
+    return new Callable<VisualStudioProject>() {
+
+      public VisualStudioProject call() {
+        return createWebProject(baseDirectory, projectRoot, projectName, websiteProperties.get("Debug.AspNetCompiler.TargetPath"),
+            websiteProperties.get("Release.AspNetCompiler.TargetPath"));
+      }
+    };
+  }
+
+  private static boolean isProjectFile(SolutionFileContent.ProjectEntry entry) {
+    return entry.getPath().endsWith(".csproj");
+  }
+
+  private static String getProjectPath(SolutionFileContent.ProjectEntry entry) {
+    return StringUtils.replace(entry.getPath(), "\\", File.separatorChar + "");
+  }
+
+  /**
+   * Runs the project loaders, concurrently if {@link #setModelLoadThreads(int)} allows it.
+   * 
+   * @return the loaded projects, in the order of the loaders
+   */
+  private static List<VisualStudioProject> loadProjects(List<Callable<VisualStudioProject>> loaders) throws IOException,
+      DotNetToolsException {
+    List<VisualStudioProject> result = new ArrayList<VisualStudioProject>();
+    int threads = Math.min(modelLoadThreads, loaders.size());
+    if (threads <= 1) {
+      for (Callable<VisualStudioProject> loader : loaders) {
+        result.add(callLoader(loader));
+      }
+      return result;
+    }
+
+    LOG.debug("Loading {} projects with {} threads", loaders.size(), threads);
+    ExecutorService executor = Executors.newFixedThreadPool(threads, new ModelLoaderThreadFactory());
+    try {
+      List<Future<VisualStudioProject>> futures = new ArrayList<Future<VisualStudioProject>>();
+      for (Callable<VisualStudioProject> loader : loaders) {
+        futures.add(executor.submit(loader));
       }
+      for (Future<VisualStudioProject> future : futures) {
+        result.add(getLoadedProject(future));
+      }
+    } finally {
+      executor.shutdownNow();
     }
     return result;
   }
 
+  private static VisualStudioProject callLoader(Callable<VisualStudioProject> loader) throws IOException, DotNetToolsException {
+    try {
+      return loader.call();
+    } catch (IOException e) {
+      throw e;
+    } catch (DotNetToolsException e) {
+      throw e;
+    } catch (Exception e) {
+      throw new DotNetToolsException("Could not load a project", e);
+    }
+  }
+
+  private static VisualStudioProject getLoadedProject(Future<VisualStudioProject> future) throws IOException, DotNetToolsException {
+    try {
+      return future.get();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new DotNetToolsException("Interrupted while loading the projects", e);
+    } catch (ExecutionException e) {
+      Throwable cause = e.getCause();
+      if (cause instanceof IOException) {
+        throw (IOException) cause;
+      } else if (cause instanceof DotNetToolsException) {
+        throw (DotNetToolsException) cause;
+      } else if (cause instanceof RuntimeException) {
+        throw (RuntimeException) cause;
+      } else if (cause instanceof Error) {
+        throw (Error) cause;
+      }
+      throw new DotNetToolsException("Could not load a project", cause);
+    }
+  }
+
   /**
    * Creates a project from its file
    * 
@@ -289,12 +518,166 @@ public final class ModelFactory {
    */
   public static VisualStudioProject getProject(File projectFile, String projectName, List<String> buildConfigurations)
       throws FileNotFoundException, DotNetToolsException {
+    return getProject(projectFile, projectName, buildConfigurations, new ProjectCache(null, testProjectNamePattern, null));
+  }
+
+  /**
+   * Gets a project from the given cache, or reads it and its referenced projects and puts them in the cache.
+   */
+  private static VisualStudioProject getProject(File projectFile, String projectName, List<String> buildConfigurations,
+      ProjectCache projectCache) throws DotNetToolsException {
+
+    File projectKey = ProjectCache.keyOf(projectFile);
+    if ( !projectCache.claim(projectKey)) {
+      return projectCache.get(projectKey);
+    }
+
+    AssemblyVersionResolver versionResolver = new AssemblyVersionResolver(versionScanMaxFiles, versionScanMaxBytes,
+        versionFromProjectFile);
+    ModelCache modelCache = projectCache.getModelCache();
+    ModelCache.Entry cachedEntry = modelCache == null ? null : modelCache.get(projectKey, buildConfigurations,
+        versionResolver.getSettings());
 
     VisualStudioProject project = new VisualStudioProject();
+    ProjectFileContent content = null;
+    try {
+      ProjectFileContent projectContent = cachedEntry == null ? readProjectFile(projectFile, buildConfigurations,
+          projectCache.getImportCache()) : cachedEntry.getContent();
+      readProjectProperties(project, projectFile, projectName, buildConfigurations, projectContent);
+      content = projectContent;
+    } finally {
+      // Other threads waiting for this project can go on, even if it could not be read
+      projectCache.propertiesRead(projectKey, content == null ? null : project);
+    }
+
+    projectCache.startResolvingReferences(projectKey);
+    try {
+      project.setProjectReferences(getProjectReferences(content, project, projectCache));
+    } finally {
+      projectCache.endResolvingReferences(projectKey);
+    }
+
+    if (cachedEntry == null) {
+      List<File> inputFiles = new ArrayList<File>();
+      inputFiles.add(projectFile);
+      inputFiles.addAll(content.getImportedFiles());
+      project.setAssemblyVersion(versionResolver.resolve(project, content, inputFiles));
+      if (modelCache != null) {
+        modelCache.put(projectKey, buildConfigurations, versionResolver.getSettings(), content, project.getAssemblyVersion(),
+            inputFiles);
+      }
+      project.setInputFiles(inputFiles);
+    } else {
+      project.setAssemblyVersion(cachedEntry.getAssemblyVersion());
+      project.setInputFiles(cachedEntry.getInputFiles());
+    }
+
+    assessTestProject(project, projectCache.getTestProjectNamePattern());
+
+    return project;
+  }
+
+  /**
+   * Populates a project with the properties read from its project file, which do not depend on other projects.
+   */
+  private static void readProjectProperties(VisualStudioProject project, File projectFile, String projectName,
+      List<String> buildConfigurations, ProjectFileContent content) {
     project.setProjectFile(projectFile);
     project.setName(projectName);
     File projectDir = projectFile.getParentFile();
 
+    if (buildConfigurations != null) {
+      Map<String, File> buildConfOutputDirMap = new HashMap<String, File>();
+      for (String config : buildConfigurations) {
+        String configOutput = content.getOutputPath(config);
+        buildConfOutputDirMap.put(config, getOutputDirectory(projectDir, configOutput));
+      }
+      project.setBuildConfOutputDirMap(buildConfOutputDirMap);
+    }
+
+    // Extracts the properties of a Visual Studio Project
+    String typeStr = content.getProperty("OutputType");
+    String silverlightStr = content.getProperty("SilverlightApplication");
+    String assemblyName = content.getProperty("AssemblyName");
+    String rootNamespace = content.getProperty("RootNamespace");
+    String debugOutput = content.getOutputPath("Debug");
+    String releaseOutput = content.getOutputPath("Release");
+    String projectGuid = content.getProperty("ProjectGuid");
+
+    // because the GUID starts with { and ends with }, remove these characters
+    projectGuid = projectGuid.substring(1, projectGuid.length() - 2);
+
+    // Assess if the artifact is a library or an executable
+    ArtifactType type = ArtifactType.LIBRARY;
+    if (StringUtils.containsIgnoreCase(typeStr, "exe")) {
+      type = ArtifactType.EXECUTABLE;
+    }
+    // The project is populated
+    project.setProjectGuid(UUID.fromString(projectGuid));
+    project.setProjectFile(projectFile);
+    project.setType(type);
+    project.setDirectory(projectDir);
+    project.setAssemblyName(assemblyName);
+    project.setRootNamespace(rootNamespace);
+    project.setDebugOutputDir(getOutputDirectory(projectDir, debugOutput));
+    project.setReleaseOutputDir(getOutputDirectory(projectDir, releaseOutput));
+
+    if (StringUtils.isNotEmpty(silverlightStr)) {
+      project.setSilverlightProject(true);
+    }
+
+    project.setFilesPath(getFilesPath(content));
+    project.setBinaryReferences(getBinaryReferences(content));
+  }
+
+  /**
+   * Gets an output directory, which is relative to the project directory unless it has been evaluated from an absolute path such as
+   * "$(MSBuildThisFileDirectory)..\bin".
+   */
+  private static File getOutputDirectory(File projectDir, String outputPath) {
+    String localPath = StringUtils.replace(outputPath, "\\", File.separator);
+    if (new File(localPath).isAbsolute()) {
+      String normalizedPath = FilenameUtils.normalize(localPath);
+      return new File(normalizedPath == null ? localPath : normalizedPath);
+    }
+    return new File(projectDir, outputPath);
+  }
+
+  /**
+   * Reads a project file and evaluates the properties that come from imported files or from property expansions, for the given build
+   * configurations as well as "Debug" and "Release".
+   */
+  private static ProjectFileContent readProjectFile(File projectFile, List<String> buildConfigurations, MsBuildImportCache importCache)
+      throws DotNetToolsException {
+    ProjectFileContent content = readProjectFile(projectFile, buildConfigurations);
+    Set<String> evaluatedConfigurations = new LinkedHashSet<String>();
+    if (buildConfigurations != null) {
+      evaluatedConfigurations.addAll(buildConfigurations);
+    }
+    evaluatedConfigurations.add("Debug");
+    evaluatedConfigurations.add("Release");
+    new MsBuildEvaluator(importCache).evaluate(projectFile, content, evaluatedConfigurations);
+    return content;
+  }
+
+  /**
+   * Reads a project file, either in a single streaming pass or, if {@link #setUseXPathProjectReader(boolean)} has been called, with the
+   * historical XPath expressions.
+   */
+  private static ProjectFileContent readProjectFile(File projectFile, List<String> buildConfigurations) throws DotNetToolsException {
+    if (useXPathProjectReader) {
+      return readProjectFileWithXPath(projectFile, buildConfigurations);
+    }
+    return ProjectFileReader.read(projectFile);
+  }
+
+  /**
+   * Reads a project file evaluating one XPath expression per property. Kept to compare with the streaming reader.
+   */
+  private static ProjectFileContent readProjectFileWithXPath(File projectFile, List<String> buildConfigurations)
+      throws DotNetToolsException {
+    ProjectFileContent content = new ProjectFileContent();
+
     XPathFactory factory = XPathFactory.newInstance();
     XPath xpath = factory.newXPath();
 
@@ -305,99 +688,30 @@ public final class ModelFactory {
       // We define the namespace prefix for Visual Studio
       xpath.setNamespaceContext(new VisualStudioNamespaceContext());
 
+      List<String> conditions = new ArrayList<String>();
       if (buildConfigurations != null) {
-        Map<String, File> buildConfOutputDirMap = new HashMap<String, File>();
-        for (String config : buildConfigurations) {
-          XPathExpression configOutputExpression = xpath.compile("/vst:Project/vst:PropertyGroup[contains(@Condition,'" + config
-              + "')]/vst:OutputPath");
-          String configOutput = extractProjectProperty(configOutputExpression, projectFile);
-          buildConfOutputDirMap.put(config, new File(projectDir, configOutput));
-        }
-        project.setBuildConfOutputDirMap(buildConfOutputDirMap);
+        conditions.addAll(buildConfigurations);
       }
-
-      XPathExpression projectTypeExpression = xpath.compile("/vst:Project/vst:PropertyGroup/vst:OutputType");
-      XPathExpression assemblyNameExpression = xpath.compile("/vst:Project/vst:PropertyGroup/vst:AssemblyName");
-      XPathExpression rootNamespaceExpression = xpath.compile("/vst:Project/vst:PropertyGroup/vst:RootNamespace");
-      XPathExpression debugOutputExpression = xpath.compile("/vst:Project/vst:PropertyGroup[contains(@Condition,'Debug')]/vst:OutputPath");
-      XPathExpression releaseOutputExpression = xpath
-          .compile("/vst:Project/vst:PropertyGroup[contains(@Condition,'Release')]/vst:OutputPath");
-      XPathExpression silverlightExpression = xpath.compile("/vst:Project/vst:PropertyGroup/vst:SilverlightApplication");
-      XPathExpression projectGuidExpression = xpath.compile("/vst:Project/vst:PropertyGroup/vst:ProjectGuid");
-
-      // Extracts the properties of a Visual Studio Project
-      String typeStr = extractProjectProperty(projectTypeExpression, projectFile);
-      String silverlightStr = extractProjectProperty(silverlightExpression, projectFile);
-      String assemblyName = extractProjectProperty(assemblyNameExpression, projectFile);
-      String rootNamespace = extractProjectProperty(rootNamespaceExpression, projectFile);
-      String debugOutput = extractProjectProperty(debugOutputExpression, projectFile);
-      String releaseOutput = extractProjectProperty(releaseOutputExpression, projectFile);
-      String projectGuid = extractProjectProperty(projectGuidExpression, projectFile);
-
-      // because the GUID starts with { and ends with }, remove these characters
-      projectGuid = projectGuid.substring(1, projectGuid.length() - 2);
-
-      // Assess if the artifact is a library or an executable
-      ArtifactType type = ArtifactType.LIBRARY;
-      if (StringUtils.containsIgnoreCase(typeStr, "exe")) {
-        type = ArtifactType.EXECUTABLE;
-      }
-      // The project is populated
-      project.setProjectGuid(UUID.fromString(projectGuid));
-      project.setProjectFile(projectFile);
-      project.setType(type);
-      project.setDirectory(projectDir);
-      project.setAssemblyName(assemblyName);
-      project.setRootNamespace(rootNamespace);
-      project.setDebugOutputDir(new File(projectDir, debugOutput));
-      project.setReleaseOutputDir(new File(projectDir, releaseOutput));
-
-      if (StringUtils.isNotEmpty(silverlightStr)) {
-        project.setSilverlightProject(true);
-      }
-
-      project.setBinaryReferences(getBinaryReferences(xpath, projectFile));
-
-      // ???
-      Thread.currentThread().setContextClassLoader(savedClassloader);
-
-      project.setProjectReferences(getProjectReferences(xpath, projectFile,
-          project));
-
-      // Get all source files to find the assembly version
-      // [assembly: AssemblyVersion("1.0.0.0")]
-      Collection<SourceFile> sourceFiles = project.getSourceFiles();
-
-      String version = null;
-
-      // first parse: in general, it's in the "Properties\AssemblyInfo.cs"
-      for (SourceFile file : sourceFiles)
-      {
-        if (file.getName().equalsIgnoreCase("assemblyinfo.cs"))
-        {
-          version = tryToGetVersion(file);
-
-          if (version != null) {
-            break;
-          }
-        }
+      conditions.add("Debug");
+      conditions.add("Release");
+      for (String condition : conditions) {
+        XPathExpression configOutputExpression = xpath.compile("/vst:Project/vst:PropertyGroup[contains(@Condition,'" + condition
+          + "')]/vst:OutputPath");
+        content.addOutputPath(condition, extractProjectProperty(configOutputExpression, projectFile));
       }
 
-      // second parse: try to read all files
-      for (SourceFile file : sourceFiles)
-      {
-        version = tryToGetVersion(file);
-
-        if (version != null) {
-          break;
-        }
+      String[] propertyNames = {"OutputType", "SilverlightApplication", "AssemblyName", "RootNamespace", "ProjectGuid",
+        "TargetFrameworkIdentifier", "TargetFrameworkVersion", "AssemblyVersion", "Version"};
+      for (String propertyName : propertyNames) {
+        XPathExpression propertyExpression = xpath.compile("/vst:Project/vst:PropertyGroup/vst:" + propertyName);
+        content.addProperty(propertyName, extractProjectProperty(propertyExpression, projectFile));
       }
 
-      project.setAssemblyVersion(version);
-
-      assessTestProject(project, testProjectNamePattern);
+      extractIncludes(xpath.compile("/vst:Project/vst:ItemGroup/vst:Reference"), projectFile, content.getReferences());
+      extractIncludes(xpath.compile("/vst:Project/vst:ItemGroup/vst:ProjectReference"), projectFile, content.getProjectReferences());
+      extractIncludes(xpath.compile("/vst:Project/vst:ItemGroup/vst:Compile"), projectFile, content.getCompileItems());
 
-      return project;
+      return content;
     } catch (XPathExpressionException xpee) {
       throw new DotNetToolsException("Error while processing the project " + projectFile, xpee);
     } finally {
@@ -406,124 +720,94 @@ public final class ModelFactory {
     }
   }
 
-  private static String tryToGetVersion(SourceFile file) {
-    String content;
+  private static void extractIncludes(XPathExpression expression, File projectFile, List<String> includes) throws DotNetToolsException {
+    InputStream projectStream = null;
     try {
-      content = org.apache.commons.io.FileUtils.readFileToString(file.getFile(), "UTF-8");
-      if (content.startsWith("\uFEFF") || content.startsWith("\uFFFE")) {
-        content = content.substring(1);
-      }
-
-      Pattern p = Pattern.compile("^[^/]*\\[assembly:\\sAssemblyVersion\\(\"([^\"]*)\"\\)\\].*$", Pattern.MULTILINE);
-      Matcher m = p.matcher(content);
-      if (m.find())
-      {
-        return m.group(1);
+      projectStream = new FileInputStream(projectFile);
+      InputSource inputSource = new InputSource(projectStream);
+      NodeList nodes = (NodeList) expression.evaluate(inputSource, XPathConstants.NODESET);
+      int countNodes = nodes.getLength();
+      for (int idxNode = 0; idxNode < countNodes; idxNode++) {
+        Element includeElement = (Element) nodes.item(idxNode);
+        includes.add(includeElement.getAttribute("Include"));
       }
-
-    } catch (IOException e) {
-      LOG.warn("Not able to read the file " + file.getFile().getAbsolutePath() + " to find project version", e);
+    } catch (Exception e) {
+      throw new DotNetToolsException("Could not evaluate the expression " + expression + " on project " + projectFile, e);
+    } finally {
+      IOUtils.closeQuietly(projectStream);
     }
-    return null;
   }
 
-  private static List<BinaryReference> getBinaryReferences(XPath xpath, File projectFile) throws DotNetToolsException {
+  private static List<BinaryReference> getBinaryReferences(ProjectFileContent content) {
     List<BinaryReference> result = new ArrayList<BinaryReference>();
-    try {
 
-      XPathExpression targetFwkIdExpression = xpath.compile("/vst:Project/vst:PropertyGroup/vst:TargetFrameworkIdentifier");
-      XPathExpression targetFwkVersionExpression = xpath.compile("/vst:Project/vst:PropertyGroup/vst:TargetFrameworkVersion");
+    String fwkId = content.getProperty("TargetFrameworkIdentifier");
+    String fwkversion = content.getProperty("TargetFrameworkVersion");
 
-      String fwkId = extractProjectProperty(targetFwkIdExpression, projectFile);
-      String fwkversion = extractProjectProperty(targetFwkVersionExpression, projectFile);
+    final String systemVersion;
+    if (StringUtils.isEmpty(fwkId)) {
+      systemVersion = fwkversion;
+    } else {
+      systemVersion = fwkId + '.' + fwkversion;
+    }
 
-      final String systemVersion;
-      if (StringUtils.isEmpty(fwkId)) {
-        systemVersion = fwkversion;
+    for (String includeAttr : content.getReferences()) {
+      // We filter the files
+      if (StringUtils.isEmpty(includeAttr)) {
+        LOG.debug("Binary reference ignored, Include attribute missing");
       } else {
-        systemVersion = fwkId + '.' + fwkversion;
-      }
+        BinaryReference reference = new BinaryReference();
 
-      XPathExpression binaryRefExpression = xpath.compile("/vst:Project/vst:ItemGroup/vst:Reference");
-      InputSource inputSource = new InputSource(new FileInputStream(projectFile));
-      NodeList nodes = (NodeList) binaryRefExpression.evaluate(inputSource, XPathConstants.NODESET);
-      int countNodes = nodes.getLength();
-      for (int idxNode = 0; idxNode < countNodes; idxNode++) {
-        Element includeElement = (Element) nodes.item(idxNode);
-        // We filter the files
-        String includeAttr = includeElement.getAttribute("Include");
-        if (StringUtils.isEmpty(includeAttr)) {
-          LOG.debug("Binary reference ignored, Include attribute missing");
+        int versionIndex = includeAttr.indexOf(VERSION_KEY);
+        if (versionIndex == -1) {
+          reference.setAssemblyName(includeAttr);
+          reference.setVersion(systemVersion);
         } else {
-          BinaryReference reference = new BinaryReference();
-
-          int versionIndex = includeAttr.indexOf(VERSION_KEY);
-          if (versionIndex == -1) {
-            reference.setAssemblyName(includeAttr);
-            reference.setVersion(systemVersion);
-          } else {
-            String assemblyName = includeAttr.substring(0, versionIndex);
-            int versionEndIndex = includeAttr.indexOf(",", versionIndex + 1);
-            if (versionEndIndex < 0) {
-              versionEndIndex = includeAttr.length();
-            }
-
-            String version = includeAttr.substring(versionIndex + VERSION_KEY.length(), versionEndIndex);
-            reference.setAssemblyName(assemblyName);
-            reference.setVersion(version);
+          String assemblyName = includeAttr.substring(0, versionIndex);
+          int versionEndIndex = includeAttr.indexOf(",", versionIndex + 1);
+          if (versionEndIndex < 0) {
+            versionEndIndex = includeAttr.length();
           }
-          result.add(reference);
+
+          String version = includeAttr.substring(versionIndex + VERSION_KEY.length(), versionEndIndex);
+          reference.setAssemblyName(assemblyName);
+          reference.setVersion(version);
         }
+        result.add(reference);
       }
-
-    } catch (XPathExpressionException exception) {
-      // Should not happen
-      LOG.debug("xpath error", exception);
-    } catch (FileNotFoundException exception) {
-      // Should not happen
-      LOG.debug("project file not found", exception);
     }
     return result;
   }
 
-  private static List<ProjectReference> getProjectReferences(XPath xpath, File projectFile, VisualStudioProject project) throws DotNetToolsException {
+  private static List<ProjectReference> getProjectReferences(ProjectFileContent content, VisualStudioProject project,
+      ProjectCache projectCache) throws DotNetToolsException {
     List<ProjectReference> result = new ArrayList<ProjectReference>();
-    try {
-
-      XPathExpression projectRefExpression = xpath.compile("/vst:Project/vst:ItemGroup/vst:ProjectReference");
-
-      InputSource inputSource = new InputSource(new FileInputStream(projectFile));
-      NodeList nodes = (NodeList) projectRefExpression.evaluate(inputSource, XPathConstants.NODESET);
-
-      int countNodes = nodes.getLength();
-      for (int idxNode = 0; idxNode < countNodes; idxNode++) {
-        Element includeElement = (Element) nodes.item(idxNode);
-        // We filter the files
-        String includeAttr = includeElement.getAttribute("Include");
-        if (StringUtils.isEmpty(includeAttr)) {
-          LOG.debug("Project reference ignored, Include attribute missing");
-        } else {
-          ProjectReference reference = new ProjectReference();
+    for (String includeAttr : content.getProjectReferences()) {
+      // We filter the files
+      if (StringUtils.isEmpty(includeAttr)) {
+        LOG.debug("Project reference ignored, Include attribute missing");
+      } else {
+        ProjectReference reference = new ProjectReference();
 
-          String projectPath = projectFile.getParent() + "\\" + includeAttr;
-          File referencedProjectFile = new File(projectPath);
+        String projectPath = StringUtils.replace(includeAttr, "\\", File.separatorChar + "");
+        File referencedProjectFile = projectCache.getProjectFile(new File(project.getProjectFile().getParentFile(), projectPath));
+        File referencedProjectKey = ProjectCache.keyOf(referencedProjectFile);
 
-          VisualStudioProject referencedProject = getProject(referencedProjectFile);
+        if (projectCache.isResolvingReferences(referencedProjectKey)) {
+          // The referenced project is already being read: its references are not followed once more
+          LOG.warn("Cyclic reference found between the projects '{}' and '{}'", project.getName(),
+              projectCache.get(referencedProjectKey).getName());
+        }
+        VisualStudioProject referencedProject = getProject(referencedProjectFile, projectCache.getName(referencedProjectKey),
+            projectCache.getBuildConfigurations(referencedProjectKey), projectCache);
 
-          reference.setName(referencedProject.getName());
-          reference.setPath(referencedProject.getDirectory().getPath());
-          reference.setGuid(referencedProject.getProjectGuid());
+        reference.setName(referencedProject.getName());
+        reference.setPath(referencedProject.getDirectory().getPath());
+        reference.setGuid(referencedProject.getProjectGuid());
+        reference.setProject(referencedProject);
 
-          result.add(reference);
-        }
+        result.add(reference);
       }
-
-    } catch (XPathExpressionException exception) {
-      // Should not happen
-      LOG.debug("xpath error", exception);
-    } catch (FileNotFoundException exception) {
-      // Should not happen
-      LOG.debug("project file not found", exception);
     }
     return result;
   }
@@ -531,15 +815,19 @@ public final class ModelFactory {
   public static VisualStudioProject getWebProject(File solutionRoot, File projectRoot, String projectName, String definition)
       throws FileNotFoundException {
 
-    // We define the namespace prefix for Visual Studio
+    String debugOutput = extractSolutionProperty("Debug.AspNetCompiler.TargetPath", definition);
+    String releaseOutput = extractSolutionProperty("Release.AspNetCompiler.TargetPath", definition);
+    return createWebProject(solutionRoot, projectRoot, projectName, debugOutput, releaseOutput);
+  }
+
+  private static VisualStudioProject createWebProject(File solutionRoot, File projectRoot, String projectName, String debugOutput,
+      String releaseOutput) {
     VisualStudioProject project = new VisualStudioWebProject();
     project.setName(projectName);
 
     // Extracts the properties of a Visual Studio Project
     String assemblyName = projectName;
     String rootNamespace = "";
-    String debugOutput = extractSolutionProperty("Debug.AspNetCompiler.TargetPath", definition);
-    String releaseOutput = extractSolutionProperty("Release.AspNetCompiler.TargetPath", definition);
 
     // The project is populated
     project.setDirectory(projectRoot);
@@ -575,37 +863,26 @@ public final class ModelFactory {
    * @return a list of the project files
    */
   public static List<String> getFilesPath(File project) {
-    List<String> result = new ArrayList<String>();
-
-    XPathFactory factory = XPathFactory.newInstance();
-    XPath xpath = factory.newXPath();
-    // We define the namespace prefix for Visual Studio
-    xpath.setNamespaceContext(new VisualStudioNamespaceContext());
     try {
-      XPathExpression filesExpression = xpath.compile("/vst:Project/vst:ItemGroup/vst:Compile");
-      InputSource inputSource = new InputSource(new FileInputStream(project));
-      NodeList nodes = (NodeList) filesExpression.evaluate(inputSource, XPathConstants.NODESET);
-      int countNodes = nodes.getLength();
-      for (int idxNode = 0; idxNode < countNodes; idxNode++) {
-        Element compileElement = (Element) nodes.item(idxNode);
-        // We filter the files
-        String filePath = compileElement.getAttribute("Include");
-        if ((filePath != null) && filePath.endsWith(".cs")) {
-
-          // fix tests on unix system
-          // but should not be necessary
-          // on windows build machines
-          filePath = StringUtils.replace(filePath, "\\", File.separatorChar + "");
-          result.add(filePath);
-        }
-      }
-
-    } catch (XPathExpressionException exception) {
+      return getFilesPath(readProjectFile(project, null));
+    } catch (DotNetToolsException exception) {
       // Should not happen
-      LOG.debug("xpath error", exception);
-    } catch (FileNotFoundException exception) {
-      // Should not happen
-      LOG.debug("project file not found", exception);
+      LOG.debug("project file not readable", exception);
+    }
+    return new ArrayList<String>();
+  }
+
+  private static List<String> getFilesPath(ProjectFileContent content) {
+    List<String> result = new ArrayList<String>();
+    for (String filePath : content.getCompileItems()) {
+      // We filter the files
+      if ((filePath != null) && filePath.endsWith(".cs")) {
+
+        // fix tests on unix system
+        // but should not be necessary
+        // on windows build machines
+        result.add(StringUtils.replace(filePath, "\\", File.separatorChar + ""));
+      }
     }
     return result;
   }
@@ -620,12 +897,15 @@ public final class ModelFactory {
    * @throws FileNotFoundException
    */
   private static String extractProjectProperty(XPathExpression expression, File projectFile) throws DotNetToolsException {
+    InputStream projectStream = null;
     try {
-      FileInputStream file = new FileInputStream(projectFile);
-      InputSource source = new InputSource(file);
+      projectStream = new FileInputStream(projectFile);
+      InputSource source = new InputSource(projectStream);
       return expression.evaluate(source);
     } catch (Exception e) {
       throw new DotNetToolsException("Could not evaluate the expression " + expression + " on project " + projectFile, e);
+    } finally {
+      IOUtils.closeQuietly(projectStream);
     }
   }
 
@@ -670,6 +950,23 @@ public final class ModelFactory {
 
   }
 
+  /**
+   * Creates the daemon threads reading the projects. They use the context class loader of the thread that reads the solution, as the
+   * XML parsers are looked up through it.
+   */
+  private static class ModelLoaderThreadFactory implements ThreadFactory {
+
+    private final AtomicInteger threadNumber = new AtomicInteger(1);
+    private final ClassLoader contextClassLoader = Thread.currentThread().getContextClassLoader();
+
+    public Thread newThread(Runnable runnable) {
+      Thread thread = new Thread(runnable, "dotnet-model-loader-" + threadNumber.getAndIncrement());
+      thread.setDaemon(true);
+      thread.setContextClassLoader(contextClassLoader);
+      return thread;
+    }
+  }
+
   /**
    * Checks a file existence in a directory.
    * 
@@ -0,0 +1,482 @@
+/*
+ * .NET tools :: Commons
+ * Copyright (C) 2010 Jose Chillan, Alexandre Victoor and SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.dotnet.tools.commons.visualstudio;
+
+import java.io.File;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.regex.Pattern;
+
+import org.apache.commons.io.FilenameUtils;
+import org.apache.commons.lang.StringUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.sonar.dotnet.tools.commons.DotNetToolsException;
+
+/**
+ * Lightweight evaluation of the properties of an MSBuild project: property definitions are applied in document order, with their
+ * conditions, "$(Name)" references are expanded and "Import" elements are followed. Imported files are read through a
+ * {@link MsBuildImportCache}, so that the files shared by many projects are parsed once.<br/>
+ * Only what is needed to find the properties used by {@link ModelFactory} is supported: property functions, registry lookups, items
+ * and environment variables are evaluated as empty strings, and imports using wildcards or missing on the disk are ignored.
+ */
+final class MsBuildEvaluator {
+
+  private static final Logger LOG = LoggerFactory.getLogger(MsBuildEvaluator.class);
+
+  private static final int MAX_IMPORT_DEPTH = 32;
+  private static final Pattern PROPERTY_NAME = Pattern.compile("[A-Za-z_][A-Za-z0-9_\\-]*");
+
+  private final MsBuildImportCache importCache;
+
+  /**
+   * @param importCache
+   *          the cache of the imported files, usually shared by all the projects of a solution
+   */
+  public MsBuildEvaluator(MsBuildImportCache importCache) {
+    this.importCache = importCache;
+  }
+
+  /**
+   * Evaluates a project without any build configuration, then for each of the given ones, and records in its content the properties
+   * that are not written literally in the project file as well as the output path of each build configuration.
+   *
+   * @param projectFile
+   *          the project file
+   * @param content
+   *          the content read from the project file
+   * @param buildConfigurations
+   *          the build configurations, such as "Debug"
+   */
+  public void evaluate(File projectFile, ProjectFileContent content, Collection<String> buildConfigurations) {
+    if (content.getStatements().isEmpty()) {
+      return;
+    }
+    Set<File> importedFiles = new LinkedHashSet<File>();
+
+    Evaluation defaultEvaluation = evaluate(projectFile, content, null, importedFiles);
+    for (String name : defaultEvaluation.definedNames) {
+      String literalValue = content.getProperties().get(name);
+      if (literalValue == null || literalValue.contains("$(")) {
+        content.replaceProperty(name, defaultEvaluation.get(name));
+      }
+    }
+
+    for (String buildConfiguration : buildConfigurations) {
+      Evaluation evaluation = evaluate(projectFile, content, buildConfiguration, importedFiles);
+      String outputPath = evaluation.get("OutputPath");
+      if (StringUtils.isNotEmpty(outputPath)) {
+        content.addEvaluatedOutputPath(buildConfiguration, outputPath);
+      }
+    }
+    content.getImportedFiles().addAll(importedFiles);
+  }
+
+  /**
+   * Evaluates the properties of a project.
+   *
+   * @param projectFile
+   *          the project file
+   * @param content
+   *          the content read from the project file
+   * @param buildConfiguration
+   *          the value of the "Configuration" global property, or <code>null</code> to use the default one of the project
+   * @param importedFiles
+   *          the collection the followed imports are added to
+   * @return the values of the properties, whose names are case insensitive
+   */
+  Map<String, String> evaluateProperties(File projectFile, ProjectFileContent content, String buildConfiguration,
+      Collection<File> importedFiles) {
+    return evaluate(projectFile, content, buildConfiguration, importedFiles).properties;
+  }
+
+  private Evaluation evaluate(File projectFile, ProjectFileContent content, String buildConfiguration, Collection<File> importedFiles) {
+    File file = new File(FilenameUtils.normalize(projectFile.getAbsolutePath()));
+    Evaluation evaluation = new Evaluation(importedFiles);
+    evaluation.properties.put("MSBuildProjectFullPath", file.getPath());
+    evaluation.properties.put("MSBuildProjectDirectory", file.getParent());
+    evaluation.properties.put("MSBuildProjectFile", file.getName());
+    evaluation.properties.put("MSBuildProjectName", FilenameUtils.getBaseName(file.getName()));
+    evaluation.properties.put("MSBuildProjectExtension", "." + FilenameUtils.getExtension(file.getName()));
+    if (buildConfiguration != null) {
+      evaluation.properties.put("Configuration", buildConfiguration);
+      evaluation.globalNames.add("Configuration");
+    }
+    evaluation.importStack.add(file);
+    evaluateFile(file, content, evaluation, 0);
+    return evaluation;
+  }
+
+  private void evaluateFile(File file, ProjectFileContent content, Evaluation evaluation, int depth) {
+    String previousFile = evaluation.currentFile;
+    evaluation.setCurrentFile(file);
+    try {
+      for (ProjectFileContent.Statement statement : content.getStatements()) {
+        if (evaluation.isTrue(statement.getGroupCondition()) && evaluation.isTrue(statement.getCondition())) {
+          if (statement.isImport()) {
+            importFile(evaluation.expand(statement.getImportedProject()), evaluation, depth);
+          } else if ( !evaluation.globalNames.contains(statement.getName())) {
+            evaluation.properties.put(statement.getName(), evaluation.expand(statement.getValue()));
+            evaluation.definedNames.add(statement.getName());
+          }
+        }
+      }
+    } finally {
+      evaluation.setCurrentFile(previousFile == null ? null : new File(previousFile));
+    }
+  }
+
+  private void importFile(String importedProject, Evaluation evaluation, int depth) {
+    if (StringUtils.isBlank(importedProject) || StringUtils.containsAny(importedProject, "*?")) {
+      LOG.debug("Import of '{}' ignored", importedProject);
+      return;
+    }
+    File importedFile = evaluation.resolve(importedProject);
+    if ( !importedFile.isFile()) {
+      LOG.debug("Import of the missing file {} ignored", importedFile);
+    } else if (depth >= MAX_IMPORT_DEPTH || evaluation.importStack.contains(importedFile)) {
+      LOG.warn("Import of {} ignored, as it is imported recursively", importedFile);
+    } else {
+      evaluation.importedFiles.add(importedFile);
+      try {
+        ProjectFileContent importedContent = importCache.get(importedFile);
+        evaluation.importStack.add(importedFile);
+        try {
+          evaluateFile(importedFile, importedContent, evaluation, depth + 1);
+        } finally {
+          evaluation.importStack.remove(importedFile);
+        }
+      } catch (DotNetToolsException e) {
+        LOG.warn("Could not read the imported file " + importedFile, e);
+      }
+    }
+  }
+
+  /**
+   * State of the evaluation of a project.
+   */
+  private static final class Evaluation {
+
+    private final Map<String, String> properties = new TreeMap<String, String>(String.CASE_INSENSITIVE_ORDER);
+    private final Set<String> globalNames = new HashSet<String>();
+    private final Set<String> definedNames = new LinkedHashSet<String>();
+    private final Set<File> importStack = new HashSet<File>();
+    private final Collection<File> importedFiles;
+    private String currentFile;
+    private File currentDirectory;
+
+    private Evaluation(Collection<File> importedFiles) {
+      this.importedFiles = importedFiles;
+    }
+
+    private void setCurrentFile(File file) {
+      if (file == null) {
+        return;
+      }
+      currentFile = file.getPath();
+      currentDirectory = file.getParentFile();
+      properties.put("MSBuildThisFileFullPath", file.getPath());
+      properties.put("MSBuildThisFile", file.getName());
+      properties.put("MSBuildThisFileName", FilenameUtils.getBaseName(file.getName()));
+      properties.put("MSBuildThisFileDirectory", currentDirectory.getPath() + File.separator);
+    }
+
+    private String get(String name) {
+      String value = properties.get(name);
+      return value == null ? "" : value;
+    }
+
+    /**
+     * Resolves a path relative to the file being evaluated.
+     */
+    private File resolve(String path) {
+      String localPath = StringUtils.replace(path.trim(), "\\", File.separator);
+      File file = new File(localPath);
+      if ( !file.isAbsolute()) {
+        file = new File(currentDirectory, localPath);
+      }
+      String normalizedPath = FilenameUtils.normalize(file.getAbsolutePath());
+      return normalizedPath == null ? file.getAbsoluteFile() : new File(normalizedPath);
+    }
+
+    /**
+     * Expands the "$(Name)" references of a value.
+     */
+    private String expand(String value) {
+      if (value == null || !value.contains("$(")) {
+        return value;
+      }
+      StringBuilder result = new StringBuilder(value.length());
+      int index = 0;
+      while (index < value.length()) {
+        int start = value.indexOf("$(", index);
+        int end = start < 0 ? -1 : findClosingParenthesis(value, start + 1);
+        if (end < 0) {
+          result.append(value, index, value.length());
+          break;
+        }
+        result.append(value, index, start);
+        String expression = value.substring(start + 2, end).trim();
+        if (PROPERTY_NAME.matcher(expression).matches()) {
+          result.append(get(expression));
+        } else {
+          LOG.debug("Unsupported property expression '$({})' evaluated as an empty string", expression);
+        }
+        index = end + 1;
+      }
+      return result.toString();
+    }
+
+    private boolean isTrue(String condition) {
+      if (StringUtils.isBlank(condition)) {
+        return true;
+      }
+      try {
+        return new ConditionParser(condition, this).parse();
+      } catch (IllegalArgumentException e) {
+        LOG.debug("Unsupported condition \"{}\" evaluated as false: {}", condition, e.getMessage());
+        return false;
+      }
+    }
+  }
+
+  private static int findClosingParenthesis(String value, int openingIndex) {
+    int level = 0;
+    for (int i = openingIndex; i < value.length(); i++) {
+      char c = value.charAt(i);
+      if (c == '(') {
+        level++;
+      } else if (c == ')') {
+        level--;
+        if (level == 0) {
+          return i;
+        }
+      }
+    }
+    return -1;
+  }
+
+  /**
+   * Recursive descent parser of MSBuild conditions, such as " '$(Configuration)|$(Platform)' == 'Debug|AnyCPU' ". It supports the
+   * "and", "or" and "!" operators, parentheses, string and numeric comparisons, and the "Exists" and "HasTrailingSlash" functions.
+   * Comparisons of strings are case insensitive, as in MSBuild.
+   */
+  private static final class ConditionParser {
+
+    private final String condition;
+    private final Evaluation evaluation;
+    private int position;
+    private String token;
+    private boolean quoted;
+
+    private ConditionParser(String condition, Evaluation evaluation) {
+      this.condition = condition;
+      this.evaluation = evaluation;
+    }
+
+    private boolean parse() {
+      nextToken();
+      boolean result = parseOr();
+      if (token != null) {
+        throw new IllegalArgumentException("unexpected '" + token + "'");
+      }
+      return result;
+    }
+
+    private boolean parseOr() {
+      boolean result = parseAnd();
+      while (isKeyword("or")) {
+        nextToken();
+        boolean right = parseAnd();
+        result = result || right;
+      }
+      return result;
+    }
+
+    private boolean parseAnd() {
+      boolean result = parseUnary();
+      while (isKeyword("and")) {
+        nextToken();
+        boolean right = parseUnary();
+        result = result && right;
+      }
+      return result;
+    }
+
+    private boolean parseUnary() {
+      if (isSymbol("!")) {
+        nextToken();
+        return !parseUnary();
+      }
+      return parsePrimary();
+    }
+
+    private boolean parsePrimary() {
+      if (isSymbol("(")) {
+        nextToken();
+        boolean result = parseOr();
+        expect(")");
+        return result;
+      }
+      String left = parseOperand();
+      if (isSymbol("(")) {
+        return parseFunction(left);
+      }
+      if (isSymbol("==") || isSymbol("!=") || isSymbol("<") || isSymbol(">") || isSymbol("<=") || isSymbol(">=")) {
+        String operator = token;
+        nextToken();
+        return compare(evaluation.expand(left), operator, evaluation.expand(parseOperand()));
+      }
+      return toBoolean(evaluation.expand(left));
+    }
+
+    private boolean parseFunction(String name) {
+      nextToken();
+      String argument = evaluation.expand(parseOperand()).trim();
+      expect(")");
+      if ("Exists".equalsIgnoreCase(name)) {
+        return argument.length() > 0 && evaluation.resolve(argument).exists();
+      }
+      if ("HasTrailingSlash".equalsIgnoreCase(name)) {
+        return argument.endsWith("/") || argument.endsWith("\\");
+      }
+      throw new IllegalArgumentException("unknown function " + name);
+    }
+
+    private String parseOperand() {
+      if (token == null || ( !quoted && isSymbolToken())) {
+        throw new IllegalArgumentException(token == null ? "unexpected end" : "unexpected '" + token + "'");
+      }
+      String operand = token;
+      nextToken();
+      return operand;
+    }
+
+    private static boolean compare(String left, String operator, String right) {
+      if ("==".equals(operator)) {
+        return left.equalsIgnoreCase(right);
+      }
+      if ("!=".equals(operator)) {
+        return !left.equalsIgnoreCase(right);
+      }
+      double leftNumber = toNumber(left);
+      double rightNumber = toNumber(right);
+      if ("<".equals(operator)) {
+        return leftNumber < rightNumber;
+      }
+      if (">".equals(operator)) {
+        return leftNumber > rightNumber;
+      }
+      if ("<=".equals(operator)) {
+        return leftNumber <= rightNumber;
+      }
+      return leftNumber >= rightNumber;
+    }
+
+    private static double toNumber(String value) {
+      try {
+        return Double.parseDouble(value.trim());
+      } catch (NumberFormatException e) {
+        throw new IllegalArgumentException("'" + value + "' is not a number");
+      }
+    }
+
+    private static boolean toBoolean(String value) {
+      String trimmedValue = value.trim();
+      if ("true".equalsIgnoreCase(trimmedValue) || "on".equalsIgnoreCase(trimmedValue) || "yes".equalsIgnoreCase(trimmedValue)) {
+        return true;
+      }
+      if ("false".equalsIgnoreCase(trimmedValue) || "off".equalsIgnoreCase(trimmedValue) || "no".equalsIgnoreCase(trimmedValue)) {
+        return false;
+      }
+      throw new IllegalArgumentException("'" + value + "' is not a boolean");
+    }
+
+    private void expect(String symbol) {
+      if ( !isSymbol(symbol)) {
+        throw new IllegalArgumentException("'" + symbol + "' expected");
+      }
+      nextToken();
+    }
+
+    private boolean isKeyword(String keyword) {
+      return !quoted && keyword.equalsIgnoreCase(token);
+    }
+
+    private boolean isSymbol(String symbol) {
+      return !quoted && symbol.equals(token);
+    }
+
+    private boolean isSymbolToken() {
+      return "()!=<>,".indexOf(token.charAt(0)) >= 0;
+    }
+
+    private void nextToken() {
+      while (position < condition.length() && Character.isWhitespace(condition.charAt(position))) {
+        position++;
+      }
+      quoted = false;
+      if (position >= condition.length()) {
+        token = null;
+        return;
+      }
+      char c = condition.charAt(position);
+      if (c == '\'') {
+        int end = condition.indexOf('\'', position + 1);
+        if (end < 0) {
+          throw new IllegalArgumentException("unterminated string");
+        }
+        token = condition.substring(position + 1, end);
+        quoted = true;
+        position = end + 1;
+      } else if ((c == '=' || c == '!' || c == '<' || c == '>') && position + 1 < condition.length()
+        && condition.charAt(position + 1) == '=') {
+        token = condition.substring(position, position + 2);
+        position += 2;
+      } else if ("()!<>,".indexOf(c) >= 0) {
+        token = String.valueOf(c);
+        position++;
+      } else {
+        int start = position;
+        while (position < condition.length() && isWordCharacter(condition.charAt(position))) {
+          if (condition.charAt(position) == '$' && position + 1 < condition.length() && condition.charAt(position + 1) == '(') {
+            int end = findClosingParenthesis(condition, position + 1);
+            position = end < 0 ? condition.length() : end + 1;
+          } else {
+            position++;
+          }
+        }
+        if (start == position) {
+          throw new IllegalArgumentException("unexpected character '" + c + "'");
+        }
+        token = condition.substring(start, position);
+      }
+    }
+
+    private static boolean isWordCharacter(char c) {
+      return !Character.isWhitespace(c) && "'()!=<>,".indexOf(c) < 0;
+    }
+  }
+
+}
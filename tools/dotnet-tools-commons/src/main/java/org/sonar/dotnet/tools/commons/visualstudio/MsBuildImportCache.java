@@ -0,0 +1,96 @@
+/*
+ * .NET tools :: Commons
+ * Copyright (C) 2010 Jose Chillan, Alexandre Victoor and SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.dotnet.tools.commons.visualstudio;
+
+import java.io.File;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.sonar.dotnet.tools.commons.DotNetToolsException;
+
+/**
+ * Files imported by MSBuild projects, such as shared ".props" and ".targets" files, parsed once and kept as long as their size and last
+ * modification date do not change. The same imports are usually shared by most of the projects of a solution.<br/>
+ * The cache is thread-safe: two threads may parse the same file at the same time, in which case one of the results is kept.
+ */
+final class MsBuildImportCache {
+
+  private final ConcurrentMap<File, Entry> entries = new ConcurrentHashMap<File, Entry>();
+  private final AtomicInteger hits = new AtomicInteger();
+  private final AtomicInteger misses = new AtomicInteger();
+
+  /**
+   * Gets the content of an imported file, parsing it only if it is not in the cache or has changed since it was parsed.
+   *
+   * @param importedFile
+   *          the imported file, which should be absolute and normalized
+   * @return the content of the file
+   * @throws DotNetToolsException
+   *           if the file cannot be read or parsed
+   */
+  public ProjectFileContent get(File importedFile) throws DotNetToolsException {
+    long length = importedFile.length();
+    long lastModified = importedFile.lastModified();
+    Entry entry = entries.get(importedFile);
+    if (entry != null && entry.length == length && entry.lastModified == lastModified) {
+      hits.incrementAndGet();
+      return entry.content;
+    }
+    misses.incrementAndGet();
+    ProjectFileContent content = ProjectFileReader.read(importedFile);
+    entries.put(importedFile, new Entry(content, length, lastModified));
+    return content;
+  }
+
+  public int getHits() {
+    return hits.get();
+  }
+
+  public int getMisses() {
+    return misses.get();
+  }
+
+  /**
+   * @return the number of files in the cache
+   */
+  public int size() {
+    return entries.size();
+  }
+
+  @Override
+  public String toString() {
+    return "MSBuild import cache: " + size() + " file(s), " + getMisses() + " parsed, " + getHits() + " reused";
+  }
+
+  private static final class Entry {
+
+    private final ProjectFileContent content;
+    private final long length;
+    private final long lastModified;
+
+    private Entry(ProjectFileContent content, long length, long lastModified) {
+      this.content = content;
+      this.length = length;
+      this.lastModified = lastModified;
+    }
+  }
+
+}
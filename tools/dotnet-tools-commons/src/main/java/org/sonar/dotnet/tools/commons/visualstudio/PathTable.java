@@ -0,0 +1,317 @@
+/*
+ * .NET tools :: Commons
+ * Copyright (C) 2010 Jose Chillan, Alexandre Victoor and SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.dotnet.tools.commons.visualstudio;
+
+import java.io.File;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Compact table of the source files of a project. The directories are stored once as a tree of nodes and each file only keeps its
+ * directory, its name and its folder, the folders being shared by all the files they contain. Files are identified by an int, in the
+ * order they were added.<br/>
+ * This is not thread-safe.
+ */
+final class PathTable {
+
+  private static final int INITIAL_CAPACITY = 16;
+
+  private final Directory root = new Directory(null, null);
+  private final Map<String, String> folders = new HashMap<String, String>();
+  private int directoryCount;
+
+  private Directory[] fileDirectories = new Directory[INITIAL_CAPACITY];
+  private String[] fileNames = new String[INITIAL_CAPACITY];
+  private String[] fileFolders = new String[INITIAL_CAPACITY];
+  private final BitSet removedFiles = new BitSet();
+  private int size;
+
+  /*
+   * Open addressing hash table of the files by directory and name, holding the id of each file plus one, or zero for an empty slot
+   */
+  private int[] fileSlots = new int[INITIAL_CAPACITY * 2];
+
+  /**
+   * Adds a file to the table. If the file is already in the table, only its folder is replaced.
+   * 
+   * @param file
+   *          the file, whose path is used as is
+   * @param folder
+   *          the folder of the file, relative to its project
+   * @return the id of the file
+   */
+  int add(File file, String folder) {
+    String path = file.getPath();
+    int nameIndex = path.lastIndexOf(File.separatorChar);
+    Directory directory = getOrCreateDirectory(path, nameIndex);
+    String name = path.substring(nameIndex + 1);
+
+    int slot = findSlot(directory, name);
+    if (fileSlots[slot] != 0) {
+      int existingId = fileSlots[slot] - 1;
+      fileFolders[existingId] = intern(folder);
+      removedFiles.clear(existingId);
+      return existingId;
+    }
+    return append(directory, name, folder, slot);
+  }
+
+  /**
+   * Adds a file to the table unless it is already there with the same folder, without changing the files already added: a file added
+   * again with another folder gets a new id. {@link #find(File)} then returns any of the ids of the file.
+   * 
+   * @param file
+   *          the file, whose path is used as is
+   * @param folder
+   *          the folder of the file, relative to its project
+   * @return the id of the file with this folder
+   */
+  int addWithFolder(File file, String folder) {
+    String path = file.getPath();
+    int nameIndex = path.lastIndexOf(File.separatorChar);
+    Directory directory = getOrCreateDirectory(path, nameIndex);
+    String name = path.substring(nameIndex + 1);
+
+    int mask = fileSlots.length - 1;
+    int slot = hash(directory, name) & mask;
+    while (fileSlots[slot] != 0) {
+      int id = fileSlots[slot] - 1;
+      if (fileDirectories[id] == directory && fileNames[id].equals(name)
+        && (folder == null ? fileFolders[id] == null : folder.equals(fileFolders[id]))) {
+        removedFiles.clear(id);
+        return id;
+      }
+      slot = (slot + 1) & mask;
+    }
+    return append(directory, name, folder, slot);
+  }
+
+  private int append(Directory directory, String name, String folder, int slot) {
+    ensureCapacity(size + 1);
+    int id = size++;
+    fileDirectories[id] = directory;
+    fileNames[id] = name;
+    fileFolders[id] = intern(folder);
+    if (size * 2 > fileSlots.length) {
+      rehash();
+    } else {
+      fileSlots[slot] = id + 1;
+    }
+    return id;
+  }
+
+  /**
+   * Finds a file of the table.
+   * 
+   * @param file
+   *          the file, whose path must be in the form used when the file was added
+   * @return the id of the file, or -1 if the file is not in the table or was removed
+   */
+  int find(File file) {
+    String path = file.getPath();
+    int nameIndex = path.lastIndexOf(File.separatorChar);
+    Directory directory = root;
+    int start = 0;
+    while (directory != null && start <= nameIndex) {
+      int end = path.indexOf(File.separatorChar, start);
+      directory = directory.subdirectories == null ? null : directory.subdirectories.get(path.substring(start, end));
+      start = end + 1;
+    }
+    if (directory == null) {
+      return -1;
+    }
+    int id = fileSlots[findSlot(directory, path.substring(nameIndex + 1))] - 1;
+    return id < 0 || removedFiles.get(id) ? -1 : id;
+  }
+
+  void remove(int id) {
+    removedFiles.set(id);
+  }
+
+  boolean isRemoved(int id) {
+    return removedFiles.get(id);
+  }
+
+  String getName(int id) {
+    return fileNames[id];
+  }
+
+  String getFolder(int id) {
+    return fileFolders[id];
+  }
+
+  /**
+   * Rebuilds the path of a file from the names of its directories, in a single array of the right length.
+   */
+  String getPath(int id) {
+    String name = fileNames[id];
+    int length = name.length();
+    for (Directory directory = fileDirectories[id]; directory != root; directory = directory.parent) {
+      length += directory.name.length() + 1;
+    }
+    char[] path = new char[length];
+    int end = length - name.length();
+    name.getChars(0, name.length(), path, end);
+    for (Directory directory = fileDirectories[id]; directory != root; directory = directory.parent) {
+      path[--end] = File.separatorChar;
+      end -= directory.name.length();
+      directory.name.getChars(0, directory.name.length(), path, end);
+    }
+    return new String(path);
+  }
+
+  File getFile(int id) {
+    return new File(getPath(id));
+  }
+
+  /**
+   * @return the number of files added to the table, including the removed ones
+   */
+  int size() {
+    return size;
+  }
+
+  int getDirectoryCount() {
+    return directoryCount;
+  }
+
+  /**
+   * @return the number of characters of the file and directory names held by the table, each directory name being counted once
+   */
+  long getNameLength() {
+    long length = 0;
+    for (int id = 0; id < size; id++) {
+      length += fileNames[id].length();
+    }
+    return length + getNameLength(root);
+  }
+
+  private static long getNameLength(Directory directory) {
+    long length = 0;
+    if (directory.subdirectories != null) {
+      for (Directory subdirectory : directory.subdirectories.values()) {
+        length += subdirectory.name.length() + getNameLength(subdirectory);
+      }
+    }
+    return length;
+  }
+
+  /**
+   * Gets the slot of a file, or the empty slot where it should be added.
+   */
+  private int findSlot(Directory directory, String name) {
+    int mask = fileSlots.length - 1;
+    int slot = hash(directory, name) & mask;
+    while (fileSlots[slot] != 0) {
+      int id = fileSlots[slot] - 1;
+      if (fileDirectories[id] == directory && fileNames[id].equals(name)) {
+        break;
+      }
+      slot = (slot + 1) & mask;
+    }
+    return slot;
+  }
+
+  private void rehash() {
+    fileSlots = new int[fileSlots.length * 2];
+    int mask = fileSlots.length - 1;
+    for (int id = 0; id < size; id++) {
+      int slot = hash(fileDirectories[id], fileNames[id]) & mask;
+      while (fileSlots[slot] != 0) {
+        slot = (slot + 1) & mask;
+      }
+      fileSlots[slot] = id + 1;
+    }
+  }
+
+  private static int hash(Directory directory, String name) {
+    int hash = directory.hashCode() * 31 + name.hashCode();
+    // Spreads the high bits, as the table is indexed with the low bits only
+    return hash ^ (hash >>> 16);
+  }
+
+  private Directory getOrCreateDirectory(String path, int nameIndex) {
+    Directory directory = root;
+    int start = 0;
+    while (start <= nameIndex) {
+      int end = path.indexOf(File.separatorChar, start);
+      directory = getOrCreateDirectory(directory, path.substring(start, end));
+      start = end + 1;
+    }
+    return directory;
+  }
+
+  private Directory getOrCreateDirectory(Directory parent, String name) {
+    Directory directory = parent.subdirectories == null ? null : parent.subdirectories.get(name);
+    if (directory == null) {
+      if (parent.subdirectories == null) {
+        parent.subdirectories = new HashMap<String, Directory>(4);
+      }
+      directory = new Directory(parent, name);
+      parent.subdirectories.put(name, directory);
+      directoryCount++;
+    }
+    return directory;
+  }
+
+  private String intern(String folder) {
+    if (folder == null) {
+      return null;
+    }
+    String result = folders.get(folder);
+    if (result == null) {
+      folders.put(folder, folder);
+      result = folder;
+    }
+    return result;
+  }
+
+  private void ensureCapacity(int capacity) {
+    if (capacity > fileNames.length) {
+      int newCapacity = Math.max(capacity, fileNames.length * 2);
+      Directory[] newDirectories = new Directory[newCapacity];
+      System.arraycopy(fileDirectories, 0, newDirectories, 0, size);
+      fileDirectories = newDirectories;
+      String[] newNames = new String[newCapacity];
+      System.arraycopy(fileNames, 0, newNames, 0, size);
+      fileNames = newNames;
+      String[] newFolders = new String[newCapacity];
+      System.arraycopy(fileFolders, 0, newFolders, 0, size);
+      fileFolders = newFolders;
+    }
+  }
+
+  /**
+   * A directory of the table. Its full path is not kept, the paths of its files being rebuilt from its ancestors.
+   */
+  private static final class Directory {
+
+    private final Directory parent;
+    private final String name;
+    private Map<String, Directory> subdirectories;
+
+    private Directory(Directory parent, String name) {
+      this.parent = parent;
+      this.name = name;
+    }
+  }
+
+}
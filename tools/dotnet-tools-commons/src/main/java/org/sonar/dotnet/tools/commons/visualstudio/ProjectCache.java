@@ -0,0 +1,234 @@
+/*
+ * .NET tools :: Commons
+ * Copyright (C) 2010 Jose Chillan, Alexandre Victoor and SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.dotnet.tools.commons.visualstudio;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+
+import org.sonar.dotnet.tools.commons.DotNetToolsException;
+import org.sonar.dotnet.tools.commons.utils.CanonicalPathCache;
+
+/**
+ * Projects already built while reading a solution, keyed by the canonical path of their project file. A project referenced by many
+ * others is thus read only once, and all the {@link ProjectReference} objects point to the same {@link VisualStudioProject} instance.<br/>
+ * The cache can be shared by several threads: a project is read by the first thread that claims it, the other ones wait until its
+ * properties are read, which never depends on other projects.
+ */
+class ProjectCache {
+
+  private final List<String> buildConfigurations;
+  private final String testProjectNamePattern;
+  private final ModelCache modelCache;
+  private final MsBuildImportCache importCache = new MsBuildImportCache();
+  private final Map<File, String> declaredNames = new HashMap<File, String>();
+  private final Map<File, File> declaredFiles = new HashMap<File, File>();
+  private final Map<File, Entry> entries = new HashMap<File, Entry>();
+  private final ThreadLocal<Set<File>> referencePath = new ThreadLocal<Set<File>>() {
+
+    @Override
+    protected Set<File> initialValue() {
+      return new HashSet<File>();
+    }
+  };
+
+  /**
+   * @param buildConfigurations
+   *          the build configurations of the solution, or <code>null</code> when a project is read on its own
+   * @param testProjectNamePattern
+   *          the pattern used to define if a project is a test project or not
+   * @param modelCache
+   *          the persistent cache of the projects read by previous analyses, may be <code>null</code>
+   */
+  public ProjectCache(List<String> buildConfigurations, String testProjectNamePattern, ModelCache modelCache) {
+    this.buildConfigurations = buildConfigurations;
+    this.testProjectNamePattern = testProjectNamePattern;
+    this.modelCache = modelCache;
+  }
+
+  /**
+   * Gets the key used for a project file.
+   *
+   * @param projectFile
+   *          the project file
+   * @return the canonical file, or the absolute one if it cannot be computed
+   */
+  public static File keyOf(File projectFile) {
+    try {
+      return CanonicalPathCache.getInstance().getCanonicalFile(projectFile);
+    } catch (IOException e) {
+      return projectFile.getAbsoluteFile();
+    }
+  }
+
+  public String getTestProjectNamePattern() {
+    return testProjectNamePattern;
+  }
+
+  /**
+   * @return the persistent cache of the projects, or <code>null</code> if there is none
+   */
+  public ModelCache getModelCache() {
+    return modelCache;
+  }
+
+  /**
+   * @return the cache of the files imported by the projects
+   */
+  public MsBuildImportCache getImportCache() {
+    return importCache;
+  }
+
+  /**
+   * Registers a project declared in the solution file, so that it gets the same name and project file whether it is first read from the
+   * solution or through a project reference. Must be called before the projects are read.
+   */
+  public void declare(File projectFile, String projectName) {
+    File key = keyOf(projectFile);
+    declaredNames.put(key, projectName);
+    declaredFiles.put(key, projectFile);
+  }
+
+  /**
+   * @param projectFile
+   *          a project file, as found in a project reference
+   * @return the project file as declared in the solution, or the given file if the project is not part of the solution
+   */
+  public File getProjectFile(File projectFile) {
+    File declaredFile = declaredFiles.get(keyOf(projectFile));
+    return declaredFile == null ? projectFile : declaredFile;
+  }
+
+  /**
+   * @param key
+   *          the key of the project file, see {@link #keyOf(File)}
+   * @return the name of the project in the solution, or the name of the project file if the project is not part of the solution
+   */
+  public String getName(File key) {
+    String name = declaredNames.get(key);
+    return name == null ? key.getName() : name;
+  }
+
+  /**
+   * @param key
+   *          the key of the project file, see {@link #keyOf(File)}
+   * @return the build configurations to read for the project, <code>null</code> if the project is not part of the solution
+   */
+  public List<String> getBuildConfigurations(File key) {
+    return declaredNames.containsKey(key) ? buildConfigurations : null;
+  }
+
+  /**
+   * Adds a project that has already been read, which is then returned as is when it is referenced.
+   *
+   * @param projectFile
+   *          the project file
+   * @param project
+   *          the project
+   */
+  public synchronized void register(File projectFile, VisualStudioProject project) {
+    Entry entry = new Entry();
+    entry.project = project;
+    entry.propertiesRead.countDown();
+    entries.put(keyOf(projectFile), entry);
+  }
+
+  /**
+   * Claims a project: if it returns true, the caller must read the project and then call {@link #propertiesRead(File, VisualStudioProject)}.
+   *
+   * @return false if the project has already been claimed
+   */
+  public synchronized boolean claim(File key) {
+    if (entries.containsKey(key)) {
+      return false;
+    }
+    entries.put(key, new Entry());
+    return true;
+  }
+
+  /**
+   * Publishes a claimed project once its properties are read, before its references are resolved.
+   *
+   * @param project
+   *          the project, or <code>null</code> if it could not be read
+   */
+  public void propertiesRead(File key, VisualStudioProject project) {
+    Entry entry;
+    synchronized (this) {
+      entry = entries.get(key);
+    }
+    entry.project = project;
+    entry.propertiesRead.countDown();
+  }
+
+  /**
+   * Gets a claimed project, waiting for its properties to be read by the thread that claimed it.
+   *
+   * @return the project, or <code>null</code> if it has not been claimed
+   * @throws DotNetToolsException
+   *           if the project could not be read
+   */
+  public VisualStudioProject get(File key) throws DotNetToolsException {
+    Entry entry;
+    synchronized (this) {
+      entry = entries.get(key);
+    }
+    if (entry == null) {
+      return null;
+    }
+    try {
+      entry.propertiesRead.await();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new DotNetToolsException("Interrupted while waiting for the project " + key, e);
+    }
+    if (entry.project == null) {
+      throw new DotNetToolsException("Could not read the project " + key);
+    }
+    return entry.project;
+  }
+
+  /**
+   * Tells if the references of a project are being resolved by the current thread, i.e. if a reference to it closes a reference cycle.
+   */
+  public boolean isResolvingReferences(File key) {
+    return referencePath.get().contains(key);
+  }
+
+  public void startResolvingReferences(File key) {
+    referencePath.get().add(key);
+  }
+
+  public void endResolvingReferences(File key) {
+    referencePath.get().remove(key);
+  }
+
+  private static final class Entry {
+
+    private final CountDownLatch propertiesRead = new CountDownLatch(1);
+    private volatile VisualStudioProject project;
+  }
+
+}
@@ -0,0 +1,197 @@
+/*
+ * .NET tools :: Commons
+ * Copyright (C) 2010 Jose Chillan, Alexandre Victoor and SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.dotnet.tools.commons.visualstudio;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.commons.lang.StringUtils;
+
+/**
+ * Data read from a Visual Studio project file (.csproj). Values follow the XPath string semantics used historically by
+ * {@link ModelFactory}: the first matching element wins, and a missing element gives an empty string.<br/>
+ * The reader also records the property definitions and imports in document order, so that {@link MsBuildEvaluator} can evaluate the
+ * properties that are not written literally.
+ */
+class ProjectFileContent {
+
+  private final Map<String, String> properties = new HashMap<String, String>();
+  private final List<String[]> conditionalOutputPaths = new ArrayList<String[]>();
+  private final List<String> references = new ArrayList<String>();
+  private final List<String> projectReferences = new ArrayList<String>();
+  private final List<String> compileItems = new ArrayList<String>();
+  private final Map<String, String> evaluatedOutputPaths = new HashMap<String, String>();
+  private final List<Statement> statements = new ArrayList<Statement>();
+  private final List<File> importedFiles = new ArrayList<File>();
+
+  /**
+   * Gets the value of a property defined in one of the "PropertyGroup" elements of the project.
+   *
+   * @param name
+   *          the name of the property, for instance "AssemblyName"
+   * @return the first value found, or an empty string if the property is not defined
+   */
+  public String getProperty(String name) {
+    String value = properties.get(name);
+    return value == null ? "" : value;
+  }
+
+  Map<String, String> getProperties() {
+    return properties;
+  }
+
+  void addProperty(String name, String value) {
+    if ( !properties.containsKey(name)) {
+      properties.put(name, value);
+    }
+  }
+
+  void replaceProperty(String name, String value) {
+    properties.put(name, value);
+  }
+
+  /**
+   * Gets the "OutputPath" evaluated for a build configuration or, if it could not be evaluated, the one of the first "PropertyGroup"
+   * whose condition contains the given string.
+   *
+   * @param conditionPart
+   *          a build configuration name such as "Debug"
+   * @return the output path, or an empty string if none is defined
+   */
+  public String getOutputPath(String conditionPart) {
+    String evaluatedOutputPath = evaluatedOutputPaths.get(conditionPart);
+    if (evaluatedOutputPath != null) {
+      return evaluatedOutputPath;
+    }
+    for (String[] conditionalOutputPath : conditionalOutputPaths) {
+      if (StringUtils.contains(conditionalOutputPath[0], conditionPart)) {
+        return conditionalOutputPath[1];
+      }
+    }
+    return "";
+  }
+
+  void addOutputPath(String condition, String outputPath) {
+    conditionalOutputPaths.add(new String[] { condition, outputPath });
+  }
+
+  List<String[]> getConditionalOutputPaths() {
+    return conditionalOutputPaths;
+  }
+
+  void addEvaluatedOutputPath(String buildConfiguration, String outputPath) {
+    evaluatedOutputPaths.put(buildConfiguration, outputPath);
+  }
+
+  Map<String, String> getEvaluatedOutputPaths() {
+    return evaluatedOutputPaths;
+  }
+
+  /**
+   * @return the property definitions and imports of the file, in document order
+   */
+  List<Statement> getStatements() {
+    return statements;
+  }
+
+  /**
+   * @return the files imported while evaluating the properties, which are not kept in the model cache
+   */
+  List<File> getImportedFiles() {
+    return importedFiles;
+  }
+
+  /**
+   * @return the "Include" attributes of the "Reference" items
+   */
+  public List<String> getReferences() {
+    return references;
+  }
+
+  /**
+   * @return the "Include" attributes of the "ProjectReference" items
+   */
+  public List<String> getProjectReferences() {
+    return projectReferences;
+  }
+
+  /**
+   * @return the "Include" attributes of the "Compile" items
+   */
+  public List<String> getCompileItems() {
+    return compileItems;
+  }
+
+  /**
+   * A property definition or an import, with the conditions of the element and of its enclosing group.
+   */
+  static final class Statement {
+
+    private final String name;
+    private final String value;
+    private final String importedProject;
+    private final String groupCondition;
+    private final String condition;
+
+    private Statement(String name, String value, String importedProject, String groupCondition, String condition) {
+      this.name = name;
+      this.value = value;
+      this.importedProject = importedProject;
+      this.groupCondition = groupCondition;
+      this.condition = condition;
+    }
+
+    static Statement property(String name, String value, String groupCondition, String condition) {
+      return new Statement(name, value, null, groupCondition, condition);
+    }
+
+    static Statement importProject(String importedProject, String groupCondition, String condition) {
+      return new Statement(null, null, importedProject, groupCondition, condition);
+    }
+
+    boolean isImport() {
+      return importedProject != null;
+    }
+
+    String getName() {
+      return name;
+    }
+
+    String getValue() {
+      return value;
+    }
+
+    String getImportedProject() {
+      return importedProject;
+    }
+
+    String getGroupCondition() {
+      return groupCondition;
+    }
+
+    String getCondition() {
+      return condition;
+    }
+  }
+
+}
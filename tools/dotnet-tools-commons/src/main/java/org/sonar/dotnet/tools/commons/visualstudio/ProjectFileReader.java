@@ -0,0 +1,182 @@
+/*
+ * .NET tools :: Commons
+ * Copyright (C) 2010 Jose Chillan, Alexandre Victoor and SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.dotnet.tools.commons.visualstudio;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+import javax.xml.parsers.ParserConfigurationException;
+import javax.xml.parsers.SAXParser;
+import javax.xml.parsers.SAXParserFactory;
+
+import org.apache.commons.io.IOUtils;
+import org.sonar.dotnet.tools.commons.DotNetToolsException;
+import org.xml.sax.Attributes;
+import org.xml.sax.SAXException;
+import org.xml.sax.helpers.DefaultHandler;
+
+/**
+ * Reads all the data needed by {@link ModelFactory} from a Visual Studio project file in a single SAX pass. Files imported by a project,
+ * such as shared ".props" files, are read the same way.
+ */
+final class ProjectFileReader extends DefaultHandler {
+
+  private static final String MSBUILD_NAMESPACE = "http://schemas.microsoft.com/developer/msbuild/2003";
+  private static final String INCLUDE_ATTRIBUTE = "Include";
+  private static final String CONDITION_ATTRIBUTE = "Condition";
+
+  private final ProjectFileContent content = new ProjectFileContent();
+
+  private int depth;
+  private boolean inProject;
+  private boolean inPropertyGroup;
+  private boolean inItemGroup;
+  private boolean inImportGroup;
+  private String currentCondition;
+  private String currentPropertyName;
+  private String currentPropertyCondition;
+  private StringBuilder currentPropertyValue;
+  private boolean outputPathFound;
+
+  private ProjectFileReader() {
+  }
+
+  /**
+   * Reads a project file.
+   *
+   * @param projectFile
+   *          the .csproj file
+   * @return the content of the project file
+   * @throws DotNetToolsException
+   *           if the file cannot be read or is not a valid XML file
+   */
+  public static ProjectFileContent read(File projectFile) throws DotNetToolsException {
+    ProjectFileReader handler = new ProjectFileReader();
+    InputStream input = null;
+
+    // This is a workaround to avoid Xerces class-loading issues
+    ClassLoader savedClassloader = Thread.currentThread().getContextClassLoader();
+    Thread.currentThread().setContextClassLoader(SAXParserFactory.class.getClassLoader());
+    try {
+      SAXParserFactory factory = SAXParserFactory.newInstance();
+      factory.setNamespaceAware(true);
+      SAXParser parser = factory.newSAXParser();
+      input = new FileInputStream(projectFile);
+      parser.parse(input, handler);
+    } catch (IOException e) {
+      throw new DotNetToolsException("Could not read the project " + projectFile, e);
+    } catch (SAXException e) {
+      throw new DotNetToolsException("Could not parse the project " + projectFile, e);
+    } catch (ParserConfigurationException e) {
+      throw new DotNetToolsException("Could not create a parser for the project " + projectFile, e);
+    } finally {
+      IOUtils.closeQuietly(input);
+      Thread.currentThread().setContextClassLoader(savedClassloader);
+    }
+    return handler.content;
+  }
+
+  @Override
+  public void startElement(String uri, String localName, String qName, Attributes attributes) {
+    depth++;
+    if (currentPropertyValue != null || !MSBUILD_NAMESPACE.equals(uri)) {
+      return;
+    }
+    if (depth == 1) {
+      inProject = "Project".equals(localName);
+    } else if (depth == 2 && inProject) {
+      if ("PropertyGroup".equals(localName)) {
+        inPropertyGroup = true;
+        currentCondition = attributes.getValue(CONDITION_ATTRIBUTE);
+        outputPathFound = false;
+      } else if ("ItemGroup".equals(localName)) {
+        inItemGroup = true;
+      } else if ("ImportGroup".equals(localName)) {
+        inImportGroup = true;
+        currentCondition = attributes.getValue(CONDITION_ATTRIBUTE);
+      } else if ("Import".equals(localName)) {
+        readImport(attributes);
+      }
+    } else if (depth == 3 && inPropertyGroup) {
+      currentPropertyName = localName;
+      currentPropertyCondition = attributes.getValue(CONDITION_ATTRIBUTE);
+      currentPropertyValue = new StringBuilder();
+    } else if (depth == 3 && inItemGroup) {
+      readItem(localName, attributes);
+    } else if (depth == 3 && inImportGroup && "Import".equals(localName)) {
+      readImport(attributes);
+    }
+  }
+
+  private void readImport(Attributes attributes) {
+    String importedProject = attributes.getValue("Project");
+    if (importedProject != null) {
+      content.getStatements().add(
+          ProjectFileContent.Statement.importProject(importedProject, currentCondition, attributes.getValue(CONDITION_ATTRIBUTE)));
+    }
+  }
+
+  private void readItem(String localName, Attributes attributes) {
+    String include = attributes.getValue(INCLUDE_ATTRIBUTE);
+    if (include == null) {
+      include = "";
+    }
+    if ("Compile".equals(localName)) {
+      content.getCompileItems().add(include);
+    } else if ("Reference".equals(localName)) {
+      content.getReferences().add(include);
+    } else if ("ProjectReference".equals(localName)) {
+      content.getProjectReferences().add(include);
+    }
+  }
+
+  @Override
+  public void characters(char[] ch, int start, int length) {
+    if (currentPropertyValue != null) {
+      currentPropertyValue.append(ch, start, length);
+    }
+  }
+
+  @Override
+  public void endElement(String uri, String localName, String qName) {
+    if (depth == 3 && currentPropertyValue != null) {
+      String value = currentPropertyValue.toString();
+      content.addProperty(currentPropertyName, value);
+      content.getStatements().add(
+          ProjectFileContent.Statement.property(currentPropertyName, value, currentCondition, currentPropertyCondition));
+      if ("OutputPath".equals(currentPropertyName) && currentCondition != null && !outputPathFound) {
+        content.addOutputPath(currentCondition, value);
+        outputPathFound = true;
+      }
+      currentPropertyName = null;
+      currentPropertyCondition = null;
+      currentPropertyValue = null;
+    } else if (depth == 2) {
+      inPropertyGroup = false;
+      inItemGroup = false;
+      inImportGroup = false;
+      currentCondition = null;
+    }
+    depth--;
+  }
+
+}
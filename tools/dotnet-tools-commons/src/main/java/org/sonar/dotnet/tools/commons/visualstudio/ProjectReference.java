@@ -26,7 +26,7 @@ public class ProjectReference {
   private String path; 
   private UUID guid; 
   private String name;
-  
+  private VisualStudioProject project;
 
   public String getPath() {
 	return path;
@@ -52,6 +52,17 @@ public void setName(String name) {
 	this.name = name;
 }
 
+  /**
+   * @return the referenced project, shared with the solution the referencing project belongs to
+   */
+  public VisualStudioProject getProject() {
+    return project;
+  }
+
+  void setProject(VisualStudioProject project) {
+    this.project = project;
+  }
+
 @Override
   public String toString() {
     return path+':'+guid;
@@ -0,0 +1,71 @@
+/*
+ * .NET tools :: Commons
+ * Copyright (C) 2010 Jose Chillan, Alexandre Victoor and SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.dotnet.tools.commons.visualstudio;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Projects added to, removed from or read again in a solution by a {@link SolutionWatcher}.
+ */
+public final class SolutionDelta {
+
+  private final List<VisualStudioProject> addedProjects;
+  private final List<VisualStudioProject> removedProjects;
+  private final List<VisualStudioProject> changedProjects;
+
+  SolutionDelta(List<VisualStudioProject> addedProjects, List<VisualStudioProject> removedProjects,
+      List<VisualStudioProject> changedProjects) {
+    this.addedProjects = Collections.unmodifiableList(addedProjects);
+    this.removedProjects = Collections.unmodifiableList(removedProjects);
+    this.changedProjects = Collections.unmodifiableList(changedProjects);
+  }
+
+  /**
+   * @return the projects added to the solution
+   */
+  public List<VisualStudioProject> getAddedProjects() {
+    return addedProjects;
+  }
+
+  /**
+   * @return the projects removed from the solution, as they were before their removal
+   */
+  public List<VisualStudioProject> getRemovedProjects() {
+    return removedProjects;
+  }
+
+  /**
+   * @return the projects read again, i.e. the new instances now in the solution
+   */
+  public List<VisualStudioProject> getChangedProjects() {
+    return changedProjects;
+  }
+
+  public boolean isEmpty() {
+    return addedProjects.isEmpty() && removedProjects.isEmpty() && changedProjects.isEmpty();
+  }
+
+  @Override
+  public String toString() {
+    return addedProjects.size() + " project(s) added, " + removedProjects.size() + " removed, " + changedProjects.size() + " changed";
+  }
+
+}
@@ -0,0 +1,106 @@
+/*
+ * .NET tools :: Commons
+ * Copyright (C) 2010 Jose Chillan, Alexandre Victoor and SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.dotnet.tools.commons.visualstudio;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Data read from a Visual Studio solution file (.sln).
+ */
+class SolutionFileContent {
+
+  private final List<ProjectEntry> projects = new ArrayList<ProjectEntry>();
+  private final List<String> buildConfigurations = new ArrayList<String>();
+  private final Map<String, String> nestedProjects = new HashMap<String, String>();
+
+  /**
+   * @return the "Project" entries of the solution, in the order of the file, solution folders included
+   */
+  public List<ProjectEntry> getProjects() {
+    return projects;
+  }
+
+  /**
+   * @return the build configurations of the "SolutionConfigurationPlatforms" section, such as "Debug" or "Release"
+   */
+  public List<String> getBuildConfigurations() {
+    return buildConfigurations;
+  }
+
+  /**
+   * @return the GUID of the solution folder containing each nested project, keyed by the GUID of the project
+   */
+  public Map<String, String> getNestedProjects() {
+    return nestedProjects;
+  }
+
+  /**
+   * A "Project" entry of a solution file.
+   */
+  static class ProjectEntry {
+
+    private final String typeGuid;
+    private final String name;
+    private final String path;
+    private final String guid;
+    private final Map<String, String> websiteProperties = new LinkedHashMap<String, String>();
+
+    ProjectEntry(String typeGuid, String name, String path, String guid) {
+      this.typeGuid = typeGuid;
+      this.name = name;
+      this.path = path;
+      this.guid = guid;
+    }
+
+    /**
+     * @return the GUID of the kind of project, for instance "{2150E333-8FDC-42A3-9474-1A3956D46DE8}" for a solution folder
+     */
+    public String getTypeGuid() {
+      return typeGuid;
+    }
+
+    public String getName() {
+      return name;
+    }
+
+    /**
+     * @return the path of the project as written in the solution, relative to the solution directory
+     */
+    public String getPath() {
+      return path;
+    }
+
+    public String getGuid() {
+      return guid;
+    }
+
+    /**
+     * @return the quoted values of the "WebsiteProperties" section, empty if the project is not a web site
+     */
+    public Map<String, String> getWebsiteProperties() {
+      return websiteProperties;
+    }
+  }
+
+}
@@ -0,0 +1,178 @@
+/*
+ * .NET tools :: Commons
+ * Copyright (C) 2010 Jose Chillan, Alexandre Victoor and SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.dotnet.tools.commons.visualstudio;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.commons.io.IOUtils;
+import org.apache.commons.lang.StringUtils;
+
+/**
+ * Reads a Visual Studio solution file line by line, in a single pass.
+ */
+final class SolutionFileReader {
+
+  private static final String PROJECT_START = "Project(";
+  private static final String PROJECT_END = "EndProject";
+  private static final String PROJECT_SECTION_START = "ProjectSection(";
+  private static final String PROJECT_SECTION_END = "EndProjectSection";
+  private static final String GLOBAL_SECTION_START = "GlobalSection(";
+  private static final String GLOBAL_SECTION_END = "EndGlobalSection";
+
+  private final SolutionFileContent content = new SolutionFileContent();
+
+  private SolutionFileContent.ProjectEntry currentProject;
+  private String currentProjectSection;
+  private String currentGlobalSection;
+  private boolean configurationsRead;
+
+  private SolutionFileReader() {
+  }
+
+  /**
+   * Reads a solution file.
+   *
+   * @param solutionFile
+   *          the .sln file
+   * @return the content of the solution file
+   * @throws IOException
+   *           if the file cannot be read
+   */
+  public static SolutionFileContent read(File solutionFile) throws IOException {
+    Reader reader = new FileReader(solutionFile);
+    try {
+      return read(reader);
+    } finally {
+      IOUtils.closeQuietly(reader);
+    }
+  }
+
+  /**
+   * Reads the content of a solution file.
+   *
+   * @param reader
+   *          the reader on the solution file, not closed by this method
+   * @return the content of the solution file
+   * @throws IOException
+   *           if the content cannot be read
+   */
+  public static SolutionFileContent read(Reader reader) throws IOException {
+    SolutionFileReader solutionReader = new SolutionFileReader();
+    BufferedReader lineReader = new BufferedReader(reader);
+    String line = lineReader.readLine();
+    if (line != null && line.startsWith("\uFEFF")) {
+      line = line.substring(1);
+    }
+    while (line != null) {
+      solutionReader.readLine(line);
+      line = lineReader.readLine();
+    }
+    return solutionReader.content;
+  }
+
+  private void readLine(String line) {
+    if (currentProject != null) {
+      readProjectLine(line);
+    } else if (currentGlobalSection != null) {
+      readGlobalSectionLine(line);
+    } else if (line.startsWith(PROJECT_START)) {
+      currentProject = createProjectEntry(line);
+      content.getProjects().add(currentProject);
+    } else {
+      String trimmedLine = line.trim();
+      if (trimmedLine.startsWith(GLOBAL_SECTION_START)) {
+        currentGlobalSection = StringUtils.substringBetween(trimmedLine, GLOBAL_SECTION_START, ")");
+      }
+    }
+  }
+
+  private void readProjectLine(String line) {
+    if (PROJECT_END.equals(line)) {
+      currentProject = null;
+      currentProjectSection = null;
+      return;
+    }
+    String trimmedLine = line.trim();
+    if (currentProjectSection == null) {
+      if (trimmedLine.startsWith(PROJECT_SECTION_START)) {
+        currentProjectSection = StringUtils.substringBetween(trimmedLine, PROJECT_SECTION_START, ")");
+      }
+    } else if (PROJECT_SECTION_END.equals(trimmedLine)) {
+      currentProjectSection = null;
+    } else if ("WebsiteProperties".equals(currentProjectSection)) {
+      String name = StringUtils.substringBefore(trimmedLine, "=").trim();
+      String value = StringUtils.substringAfter(trimmedLine, "=").trim();
+      if (value.startsWith("\"")) {
+        currentProject.getWebsiteProperties().put(name, StringUtils.substringBefore(value.substring(1), "\""));
+      }
+    }
+  }
+
+  private void readGlobalSectionLine(String line) {
+    String trimmedLine = line.trim();
+    if (GLOBAL_SECTION_END.equals(trimmedLine)) {
+      if ("SolutionConfigurationPlatforms".equals(currentGlobalSection)) {
+        configurationsRead = true;
+      }
+      currentGlobalSection = null;
+    } else if ("SolutionConfigurationPlatforms".equals(currentGlobalSection) && !configurationsRead) {
+      // "Debug|Any CPU = Debug|Any CPU" gives "Debug"
+      int valueIndex = trimmedLine.indexOf(" = ");
+      int platformIndex = trimmedLine.lastIndexOf('|');
+      if (valueIndex >= 0 && platformIndex >= valueIndex + 3) {
+        content.getBuildConfigurations().add(trimmedLine.substring(valueIndex + 3, platformIndex));
+      }
+    } else if ("NestedProjects".equals(currentGlobalSection)) {
+      String projectGuid = StringUtils.substringBefore(trimmedLine, "=").trim();
+      String folderGuid = StringUtils.substringAfter(trimmedLine, "=").trim();
+      if (StringUtils.isNotEmpty(projectGuid) && StringUtils.isNotEmpty(folderGuid)) {
+        content.getNestedProjects().put(projectGuid, folderGuid);
+      }
+    }
+  }
+
+  /**
+   * Reads a line such as: Project("{FAE04EC0-301F-11D3-BF4B-00C04F79EFBC}") = "Example.Core", "Example.Core\Example.Core.csproj",
+   * "{A7BCC2F8-5A73-4B60-9F0A-D5C7B1B1F38F}"
+   */
+  private static SolutionFileContent.ProjectEntry createProjectEntry(String line) {
+    List<String> values = new ArrayList<String>();
+    int start = line.indexOf('"');
+    while (start >= 0) {
+      int end = line.indexOf('"', start + 1);
+      if (end < 0) {
+        break;
+      }
+      values.add(line.substring(start + 1, end));
+      start = line.indexOf('"', end + 1);
+    }
+    while (values.size() < 4) {
+      values.add("");
+    }
+    return new SolutionFileContent.ProjectEntry(values.get(0), values.get(1), values.get(2), values.get(3));
+  }
+
+}
@@ -0,0 +1,368 @@
+/*
+ * .NET tools :: Commons
+ * Copyright (C) 2010 Jose Chillan, Alexandre Victoor and SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.dotnet.tools.commons.visualstudio;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+
+/**
+ * Dependency graph of the projects of a solution, built from the GUIDs of their project references. References to projects that are
+ * not part of the solution are ignored.<br/>
+ * Besides the direct and transitive references of each project, the graph gives the projects in "levels": the projects of a level only
+ * reference projects of the previous levels, so that the projects of a level can be processed at the same time once the previous levels
+ * are done. The projects of a reference cycle are put in the same level. Within a level, and in all the returned lists, the projects are
+ * in the order of the solution.<br/>
+ * The graph is immutable and does not change when the projects of the solution are filtered.
+ */
+public class SolutionGraph {
+
+  private static final int[] NO_EDGES = new int[0];
+
+  private final List<VisualStudioProject> projects;
+  private final Map<VisualStudioProject, Integer> indexes = new IdentityHashMap<VisualStudioProject, Integer>();
+  private final int[][] references;
+  private final int[][] referencingProjects;
+  private final int[] components;
+  private final List<List<VisualStudioProject>> cycles;
+  private final List<List<VisualStudioProject>> levels;
+
+  /**
+   * Builds the graph of the projects of a solution.
+   * 
+   * @param solution
+   *          the solution
+   */
+  public SolutionGraph(VisualStudioSolution solution) {
+    this(solution.getProjects());
+  }
+
+  /**
+   * Builds the graph of some projects.
+   * 
+   * @param projects
+   *          the projects, in the order of the solution
+   */
+  public SolutionGraph(List<VisualStudioProject> projects) {
+    this.projects = Collections.unmodifiableList(new ArrayList<VisualStudioProject>(projects));
+    int size = this.projects.size();
+
+    Map<UUID, Integer> indexesByGuid = new HashMap<UUID, Integer>();
+    for (int i = 0; i < size; i++) {
+      VisualStudioProject project = this.projects.get(i);
+      indexes.put(project, i);
+      if (project.getProjectGuid() != null && !indexesByGuid.containsKey(project.getProjectGuid())) {
+        indexesByGuid.put(project.getProjectGuid(), i);
+      }
+    }
+
+    references = new int[size][];
+    int[] referencingCounts = new int[size];
+    for (int i = 0; i < size; i++) {
+      references[i] = readReferences(this.projects.get(i), indexesByGuid);
+      for (int reference : references[i]) {
+        referencingCounts[reference]++;
+      }
+    }
+    referencingProjects = new int[size][];
+    for (int i = 0; i < size; i++) {
+      referencingProjects[i] = referencingCounts[i] == 0 ? NO_EDGES : new int[referencingCounts[i]];
+      referencingCounts[i] = 0;
+    }
+    for (int i = 0; i < size; i++) {
+      for (int reference : references[i]) {
+        referencingProjects[reference][referencingCounts[reference]++] = i;
+      }
+    }
+
+    components = new int[size];
+    int componentCount = findComponents();
+    cycles = Collections.unmodifiableList(buildCycles(componentCount));
+    levels = Collections.unmodifiableList(buildLevels(componentCount));
+  }
+
+  private static int[] readReferences(VisualStudioProject project, Map<UUID, Integer> indexesByGuid) {
+    List<ProjectReference> projectReferences = project.getProjectReferences();
+    if (projectReferences == null || projectReferences.isEmpty()) {
+      return NO_EDGES;
+    }
+    Set<Integer> result = new LinkedHashSet<Integer>();
+    for (ProjectReference reference : projectReferences) {
+      Integer index = reference.getGuid() == null ? null : indexesByGuid.get(reference.getGuid());
+      if (index != null) {
+        result.add(index);
+      }
+    }
+    int[] edges = new int[result.size()];
+    int i = 0;
+    for (Integer index : result) {
+      edges[i++] = index;
+    }
+    Arrays.sort(edges);
+    return edges;
+  }
+
+  /**
+   * Finds the strongly connected components with the algorithm of Tarjan, without recursion so that long chains of references do not
+   * overflow the stack. The components are numbered in reverse topological order: a component only references components with a lower
+   * number.
+   * 
+   * @return the number of components
+   */
+  private int findComponents() {
+    int size = projects.size();
+    int[] order = new int[size];
+    int[] lowLinks = new int[size];
+    Arrays.fill(order, -1);
+    BitSet onStack = new BitSet(size);
+    int[] stack = new int[size];
+    int stackSize = 0;
+    int[] callStack = new int[size];
+    int[] edgeIndexes = new int[size];
+    int counter = 0;
+    int componentCount = 0;
+
+    for (int start = 0; start < size; start++) {
+      if (order[start] >= 0) {
+        continue;
+      }
+      int depth = 0;
+      callStack[0] = start;
+      edgeIndexes[0] = 0;
+      order[start] = counter;
+      lowLinks[start] = counter++;
+      stack[stackSize++] = start;
+      onStack.set(start);
+
+      while (depth >= 0) {
+        int node = callStack[depth];
+        if (edgeIndexes[depth] < references[node].length) {
+          int next = references[node][edgeIndexes[depth]++];
+          if (order[next] < 0) {
+            depth++;
+            callStack[depth] = next;
+            edgeIndexes[depth] = 0;
+            order[next] = counter;
+            lowLinks[next] = counter++;
+            stack[stackSize++] = next;
+            onStack.set(next);
+          } else if (onStack.get(next)) {
+            lowLinks[node] = Math.min(lowLinks[node], order[next]);
+          }
+        } else {
+          if (lowLinks[node] == order[node]) {
+            int member;
+            do {
+              member = stack[--stackSize];
+              onStack.clear(member);
+              components[member] = componentCount;
+            } while (member != node);
+            componentCount++;
+          }
+          depth--;
+          if (depth >= 0) {
+            int parent = callStack[depth];
+            lowLinks[parent] = Math.min(lowLinks[parent], lowLinks[node]);
+          }
+        }
+      }
+    }
+    return componentCount;
+  }
+
+  private List<List<VisualStudioProject>> buildCycles(int componentCount) {
+    List<List<VisualStudioProject>> members = new ArrayList<List<VisualStudioProject>>(componentCount);
+    for (int i = 0; i < componentCount; i++) {
+      members.add(null);
+    }
+    List<Integer> cycleComponents = new ArrayList<Integer>();
+    for (int i = 0; i < projects.size(); i++) {
+      int component = components[i];
+      if (members.get(component) == null) {
+        members.set(component, new ArrayList<VisualStudioProject>());
+        cycleComponents.add(component);
+      }
+      members.get(component).add(projects.get(i));
+    }
+    List<List<VisualStudioProject>> result = new ArrayList<List<VisualStudioProject>>();
+    for (Integer component : cycleComponents) {
+      List<VisualStudioProject> cycle = members.get(component);
+      if (cycle.size() > 1 || isSelfReferencing(indexes.get(cycle.get(0)))) {
+        result.add(Collections.unmodifiableList(cycle));
+      }
+    }
+    return result;
+  }
+
+  private boolean isSelfReferencing(int index) {
+    return Arrays.binarySearch(references[index], index) >= 0;
+  }
+
+  private List<List<VisualStudioProject>> buildLevels(int componentCount) {
+    // Components are numbered so that references go to lower numbers: their levels are computed in one pass
+    int[] componentLevels = new int[componentCount];
+    List<List<Integer>> componentMembers = new ArrayList<List<Integer>>(componentCount);
+    for (int i = 0; i < componentCount; i++) {
+      componentMembers.add(new ArrayList<Integer>(1));
+    }
+    for (int i = 0; i < projects.size(); i++) {
+      componentMembers.get(components[i]).add(i);
+    }
+    int levelCount = 0;
+    for (int component = 0; component < componentCount; component++) {
+      int level = 0;
+      for (int member : componentMembers.get(component)) {
+        for (int reference : references[member]) {
+          if (components[reference] != component) {
+            level = Math.max(level, componentLevels[components[reference]] + 1);
+          }
+        }
+      }
+      componentLevels[component] = level;
+      levelCount = Math.max(levelCount, level + 1);
+    }
+
+    List<List<VisualStudioProject>> result = new ArrayList<List<VisualStudioProject>>(levelCount);
+    for (int i = 0; i < levelCount; i++) {
+      result.add(new ArrayList<VisualStudioProject>());
+    }
+    for (int i = 0; i < projects.size(); i++) {
+      result.get(componentLevels[components[i]]).add(projects.get(i));
+    }
+    for (int i = 0; i < levelCount; i++) {
+      result.set(i, Collections.unmodifiableList(result.get(i)));
+    }
+    return result;
+  }
+
+  /**
+   * @return the projects of the graph, in the order of the solution
+   */
+  public List<VisualStudioProject> getProjects() {
+    return projects;
+  }
+
+  /**
+   * @param project
+   *          a project of the graph
+   * @return the projects of the graph directly referenced by the project
+   */
+  public List<VisualStudioProject> getReferences(VisualStudioProject project) {
+    return toProjects(references[indexOf(project)]);
+  }
+
+  /**
+   * @param project
+   *          a project of the graph
+   * @return the projects of the graph that directly reference the project
+   */
+  public List<VisualStudioProject> getReferencingProjects(VisualStudioProject project) {
+    return toProjects(referencingProjects[indexOf(project)]);
+  }
+
+  /**
+   * @param project
+   *          a project of the graph
+   * @return the projects of the graph referenced by the project, directly or not
+   */
+  public List<VisualStudioProject> getTransitiveReferences(VisualStudioProject project) {
+    return toProjects(closure(indexOf(project), references));
+  }
+
+  /**
+   * @param project
+   *          a project of the graph
+   * @return the projects of the graph that reference the project, directly or not
+   */
+  public List<VisualStudioProject> getTransitiveReferencingProjects(VisualStudioProject project) {
+    return toProjects(closure(indexOf(project), referencingProjects));
+  }
+
+  /**
+   * @return true if some projects reference each other
+   */
+  public boolean hasCycles() {
+    return !cycles.isEmpty();
+  }
+
+  /**
+   * @return the groups of projects that reference each other, directly or not
+   */
+  public List<List<VisualStudioProject>> getCycles() {
+    return cycles;
+  }
+
+  /**
+   * @return the levels of projects, the first level containing the projects that do not reference any project of the graph
+   */
+  public List<List<VisualStudioProject>> getLevels() {
+    return levels;
+  }
+
+  private int indexOf(VisualStudioProject project) {
+    Integer index = indexes.get(project);
+    if (index == null) {
+      throw new IllegalArgumentException("The project " + project.getName() + " is not part of the graph");
+    }
+    return index;
+  }
+
+  private int[] closure(int start, int[][] edges) {
+    BitSet visited = new BitSet(projects.size());
+    int[] queue = new int[projects.size()];
+    int head = 0;
+    int tail = 0;
+    for (int next : edges[start]) {
+      visited.set(next);
+      queue[tail++] = next;
+    }
+    while (head < tail) {
+      for (int next : edges[queue[head++]]) {
+        if ( !visited.get(next)) {
+          visited.set(next);
+          queue[tail++] = next;
+        }
+      }
+    }
+    int[] result = new int[visited.cardinality()];
+    int i = 0;
+    for (int index = visited.nextSetBit(0); index >= 0; index = visited.nextSetBit(index + 1)) {
+      result[i++] = index;
+    }
+    return result;
+  }
+
+  private List<VisualStudioProject> toProjects(int[] projectIndexes) {
+    List<VisualStudioProject> result = new ArrayList<VisualStudioProject>(projectIndexes.length);
+    for (int index : projectIndexes) {
+      result.add(projects.get(index));
+    }
+    return result;
+  }
+
+}
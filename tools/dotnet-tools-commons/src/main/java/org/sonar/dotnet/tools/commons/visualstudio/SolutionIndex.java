@@ -0,0 +1,204 @@
+/*
+ * .NET tools :: Commons
+ * Copyright (C) 2010 Jose Chillan, Alexandre Victoor and SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.dotnet.tools.commons.visualstudio;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.commons.io.FilenameUtils;
+import org.apache.commons.lang.StringUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.sonar.dotnet.tools.commons.utils.CanonicalPathCache;
+
+/**
+ * Index of the source files and directories of the projects of a solution, built once so that finding the project of a file does not
+ * require to go through all the projects.<br/>
+ * Lookups first use the absolute path of the given file, normalized without any access to the file system. Only when nothing is found
+ * this way is the canonical path of the file computed, to cope with symbolic links or with the case of the path on Windows.
+ */
+public class SolutionIndex {
+
+  private static final Logger LOG = LoggerFactory.getLogger(SolutionIndex.class);
+
+  private final Map<String, SourceFile> sourceFiles = new HashMap<String, SourceFile>();
+  private final DirectoryNode root = new DirectoryNode();
+
+  /**
+   * Builds the index of the given projects. When several projects contain the same file or directory, the first one in the list wins,
+   * as it did when the projects were scanned one after another.
+   *
+   * @param projects
+   *          the projects of the solution
+   */
+  public SolutionIndex(List<VisualStudioProject> projects) {
+    this(projects, true);
+  }
+
+  SolutionIndex(List<VisualStudioProject> projects, boolean indexSourceFiles) {
+    int projectIndex = 0;
+    for (VisualStudioProject project : projects) {
+      if (project.getDirectory() != null) {
+        addDirectory(project.getDirectory().getPath(), project, projectIndex);
+      }
+      if (indexSourceFiles) {
+        for (SourceFile sourceFile : project.getSourceFiles()) {
+          File file = sourceFile.getFile();
+          String path = file.getPath();
+          // Files listed in a project but missing on the disk never belonged to it
+          if ( !sourceFiles.containsKey(path) && file.exists()) {
+            sourceFiles.put(path, sourceFile);
+          }
+        }
+      }
+      projectIndex++;
+    }
+  }
+
+  private void addDirectory(String path, VisualStudioProject project, int projectIndex) {
+    DirectoryNode node = root;
+    for (String segment : StringUtils.split(path, File.separatorChar)) {
+      node = node.getOrCreateChild(segment);
+    }
+    if (node.project == null) {
+      node.project = project;
+      node.projectIndex = projectIndex;
+    }
+  }
+
+  /**
+   * Gets the project a source file belongs to.
+   *
+   * @param file
+   *          the source file
+   * @return the project, or <code>null</code> if no project contains the file
+   */
+  public VisualStudioProject getProject(File file) {
+    SourceFile sourceFile = getSourceFile(file);
+    return sourceFile == null ? null : sourceFile.getProject();
+  }
+
+  /**
+   * Gets the source file of a project matching a file.
+   *
+   * @param file
+   *          the file
+   * @return the source file, or <code>null</code> if no project contains the file
+   */
+  public SourceFile getSourceFile(File file) {
+    if (file == null) {
+      return null;
+    }
+    String normalizedPath = normalize(file);
+    SourceFile result = normalizedPath == null ? null : sourceFiles.get(normalizedPath);
+    if (result == null) {
+      String canonicalPath = canonicalize(file);
+      if (canonicalPath != null && !canonicalPath.equals(normalizedPath)) {
+        result = sourceFiles.get(canonicalPath);
+      }
+    }
+    return result;
+  }
+
+  /**
+   * Gets the project whose base directory contains the file or directory.
+   *
+   * @param file
+   *          the file to look for
+   * @return the associated project, or <code>null</code> if none is matching
+   */
+  public VisualStudioProject getProjectByLocation(File file) {
+    if (file == null) {
+      return null;
+    }
+    String normalizedPath = normalize(file);
+    VisualStudioProject result = normalizedPath == null ? null : findDirectoryProject(normalizedPath);
+    if (result == null) {
+      String canonicalPath = canonicalize(file);
+      if (canonicalPath != null && !canonicalPath.equals(normalizedPath)) {
+        result = findDirectoryProject(canonicalPath);
+      }
+    }
+    return result;
+  }
+
+  /**
+   * @return the number of source files in the index
+   */
+  public int getSourceFileCount() {
+    return sourceFiles.size();
+  }
+
+  private VisualStudioProject findDirectoryProject(String path) {
+    VisualStudioProject result = null;
+    int resultIndex = Integer.MAX_VALUE;
+    DirectoryNode node = root;
+    for (String segment : StringUtils.split(path, File.separatorChar)) {
+      node = node.children == null ? null : node.children.get(segment);
+      if (node == null) {
+        break;
+      }
+      if (node.project != null && node.projectIndex < resultIndex) {
+        result = node.project;
+        resultIndex = node.projectIndex;
+      }
+    }
+    return result;
+  }
+
+  private static String normalize(File file) {
+    return FilenameUtils.normalizeNoEndSeparator(file.getAbsolutePath());
+  }
+
+  private static String canonicalize(File file) {
+    try {
+      return CanonicalPathCache.getInstance().getCanonicalPath(file);
+    } catch (IOException e) {
+      LOG.debug("Could not get the canonical path of " + file, e);
+      return null;
+    }
+  }
+
+  /**
+   * A directory of the trie, with the first project located in it.
+   */
+  private static final class DirectoryNode {
+
+    private Map<String, DirectoryNode> children;
+    private VisualStudioProject project;
+    private int projectIndex;
+
+    private DirectoryNode getOrCreateChild(String segment) {
+      if (children == null) {
+        children = new HashMap<String, DirectoryNode>();
+      }
+      DirectoryNode child = children.get(segment);
+      if (child == null) {
+        child = new DirectoryNode();
+        children.put(segment, child);
+      }
+      return child;
+    }
+  }
+
+}
@@ -0,0 +1,296 @@
+/*
+ * .NET tools :: Commons
+ * Copyright (C) 2010 Jose Chillan, Alexandre Victoor and SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.dotnet.tools.commons.visualstudio;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.sonar.dotnet.tools.commons.DotNetToolsException;
+import org.sonar.dotnet.tools.commons.utils.CanonicalPathCache;
+import org.sonar.dotnet.tools.commons.utils.FileFinder;
+
+/**
+ * Keeps the model of a solution up to date for long-running processes. The watcher records the size and last modification date of the
+ * solution file, of the files each project has been read from (project file, imported files, files scanned for the version) and of the
+ * directories of its source files. A change marks the project as dirty, and the dirty projects are read again on the next call to
+ * {@link #getSolution()}; a change of the solution file itself reloads the whole solution.<br/>
+ * Changes are looked for on each call to {@link #getSolution()} or, after {@link #start(long)}, periodically by a background thread. The
+ * file system is polled rather than watched through native notifications, which are not available with Java 5.<br/>
+ * The solution is returned as read by {@link ModelFactory}: settings such as {@link VisualStudioSolution#filterProjects(String)} must be
+ * applied again by the listeners.<br/>
+ * The shared caches of canonical paths and of directory listings are cleared before changed projects are read again, as renamed files or
+ * modified symbolic links would otherwise be resolved from stale entries.
+ */
+public class SolutionWatcher {
+
+  /**
+   * Notified after the solution has been updated.
+   */
+  public interface Listener {
+
+    /**
+     * @param solution
+     *          the solution, up to date
+     * @param delta
+     *          the projects that changed
+     */
+    void solutionChanged(VisualStudioSolution solution, SolutionDelta delta);
+  }
+
+  private static final Logger LOG = LoggerFactory.getLogger(SolutionWatcher.class);
+
+  private final File solutionFile;
+  private final List<Listener> listeners = new CopyOnWriteArrayList<Listener>();
+  private final Map<VisualStudioProject, List<Fingerprint>> projectFingerprints =
+    new IdentityHashMap<VisualStudioProject, List<Fingerprint>>();
+  private final Set<VisualStudioProject> dirtyProjects = new LinkedHashSet<VisualStudioProject>();
+  private VisualStudioSolution solution;
+  private Fingerprint solutionFingerprint;
+  private boolean solutionDirty;
+  private ScheduledExecutorService poller;
+
+  /**
+   * Reads a solution and starts recording the state of its files.
+   * 
+   * @param solutionFile
+   *          the solution file
+   */
+  public SolutionWatcher(File solutionFile) throws IOException, DotNetToolsException {
+    this.solutionFile = solutionFile;
+    this.solutionFingerprint = new Fingerprint(solutionFile);
+    this.solution = ModelFactory.getSolution(solutionFile);
+    for (VisualStudioProject project : solution.getProjects()) {
+      recordFingerprints(project);
+    }
+  }
+
+  public void addListener(Listener listener) {
+    listeners.add(listener);
+  }
+
+  public void removeListener(Listener listener) {
+    listeners.remove(listener);
+  }
+
+  /**
+   * Starts looking for changes periodically in a background thread. The projects are still read again on the next call to
+   * {@link #getSolution()} only.
+   * 
+   * @param pollingInterval
+   *          the delay between two checks, in milliseconds
+   */
+  public synchronized void start(long pollingInterval) {
+    if (poller != null) {
+      return;
+    }
+    poller = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+
+      public Thread newThread(Runnable runnable) {
+        Thread thread = new Thread(runnable, "dotnet-solution-watcher");
+        thread.setDaemon(true);
+        return thread;
+      }
+    });
+    poller.scheduleWithFixedDelay(new Runnable() {
+
+      public void run() {
+        try {
+          checkForChanges();
+        } catch (RuntimeException e) {
+          LOG.warn("Could not check the files of the solution " + solutionFile, e);
+        }
+      }
+    }, pollingInterval, pollingInterval, TimeUnit.MILLISECONDS);
+  }
+
+  /**
+   * Stops the background thread, if any. Changes are then looked for on each call to {@link #getSolution()}.
+   */
+  public synchronized void stop() {
+    if (poller != null) {
+      poller.shutdownNow();
+      poller = null;
+    }
+  }
+
+  /**
+   * Compares the files of the solution with their recorded state, and marks the projects whose files changed as dirty.
+   * 
+   * @return true if the solution or any of its projects is dirty
+   */
+  public synchronized boolean checkForChanges() {
+    if ( !solutionDirty && !solutionFingerprint.isUpToDate()) {
+      LOG.debug("The solution file {} has changed", solutionFile);
+      solutionDirty = true;
+    }
+    for (Map.Entry<VisualStudioProject, List<Fingerprint>> entry : projectFingerprints.entrySet()) {
+      VisualStudioProject project = entry.getKey();
+      if ( !dirtyProjects.contains(project) && !isUpToDate(entry.getValue())) {
+        LOG.debug("The project {} has changed", project.getName());
+        dirtyProjects.add(project);
+      }
+    }
+    return solutionDirty || !dirtyProjects.isEmpty();
+  }
+
+  /**
+   * @return true if the project has changed since it was read
+   */
+  public synchronized boolean isDirty(VisualStudioProject project) {
+    return solutionDirty || dirtyProjects.contains(project);
+  }
+
+  /**
+   * Gets the solution, after having read again the projects that changed. Listeners are notified in the calling thread.
+   * 
+   * @return the solution, which is the same instance unless the solution file itself changed
+   */
+  public VisualStudioSolution getSolution() throws IOException, DotNetToolsException {
+    VisualStudioSolution result;
+    SolutionDelta delta;
+    synchronized (this) {
+      if (poller == null) {
+        checkForChanges();
+      }
+      if ( !solutionDirty && dirtyProjects.isEmpty()) {
+        return solution;
+      }
+      CanonicalPathCache.getInstance().clear();
+      FileFinder.clearCache();
+      delta = solutionDirty ? reloadSolution() : reloadProjects();
+      result = solution;
+    }
+    LOG.debug("Solution {} updated: {}", solutionFile, delta);
+    for (Listener listener : listeners) {
+      listener.solutionChanged(result, delta);
+    }
+    return result;
+  }
+
+  private SolutionDelta reloadSolution() throws IOException, DotNetToolsException {
+    Fingerprint newSolutionFingerprint = new Fingerprint(solutionFile);
+    VisualStudioSolution newSolution = ModelFactory.getSolution(solutionFile);
+    boolean buildConfigurationsChanged = !newSolution.getBuildConfigurations().equals(solution.getBuildConfigurations());
+
+    Map<String, VisualStudioProject> oldProjects = new HashMap<String, VisualStudioProject>();
+    for (VisualStudioProject project : solution.getProjects()) {
+      oldProjects.put(project.getName(), project);
+    }
+    List<VisualStudioProject> addedProjects = new ArrayList<VisualStudioProject>();
+    List<VisualStudioProject> changedProjects = new ArrayList<VisualStudioProject>();
+    for (VisualStudioProject project : newSolution.getProjects()) {
+      VisualStudioProject oldProject = oldProjects.remove(project.getName());
+      if (oldProject == null) {
+        addedProjects.add(project);
+      } else if (buildConfigurationsChanged || dirtyProjects.contains(oldProject)) {
+        changedProjects.add(project);
+      }
+    }
+
+    solution = newSolution;
+    solutionFingerprint = newSolutionFingerprint;
+    solutionDirty = false;
+    dirtyProjects.clear();
+    projectFingerprints.clear();
+    for (VisualStudioProject project : solution.getProjects()) {
+      recordFingerprints(project);
+    }
+    return new SolutionDelta(addedProjects, new ArrayList<VisualStudioProject>(oldProjects.values()), changedProjects);
+  }
+
+  private SolutionDelta reloadProjects() throws IOException, DotNetToolsException {
+    SolutionFileContent solutionContent = SolutionFileReader.read(solutionFile);
+    List<VisualStudioProject> changedProjects = new ArrayList<VisualStudioProject>();
+    for (VisualStudioProject oldProject : new ArrayList<VisualStudioProject>(dirtyProjects)) {
+      VisualStudioProject newProject = ModelFactory.reloadProject(solutionFile, solutionContent, oldProject.getName(),
+          solution.getProjects());
+      if (newProject == null) {
+        // The solution file has been modified and restored in between
+        return reloadSolution();
+      }
+      solution.replaceProject(oldProject, newProject);
+      dirtyProjects.remove(oldProject);
+      projectFingerprints.remove(oldProject);
+      recordFingerprints(newProject);
+      changedProjects.add(newProject);
+    }
+    List<VisualStudioProject> none = new ArrayList<VisualStudioProject>();
+    return new SolutionDelta(none, none, changedProjects);
+  }
+
+  private void recordFingerprints(VisualStudioProject project) {
+    Set<File> files = new LinkedHashSet<File>(project.getInputFiles());
+    if (project.getDirectory() != null) {
+      files.add(project.getDirectory());
+    }
+    for (SourceFile sourceFile : project.getSourceFiles()) {
+      files.add(sourceFile.getFile().getParentFile());
+    }
+    List<Fingerprint> fingerprints = new ArrayList<Fingerprint>(files.size());
+    for (File file : files) {
+      fingerprints.add(new Fingerprint(file));
+    }
+    projectFingerprints.put(project, fingerprints);
+  }
+
+  private static boolean isUpToDate(List<Fingerprint> fingerprints) {
+    for (Fingerprint fingerprint : fingerprints) {
+      if ( !fingerprint.isUpToDate()) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Size and last modification date of a file or directory.
+   */
+  private static final class Fingerprint {
+
+    private final File file;
+    private final long length;
+    private final long lastModified;
+
+    private Fingerprint(File file) {
+      this.file = file;
+      this.length = file.length();
+      this.lastModified = file.lastModified();
+    }
+
+    private boolean isUpToDate() {
+      return file.lastModified() == lastModified && file.length() == length;
+    }
+  }
+
+}
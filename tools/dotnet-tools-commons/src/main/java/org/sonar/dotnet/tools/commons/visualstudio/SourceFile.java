@@ -27,20 +27,23 @@ import java.io.File;
 import org.apache.commons.lang.StringUtils;
 
 /**
- * A source file included in a CSharp project.
+ * A source file included in a CSharp project. The paths of the source files of a project are kept in a single compact table, of which
+ * the source files are views.
  * 
  * @author Fabrice BELLINGARD
  * @author Jose CHILLAN Sep 1, 2009
  */
 public class SourceFile {
 
-  private final File file;
-  private final String folder;
-  private final String name;
   private final VisualStudioProject project;
+  private final PathTable table;
+  private final int id;
+  /** Name given to the constructor, null when the name is the one of the file in the table */
+  private final String name;
 
   /**
-   * Constructs a @link{SourceFile}.
+   * Constructs a @link{SourceFile}. It does not become one of the source files listed by the project, but its path is stored in a table
+   * shared by all the source files constructed for the project.
    * 
    * @param file
    *          the file canonical path
@@ -52,11 +55,27 @@ public class SourceFile {
    *          the file name
    */
   public SourceFile(VisualStudioProject project, File file, String folder, String fileName) {
-    super();
     this.project = project;
-    this.folder = folder;
+    if (project == null) {
+      this.table = new PathTable();
+      this.id = table.add(file, folder);
+    } else {
+      this.table = project.getConstructedFileTable();
+      synchronized (table) {
+        this.id = table.addWithFolder(file, folder);
+      }
+    }
     this.name = fileName;
-    this.file = file;
+  }
+
+  /**
+   * Constructs a view on a file of the table of the source files of a project.
+   */
+  SourceFile(VisualStudioProject project, PathTable table, int id) {
+    this.project = project;
+    this.table = table;
+    this.id = id;
+    this.name = null;
   }
 
   /**
@@ -65,7 +84,7 @@ public class SourceFile {
    * @return The folder to return.
    */
   public String getFolder() {
-    return this.folder;
+    return table.getFolder(id);
   }
 
   /**
@@ -74,7 +93,7 @@ public class SourceFile {
    * @return The fileName to return.
    */
   public String getName() {
-    return this.name;
+    return name == null ? table.getName(id) : name;
   }
 
   /**
@@ -93,11 +112,12 @@ public class SourceFile {
   public String toString() {
     StringBuilder builder = new StringBuilder();
     builder.append("Source(");
+    String folder = getFolder();
     if ( !StringUtils.isEmpty(folder)) {
       builder.append(folder);
       builder.append("/");
     }
-    builder.append(name);
+    builder.append(getName());
     builder.append(")");
     return builder.toString();
   }
@@ -108,7 +128,11 @@ public class SourceFile {
    * @return The file to return.
    */
   public File getFile() {
-    return this.file;
+    return table.getFile(id);
+  }
+
+  int getId() {
+    return id;
   }
 
 }
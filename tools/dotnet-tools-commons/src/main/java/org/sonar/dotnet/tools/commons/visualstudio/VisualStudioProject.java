@@ -23,11 +23,12 @@
 package org.sonar.dotnet.tools.commons.visualstudio;
 
 import java.io.File;
+import java.io.FileFilter;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
-import java.util.LinkedHashMap;
+import java.util.Collections;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -36,6 +37,7 @@ import java.util.UUID;
 import org.apache.commons.lang.StringUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.sonar.dotnet.tools.commons.utils.CanonicalPathCache;
 
 import com.google.common.collect.Sets;
 
@@ -66,12 +68,21 @@ public class VisualStudioProject {
 
   private boolean test;
   private boolean silverlightProject;
-  private Map<File, SourceFile> sourceFileMap;
+  /** Paths of the source files, and views on them by id */
+  private PathTable sourceFileTable;
+  private SourceFile[] sourceFilesById;
+  private List<SourceFile> sourceFiles;
+  /** Paths of the source files constructed outside of the project, see {@link SourceFile} */
+  private PathTable constructedFileTable;
+  /** Relative paths of the compiled files, as read in the project file */
+  private List<String> filesPath;
 
   private List<BinaryReference> binaryReferences = new ArrayList<BinaryReference>();
 
   private List<ProjectReference> projectReferences = new ArrayList<ProjectReference>();
 
+  private List<File> inputFiles = Collections.emptyList();
+
   /**
    * Builds a {@link VisualStudioProject} ...
    * 
@@ -94,9 +105,9 @@ public class VisualStudioProject {
   public String getRelativePath(File file) {
     File canonicalDirectory;
     try {
-      canonicalDirectory = directory.getCanonicalFile();
+      canonicalDirectory = CanonicalPathCache.getInstance().getCanonicalFile(directory);
 
-      File canonicalFile = file.getCanonicalFile();
+      File canonicalFile = CanonicalPathCache.getInstance().getCanonicalFile(file);
 
       String filePath = canonicalFile.getPath();
       String directoryPath = canonicalDirectory.getPath();
@@ -324,7 +335,7 @@ public class VisualStudioProject {
    */
   void setDirectory(File directory) {
     try {
-      this.directory = directory.getCanonicalFile();
+      this.directory = CanonicalPathCache.getInstance().getCanonicalFile(directory);
     } catch (IOException e) {
       LOG.warn("Invalid project directory : " + directory);
     }
@@ -410,25 +421,27 @@ public class VisualStudioProject {
    * @return
    */
   public Collection<SourceFile> getSourceFiles() {
-    if (sourceFileMap == null) {
+    if (sourceFiles == null) {
       initializeSourceFileMap();
     }
-    return sourceFileMap.values();
+    return sourceFiles;
   }
 
   private void initializeSourceFileMap() {
-    Map<File, SourceFile> allFiles = new LinkedHashMap<File, SourceFile>(); // Case of a regular project
+    PathTable table = new PathTable();
     if (projectFile != null) {
-      List<String> filesPath = ModelFactory.getFilesPath(projectFile);
+      // Case of a regular project
+      if (filesPath == null) {
+        filesPath = ModelFactory.getFilesPath(projectFile);
+      }
 
       for (String filePath : filesPath) {
         try {
           // We build the file and retrieves its canonical path
-          File file = new File(directory, filePath).getCanonicalFile();
+          File file = CanonicalPathCache.getInstance().getCanonicalFile(new File(directory, filePath));
           String fileName = file.getName();
           String folder = StringUtils.replace(StringUtils.removeEnd(StringUtils.removeEnd(filePath, fileName), "\\"), "\\", "/");
-          SourceFile sourceFile = new SourceFile(this, file, folder, fileName);
-          allFiles.put(file, sourceFile);
+          table.add(file, folder);
         } catch (IOException e) {
           LOG.error("Bad file :" + filePath, e);
         }
@@ -438,45 +451,73 @@ public class VisualStudioProject {
       // For web projects, we take all the C# files
       List<File> csharpFiles = listRecursiveFiles(directory, ".cs");
       for (File file : csharpFiles) {
-        SourceFile sourceFile = new SourceFile(this, file, file.getParent(), file.getName());
-        allFiles.put(file, sourceFile);
+        table.add(file, file.getParent());
       }
     }
-    this.sourceFileMap = allFiles;
+    SourceFile[] filesById = new SourceFile[table.size()];
+    for (int id = 0; id < filesById.length; id++) {
+      filesById[id] = new SourceFile(this, table, id);
+    }
+    this.sourceFileTable = table;
+    this.sourceFilesById = filesById;
+    this.sourceFiles = Collections.unmodifiableList(Arrays.asList(filesById));
   }
 
-  Map<File, SourceFile> getSourceFileMap() {
-    if (sourceFileMap == null) {
-      initializeSourceFileMap();
+  /**
+   * Removes source files from the project, when they belong to another project.
+   */
+  void removeSourceFiles(Collection<SourceFile> filesToRemove) {
+    if (filesToRemove.isEmpty()) {
+      return;
+    }
+    for (SourceFile sourceFile : filesToRemove) {
+      sourceFileTable.remove(sourceFile.getId());
+    }
+    List<SourceFile> remainingFiles = new ArrayList<SourceFile>(sourceFilesById.length - filesToRemove.size());
+    for (SourceFile sourceFile : sourceFilesById) {
+      if ( !sourceFileTable.isRemoved(sourceFile.getId())) {
+        remainingFiles.add(sourceFile);
+      }
+    }
+    this.sourceFiles = Collections.unmodifiableList(remainingFiles);
+  }
+
+  /**
+   * @return the table holding the paths of the source files constructed for this project, distinct from the table of the source files
+   *         listed by the project so that they cannot change them
+   */
+  synchronized PathTable getConstructedFileTable() {
+    if (constructedFileTable == null) {
+      constructedFileTable = new PathTable();
     }
-    return sourceFileMap;
+    return constructedFileTable;
   }
 
   /**
-   * Recursively lists the files of a directory
+   * @return the number of directories of the table of the source files, which are shared by the files
+   */
+  int getSourceDirectoryCount() {
+    getSourceFiles();
+    return sourceFileTable.getDirectoryCount();
+  }
+
+  /**
+   * Recursively lists the files of a directory, except in the directories skipped by the {@link ModelFactory}
    * 
    * @param dir
    *          the directory to list
    * @param extension
    * @return
    */
-  private List<File> listRecursiveFiles(File dir, String extension) {
-    List<File> result = new ArrayList<File>();
-    File[] content = dir.listFiles();
-    if (content != null) {
-      for (File file : content) {
-        if (file.isDirectory()) {
-          List<File> matching = listRecursiveFiles(file, extension);
-          result.addAll(matching);
-        } else {
-          // Look for matching file names
-          if (StringUtils.endsWithIgnoreCase(file.getName(), extension)) {
-            result.add(file);
-          }
-        }
+  private List<File> listRecursiveFiles(File dir, final String extension) {
+    FileFilter extensionFilter = new FileFilter() {
+
+      public boolean accept(File file) {
+        // Look for matching file names
+        return StringUtils.endsWithIgnoreCase(file.getName(), extension) && !file.isDirectory();
       }
-    }
-    return result;
+    };
+    return ModelFactory.createDirectoryWalker().walk(dir, extensionFilter, null);
   }
 
   /**
@@ -489,7 +530,7 @@ public class VisualStudioProject {
   public SourceFile getFile(File file) {
     File currentFile;
     try {
-      currentFile = file.getCanonicalFile();
+      currentFile = CanonicalPathCache.getInstance().getCanonicalFile(file);
     } catch (IOException e) {
       // File not found
       if (LOG.isDebugEnabled()) {
@@ -499,7 +540,8 @@ public class VisualStudioProject {
     }
     // We ensure the source files are loaded
     getSourceFiles();
-    return sourceFileMap.get(currentFile);
+    int id = sourceFileTable.find(currentFile);
+    return id < 0 ? null : sourceFilesById[id];
   }
 
   /**
@@ -525,10 +567,10 @@ public class VisualStudioProject {
       return false;
     }
     try {
-      File currentFile = file.getCanonicalFile();
+      File currentFile = CanonicalPathCache.getInstance().getCanonicalFile(file);
       // We ensure the source files are loaded
       getSourceFiles();
-      return sourceFileMap.containsKey(currentFile);
+      return sourceFileTable.find(currentFile) >= 0;
     } catch (IOException e) {
       LOG.debug("file error", e);
     }
@@ -571,10 +613,25 @@ public class VisualStudioProject {
     this.projectReferences = projectReferences;
   }
 
+  /**
+   * @return the files the project has been read from: the project file, the files it imports and the files scanned for its version
+   */
+  List<File> getInputFiles() {
+    return inputFiles;
+  }
+
+  void setInputFiles(List<File> inputFiles) {
+    this.inputFiles = inputFiles;
+  }
+
   void setBuildConfOutputDirMap(Map<String, File> buildConfOutputDirMap) {
     this.buildConfOutputDirMap = buildConfOutputDirMap;
   }
 
+  void setFilesPath(List<String> filesPath) {
+    this.filesPath = filesPath;
+  }
+
   void setForcedOutputDir(String forcedOutputDir) {
     this.forcedOutputDir = forcedOutputDir;
   }
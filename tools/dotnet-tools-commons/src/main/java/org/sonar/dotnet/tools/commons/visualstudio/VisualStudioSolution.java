@@ -23,7 +23,6 @@
 package org.sonar.dotnet.tools.commons.visualstudio;
 
 import java.io.File;
-import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashMap;
@@ -55,6 +54,8 @@ public class VisualStudioSolution {
   private String name;
   private List<VisualStudioProject> projects;
   private List<String> buildConfigurations;
+  private volatile SolutionIndex index;
+  private volatile SolutionGraph graph;
 
   public VisualStudioSolution(File solutionFile, List<VisualStudioProject> projects) {
     this.solutionFile = solutionFile;
@@ -87,6 +88,38 @@ public class VisualStudioSolution {
         projectIterator.remove();
       }
     }
+    index = null;
+    graph = null;
+  }
+
+  /**
+   * Replaces a project that has been read again, for instance by a {@link SolutionWatcher}. The references of the other projects are
+   * updated to point to the new instance, and the associations between files and projects are checked again.
+   * 
+   * @param oldProject
+   *          the project currently in the solution
+   * @param newProject
+   *          the project read again
+   */
+  void replaceProject(VisualStudioProject oldProject, VisualStudioProject newProject) {
+    int position = projects.indexOf(oldProject);
+    if (position < 0) {
+      throw new IllegalArgumentException("The project " + oldProject.getName() + " is not part of the solution " + name);
+    }
+    projects.set(position, newProject);
+    for (VisualStudioProject project : projects) {
+      for (ProjectReference reference : project.getProjectReferences()) {
+        if (reference.getProject() == oldProject) {
+          reference.setProject(newProject);
+          reference.setGuid(newProject.getProjectGuid());
+          reference.setPath(newProject.getDirectory().getPath());
+        }
+      }
+    }
+    initializeFileAssociations();
+    removeAssemblyNameDuplicates();
+    index = null;
+    graph = null;
   }
 
   /**
@@ -137,22 +170,19 @@ public class VisualStudioSolution {
    * Clean-up file/project associations in order to avoid having the same file in several projects.
    */
   private void initializeFileAssociations() {
-    Set<File> csFiles = new HashSet<File>();
+    // Only the directories are indexed as the source files are about to change
+    SolutionIndex directoryIndex = new SolutionIndex(projects, false);
+    Set<String> csFiles = new HashSet<String>();
     for (VisualStudioProject project : projects) {
-      Set<File> projectFiles = project.getSourceFileMap().keySet();
-      Set<File> projectFilesToRemove = new HashSet<File>();
-      for (File file : projectFiles) {
-        if (getProjectByLocation(file) == null) {
-          projectFilesToRemove.add(file);
+      List<SourceFile> filesToRemove = new ArrayList<SourceFile>();
+      for (SourceFile sourceFile : project.getSourceFiles()) {
+        File file = sourceFile.getFile();
+        // remove files not present in the project directory, and files present in other projects
+        if (directoryIndex.getProjectByLocation(file) == null || !csFiles.add(file.getPath())) {
+          filesToRemove.add(sourceFile);
         }
       }
-      // remove files not present in the project directory
-      projectFiles.removeAll(projectFilesToRemove);
-
-      // remove files present in other projects
-      projectFiles.removeAll(csFiles);
-
-      csFiles.addAll(projectFiles);
+      project.removeSourceFiles(filesToRemove);
     }
   }
 
@@ -163,12 +193,36 @@ public class VisualStudioSolution {
    * @return the project contains the file, or <code>null</code> if none is matching
    */
   public VisualStudioProject getProject(File file) {
-    for (VisualStudioProject project : projects) {
-      if (project.contains(file)) {
-        return project;
-      }
+    return getIndex().getProject(file);
+  }
+
+  /**
+   * Gets the index of the source files and directories of the projects, to find the project of a file without going through all the
+   * projects. The index is built on first use.
+   * 
+   * @return the index
+   */
+  public SolutionIndex getIndex() {
+    SolutionIndex result = index;
+    if (result == null) {
+      result = new SolutionIndex(projects);
+      index = result;
     }
-    return null;
+    return result;
+  }
+
+  /**
+   * Gets the dependency graph of the projects, built from their project references. The graph is built on first use.
+   * 
+   * @return the graph
+   */
+  public SolutionGraph getGraph() {
+    SolutionGraph result = graph;
+    if (result == null) {
+      result = new SolutionGraph(projects);
+      graph = result;
+    }
+    return result;
   }
 
   public VisualStudioProject getProjectFromSonarProject(Project sonarProject) {
@@ -196,21 +250,7 @@ public class VisualStudioSolution {
    * @return the associated project, or <code>null</code> if none is matching
    */
   public final VisualStudioProject getProjectByLocation(File file) {
-    String canonicalPath;
-    try {
-      canonicalPath = file.getCanonicalPath();
-      for (VisualStudioProject project : projects) {
-        File directory = project.getDirectory();
-        String projectFolderPath = directory.getPath();
-        if (canonicalPath.startsWith(projectFolderPath) && project.isParentDirectoryOf(file)) {
-          return project;
-        }
-      }
-    } catch (IOException e) {
-      LOG.debug("getProjectByLocation i/o exception", e);
-    }
-
-    return null;
+    return getIndex().getProjectByLocation(file);
   }
 
   /**
@@ -0,0 +1,80 @@
+/*
+ * .NET tools :: Commons
+ * Copyright (C) 2010 Jose Chillan, Alexandre Victoor and SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.dotnet.tools.commons.utils;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.File;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.sonar.test.TestUtils;
+
+public class CanonicalPathCacheTest {
+
+  private CanonicalPathCache cache;
+  private File solutionDir;
+
+  @Before
+  public void setUp() {
+    cache = new CanonicalPathCache(2);
+    solutionDir = TestUtils.getResource("/solution/Example");
+  }
+
+  @Test
+  public void testGetCanonicalPath() throws Exception {
+    File file = new File(solutionDir, "Example.Core/../Example.Core/Money.cs");
+    assertEquals(file.getCanonicalPath(), cache.getCanonicalPath(file));
+    assertEquals(file.getCanonicalFile(), cache.getCanonicalFile(file));
+    assertEquals(1, cache.getMisses());
+    assertEquals(1, cache.getHits());
+    assertEquals(0.5, cache.getHitRate(), 0.001);
+    assertEquals(1, cache.size());
+  }
+
+  @Test
+  public void testLeastRecentlyUsedPathsAreEvicted() throws Exception {
+    File core = new File(solutionDir, "Example.Core");
+    File application = new File(solutionDir, "Example.Application");
+    File sln = new File(solutionDir, "Example.sln");
+    cache.getCanonicalPath(core);
+    cache.getCanonicalPath(application);
+    cache.getCanonicalPath(core);
+    cache.getCanonicalPath(sln);
+    assertEquals(2, cache.size());
+
+    cache.getCanonicalPath(core);
+    assertEquals(2, cache.getHits());
+    cache.getCanonicalPath(application);
+    assertEquals(4, cache.getMisses());
+  }
+
+  @Test
+  public void testClear() throws Exception {
+    cache.getCanonicalPath(solutionDir);
+    cache.getCanonicalPath(solutionDir);
+    cache.clear();
+    assertEquals(0, cache.size());
+    assertEquals(0, cache.getHits());
+    assertEquals(0, cache.getMisses());
+    assertEquals(0, cache.getHitRate(), 0.001);
+  }
+
+}
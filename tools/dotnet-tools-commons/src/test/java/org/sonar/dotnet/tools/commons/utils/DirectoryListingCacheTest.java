@@ -0,0 +1,90 @@
+/*
+ * .NET tools :: Commons
+ * Copyright (C) 2010 Jose Chillan, Alexandre Victoor and SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.dotnet.tools.commons.utils;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+import java.io.File;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class DirectoryListingCacheTest {
+
+  private DirectoryListingCache cache;
+  private File directory;
+
+  @Before
+  public void setUp() throws Exception {
+    cache = new DirectoryListingCache();
+    directory = new File("target/directory-listing-cache-test");
+    FileUtils.deleteQuietly(directory);
+    directory.mkdirs();
+    FileUtils.touch(new File(directory, "first.txt"));
+  }
+
+  @After
+  public void tearDown() {
+    FileUtils.deleteQuietly(directory);
+  }
+
+  @Test
+  public void testListingOfOldDirectoryIsReused() throws Exception {
+    directory.setLastModified(System.currentTimeMillis() - 10000L);
+    DirectoryListingCache.Listing listing = cache.list(directory);
+    assertEquals(1, listing.size());
+    assertSame(listing, cache.list(directory));
+    assertEquals(1, cache.size());
+
+    FileUtils.touch(new File(directory, "second.txt"));
+    directory.setLastModified(System.currentTimeMillis() - 5000L);
+    assertEquals(2, cache.list(directory).size());
+  }
+
+  @Test
+  public void testFileAddedInTheSameTickIsFound() throws Exception {
+    long lastModified = directory.lastModified();
+    assertEquals(1, cache.list(directory).size());
+
+    // the date of the directory does not change when the file is added in the same tick
+    FileUtils.touch(new File(directory, "second.txt"));
+    directory.setLastModified(lastModified);
+    assertEquals(2, cache.list(directory).size());
+    assertEquals(0, cache.size());
+  }
+
+  @Test
+  public void testInvalidate() throws Exception {
+    File subdirectory = new File(directory, "sub");
+    subdirectory.mkdirs();
+    subdirectory.setLastModified(System.currentTimeMillis() - 10000L);
+    directory.setLastModified(System.currentTimeMillis() - 10000L);
+    cache.list(directory);
+    cache.list(subdirectory);
+    assertEquals(2, cache.size());
+
+    cache.invalidate(directory);
+    assertEquals(0, cache.size());
+  }
+
+}
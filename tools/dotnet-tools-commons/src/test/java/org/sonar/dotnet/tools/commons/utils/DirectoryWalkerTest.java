@@ -0,0 +1,167 @@
+/*
+ * .NET tools :: Commons
+ * Copyright (C) 2010 Jose Chillan, Alexandre Victoor and SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.dotnet.tools.commons.utils;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.FileFilter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.filefilter.TrueFileFilter;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.sonar.dotnet.tools.commons.utils.DirectoryWalker.DirectoryFilter;
+
+public class DirectoryWalkerTest {
+
+  private File root;
+
+  @Before
+  public void setUp() throws Exception {
+    root = new File("target/directory-walker-test");
+    FileUtils.deleteQuietly(root);
+    for (String path : Arrays.asList("Foo.cs", "Model/Bar.cs", "Model/Sub/Baz.cs", "Model/Sub/Deep/Qux.cs", "bin/Debug/Generated.cs",
+        "Obj/Debug/Generated.cs", "Web/packages/Lib.cs", "Web/Page.aspx.cs", "Web/Page.aspx")) {
+      FileUtils.writeStringToFile(new File(root, path), "");
+    }
+  }
+
+  @After
+  public void tearDown() {
+    FileUtils.deleteQuietly(root);
+  }
+
+  @Test
+  public void testSkippedDirectories() {
+    List<String> names = names(new DirectoryWalker(DirectoryWalker.DEFAULT_SKIPPED_DIRECTORIES).walk(root, new CsFilter(), null));
+    Collections.sort(names);
+    assertEquals(Arrays.asList("Bar.cs", "Baz.cs", "Foo.cs", "Page.aspx.cs", "Qux.cs"), names);
+
+    assertEquals(8, new DirectoryWalker(Collections.<String> emptyList()).walk(root, new CsFilter(), null).size());
+  }
+
+  @Test
+  public void testParallelWalkGivesSameOrder() {
+    List<File> sequential = new DirectoryWalker(Collections.<String> emptyList()).walk(root, TrueFileFilter.INSTANCE, null);
+    for (int threads = 2; threads <= 4; threads++) {
+      ExecutorService executor = DirectoryWalker.newExecutor(threads);
+      try {
+        DirectoryWalker walker = new DirectoryWalker(Collections.<String> emptyList(), executor);
+        assertEquals(sequential, walker.walk(root, TrueFileFilter.INSTANCE, null));
+        // the executor is not shut down by the walks
+        assertEquals(sequential, walker.walk(root, TrueFileFilter.INSTANCE, null));
+      } finally {
+        executor.shutdownNow();
+      }
+    }
+    assertEquals(18, sequential.size());
+  }
+
+  @Test
+  public void testWalkFromWalkerThread() throws Exception {
+    List<File> sequential = new DirectoryWalker(Collections.<String> emptyList()).walk(root, TrueFileFilter.INSTANCE, null);
+    ExecutorService executor = DirectoryWalker.newExecutor(2);
+    try {
+      final DirectoryWalker walker = new DirectoryWalker(Collections.<String> emptyList(), executor);
+      List<Future<List<File>>> walks = new ArrayList<Future<List<File>>>();
+      // both threads are busy with a walk: the subtrees must be walked in these threads rather than waiting for a free one
+      for (int i = 0; i < 2; i++) {
+        walks.add(executor.submit(new Callable<List<File>>() {
+
+          public List<File> call() {
+            return walker.walk(root, TrueFileFilter.INSTANCE, null);
+          }
+        }));
+      }
+      for (Future<List<File>> walk : walks) {
+        assertEquals(sequential, walk.get(10, TimeUnit.SECONDS));
+      }
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+  @Test
+  public void testGlobPrefixFilter() {
+    DirectoryFilter filter = DirectoryWalker.globPrefixFilter("Model/*/*.cs");
+    assertTrue(filter.accept(null, "Model"));
+    assertTrue(filter.accept(null, "Model/Sub"));
+    assertFalse(filter.accept(null, "Model/Sub/Deep"));
+    assertFalse(filter.accept(null, "Web"));
+
+    filter = DirectoryWalker.globPrefixFilter("**/Debug/*.cs");
+    assertTrue(filter.accept(null, "bin"));
+    assertTrue(filter.accept(null, "bin/Debug"));
+    assertTrue(filter.accept(null, "bin/Debug/Sub"));
+
+    filter = DirectoryWalker.globPrefixFilter("M*/**");
+    assertTrue(filter.accept(null, "Model/Sub/Deep"));
+    assertFalse(filter.accept(null, "bin"));
+  }
+
+  @Test
+  public void testPrunedWalk() {
+    final List<String> walkedDirectories = new ArrayList<String>();
+    final DirectoryFilter prefixFilter = DirectoryWalker.globPrefixFilter("Model/*/*.cs");
+    DirectoryFilter recordingFilter = new DirectoryFilter() {
+
+      public boolean accept(File directory, String relativePath) {
+        boolean accepted = prefixFilter.accept(directory, relativePath);
+        if (accepted) {
+          walkedDirectories.add(relativePath);
+        }
+        return accepted;
+      }
+    };
+    List<File> files = new DirectoryWalker(Collections.<String> emptyList()).walk(root, new CsFilter(), recordingFilter);
+
+    Collections.sort(walkedDirectories);
+    assertEquals(Arrays.asList("Model", "Model/Sub"), walkedDirectories);
+    assertEquals(3, files.size());
+  }
+
+  private static List<String> names(List<File> files) {
+    List<String> names = new ArrayList<String>();
+    for (File file : files) {
+      names.add(file.getName());
+    }
+    return names;
+  }
+
+  private static class CsFilter implements FileFilter {
+
+    public boolean accept(File file) {
+      return file.getName().endsWith(".cs");
+    }
+  }
+
+}
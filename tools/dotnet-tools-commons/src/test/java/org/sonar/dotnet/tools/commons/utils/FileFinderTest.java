@@ -23,8 +23,12 @@ import static org.junit.Assert.*;
 import static org.mockito.Mockito.*;
 
 import java.io.File;
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
 
+import org.apache.commons.io.FileUtils;
 import org.junit.Before;
 import org.junit.Test;
 import org.sonar.dotnet.tools.commons.visualstudio.VisualStudioProject;
@@ -169,4 +173,27 @@ public class FileFinderTest {
     assertEquals("AssemblyInfo.cs", csFile.getName());
   }
 
+  @Test
+  public void testResultsAreSorted() {
+    Collection<File> result = FileFinder.findFiles(solution, project, "**/*.cs;Money.cs");
+    List<File> files = new ArrayList<File>(result);
+    List<File> sortedFiles = new ArrayList<File>(result);
+    Collections.sort(sortedFiles);
+    assertEquals(sortedFiles, files);
+  }
+
+  @Test
+  public void testCachedListingsAreRefreshed() throws Exception {
+    File workDir = new File("target/file-finder-test");
+    FileUtils.deleteQuietly(workDir);
+    FileUtils.writeStringToFile(new File(workDir, "first.xml"), "");
+    FileFinder.clearCache();
+    assertEquals(1, FileFinder.findFiles(solution, workDir, "*.xml").size());
+
+    FileUtils.writeStringToFile(new File(workDir, "second.xml"), "");
+    FileFinder.invalidateCache(workDir);
+    assertEquals(2, FileFinder.findFiles(solution, workDir, "*.xml").size());
+    FileUtils.deleteQuietly(workDir);
+  }
+
 }
@@ -0,0 +1,67 @@
+/*
+ * .NET tools :: Commons
+ * Copyright (C) 2010 Jose Chillan, Alexandre Victoor and SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.dotnet.tools.commons.utils;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+public class GlobPatternTest {
+
+  @Test
+  public void testCompiledOnce() {
+    assertSame(GlobPattern.compile("**/*.dll"), GlobPattern.compile("**/*.dll"));
+  }
+
+  @Test
+  public void testMatches() {
+    GlobPattern pattern = GlobPattern.compile("**/bin/*.dll");
+    assertTrue(pattern.matches("bin/Foo.dll"));
+    assertTrue(pattern.matches("Foo/bin/Foo.dll"));
+    assertTrue(pattern.matches("Foo/Bar/bin/Foo.dll"));
+    assertFalse(pattern.matches("bin/Debug/Foo.dll"));
+    assertFalse(pattern.matches("bin/Foo.pdb"));
+
+    pattern = GlobPattern.compile("Model/S?b*.cs");
+    assertTrue(pattern.matches("Model/SubType.cs"));
+    assertFalse(pattern.matches("Model/Sb.cs"));
+    assertFalse(pattern.matches("Model/Sub/SubType.cs"));
+
+    pattern = GlobPattern.compile("Model/**");
+    assertTrue(pattern.matches("Model/SubType.cs"));
+    assertTrue(pattern.matches("Model/Sub/SubType.cs"));
+    assertFalse(pattern.matches("Model"));
+  }
+
+  @Test
+  public void testMayMatchBelow() {
+    GlobPattern pattern = GlobPattern.compile("*/bin/*.dll");
+    assertTrue(pattern.mayMatchBelow("Foo"));
+    assertTrue(pattern.mayMatchBelow("Foo/bin"));
+    assertFalse(pattern.mayMatchBelow("Foo/obj"));
+    assertFalse(pattern.mayMatchBelow("Foo/bin/Debug"));
+
+    pattern = GlobPattern.compile("**/*.cs");
+    assertTrue(pattern.mayMatchBelow("Foo/Bar/Baz"));
+  }
+
+}
@@ -0,0 +1,125 @@
+/*
+ * .NET tools :: Commons
+ * Copyright (C) 2010 Jose Chillan, Alexandre Victoor and SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.dotnet.tools.commons.visualstudio;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.lang.StringUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class AssemblyVersionResolverTest {
+
+  private static final String ASSEMBLY_INFO = "Properties" + File.separator + "AssemblyInfo.cs";
+
+  private File projectDir;
+  private VisualStudioProject project;
+  private List<File> inputFiles;
+
+  @Before
+  public void setUp() throws Exception {
+    projectDir = new File("target/assembly-version-test");
+    FileUtils.deleteQuietly(projectDir);
+    projectDir.mkdirs();
+    project = new VisualStudioProject();
+    project.setName("Test");
+    project.setProjectFile(new File(projectDir, "Test.csproj"));
+    project.setDirectory(projectDir);
+    inputFiles = new ArrayList<File>();
+  }
+
+  @After
+  public void tearDown() {
+    FileUtils.deleteQuietly(projectDir);
+  }
+
+  @Test
+  public void testAssemblyInfoStopsTheSearch() throws Exception {
+    writeSource("Foo.cs", "[assembly: AssemblyVersion(\"9.9.9.9\")]");
+    writeSource(ASSEMBLY_INFO, "\uFEFFusing System.Reflection;\n[assembly: AssemblyVersion(\"1.2.3.4\")]\n");
+    project.setFilesPath(Arrays.asList("Foo.cs", ASSEMBLY_INFO));
+
+    assertEquals("1.2.3.4", new AssemblyVersionResolver(-1, -1, false).resolve(project, null, inputFiles));
+    assertEquals(1, inputFiles.size());
+    assertEquals("AssemblyInfo.cs", inputFiles.get(0).getName());
+  }
+
+  @Test
+  public void testOtherSourceFiles() throws Exception {
+    writeSource(ASSEMBLY_INFO, "// [assembly: AssemblyVersion(\"0.0.0.0\")]\n");
+    writeSource("Foo.cs", "class Foo {}\n");
+    writeSource("Bar.cs", "[assembly: AssemblyVersion(\"2.0.0.0\")]\n");
+    project.setFilesPath(Arrays.asList(ASSEMBLY_INFO, "Foo.cs", "Bar.cs"));
+
+    assertEquals("2.0.0.0", new AssemblyVersionResolver(-1, -1, false).resolve(project, null, inputFiles));
+    assertEquals(3, inputFiles.size());
+    assertEquals("Foo.cs", inputFiles.get(1).getName());
+    assertEquals("Bar.cs", inputFiles.get(2).getName());
+
+    inputFiles.clear();
+    assertNull(new AssemblyVersionResolver(1, -1, false).resolve(project, null, inputFiles));
+    assertEquals(2, inputFiles.size());
+    assertEquals("Foo.cs", inputFiles.get(1).getName());
+  }
+
+  @Test
+  public void testMaxScannedBytes() throws Exception {
+    writeSource("Foo.cs", "using System;\nusing System.Reflection;\n[assembly: AssemblyVersion(\"3.0.0.0\")]\n");
+    project.setFilesPath(Arrays.asList("Foo.cs"));
+
+    assertNull(new AssemblyVersionResolver(-1, 20, false).resolve(project, null, inputFiles));
+    assertEquals("3.0.0.0", new AssemblyVersionResolver(-1, 100, false).resolve(project, null, inputFiles));
+  }
+
+  @Test
+  public void testMaxScannedBytesCountsBytes() throws Exception {
+    // 3 + 20 * 2 bytes, and 2 bytes for the line ending
+    writeSource("Foo.cs", "// " + StringUtils.repeat("\u00e9", 20) + "\r\n[assembly: AssemblyVersion(\"3.0.0.0\")]\r\n");
+    project.setFilesPath(Arrays.asList("Foo.cs"));
+
+    assertNull(new AssemblyVersionResolver(-1, 45, false).resolve(project, null, inputFiles));
+    assertEquals("3.0.0.0", new AssemblyVersionResolver(-1, 46, false).resolve(project, null, inputFiles));
+  }
+
+  @Test
+  public void testVersionFromProjectFile() throws Exception {
+    writeSource(ASSEMBLY_INFO, "[assembly: AssemblyVersion(\"1.2.3.4\")]\n");
+    project.setFilesPath(Arrays.asList(ASSEMBLY_INFO));
+    ProjectFileContent content = new ProjectFileContent();
+    content.addProperty("Version", "5.6.7");
+
+    assertEquals("5.6.7", new AssemblyVersionResolver(-1, -1, true).resolve(project, content, inputFiles));
+    assertEquals("1.2.3.4", new AssemblyVersionResolver(-1, -1, false).resolve(project, content, inputFiles));
+    assertEquals("1.2.3.4", new AssemblyVersionResolver(-1, -1, true).resolve(project, new ProjectFileContent(), inputFiles));
+  }
+
+  private void writeSource(String path, String content) throws Exception {
+    FileUtils.writeStringToFile(new File(projectDir, path), content, "UTF-8");
+  }
+
+}
@@ -0,0 +1,176 @@
+/*
+ * .NET tools :: Commons
+ * Copyright (C) 2010 Jose Chillan, Alexandre Victoor and SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.dotnet.tools.commons.visualstudio;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.List;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class ModelCacheTest {
+
+  private static final List<String> CONFIGURATIONS = Arrays.asList("Debug", "Release");
+  // the default settings of ModelFactory
+  private static final String SETTINGS = new AssemblyVersionResolver(100, 65536, false).getSettings();
+
+  private File workDir;
+  private File solutionFile;
+  private File coreProjectFile;
+  private File cacheFile;
+
+  @Before
+  public void setUp() throws Exception {
+    workDir = new File("target/model-cache-test");
+    FileUtils.deleteQuietly(workDir);
+    FileUtils.copyDirectory(new File("target/test-classes/solution/Example"), new File(workDir, "Example"));
+    solutionFile = new File(workDir, "Example/Example.sln");
+    coreProjectFile = new File(workDir, "Example/Example.Core/Example.Core.csproj");
+    cacheFile = new File(workDir, "cache/dotnet-model.cache");
+  }
+
+  @After
+  public void tearDown() {
+    ModelFactory.setModelCacheFile(null);
+    FileUtils.deleteQuietly(workDir);
+  }
+
+  @Test
+  public void testSaveAndLoad() {
+    File projectKey = ProjectCache.keyOf(coreProjectFile);
+    ProjectFileContent content = new ProjectFileContent();
+    content.addProperty("AssemblyName", "Example.Core");
+    content.addOutputPath(" '$(Configuration)|$(Platform)' == 'Debug|AnyCPU' ", "bin\\Debug\\");
+    content.getCompileItems().add("Money.cs");
+    content.getProjectReferences().add("..\\Other\\Other.csproj");
+
+    ModelCache modelCache = ModelCache.load(cacheFile);
+    assertNull(modelCache.get(projectKey, CONFIGURATIONS, SETTINGS));
+    modelCache.put(projectKey, CONFIGURATIONS, SETTINGS, content, "1.2.3.4", Arrays.asList(coreProjectFile));
+    modelCache.save();
+
+    modelCache = ModelCache.load(cacheFile);
+    ModelCache.Entry entry = modelCache.get(projectKey, CONFIGURATIONS, SETTINGS);
+    assertNotNull(entry);
+    assertEquals("1.2.3.4", entry.getAssemblyVersion());
+    assertEquals("Example.Core", entry.getContent().getProperty("AssemblyName"));
+    assertEquals("bin\\Debug\\", entry.getContent().getOutputPath("Debug"));
+    assertEquals(Arrays.asList("Money.cs"), entry.getContent().getCompileItems());
+    assertEquals(Arrays.asList("..\\Other\\Other.csproj"), entry.getContent().getProjectReferences());
+    assertEquals(1, modelCache.getHits());
+    assertEquals(0, modelCache.getMisses());
+  }
+
+  @Test
+  public void testModifiedInputIsReadAgain() {
+    File projectKey = ProjectCache.keyOf(coreProjectFile);
+    ModelCache modelCache = ModelCache.load(cacheFile);
+    modelCache.put(projectKey, CONFIGURATIONS, SETTINGS, new ProjectFileContent(), null, Arrays.asList(coreProjectFile));
+    modelCache.save();
+
+    coreProjectFile.setLastModified(coreProjectFile.lastModified() - 10000L);
+    modelCache = ModelCache.load(cacheFile);
+    assertNull(modelCache.get(projectKey, CONFIGURATIONS, SETTINGS));
+    assertEquals(1, modelCache.getMisses());
+  }
+
+  @Test
+  public void testChangedBuildConfigurationsAreReadAgain() {
+    File projectKey = ProjectCache.keyOf(coreProjectFile);
+    ModelCache modelCache = ModelCache.load(cacheFile);
+    modelCache.put(projectKey, CONFIGURATIONS, SETTINGS, new ProjectFileContent(), null, Arrays.asList(coreProjectFile));
+    modelCache.save();
+
+    modelCache = ModelCache.load(cacheFile);
+    assertNotNull(modelCache.get(projectKey, Arrays.asList("Release", "Debug", "Debug"), SETTINGS));
+    assertNull(modelCache.get(projectKey, Arrays.asList("Debug", "Release", "Staging"), SETTINGS));
+    assertEquals(1, modelCache.getMisses());
+  }
+
+  @Test
+  public void testChangedVersionSettingsAreReadAgain() {
+    File projectKey = ProjectCache.keyOf(coreProjectFile);
+    ModelCache modelCache = ModelCache.load(cacheFile);
+    modelCache.put(projectKey, CONFIGURATIONS, SETTINGS, new ProjectFileContent(), null, Arrays.asList(coreProjectFile));
+    modelCache.save();
+
+    modelCache = ModelCache.load(cacheFile);
+    assertNull(modelCache.get(projectKey, CONFIGURATIONS, new AssemblyVersionResolver(10, 65536, false).getSettings()));
+    assertNull(modelCache.get(projectKey, CONFIGURATIONS, new AssemblyVersionResolver(100, 65536, true).getSettings()));
+    assertNotNull(modelCache.get(projectKey, CONFIGURATIONS, SETTINGS));
+  }
+
+  @Test
+  public void testSourceWithoutVersionIsAnInput() throws Exception {
+    FileUtils.writeStringToFile(new File(coreProjectFile.getParentFile(), "Properties/AssemblyInfo.cs"), "// no version\n");
+    ModelFactory.setModelCacheFile(cacheFile);
+    assertNull(ModelFactory.getSolution(solutionFile).getProject("Example.Core").getAssemblyVersion());
+
+    File source = new File(coreProjectFile.getParentFile(), "Money.cs");
+    FileUtils.writeStringToFile(source, "[assembly: AssemblyVersion(\"9.9.9.9\")]\n" + FileUtils.readFileToString(source));
+    source.setLastModified(source.lastModified() + 10000L);
+    VisualStudioSolution solution = ModelFactory.getSolution(solutionFile);
+    assertEquals("9.9.9.9", solution.getProject("Example.Core").getAssemblyVersion());
+  }
+
+  @Test
+  public void testCorruptedCacheIsIgnored() throws Exception {
+    FileUtils.writeStringToFile(cacheFile, "not a cache");
+    assertNull(ModelCache.load(cacheFile).get(ProjectCache.keyOf(coreProjectFile), CONFIGURATIONS, SETTINGS));
+  }
+
+  @Test
+  public void testCachedSolutionIsUnchanged() throws Exception {
+    VisualStudioSolution expected = ModelFactory.getSolution(solutionFile);
+    ModelFactory.setModelCacheFile(cacheFile);
+    // first analysis fills the cache, second one reads all the projects from it
+    ModelFactory.getSolution(solutionFile);
+    VisualStudioSolution actual = ModelFactory.getSolution(solutionFile);
+
+    List<VisualStudioProject> expectedProjects = expected.getProjects();
+    assertEquals(expectedProjects.size(), actual.getProjects().size());
+    for (VisualStudioProject expectedProject : expectedProjects) {
+      VisualStudioProject actualProject = actual.getProject(expectedProject.getName());
+      assertEquals(expectedProject.getProjectGuid(), actualProject.getProjectGuid());
+      assertEquals(expectedProject.getAssemblyName(), actualProject.getAssemblyName());
+      assertEquals(expectedProject.getAssemblyVersion(), actualProject.getAssemblyVersion());
+      assertEquals(expectedProject.getDebugOutputDir(), actualProject.getDebugOutputDir());
+      assertEquals(expectedProject.isTest(), actualProject.isTest());
+      assertEquals(expectedProject.getBinaryReferences(), actualProject.getBinaryReferences());
+      assertEquals(expectedProject.getProjectReferences(), actualProject.getProjectReferences());
+      assertEquals(expectedProject.getSourceFiles().size(), actualProject.getSourceFiles().size());
+    }
+
+    ModelCache modelCache = ModelCache.load(cacheFile);
+    for (VisualStudioProject project : expectedProjects) {
+      if (project.getProjectFile() != null) {
+        assertNotNull(modelCache.get(ProjectCache.keyOf(project.getProjectFile()), expected.getBuildConfigurations(), SETTINGS));
+      }
+    }
+  }
+
+}
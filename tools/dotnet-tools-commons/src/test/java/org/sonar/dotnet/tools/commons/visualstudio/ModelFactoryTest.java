@@ -28,6 +28,7 @@ import static org.hamcrest.CoreMatchers.not;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertThat;
 import static org.junit.Assert.assertTrue;
 import static org.junit.matchers.JUnitMatchers.containsString;
@@ -72,6 +73,7 @@ public class ModelFactoryTest {
   private static final String SILVERLIGHT_PROJECT_PATH = "target/test-classes/solution/BlankSilverlightSolution/BlankApplication/BlankApplication.csproj";
 
   private static final String WEB_SOLUTION_PATH = "target/test-classes/solution/web-solution/web-solution.sln";
+  private static final String CYCLIC_SOLUTION_PATH = "target/test-classes/solution/CyclicReferences/CyclicReferences.sln";
 
   @Test
   public void testReadFiles() {
@@ -81,6 +83,40 @@ public class ModelFactoryTest {
     assertEquals("Bad number of files extracted", 6, files.size());
   }
 
+  @Test
+  public void testXPathReaderGivesSameProject() throws Exception {
+    File file = new File(SOLUTION_WITH_CUSTOM_BUILD_PATH);
+    List<String> buildConfigurations = ModelFactory.getSolution(file).getBuildConfigurations();
+    File projectFile = new File(PROJECT_CORE_PATH);
+    File customProjectFile = new File("target/test-classes/solution/CustomBuild/ClassLibrary/ClassLibrary.csproj");
+
+    VisualStudioProject project = ModelFactory.getProject(projectFile);
+    VisualStudioProject customProject = ModelFactory.getProject(customProjectFile, "ClassLibrary", buildConfigurations);
+    ModelFactory.setUseXPathProjectReader(true);
+    try {
+      assertSameProject(project, ModelFactory.getProject(projectFile));
+      assertSameProject(customProject, ModelFactory.getProject(customProjectFile, "ClassLibrary", buildConfigurations));
+      assertEquals(6, ModelFactory.getFilesPath(projectFile).size());
+    } finally {
+      ModelFactory.setUseXPathProjectReader(false);
+    }
+  }
+
+  private void assertSameProject(VisualStudioProject expected, VisualStudioProject actual) {
+    assertEquals(expected.getProjectGuid(), actual.getProjectGuid());
+    assertEquals(expected.getType(), actual.getType());
+    assertEquals(expected.getAssemblyName(), actual.getAssemblyName());
+    assertEquals(expected.getRootNamespace(), actual.getRootNamespace());
+    assertEquals(expected.getAssemblyVersion(), actual.getAssemblyVersion());
+    assertEquals(expected.isSilverlightProject(), actual.isSilverlightProject());
+    assertEquals(expected.getDebugOutputDir(), actual.getDebugOutputDir());
+    assertEquals(expected.getArtifact("Release"), actual.getArtifact("Release"));
+    assertEquals(expected.getArtifact("CustomCompil"), actual.getArtifact("CustomCompil"));
+    assertEquals(expected.getBinaryReferences(), actual.getBinaryReferences());
+    assertEquals(expected.getProjectReferences(), actual.getProjectReferences());
+    assertEquals(expected.getSourceFiles().size(), actual.getSourceFiles().size());
+  }
+
   @Test
   public void testSolutionWithCustomBuild() throws Exception {
     File file = new File(SOLUTION_WITH_CUSTOM_BUILD_PATH);
@@ -272,4 +308,70 @@ public class ModelFactoryTest {
       assertFalse("ClassLibrary.dll".equals(assemblyFile.getName()));
     }
   }
+
+  @Test
+  public void testReferencedProjectsAreShared() throws Exception {
+    File file = new File(SOLUTION_PATH);
+    VisualStudioSolution solution = ModelFactory.getSolution(file);
+    VisualStudioProject coreProject = solution.getProject("Example.Core");
+    VisualStudioProject applicationProject = solution.getProject("Example.Application");
+    VisualStudioProject testProject = solution.getProject("Example.Core.Tests");
+
+    ProjectReference reference = applicationProject.getProjectReferences().get(0);
+    assertSame(coreProject, reference.getProject());
+    assertEquals("Example.Core", reference.getName());
+    assertEquals(coreProject.getProjectGuid(), reference.getGuid());
+    for (ProjectReference testReference : testProject.getProjectReferences()) {
+      assertSame(solution.getProject(testReference.getGuid()), testReference.getProject());
+    }
+  }
+
+  @Test
+  public void testCyclicProjectReferences() throws Exception {
+    File file = new File(CYCLIC_SOLUTION_PATH);
+    VisualStudioSolution solution = ModelFactory.getSolution(file);
+    assertEquals(2, solution.getProjects().size());
+    VisualStudioProject projectA = solution.getProject("ProjectA");
+    VisualStudioProject projectB = solution.getProject("ProjectB");
+    assertSame(projectB, projectA.getProjectReferences().get(0).getProject());
+    assertSame(projectA, projectB.getProjectReferences().get(0).getProject());
+    assertEquals("ProjectA", projectB.getProjectReferences().get(0).getName());
+  }
+
+  @Test
+  public void testParallelLoadingGivesSameSolutions() throws Exception {
+    String[] solutionPaths = {SOLUTION_PATH, MESSY_SOLUTION_PATH, LINK_SOLUTION_PATH, SOLUTION_WITH_DUP_PATH,
+      SOLUTION_WITH_CUSTOM_BUILD_PATH, SILVERLIGHT_SOLUTION_PATH, WEB_SOLUTION_PATH, CYCLIC_SOLUTION_PATH,
+      "target/test-classes/solution/ExampleUpsideDown/Example.sln"};
+    for (String solutionPath : solutionPaths) {
+      File file = new File(solutionPath);
+      VisualStudioSolution sequentialSolution = ModelFactory.getSolution(file);
+      ModelFactory.setModelLoadThreads(4);
+      try {
+        for (int i = 0; i < 5; i++) {
+          assertSameSolution(sequentialSolution, ModelFactory.getSolution(file));
+        }
+      } finally {
+        ModelFactory.setModelLoadThreads(1);
+      }
+    }
+  }
+
+  private void assertSameSolution(VisualStudioSolution expected, VisualStudioSolution actual) {
+    List<VisualStudioProject> expectedProjects = expected.getProjects();
+    List<VisualStudioProject> actualProjects = actual.getProjects();
+    assertEquals(expectedProjects.size(), actualProjects.size());
+    for (int i = 0; i < expectedProjects.size(); i++) {
+      VisualStudioProject expectedProject = expectedProjects.get(i);
+      VisualStudioProject actualProject = actualProjects.get(i);
+      assertEquals(expectedProject.getName(), actualProject.getName());
+      assertEquals(expectedProject.isTest(), actualProject.isTest());
+      assertSameProject(expectedProject, actualProject);
+      for (ProjectReference reference : actualProject.getProjectReferences()) {
+        if (actual.getProject(reference.getGuid()) != null) {
+          assertSame(actual.getProject(reference.getGuid()), reference.getProject());
+        }
+      }
+    }
+  }
 }
@@ -0,0 +1,160 @@
+/*
+ * .NET tools :: Commons
+ * Copyright (C) 2010 Jose Chillan, Alexandre Victoor and SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.dotnet.tools.commons.visualstudio;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.Before;
+import org.junit.Test;
+
+public class MsBuildEvaluatorTest {
+
+  private static final File SOLUTION_DIR = new File("target/test-classes/solution/ImportedProps").getAbsoluteFile();
+
+  private MsBuildImportCache importCache;
+  private MsBuildEvaluator evaluator;
+
+  @Before
+  public void setUp() {
+    importCache = new MsBuildImportCache();
+    evaluator = new MsBuildEvaluator(importCache);
+  }
+
+  @Test
+  public void testImportedProperties() throws Exception {
+    File projectFile = new File(SOLUTION_DIR, "Lib/Lib.csproj");
+    ProjectFileContent content = ProjectFileReader.read(projectFile);
+    evaluator.evaluate(projectFile, content, Arrays.asList("Debug", "Release"));
+
+    assertEquals("Company.Lib", content.getProperty("AssemblyName"));
+    assertEquals("Company.Lib", content.getProperty("RootNamespace"));
+    assertEquals("v4.0", content.getProperty("TargetFrameworkVersion"));
+    assertEquals("Library", content.getProperty("OutputType"));
+    assertEquals(SOLUTION_DIR + File.separator + "build" + File.separator + "..\\out\\Release\\Lib\\", content.getOutputPath("Release"));
+    assertEquals(Arrays.asList(new File(SOLUTION_DIR, "build/Common.props"), new File(SOLUTION_DIR, "build/Framework.props")),
+        content.getImportedFiles());
+  }
+
+  @Test
+  public void testLiteralPropertiesWin() throws Exception {
+    File projectFile = new File(SOLUTION_DIR, "App/App.csproj");
+    ProjectFileContent content = ProjectFileReader.read(projectFile);
+    evaluator.evaluate(projectFile, content, Arrays.asList("Debug"));
+
+    assertEquals("App", content.getProperty("AssemblyName"));
+    // Evaluated when the shared file is imported, before the project defines its own assembly name
+    assertEquals("Company.App", content.getProperty("RootNamespace"));
+  }
+
+  @Test
+  public void testImportsAreParsedOnce() throws Exception {
+    for (String projectPath : new String[] {"Lib/Lib.csproj", "App/App.csproj"}) {
+      File projectFile = new File(SOLUTION_DIR, projectPath);
+      evaluator.evaluate(projectFile, ProjectFileReader.read(projectFile), Arrays.asList("Debug", "Release"));
+    }
+    assertEquals(2, importCache.getMisses());
+    assertEquals(2, importCache.size());
+    assertTrue(importCache.getHits() > 0);
+  }
+
+  @Test
+  public void testSolution() throws Exception {
+    VisualStudioSolution solution = ModelFactory.getSolution(new File(SOLUTION_DIR, "ImportedProps.sln"));
+    VisualStudioProject lib = solution.getProject("Company.Lib");
+    assertEquals("Lib", lib.getName());
+    assertEquals(new File(SOLUTION_DIR, "out/Debug/Lib"), lib.getArtifactDirectory("Debug"));
+    assertEquals(new File(SOLUTION_DIR, "out/Release/Lib"), lib.getArtifactDirectory("Release"));
+    assertEquals(new File(SOLUTION_DIR, "out/Debug/App"), solution.getProject("App").getArtifactDirectory("Debug"));
+    assertEquals(lib, solution.getProject("App").getProjectReferences().get(0).getProject());
+  }
+
+  @Test
+  public void testConditions() {
+    assertCondition(true, " '$(Configuration)|$(Platform)' == 'Debug|AnyCPU' ");
+    assertCondition(true, "'$(Configuration)' == 'DEBUG'");
+    assertCondition(false, "'$(Configuration)' != 'Debug'");
+    assertCondition(true, "'$(Undefined)' == ''");
+    assertCondition(true, "'$(Configuration)' == 'Release' or ('$(Platform)' == 'AnyCPU' and !Exists('Missing.props'))");
+    assertCondition(false, "'$(Configuration)' == 'Debug' and Exists('Missing.props')");
+    assertCondition(true, "Exists('$(MSBuildProjectDirectory)')");
+    assertCondition(true, "'$(Number)' >= '4.5' and $(Number) < 10");
+    assertCondition(true, "HasTrailingSlash('$(MSBuildThisFileDirectory)')");
+    assertCondition(true, "$(Flag)");
+    assertCondition(false, "!$(Flag)");
+    // Not supported, so evaluated as false
+    assertCondition(false, "'$(Configuration)' == ");
+    assertCondition(false, "Unknown('x')");
+  }
+
+  @Test
+  public void testExpansions() {
+    Map<String, String> properties = evaluate("Debug", property("Name", "$(Configuration)-$(UNDEFINED)-$(configuration)"),
+        property("Function", "a$([System.DateTime]::Now.ToString('yyyy'))b"), property("Unterminated", "x$(Configuration"));
+    assertEquals("Debug--Debug", properties.get("name"));
+    assertEquals("ab", properties.get("Function"));
+    assertEquals("x$(Configuration", properties.get("Unterminated"));
+  }
+
+  @Test
+  public void testGlobalPropertiesCannotBeOverridden() {
+    Map<String, String> properties = evaluate("Release", property("Configuration", "Debug"));
+    assertEquals("Release", properties.get("Configuration"));
+    assertEquals("Debug", evaluate(null, property("Configuration", "Debug")).get("Configuration"));
+  }
+
+  @Test
+  public void testRecursiveImportsAreIgnored() throws Exception {
+    File propsFile = new File("target/msbuild/Recursive.props").getAbsoluteFile();
+    FileUtils.writeStringToFile(propsFile, "<Project xmlns=\"http://schemas.microsoft.com/developer/msbuild/2003\">"
+      + "<PropertyGroup><Count>$(Count)I</Count></PropertyGroup><Import Project=\"Recursive.props\" /></Project>");
+    ProjectFileContent content = new ProjectFileContent();
+    content.getStatements().add(ProjectFileContent.Statement.importProject(propsFile.getPath(), null, null));
+    List<File> importedFiles = new ArrayList<File>();
+    Map<String, String> properties = evaluator.evaluateProperties(new File(SOLUTION_DIR, "Lib/Lib.csproj"), content, null,
+        importedFiles);
+    assertEquals("I", properties.get("Count"));
+    assertEquals(Arrays.asList(propsFile), importedFiles);
+  }
+
+  private void assertCondition(boolean expected, String condition) {
+    Map<String, String> properties = evaluate("Debug", property("Platform", "AnyCPU"), property("Number", "5"),
+        property("Flag", "true"), ProjectFileContent.Statement.property("Result", "true", condition, null));
+    assertEquals(condition, expected, "true".equals(properties.get("Result")));
+  }
+
+  private Map<String, String> evaluate(String buildConfiguration, ProjectFileContent.Statement... statements) {
+    ProjectFileContent content = new ProjectFileContent();
+    content.getStatements().addAll(Arrays.asList(statements));
+    return evaluator.evaluateProperties(new File(SOLUTION_DIR, "Lib/Lib.csproj"), content, buildConfiguration, new ArrayList<File>());
+  }
+
+  private static ProjectFileContent.Statement property(String name, String value) {
+    return ProjectFileContent.Statement.property(name, value, null, null);
+  }
+
+}
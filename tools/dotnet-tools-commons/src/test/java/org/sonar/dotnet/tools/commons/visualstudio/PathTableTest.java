@@ -0,0 +1,178 @@
+/*
+ * .NET tools :: Commons
+ * Copyright (C) 2010 Jose Chillan, Alexandre Victoor and SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.dotnet.tools.commons.visualstudio;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.Test;
+
+public class PathTableTest {
+
+  private static final int FILE_COUNT = 50000;
+  private static final int FILES_PER_DIRECTORY = 25;
+
+  /**
+   * The names stored for each file, directory names being shared, must be much shorter than its full path
+   */
+  private static final long MAX_NAME_LENGTH_PER_FILE = 12;
+
+  @Test
+  public void testAddAndFind() {
+    PathTable table = new PathTable();
+    File root = new File("target/path-table").getAbsoluteFile();
+    File foo = new File(root, "src" + File.separator + "Foo.cs");
+    File bar = new File(root, "Bar.cs");
+
+    assertEquals(0, table.add(foo, "src"));
+    assertEquals(1, table.add(bar, ""));
+    assertEquals(0, table.add(foo, "other"));
+
+    assertEquals(2, table.size());
+    assertEquals(0, table.find(foo));
+    assertEquals(1, table.find(bar));
+    assertEquals(-1, table.find(new File(root, "Foo.cs")));
+    assertEquals(foo, table.getFile(0));
+    assertEquals(bar.getPath(), table.getPath(1));
+    assertEquals("Foo.cs", table.getName(0));
+    assertEquals("other", table.getFolder(0));
+
+    table.remove(1);
+    assertTrue(table.isRemoved(1));
+    assertEquals(-1, table.find(bar));
+  }
+
+  @Test
+  public void testAddWithFolder() {
+    PathTable table = new PathTable();
+    File foo = new File("target/path-table/src/Foo.cs").getAbsoluteFile();
+
+    assertEquals(0, table.addWithFolder(foo, "src"));
+    assertEquals(0, table.addWithFolder(foo, "src"));
+    assertEquals(1, table.addWithFolder(foo, "other"));
+    assertEquals(2, table.addWithFolder(foo, null));
+    assertEquals(2, table.addWithFolder(foo, null));
+
+    assertEquals("src", table.getFolder(0));
+    assertEquals("other", table.getFolder(1));
+    assertEquals(foo, table.getFile(1));
+    assertEquals(3, table.size());
+  }
+
+  @Test
+  public void testConstructedSourceFiles() {
+    VisualStudioProject project = createLargeProject();
+    File file = new File("target/path-table/LargeProject/Generated/Foo.cs").getAbsoluteFile();
+
+    SourceFile sourceFile = new SourceFile(project, file, "Generated", "Bar.cs");
+    assertEquals("Bar.cs", sourceFile.getName());
+    assertEquals("Generated", sourceFile.getFolder());
+    assertEquals(file, sourceFile.getFile());
+    assertSame(project, sourceFile.getProject());
+
+    SourceFile other = new SourceFile(project, file, "Other", "Foo.cs");
+    assertEquals("Foo.cs", other.getName());
+    assertEquals("Other", other.getFolder());
+    assertEquals("Generated", sourceFile.getFolder());
+
+    // the files constructed for the project share its table, but are not listed by the project
+    assertSame(project.getConstructedFileTable(), project.getConstructedFileTable());
+    assertEquals(2, project.getConstructedFileTable().size());
+    assertEquals(FILE_COUNT, project.getSourceFiles().size());
+    assertNull(project.getFile(file));
+
+    SourceFile withoutProject = new SourceFile(null, file, "Generated", "Foo.cs");
+    assertEquals(file, withoutProject.getFile());
+    assertNull(withoutProject.getProject());
+  }
+
+  @Test
+  public void testRelativePaths() {
+    PathTable table = new PathTable();
+    assertEquals(0, table.add(new File("Foo.cs"), null));
+    assertEquals("Foo.cs", table.getPath(0));
+    assertNull(table.getFolder(0));
+  }
+
+  @Test
+  public void testDirectoriesAndFoldersAreShared() {
+    VisualStudioProject project = createLargeProject();
+    List<SourceFile> sourceFiles = new ArrayList<SourceFile>(project.getSourceFiles());
+    assertEquals(FILE_COUNT, sourceFiles.size());
+    assertTrue(project.getSourceDirectoryCount() < FILE_COUNT / FILES_PER_DIRECTORY + 100);
+
+    SourceFile first = sourceFiles.get(0);
+    SourceFile second = sourceFiles.get(1);
+    assertSame(first.getFolder(), second.getFolder());
+    assertSame(first, project.getFile(first.getFile()));
+    assertEquals("File0.cs", first.getName());
+  }
+
+  @Test
+  public void testNamesAreStoredOnce() {
+    File directory = new File("target/path-table/LargeProject").getAbsoluteFile();
+    PathTable table = new PathTable();
+    long pathLength = 0;
+    for (String filePath : createFilesPath()) {
+      File file = new File(directory, filePath);
+      pathLength += file.getPath().length();
+      table.add(file, null);
+    }
+
+    long nameLengthPerFile = table.getNameLength() / FILE_COUNT;
+    assertTrue("Source files store " + nameLengthPerFile + " characters each", nameLengthPerFile <= MAX_NAME_LENGTH_PER_FILE);
+    assertTrue(nameLengthPerFile * 4 < pathLength / FILE_COUNT);
+
+    // the paths are rebuilt on demand, not kept
+    String path = table.getPath(FILE_COUNT - 1);
+    assertEquals(new File(directory, createFilesPath().get(FILE_COUNT - 1)).getPath(), path);
+    assertNotSame(path, table.getPath(FILE_COUNT - 1));
+    assertEquals(table.getNameLength() / FILE_COUNT, nameLengthPerFile);
+  }
+
+  private static List<String> createFilesPath() {
+    List<String> filesPath = new ArrayList<String>(FILE_COUNT);
+    for (int i = 0; i < FILE_COUNT; i++) {
+      int folder = i / FILES_PER_DIRECTORY;
+      filesPath.add("Features" + File.separator + "Feature" + (folder / 100) + File.separator + "Module" + folder + File.separator
+        + "File" + i + ".cs");
+    }
+    return filesPath;
+  }
+
+  private static VisualStudioProject createLargeProject() {
+    File directory = new File("target/path-table/LargeProject").getAbsoluteFile();
+    List<String> filesPath = createFilesPath();
+    VisualStudioProject project = new VisualStudioProject();
+    project.setProjectFile(new File(directory, "LargeProject.csproj"));
+    project.setDirectory(directory);
+    project.setFilesPath(Collections.unmodifiableList(filesPath));
+    return project;
+  }
+
+}
@@ -0,0 +1,88 @@
+/*
+ * .NET tools :: Commons
+ * Copyright (C) 2010 Jose Chillan, Alexandre Victoor and SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.dotnet.tools.commons.visualstudio;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.StringReader;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+
+public class SolutionFileReaderTest {
+
+  private static final String SOLUTION_WITH_FOLDERS = "\uFEFF\r\n"
+    + "Microsoft Visual Studio Solution File, Format Version 11.00\r\n"
+    + "# Visual Studio 2010\r\n"
+    + "Project(\"{2150E333-8FDC-42A3-9474-1A3956D46DE8}\") = \"src\", \"src\", \"{11111111-1111-1111-1111-111111111111}\"\r\n"
+    + "EndProject\r\n"
+    + "Project(\"{FAE04EC0-301F-11D3-BF4B-00C04F79EFBC}\") = \"Core\", \"src\\Core\\Core.csproj\", \"{22222222-2222-2222-2222-222222222222}\"\r\n"
+    + "\tProjectSection(ProjectDependencies) = postProject\r\n"
+    + "\t\t{33333333-3333-3333-3333-333333333333} = {33333333-3333-3333-3333-333333333333}\r\n"
+    + "\tEndProjectSection\r\n"
+    + "EndProject\r\n"
+    + "Global\r\n"
+    + "\tGlobalSection(SolutionConfigurationPlatforms) = preSolution\r\n"
+    + "\t\tDebug|Any CPU = Debug|Any CPU\r\n"
+    + "\t\tRelease|Any CPU = Release|Any CPU\r\n"
+    + "\tEndGlobalSection\r\n"
+    + "\tGlobalSection(ProjectConfigurationPlatforms) = postSolution\r\n"
+    + "\t\t{22222222-2222-2222-2222-222222222222}.Debug|Any CPU.ActiveCfg = Debug|Any CPU\r\n"
+    + "\tEndGlobalSection\r\n"
+    + "\tGlobalSection(NestedProjects) = preSolution\r\n"
+    + "\t\t{22222222-2222-2222-2222-222222222222} = {11111111-1111-1111-1111-111111111111}\r\n"
+    + "\tEndGlobalSection\r\n"
+    + "EndGlobal\r\n";
+
+  @Test
+  public void testSolutionFolders() throws Exception {
+    SolutionFileContent content = SolutionFileReader.read(new StringReader(SOLUTION_WITH_FOLDERS));
+
+    List<SolutionFileContent.ProjectEntry> projects = content.getProjects();
+    assertEquals(2, projects.size());
+    assertEquals("{2150E333-8FDC-42A3-9474-1A3956D46DE8}", projects.get(0).getTypeGuid());
+    assertEquals("src", projects.get(0).getName());
+    assertEquals("Core", projects.get(1).getName());
+    assertEquals("src\\Core\\Core.csproj", projects.get(1).getPath());
+    assertEquals("{22222222-2222-2222-2222-222222222222}", projects.get(1).getGuid());
+    assertTrue(projects.get(1).getWebsiteProperties().isEmpty());
+
+    assertEquals(Arrays.asList("Debug", "Release"), content.getBuildConfigurations());
+    assertEquals("{11111111-1111-1111-1111-111111111111}", content.getNestedProjects().get("{22222222-2222-2222-2222-222222222222}"));
+  }
+
+  @Test
+  public void testWebSolution() throws Exception {
+    SolutionFileContent content = SolutionFileReader.read(new File("target/test-classes/solution/web-solution/web-solution.sln"));
+
+    List<SolutionFileContent.ProjectEntry> projects = content.getProjects();
+    assertEquals(2, projects.size());
+    assertEquals("ClassLibrary\\ClassLibrary.csproj", projects.get(0).getPath());
+    SolutionFileContent.ProjectEntry webSite = projects.get(1);
+    assertEquals("WebSite", webSite.getName());
+    assertEquals("WebSite\\", webSite.getWebsiteProperties().get("Debug.AspNetCompiler.PhysicalPath"));
+    assertEquals("PrecompiledWeb\\WebSite\\", webSite.getWebsiteProperties().get("Release.AspNetCompiler.TargetPath"));
+    assertEquals(Arrays.asList("Debug", "Debug", "Debug", "Release", "Release", "Release"), content.getBuildConfigurations());
+  }
+
+}
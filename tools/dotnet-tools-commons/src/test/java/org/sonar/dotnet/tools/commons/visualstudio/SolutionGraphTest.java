@@ -0,0 +1,157 @@
+/*
+ * .NET tools :: Commons
+ * Copyright (C) 2010 Jose Chillan, Alexandre Victoor and SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.dotnet.tools.commons.visualstudio;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.UUID;
+
+import org.junit.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+public class SolutionGraphTest {
+
+  private static final Logger LOG = LoggerFactory.getLogger(SolutionGraphTest.class);
+
+  @Test
+  public void testExampleSolution() throws Exception {
+    VisualStudioSolution solution = ModelFactory.getSolution(new File("target/test-classes/solution/Example/Example.sln"));
+    SolutionGraph graph = solution.getGraph();
+    assertSame(graph, solution.getGraph());
+
+    VisualStudioProject core = solution.getProject("Example.Core");
+    VisualStudioProject application = solution.getProject("Example.Application");
+    VisualStudioProject tests = solution.getProject("Example.Core.Tests");
+    assertEquals(Arrays.asList(core), graph.getReferences(application));
+    assertEquals(Arrays.asList(application, tests), graph.getReferencingProjects(core));
+    assertFalse(graph.hasCycles());
+    assertEquals(2, graph.getLevels().size());
+    assertEquals(Arrays.asList(core), graph.getLevels().get(0));
+  }
+
+  @Test
+  public void testCyclicSolution() throws Exception {
+    VisualStudioSolution solution = ModelFactory.getSolution(new File(
+        "target/test-classes/solution/CyclicReferences/CyclicReferences.sln"));
+    SolutionGraph graph = solution.getGraph();
+    assertTrue(graph.hasCycles());
+    assertEquals(1, graph.getCycles().size());
+    assertEquals(2, graph.getCycles().get(0).size());
+    assertEquals(1, graph.getLevels().size());
+  }
+
+  @Test
+  public void testLevelsAndClosure() {
+    List<VisualStudioProject> projects = createProjects(6);
+    // 0 <- 1 <- 2, 0 <- 3, 4 <-> 5 -> 2
+    reference(projects, 1, 0);
+    reference(projects, 2, 1);
+    reference(projects, 3, 0);
+    reference(projects, 4, 5);
+    reference(projects, 5, 4);
+    reference(projects, 5, 2);
+    SolutionGraph graph = new SolutionGraph(projects);
+
+    List<List<VisualStudioProject>> levels = graph.getLevels();
+    assertEquals(4, levels.size());
+    assertEquals(Arrays.asList(projects.get(0)), levels.get(0));
+    assertEquals(Arrays.asList(projects.get(1), projects.get(3)), levels.get(1));
+    assertEquals(Arrays.asList(projects.get(2)), levels.get(2));
+    assertEquals(Arrays.asList(projects.get(4), projects.get(5)), levels.get(3));
+
+    assertEquals(Arrays.asList(projects.get(0), projects.get(1), projects.get(2), projects.get(4), projects.get(5)),
+        graph.getTransitiveReferences(projects.get(4)));
+    assertEquals(Arrays.asList(projects.get(1), projects.get(2), projects.get(3), projects.get(4), projects.get(5)),
+        graph.getTransitiveReferencingProjects(projects.get(0)));
+    assertEquals(Arrays.asList(Arrays.asList(projects.get(4), projects.get(5))), graph.getCycles());
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testUnknownProject() {
+    new SolutionGraph(createProjects(2)).getReferences(new VisualStudioProject());
+  }
+
+  /**
+   * Microbenchmark on a synthetic solution of 2,000 projects, each one referencing up to 10 projects declared before it.
+   */
+  @Test
+  public void testLargeGraph() {
+    int projectCount = 2000;
+    List<VisualStudioProject> projects = createProjects(projectCount);
+    Random random = new Random(42);
+    for (int i = 1; i < projectCount; i++) {
+      int referenceCount = random.nextInt(Math.min(i, 10) + 1);
+      for (int j = 0; j < referenceCount; j++) {
+        reference(projects, i, random.nextInt(i));
+      }
+    }
+
+    long start = System.nanoTime();
+    int runs = 20;
+    SolutionGraph graph = null;
+    for (int run = 0; run < runs; run++) {
+      graph = new SolutionGraph(projects);
+    }
+    long buildTime = (System.nanoTime() - start) / runs;
+    LOG.info("Graph of {} projects built in {} microseconds, {} levels", new Object[] {projectCount, buildTime / 1000,
+      graph.getLevels().size()});
+
+    assertFalse(graph.hasCycles());
+    Set<VisualStudioProject> processed = new HashSet<VisualStudioProject>();
+    for (List<VisualStudioProject> level : graph.getLevels()) {
+      for (VisualStudioProject project : level) {
+        assertTrue(processed.containsAll(graph.getReferences(project)));
+      }
+      processed.addAll(level);
+    }
+    assertEquals(projectCount, processed.size());
+  }
+
+  private static List<VisualStudioProject> createProjects(int count) {
+    List<VisualStudioProject> projects = new ArrayList<VisualStudioProject>();
+    for (int i = 0; i < count; i++) {
+      VisualStudioProject project = new VisualStudioProject();
+      project.setName("Project" + i);
+      project.setProjectGuid(new UUID(0, i));
+      project.setProjectReferences(new ArrayList<ProjectReference>());
+      projects.add(project);
+    }
+    return projects;
+  }
+
+  private static void reference(List<VisualStudioProject> projects, int from, int to) {
+    ProjectReference reference = new ProjectReference();
+    reference.setGuid(projects.get(to).getProjectGuid());
+    reference.setName(projects.get(to).getName());
+    projects.get(from).getProjectReferences().add(reference);
+  }
+
+}
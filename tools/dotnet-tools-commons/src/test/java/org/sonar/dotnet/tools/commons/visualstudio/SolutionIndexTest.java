@@ -0,0 +1,95 @@
+/*
+ * .NET tools :: Commons
+ * Copyright (C) 2010 Jose Chillan, Alexandre Victoor and SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.dotnet.tools.commons.visualstudio;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import java.io.File;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.sonar.test.TestUtils;
+
+public class SolutionIndexTest {
+
+  private VisualStudioSolution solution;
+  private SolutionIndex index;
+
+  @Before
+  public void setUp() throws Exception {
+    solution = ModelFactory.getSolution(TestUtils.getResource("/solution/Example/Example.sln"));
+    index = solution.getIndex();
+  }
+
+  @Test
+  public void testIndexIsShared() {
+    assertSame(index, solution.getIndex());
+  }
+
+  @Test
+  public void testGetProject() {
+    File sourceFile = TestUtils.getResource("/solution/Example/Example.Core/Money.cs");
+    VisualStudioProject project = index.getProject(sourceFile);
+    assertEquals("Example.Core", project.getName());
+    assertSame(project, index.getSourceFile(sourceFile).getProject());
+    assertEquals("Money.cs", index.getSourceFile(sourceFile).getName());
+  }
+
+  @Test
+  public void testGetProjectWithRelativePath() {
+    File coreDirectory = TestUtils.getResource("/solution/Example/Example.Core");
+    File sourceFile = new File(coreDirectory, "../Example.Core/./Money.cs");
+    assertEquals("Example.Core", index.getProject(sourceFile).getName());
+  }
+
+  @Test
+  public void testGetProjectWithUnknownFiles() {
+    assertNull(index.getProject(TestUtils.getResource("/solution/LinkTestSolution/src/AssemblyInfo.cs")));
+    assertNull(index.getProject(new File(TestUtils.getResource("/solution/Example/Example.Core"), "FooBar.cs")));
+    assertNull(index.getProject(null));
+  }
+
+  @Test
+  public void testGetProjectByLocation() {
+    File directory = TestUtils.getResource("/solution/Example/Example.Core/Model");
+    assertEquals("Example.Core", index.getProjectByLocation(directory).getName());
+    assertEquals("Example.Core", index.getProjectByLocation(new File(directory, "NotExisting.cs")).getName());
+    assertNull(index.getProjectByLocation(TestUtils.getResource("/solution/Example")));
+  }
+
+  @Test
+  public void testIndexIsRebuiltAfterFiltering() {
+    File sourceFile = TestUtils.getResource("/solution/Example/Example.Core/Money.cs");
+    solution.filterProjects("Example.Core");
+    assertNull(solution.getProject(sourceFile));
+    assertEquals(countSourceFiles(), solution.getIndex().getSourceFileCount());
+  }
+
+  private int countSourceFiles() {
+    int count = 0;
+    for (VisualStudioProject project : solution.getProjects()) {
+      count += project.getSourceFiles().size();
+    }
+    return count;
+  }
+
+}
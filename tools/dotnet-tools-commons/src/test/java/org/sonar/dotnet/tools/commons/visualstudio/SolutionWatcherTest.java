@@ -0,0 +1,155 @@
+/*
+ * .NET tools :: Commons
+ * Copyright (C) 2010 Jose Chillan, Alexandre Victoor and SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.dotnet.tools.commons.visualstudio;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.lang.StringUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class SolutionWatcherTest {
+
+  private File solutionDir;
+  private File solutionFile;
+  private SolutionWatcher watcher;
+  private final List<SolutionDelta> deltas = new ArrayList<SolutionDelta>();
+
+  @Before
+  public void setUp() throws Exception {
+    solutionDir = new File("target/solution-watcher/Example");
+    FileUtils.deleteDirectory(solutionDir);
+    FileUtils.copyDirectory(new File("target/test-classes/solution/Example"), solutionDir);
+    solutionFile = new File(solutionDir, "Example.sln");
+    watcher = new SolutionWatcher(solutionFile);
+    watcher.addListener(new SolutionWatcher.Listener() {
+
+      public void solutionChanged(VisualStudioSolution solution, SolutionDelta delta) {
+        deltas.add(delta);
+      }
+    });
+  }
+
+  @After
+  public void tearDown() {
+    watcher.stop();
+  }
+
+  @Test
+  public void testNothingChanged() throws Exception {
+    VisualStudioSolution solution = watcher.getSolution();
+    assertFalse(watcher.checkForChanges());
+    assertSame(solution, watcher.getSolution());
+    assertTrue(deltas.isEmpty());
+  }
+
+  @Test
+  public void testOnlyChangedProjectIsReadAgain() throws Exception {
+    VisualStudioSolution solution = watcher.getSolution();
+    VisualStudioProject core = solution.getProject("Example.Core");
+    VisualStudioProject application = solution.getProject("Example.Application");
+
+    File projectFile = new File(solutionDir, "Example.Core/Example.Core.csproj");
+    String content = FileUtils.readFileToString(projectFile, "UTF-8");
+    modify(projectFile, StringUtils.replace(content, "<Compile Include=\"SampleMeasure.cs\" />", ""));
+    assertTrue(watcher.checkForChanges());
+    assertTrue(watcher.isDirty(core));
+    assertFalse(watcher.isDirty(application));
+
+    assertSame(solution, watcher.getSolution());
+    VisualStudioProject newCore = solution.getProject("Example.Core");
+    assertNotSame(core, newCore);
+    assertSame(application, solution.getProject("Example.Application"));
+    assertSame(newCore, application.getProjectReferences().get(0).getProject());
+    assertNull(solution.getProject(new File(solutionDir, "Example.Core/SampleMeasure.cs")));
+    assertSame(newCore, solution.getProject(new File(solutionDir, "Example.Core/Money.cs")));
+    assertSame(newCore, solution.getGraph().getReferences(application).get(0));
+
+    assertEquals(1, deltas.size());
+    assertEquals(1, deltas.get(0).getChangedProjects().size());
+    assertSame(newCore, deltas.get(0).getChangedProjects().get(0));
+    assertTrue(deltas.get(0).getAddedProjects().isEmpty());
+    assertFalse(watcher.checkForChanges());
+  }
+
+  @Test
+  public void testDeletedSourceFile() throws Exception {
+    VisualStudioSolution solution = watcher.getSolution();
+    File sourceFile = new File(solutionDir, "Example.Core/Model/SubType.cs");
+    assertTrue(sourceFile.delete());
+    File directory = sourceFile.getParentFile();
+    directory.setLastModified(directory.lastModified() + 2000);
+
+    assertTrue(watcher.checkForChanges());
+    assertNull(watcher.getSolution().getProject(sourceFile));
+    assertEquals("Example.Core", deltas.get(0).getChangedProjects().get(0).getName());
+    assertSame(solution, watcher.getSolution());
+  }
+
+  @Test
+  public void testSolutionFileChanged() throws Exception {
+    VisualStudioSolution solution = watcher.getSolution();
+    String content = FileUtils.readFileToString(solutionFile, "UTF-8");
+    int start = content.indexOf("Project(\"{FAE04EC0-301F-11D3-BF4B-00C04F79EFBC}\") = \"Example.Core.Tests\"");
+    int end = content.indexOf("EndProject", start) + "EndProject".length();
+    modify(solutionFile, content.substring(0, start) + content.substring(end));
+
+    VisualStudioSolution newSolution = watcher.getSolution();
+    assertNotSame(solution, newSolution);
+    assertEquals(2, newSolution.getProjects().size());
+    assertEquals(1, deltas.get(0).getRemovedProjects().size());
+    assertEquals("Example.Core.Tests", deltas.get(0).getRemovedProjects().get(0).getName());
+    assertTrue(deltas.get(0).getChangedProjects().isEmpty());
+  }
+
+  @Test
+  public void testBackgroundPolling() throws Exception {
+    watcher.start(10);
+    VisualStudioProject core = watcher.getSolution().getProject("Example.Core");
+    File assemblyInfo = new File(solutionDir, "Example.Core/Properties/AssemblyInfo.cs");
+    modify(assemblyInfo, StringUtils.replace(FileUtils.readFileToString(assemblyInfo, "UTF-8"), "1.0.0.0", "2.0.0.0"));
+
+    long timeout = System.currentTimeMillis() + 5000;
+    while ( !watcher.isDirty(core) && System.currentTimeMillis() < timeout) {
+      Thread.sleep(10);
+    }
+    assertTrue(watcher.isDirty(core));
+    assertEquals("2.0.0.0", watcher.getSolution().getProject("Example.Core").getAssemblyVersion());
+  }
+
+  private static void modify(File file, String content) throws Exception {
+    long lastModified = file.lastModified();
+    FileUtils.writeStringToFile(file, content, "UTF-8");
+    // The modification must be seen even on file systems that only keep seconds
+    file.setLastModified(lastModified + 2000);
+  }
+
+}
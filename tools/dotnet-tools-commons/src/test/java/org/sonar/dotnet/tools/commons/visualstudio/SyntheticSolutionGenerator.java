@@ -0,0 +1,301 @@
+/*
+ * .NET tools :: Commons
+ * Copyright (C) 2010 Jose Chillan, Alexandre Victoor and SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.dotnet.tools.commons.visualstudio;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.SortedSet;
+import java.util.TreeSet;
+import java.util.UUID;
+
+import org.apache.commons.io.IOUtils;
+
+/**
+ * Writes a synthetic Visual Studio solution, with as many projects, source files and project references as needed to test the model at
+ * scale. The same seed and settings always give the same files, so that the solution can be used in unit tests as well as in
+ * benchmarks.<br/>
+ * Projects only reference projects written before them, so that the reference graph has no cycle.
+ */
+public class SyntheticSolutionGenerator {
+
+  /**
+   * Where the assembly version of the projects is defined
+   */
+  public enum AssemblyInfoPlacement {
+    /** In "Properties\AssemblyInfo.cs", as Visual Studio does */
+    PROPERTIES_FOLDER,
+    /** In "AssemblyInfo.cs" at the root of the project */
+    PROJECT_ROOT,
+    /** In the last source file of the project */
+    SOURCE_FILE,
+    /** Nowhere */
+    NONE
+  }
+
+  public static final String SOLUTION_NAME = "Synthetic";
+  public static final String ASSEMBLY_VERSION = "1.2.3.4";
+
+  private static final String CSHARP_PROJECT_TYPE = "{FAE04EC0-301F-11D3-BF4B-00C04F79EFBC}";
+  private static final String WEB_PROJECT_TYPE = "{E24C65DC-7377-472B-9ABA-BC803B73C61A}";
+  private static final int FILES_PER_FOLDER = 20;
+
+  private final long seed;
+  private int projectCount = 10;
+  private int filesPerProject = 10;
+  private double referenceDensity = 1;
+  private int webProjectCount;
+  private List<String> buildConfigurations = Arrays.asList("Debug", "Release");
+  private AssemblyInfoPlacement assemblyInfoPlacement = AssemblyInfoPlacement.PROPERTIES_FOLDER;
+
+  private int referenceCount;
+
+  /**
+   * Creates a generator.
+   * 
+   * @param seed
+   *          the seed of the random choices, such as the referenced projects
+   */
+  public SyntheticSolutionGenerator(long seed) {
+    this.seed = seed;
+  }
+
+  /**
+   * @param projectCount
+   *          the number of C# projects, 10 by default
+   */
+  public void setProjectCount(int projectCount) {
+    this.projectCount = projectCount;
+  }
+
+  /**
+   * @param filesPerProject
+   *          the number of source files of each project, AssemblyInfo.cs excluded, 10 by default
+   */
+  public void setFilesPerProject(int filesPerProject) {
+    this.filesPerProject = filesPerProject;
+  }
+
+  /**
+   * @param referenceDensity
+   *          the average number of projects referenced by each project, 1 by default
+   */
+  public void setReferenceDensity(double referenceDensity) {
+    this.referenceDensity = referenceDensity;
+  }
+
+  /**
+   * @param webProjectCount
+   *          the number of web projects, which have no project file, 0 by default
+   */
+  public void setWebProjectCount(int webProjectCount) {
+    this.webProjectCount = webProjectCount;
+  }
+
+  /**
+   * @param buildConfigurations
+   *          the build configurations of the solution, "Debug" and "Release" by default
+   */
+  public void setBuildConfigurations(List<String> buildConfigurations) {
+    this.buildConfigurations = buildConfigurations;
+  }
+
+  /**
+   * @param assemblyInfoPlacement
+   *          where the assembly version is defined, in "Properties\AssemblyInfo.cs" by default
+   */
+  public void setAssemblyInfoPlacement(AssemblyInfoPlacement assemblyInfoPlacement) {
+    this.assemblyInfoPlacement = assemblyInfoPlacement;
+  }
+
+  /**
+   * @return the number of project references written by the last generation
+   */
+  public int getReferenceCount() {
+    return referenceCount;
+  }
+
+  public static String getProjectName(int index) {
+    return SOLUTION_NAME + ".Project" + index;
+  }
+
+  /**
+   * Writes the solution. The directory should be empty.
+   * 
+   * @param directory
+   *          the directory of the solution
+   * @return the .sln file
+   * @throws IOException
+   *           if a file cannot be written
+   */
+  public File generate(File directory) throws IOException {
+    Random random = new Random(seed);
+    referenceCount = 0;
+    UUID[] guids = new UUID[projectCount + webProjectCount];
+    for (int i = 0; i < guids.length; i++) {
+      guids[i] = new UUID(random.nextLong(), random.nextLong());
+    }
+
+    for (int i = 0; i < projectCount; i++) {
+      SortedSet<Integer> references = new TreeSet<Integer>();
+      int wanted = Math.min(i, (int) referenceDensity + (random.nextDouble() < referenceDensity - (int) referenceDensity ? 1 : 0));
+      while (references.size() < wanted) {
+        references.add(random.nextInt(i));
+      }
+      referenceCount += references.size();
+      writeProject(new File(directory, getProjectName(i)), i, guids, references);
+    }
+    for (int i = 0; i < webProjectCount; i++) {
+      writeWebProject(new File(directory, getWebProjectName(i)));
+    }
+
+    File solutionFile = new File(directory, SOLUTION_NAME + ".sln");
+    writeSolution(solutionFile, guids);
+    return solutionFile;
+  }
+
+  private static String getWebProjectName(int index) {
+    return SOLUTION_NAME + ".WebSite" + index;
+  }
+
+  private static String guid(UUID uuid) {
+    return "{" + uuid.toString().toUpperCase() + "}";
+  }
+
+  private void writeSolution(File solutionFile, UUID[] guids) throws IOException {
+    StringBuilder sln = new StringBuilder();
+    sln.append("Microsoft Visual Studio Solution File, Format Version 11.00\r\n# Visual Studio 2010\r\n");
+    for (int i = 0; i < projectCount; i++) {
+      String name = getProjectName(i);
+      sln.append("Project(\"").append(CSHARP_PROJECT_TYPE).append("\") = \"").append(name).append("\", \"").append(name).append('\\')
+          .append(name).append(".csproj\", \"").append(guid(guids[i])).append("\"\r\nEndProject\r\n");
+    }
+    for (int i = 0; i < webProjectCount; i++) {
+      String name = getWebProjectName(i);
+      sln.append("Project(\"").append(WEB_PROJECT_TYPE).append("\") = \"").append(name).append("\", \"").append(name).append("/\", \"")
+          .append(guid(guids[projectCount + i])).append("\"\r\n\tProjectSection(WebsiteProperties) = preProject\r\n");
+      for (String configuration : buildConfigurations) {
+        sln.append("\t\t").append(configuration).append(".AspNetCompiler.PhysicalPath = \"").append(name).append("\\\"\r\n");
+        sln.append("\t\t").append(configuration).append(".AspNetCompiler.TargetPath = \"PrecompiledWeb\\").append(name)
+            .append("\\\"\r\n");
+      }
+      sln.append("\tEndProjectSection\r\nEndProject\r\n");
+    }
+    sln.append("Global\r\n\tGlobalSection(SolutionConfigurationPlatforms) = preSolution\r\n");
+    for (String configuration : buildConfigurations) {
+      sln.append("\t\t").append(configuration).append("|Any CPU = ").append(configuration).append("|Any CPU\r\n");
+    }
+    sln.append("\tEndGlobalSection\r\nEndGlobal\r\n");
+    write(solutionFile, sln.toString());
+  }
+
+  private void writeProject(File projectDir, int index, UUID[] guids, SortedSet<Integer> references) throws IOException {
+    String name = getProjectName(index);
+    List<String> compileItems = new ArrayList<String>();
+    for (int i = 0; i < filesPerProject; i++) {
+      String path = "Folder" + (i / FILES_PER_FOLDER) + "\\Class" + i + ".cs";
+      compileItems.add(path);
+      boolean withVersion = assemblyInfoPlacement == AssemblyInfoPlacement.SOURCE_FILE && i == filesPerProject - 1;
+      writeSource(new File(projectDir, path.replace('\\', '/')), name, "Class" + i, withVersion);
+    }
+    if (assemblyInfoPlacement == AssemblyInfoPlacement.PROPERTIES_FOLDER || assemblyInfoPlacement == AssemblyInfoPlacement.PROJECT_ROOT) {
+      String path = assemblyInfoPlacement == AssemblyInfoPlacement.PROPERTIES_FOLDER ? "Properties\\AssemblyInfo.cs" : "AssemblyInfo.cs";
+      compileItems.add(path);
+      write(new File(projectDir, path.replace('\\', '/')), "using System.Reflection;\r\n\r\n[assembly: AssemblyTitle(\"" + name
+        + "\")]\r\n[assembly: AssemblyVersion(\"" + ASSEMBLY_VERSION + "\")]\r\n");
+    }
+
+    StringBuilder csproj = new StringBuilder();
+    csproj.append("<?xml version=\"1.0\" encoding=\"utf-8\"?>\r\n");
+    csproj.append("<Project ToolsVersion=\"4.0\" DefaultTargets=\"Build\" "
+      + "xmlns=\"http://schemas.microsoft.com/developer/msbuild/2003\">\r\n");
+    csproj.append("  <PropertyGroup>\r\n");
+    csproj.append("    <ProjectGuid>").append(guid(guids[index])).append("</ProjectGuid>\r\n");
+    csproj.append("    <OutputType>Library</OutputType>\r\n");
+    csproj.append("    <RootNamespace>").append(name).append("</RootNamespace>\r\n");
+    csproj.append("    <AssemblyName>").append(name).append("</AssemblyName>\r\n");
+    csproj.append("    <TargetFrameworkVersion>v4.0</TargetFrameworkVersion>\r\n");
+    csproj.append("  </PropertyGroup>\r\n");
+    for (String configuration : buildConfigurations) {
+      csproj.append("  <PropertyGroup Condition=\" '$(Configuration)|$(Platform)' == '").append(configuration)
+          .append("|AnyCPU' \">\r\n");
+      csproj.append("    <OutputPath>bin\\").append(configuration).append("\\</OutputPath>\r\n");
+      csproj.append("  </PropertyGroup>\r\n");
+    }
+    csproj.append("  <ItemGroup>\r\n    <Reference Include=\"System\" />\r\n  </ItemGroup>\r\n");
+    csproj.append("  <ItemGroup>\r\n");
+    for (String compileItem : compileItems) {
+      csproj.append("    <Compile Include=\"").append(compileItem).append("\" />\r\n");
+    }
+    csproj.append("  </ItemGroup>\r\n");
+    if ( !references.isEmpty()) {
+      csproj.append("  <ItemGroup>\r\n");
+      for (Integer reference : references) {
+        String referenceName = getProjectName(reference);
+        csproj.append("    <ProjectReference Include=\"..\\").append(referenceName).append('\\').append(referenceName)
+            .append(".csproj\">\r\n");
+        csproj.append("      <Project>").append(guid(guids[reference])).append("</Project>\r\n");
+        csproj.append("      <Name>").append(referenceName).append("</Name>\r\n");
+        csproj.append("    </ProjectReference>\r\n");
+      }
+      csproj.append("  </ItemGroup>\r\n");
+    }
+    csproj.append("  <Import Project=\"$(MSBuildToolsPath)\\Microsoft.CSharp.targets\" />\r\n");
+    csproj.append("</Project>\r\n");
+    write(new File(projectDir, name + ".csproj"), csproj.toString());
+  }
+
+  private void writeWebProject(File projectDir) throws IOException {
+    for (int i = 0; i < filesPerProject; i++) {
+      writeSource(new File(projectDir, "App_Code/Folder" + (i / FILES_PER_FOLDER) + "/Page" + i + ".aspx.cs"), projectDir.getName(),
+          "Page" + i, false);
+    }
+    write(new File(projectDir, "web.config"), "<?xml version=\"1.0\"?>\r\n<configuration />\r\n");
+  }
+
+  private static void writeSource(File file, String namespace, String className, boolean withVersion) throws IOException {
+    StringBuilder source = new StringBuilder();
+    source.append("using System;\r\n");
+    if (withVersion) {
+      source.append("using System.Reflection;\r\n\r\n[assembly: AssemblyVersion(\"").append(ASSEMBLY_VERSION).append("\")]\r\n");
+    }
+    source.append("\r\nnamespace ").append(namespace).append("\r\n{\r\n");
+    source.append("    public class ").append(className).append("\r\n    {\r\n");
+    source.append("        public int Value { get; set; }\r\n    }\r\n}\r\n");
+    write(file, source.toString());
+  }
+
+  private static void write(File file, String content) throws IOException {
+    file.getParentFile().mkdirs();
+    Writer writer = new OutputStreamWriter(new FileOutputStream(file), "UTF-8");
+    try {
+      writer.write(content);
+    } finally {
+      IOUtils.closeQuietly(writer);
+    }
+  }
+
+}
@@ -0,0 +1,119 @@
+/*
+ * .NET tools :: Commons
+ * Copyright (C) 2010 Jose Chillan, Alexandre Victoor and SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.dotnet.tools.commons.visualstudio;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.util.Arrays;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.Before;
+import org.junit.Test;
+import org.sonar.dotnet.tools.commons.utils.FileFinder;
+import org.sonar.dotnet.tools.commons.visualstudio.SyntheticSolutionGenerator.AssemblyInfoPlacement;
+
+public class SyntheticSolutionGeneratorTest {
+
+  private File baseDir;
+
+  @Before
+  public void setUp() throws Exception {
+    baseDir = new File("target/synthetic-solutions");
+    FileUtils.deleteDirectory(baseDir);
+  }
+
+  @Test
+  public void testSmallSolution() throws Exception {
+    SyntheticSolutionGenerator generator = new SyntheticSolutionGenerator(42);
+    generator.setProjectCount(10);
+    generator.setFilesPerProject(5);
+    generator.setReferenceDensity(1.5);
+    generator.setWebProjectCount(2);
+    generator.setBuildConfigurations(Arrays.asList("Debug", "Release", "CI"));
+    File solutionFile = generator.generate(new File(baseDir, "small"));
+
+    VisualStudioSolution solution = ModelFactory.getSolution(solutionFile);
+    assertEquals(12, solution.getProjects().size());
+    assertTrue(solution.isAspUsed());
+    assertEquals(Arrays.asList("Debug", "Release", "CI"), solution.getBuildConfigurations());
+
+    int referenceCount = 0;
+    for (VisualStudioProject project : solution.getProjects()) {
+      referenceCount += project.getProjectReferences().size();
+      assertEquals(project.isWebProject() ? 5 : 6, project.getSourceFiles().size());
+    }
+    assertEquals(generator.getReferenceCount(), referenceCount);
+    assertFalse(solution.getGraph().hasCycles());
+
+    VisualStudioProject project = solution.getProject(SyntheticSolutionGenerator.getProjectName(3));
+    assertEquals(SyntheticSolutionGenerator.ASSEMBLY_VERSION, project.getAssemblyVersion());
+    assertEquals(10 * 6 + 2 * 5, FileFinder.findFiles(solution, solution.getSolutionDir(), "**/*.cs").size());
+  }
+
+  @Test
+  public void testAssemblyInfoPlacement() throws Exception {
+    SyntheticSolutionGenerator generator = new SyntheticSolutionGenerator(42);
+    generator.setProjectCount(2);
+    generator.setFilesPerProject(3);
+
+    generator.setAssemblyInfoPlacement(AssemblyInfoPlacement.SOURCE_FILE);
+    VisualStudioSolution solution = ModelFactory.getSolution(generator.generate(new File(baseDir, "source")));
+    assertEquals(3, solution.getProjects().get(0).getSourceFiles().size());
+    assertEquals(SyntheticSolutionGenerator.ASSEMBLY_VERSION, solution.getProjects().get(0).getAssemblyVersion());
+
+    generator.setAssemblyInfoPlacement(AssemblyInfoPlacement.NONE);
+    solution = ModelFactory.getSolution(generator.generate(new File(baseDir, "none")));
+    assertNull(solution.getProjects().get(0).getAssemblyVersion());
+  }
+
+  @Test
+  public void testSameSeedGivesSameSolution() throws Exception {
+    File first = generate(1234, "first");
+    File second = generate(1234, "second");
+    File other = generate(4321, "other");
+    assertEquals(FileUtils.readFileToString(first), FileUtils.readFileToString(second));
+    assertFalse(FileUtils.readFileToString(first).equals(FileUtils.readFileToString(other)));
+
+    String projectFile = SyntheticSolutionGenerator.getProjectName(99) + "/" + SyntheticSolutionGenerator.getProjectName(99) + ".csproj";
+    assertEquals(FileUtils.readFileToString(new File(first.getParentFile(), projectFile)),
+        FileUtils.readFileToString(new File(second.getParentFile(), projectFile)));
+  }
+
+  @Test
+  public void testHundredProjects() throws Exception {
+    File solutionFile = generate(7, "hundred");
+    VisualStudioSolution solution = ModelFactory.getSolution(solutionFile);
+    assertEquals(100, solution.getProjects().size());
+    assertEquals(100 * 11, solution.getIndex().getSourceFileCount());
+    assertFalse(solution.getGraph().hasCycles());
+  }
+
+  private File generate(long seed, String name) throws Exception {
+    SyntheticSolutionGenerator generator = new SyntheticSolutionGenerator(seed);
+    generator.setProjectCount(100);
+    generator.setReferenceDensity(3);
+    return generator.generate(new File(baseDir, name));
+  }
+
+}
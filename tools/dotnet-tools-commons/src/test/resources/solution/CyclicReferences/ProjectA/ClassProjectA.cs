@@ -0,0 +1,6 @@
+namespace ProjectA
+{
+    public class ClassProjectA
+    {
+    }
+}
@@ -0,0 +1,6 @@
+namespace ProjectB
+{
+    public class ClassProjectB
+    {
+    }
+}
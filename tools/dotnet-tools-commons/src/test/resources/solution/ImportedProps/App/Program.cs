@@ -0,0 +1,9 @@
+namespace App
+{
+    public class Program
+    {
+        public static void Main(string[] args)
+        {
+        }
+    }
+}
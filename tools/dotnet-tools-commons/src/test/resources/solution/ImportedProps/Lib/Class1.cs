@@ -0,0 +1,6 @@
+namespace Company.Lib
+{
+    public class Class1
+    {
+    }
+}